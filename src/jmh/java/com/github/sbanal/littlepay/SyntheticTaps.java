@@ -0,0 +1,72 @@
+package com.github.sbanal.littlepay;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the benchmark inputs using {@link TapDataGenerator}. Every pair of stops has a route so any generated trip
+ * can be costed, the number of PANs controls the number of open trips kept by the matcher.
+ */
+final class SyntheticTaps {
+
+    private SyntheticTaps() {
+    }
+
+    static String stopId(int stop) {
+        return TapDataGenerator.stopId(stop);
+    }
+
+    static long tripCost(int fromStop, int toStop) {
+        return TapDataGenerator.tripCost(fromStop, toStop);
+    }
+
+    static TripCostService tripCostService(int stops) {
+        try {
+            StringWriter tripCostCsv = new StringWriter();
+            generator(1, 1, stops).writeTripCosts(tripCostCsv);
+            TripCostService tripCostService = new TripCostService();
+            tripCostService.load(new StringReader(tripCostCsv.toString()));
+            return tripCostService;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static List<TripEvent> tripEvents(int rows, int pans, int stops) {
+        List<TripEvent> tripEvents = new ArrayList<>(rows);
+        try {
+            generator(rows, pans, stops).generateTaps((id, epochSecond, tapType, stop, bus, pan) ->
+                    tripEvents.add(new TripEvent(
+                            id,
+                            Instant.ofEpochSecond(epochSecond),
+                            tapType,
+                            TapDataGenerator.stopId(stop),
+                            TapDataGenerator.companyId(bus),
+                            TapDataGenerator.busId(bus),
+                            TapDataGenerator.pan(pan))));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return tripEvents;
+    }
+
+    static void writeTaps(Path tapsCsv, int rows, int pans, int stops) throws IOException {
+        try (Writer writer = new BufferedWriter(new FileWriter(tapsCsv.toFile()))) {
+            generator(rows, pans, stops).writeTaps(writer);
+        }
+    }
+
+    private static TapDataGenerator generator(int rows, int pans, int stops) {
+        return new TapDataGenerator(LittlePayGeneratorOptions.parse(
+                "--rows=" + rows, "--pans=" + pans, "--stops=" + stops));
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.sbanal.littlepay;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing trips with each of the writer backends, the output is discarded so only the record encoding is
+ * measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TripCompletionEventWriterBenchmark {
+
+    private static final int TRIPS = 10000;
+
+    @Param({"csv", "direct"})
+    String writer;
+
+    private final List<TripCompletionEvent> completionEvents = new ArrayList<>(TRIPS);
+
+    @Setup(Level.Trial)
+    public void createCompletionEvents() {
+        SplittableRandom random = new SplittableRandom(42);
+        Instant started = Instant.parse("2023-01-22T00:00:00Z");
+        for (int i = 0; i < TRIPS; i++) {
+            int fromStop = random.nextInt(100);
+            int toStop = random.nextInt(100);
+            boolean incomplete = i % 10 == 0;
+            completionEvents.add(new TripCompletionEvent(
+                    started.plusSeconds(i),
+                    incomplete ? null : started.plusSeconds(i + 300),
+                    incomplete ? null : 300L,
+                    SyntheticTaps.stopId(fromStop),
+                    incomplete ? null : SyntheticTaps.stopId(toStop),
+                    SyntheticTaps.tripCost(fromStop, toStop),
+                    "Company" + i % 5,
+                    "Bus" + i % 100,
+                    String.valueOf(4000000000000000L + i),
+                    incomplete ? TripCompletionStatus.INCOMPLETE
+                            : fromStop == toStop ? TripCompletionStatus.CANCELLED : TripCompletionStatus.COMPLETED));
+        }
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        try (TripCompletionEventWriter tripCompletionEventWriter = createWriter()) {
+            for (TripCompletionEvent completionEvent : completionEvents) {
+                tripCompletionEventWriter.write(completionEvent);
+            }
+        }
+    }
+
+    private TripCompletionEventWriter createWriter() throws IOException {
+        if ("direct".equals(writer)) {
+            DirectTripCompletionEventWriter directWriter = new DirectTripCompletionEventWriter(
+                    Channels.newChannel(OutputStream.nullOutputStream()),
+                    DirectTripCompletionEventWriter.DEFAULT_BUFFER_SIZE);
+            return new TripCompletionEventWriter(directWriter, directWriter, directWriter::bytesWritten);
+        }
+        return new TripCompletionEventWriter(Writer.nullWriter());
+    }
+}
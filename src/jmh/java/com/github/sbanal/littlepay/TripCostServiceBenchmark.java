@@ -0,0 +1,52 @@
+package com.github.sbanal.littlepay;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures looking up the cost of completed and incomplete trips, by stop code as done by the matcher and by stop
+ * id.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TripCostServiceBenchmark {
+
+    private static final int ROUTES = 1024;
+
+    @Param({"10", "100", "1000"})
+    int stops;
+
+    private TripCostService tripCostService;
+    private final int[] startStopCodes = new int[ROUTES];
+    private final int[] endStopCodes = new int[ROUTES];
+    private final String[] startStopIds = new String[ROUTES];
+    private final String[] endStopIds = new String[ROUTES];
+    private int route;
+
+    @Setup(Level.Trial)
+    public void loadTripCosts() {
+        tripCostService = SyntheticTaps.tripCostService(stops);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < ROUTES; i++) {
+            startStopIds[i] = SyntheticTaps.stopId(random.nextInt(stops));
+            endStopIds[i] = i % 10 == 0 ? null : SyntheticTaps.stopId(random.nextInt(stops));
+            startStopCodes[i] = SymbolTable.STOPS.find(startStopIds[i]);
+            endStopCodes[i] = SymbolTable.STOPS.find(endStopIds[i]);
+        }
+    }
+
+    @Benchmark
+    public long getTripCostByStopCode() {
+        int i = route++ & (ROUTES - 1);
+        return tripCostService.getTripCost(startStopCodes[i], endStopCodes[i]);
+    }
+
+    @Benchmark
+    public long getTripCostByStopId() {
+        int i = route++ & (ROUTES - 1);
+        return tripCostService.getTripCost(startStopIds[i], endStopIds[i]);
+    }
+}
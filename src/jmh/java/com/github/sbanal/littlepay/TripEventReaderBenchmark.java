@@ -0,0 +1,59 @@
+package com.github.sbanal.littlepay;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing a taps csv file into trip events with each of the reader backends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TripEventReaderBenchmark {
+
+    @Param({"1000000"})
+    int rows;
+
+    @Param({"1000", "100000"})
+    int pans;
+
+    @Param({"100"})
+    int stops;
+
+    @Param({"csv", "mapped", "parallel"})
+    String parser;
+
+    private Path tapsCsv;
+
+    @Setup(Level.Trial)
+    public void createTapsCsv() throws IOException {
+        tapsCsv = Files.createTempFile("taps", ".csv");
+        SyntheticTaps.writeTaps(tapsCsv, rows, pans, stops);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTapsCsv() throws IOException {
+        Files.deleteIfExists(tapsCsv);
+    }
+
+    @Benchmark
+    public List<TripEvent> readEvents() throws IOException {
+        try (TripEventReader reader = createReader()) {
+            return reader.readEvents();
+        }
+    }
+
+    private TripEventReader createReader() throws IOException {
+        return switch (parser) {
+            case "mapped" -> TripEventReader.mapped(tapsCsv);
+            case "parallel" -> TripEventReader.parallel(tapsCsv, Runtime.getRuntime().availableProcessors());
+            default -> new TripEventReader(new FileReader(tapsCsv.toFile()));
+        };
+    }
+}
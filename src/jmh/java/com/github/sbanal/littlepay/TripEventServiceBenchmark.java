@@ -0,0 +1,50 @@
+package com.github.sbanal.littlepay;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures matching the tap events into trips and costing them, the tap events are generated in memory and the trips
+ * are written to a null writer so only the matching, costing and record formatting are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TripEventServiceBenchmark {
+
+    @Param({"1000000"})
+    int rows;
+
+    @Param({"1000", "100000"})
+    int pans;
+
+    @Param({"100"})
+    int stops;
+
+    @Param({"1", "4"})
+    int partitions;
+
+    private List<TripEvent> tripEvents;
+    private TripEventService tripEventService;
+
+    @Setup(Level.Trial)
+    public void createTripEvents() {
+        TripCostService tripCostService = SyntheticTaps.tripCostService(stops);
+        tripEvents = SyntheticTaps.tripEvents(rows, pans, stops);
+        tripEventService = partitions > 1
+                ? new PartitionedTripEventService(tripCostService, TripEventServiceConfig.defaults(), partitions)
+                : new TripEventService(tripCostService);
+    }
+
+    @Benchmark
+    public void processEvents() throws IOException {
+        tripEventService.processEvents(
+                new TripEventReader(tripEvents.iterator(), () -> {
+                }),
+                new TripCompletionEventWriter(Writer.nullWriter()));
+    }
+}
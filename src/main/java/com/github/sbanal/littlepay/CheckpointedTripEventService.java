@@ -0,0 +1,107 @@
+package com.github.sbanal.littlepay;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Processes a taps csv file like {@link TripEventService} while periodically writing a checkpoint of its progress,
+ * so a job which did not complete resumes from its last checkpoint instead of from the first record. The taps csv
+ * file is parsed by {@link MappedTripEventParser} and the trips csv file is written by
+ * {@link DirectTripCompletionEventWriter} since both track exact byte positions, the trips written after the last
+ * checkpoint are discarded on resume so the output is identical to an uninterrupted job. The quarantine and rejected
+ * taps files are resumed the same way, see {@link TripEventCheckpoint}, and the invalid tap records skipped before
+ * the checkpoint still count against the error budget.
+ * <p>
+ * The checkpoint file is deleted once the job completes.
+ */
+public class CheckpointedTripEventService extends TripEventService {
+
+    private static final Logger LOGGER = Logger.getLogger(CheckpointedTripEventService.class.getName());
+
+    private final Path checkpointFile;
+    private final long checkpointInterval;
+
+    /**
+     * Creates the service which writes a checkpoint to the given file after every checkpoint interval tap events.
+     */
+    public CheckpointedTripEventService(TripCostService tripCostService, TripEventServiceConfig config,
+                                        Path checkpointFile, long checkpointInterval) {
+        super(tripCostService, config);
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("Invalid checkpoint interval, value must be positive");
+        }
+        this.checkpointFile = checkpointFile;
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Processes the taps csv file into the trips csv file, resuming from the checkpoint file if it exists. The
+     * quarantine the handler skips the invalid tap records into is checkpointed with the job, it is null when the
+     * handler fails on invalid tap records. The quarantine and the rejected taps file of the anomaly report must
+     * have been resumed from the checkpoint file by the caller.
+     */
+    public void processEvents(Path tapsCsv, Path tripsCsv, InvalidTripEventHandler invalidTripEventHandler,
+                              TapQuarantine quarantine) throws IOException {
+        PipelineMetrics metrics = metrics();
+        TripEventMatcher tripEventMatcher = createTripEventMatcher();
+        long tapsCsvSize = Files.size(tapsCsv);
+        TripEventCheckpoint checkpoint = TripEventCheckpoint.read(checkpointFile);
+        if (checkpoint == null) {
+            checkpoint = new TripEventCheckpoint(tapsCsvSize, 0, 0, 0, 0, 0, 0, List.of());
+        } else if (checkpoint.tapsCsvSize() != tapsCsvSize) {
+            throw new IOException("Checkpoint " + checkpointFile + " was written for a taps file of "
+                    + checkpoint.tapsCsvSize() + " bytes, " + tapsCsv + " has " + tapsCsvSize + " bytes");
+        } else {
+            LOGGER.info("Resuming from checkpoint " + checkpointFile + " at line " + checkpoint.lineNumber()
+                    + " with " + checkpoint.openTrips().size() + " open trips");
+            tripEventMatcher.restoreOpenTrips(checkpoint.openTrips());
+        }
+
+        try (MappedTripEventParser parser = new MappedTripEventParser(tapsCsv,
+                MappedTripEventParser.DEFAULT_WINDOW_SIZE, invalidTripEventHandler, checkpoint.inputPosition(),
+                checkpoint.lineNumber());
+             DirectTripCompletionEventWriter writer =
+                     DirectTripCompletionEventWriter.resume(tripsCsv, checkpoint.outputPosition())) {
+            metrics.monitorBytesWritten(writer::bytesWritten);
+            long tapEvents = 0;
+            long startNanos = System.nanoTime();
+            for (TripEvent tripEvent : readEvents(new TripEventReader(parser, parser))) {
+                metrics.tapEvent();
+                tripEventMatcher.match(tripEvent, writer);
+                if (++tapEvents % checkpointInterval == 0) {
+                    writeCheckpoint(tapsCsvSize, parser, writer, quarantine, tripEventMatcher);
+                }
+            }
+            metrics.stageWallTime("process-tap-events", System.nanoTime() - startNanos);
+            // customer did not tap-off
+            startNanos = System.nanoTime();
+            tripEventMatcher.complete(writer);
+            metrics.stageWallTime("complete-trips", System.nanoTime() - startNanos);
+        }
+        Files.deleteIfExists(checkpointFile);
+    }
+
+    private void writeCheckpoint(long tapsCsvSize, MappedTripEventParser parser,
+                                 DirectTripCompletionEventWriter writer, TapQuarantine quarantine,
+                                 TripEventMatcher tripEventMatcher) throws IOException {
+        long startNanos = System.nanoTime();
+        // the files are synced before the checkpoint which refers to them is written
+        writer.sync();
+        anomalies().sync();
+        long invalidTaps = 0;
+        long quarantinePosition = 0;
+        if (quarantine != null) {
+            quarantine.sync();
+            invalidTaps = quarantine.invalidTripEvents();
+            quarantinePosition = quarantine.bytesWritten();
+        }
+        new TripEventCheckpoint(tapsCsvSize, parser.position(), parser.lineNumber(), writer.bytesWritten(),
+                invalidTaps, quarantinePosition, anomalies().bytesWritten(), tripEventMatcher.openTrips())
+                .write(checkpointFile);
+        metrics().stageWallTime("write-checkpoints", System.nanoTime() - startNanos);
+    }
+
+}
@@ -0,0 +1,207 @@
+package com.github.sbanal.littlepay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parses the taps csv file by splitting the file into chunks aligned on record boundaries. The chunks are memory
+ * mapped and parsed concurrently by {@link TapRecordParser} ahead of the iteration while the trip events are returned
+ * in the same order as in the file, only a bounded number of parsed chunks are kept in memory.
+ */
+class ChunkedTripEventParser implements Iterator<TripEvent>, Closeable {
+
+    static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private final FileChannel fileChannel;
+    private final ExecutorService executorService;
+    private final Deque<Future<ParsedChunk>> parsedChunks = new ArrayDeque<>();
+    private final int maxParsedChunks;
+    private final int chunkSize;
+    private final String headerLine;
+    private final InvalidTripEventHandler invalidTripEventHandler;
+    private long nextChunkPosition;
+    // line number of the first line of the current chunk, the header is line 1
+    private long chunkLineNumber = 2;
+    private Iterator<TripEvent> currentChunk = Collections.emptyIterator();
+
+    /**
+     * Tap record of a chunk which cannot be parsed, the line index is relative to the start of the chunk since the
+     * chunks are parsed before the number of lines of the previous chunks is known.
+     */
+    private record InvalidRecord(int lineIndex, String record, InvalidTripEventException exception) {
+    }
+
+    private record ParsedChunk(List<TripEvent> tripEvents, List<InvalidRecord> invalidRecords, int lines) {
+    }
+
+    ChunkedTripEventParser(Path tapsCsv, int parallelism) throws IOException {
+        this(tapsCsv, parallelism, DEFAULT_CHUNK_SIZE);
+    }
+
+    ChunkedTripEventParser(Path tapsCsv, int parallelism, int chunkSize) throws IOException {
+        this(tapsCsv, parallelism, chunkSize, InvalidTripEventHandler.FAIL);
+    }
+
+    ChunkedTripEventParser(Path tapsCsv, int parallelism, int chunkSize,
+                           InvalidTripEventHandler invalidTripEventHandler) throws IOException {
+        this.invalidTripEventHandler = invalidTripEventHandler;
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Invalid parallelism, value must be positive");
+        }
+        this.fileChannel = FileChannel.open(tapsCsv, StandardOpenOption.READ);
+        try {
+            this.chunkSize = chunkSize;
+            this.maxParsedChunks = parallelism * 2;
+            this.nextChunkPosition = findNextRecordPosition(0);
+            this.headerLine = readString(0, nextChunkPosition);
+            this.executorService = Executors.newFixedThreadPool(parallelism,
+                    Thread.ofPlatform().name("tap-parser-", 0).daemon().factory());
+        } catch (IOException | RuntimeException e) {
+            fileChannel.close();
+            throw e;
+        }
+        submitChunks();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!currentChunk.hasNext()) {
+            Future<ParsedChunk> parsedChunkFuture = parsedChunks.poll();
+            if (parsedChunkFuture == null) {
+                return false;
+            }
+            ParsedChunk parsedChunk = await(parsedChunkFuture);
+            for (InvalidRecord invalidRecord : parsedChunk.invalidRecords()) {
+                invalidTripEventHandler.invalidTripEvent(chunkLineNumber + invalidRecord.lineIndex(),
+                        invalidRecord.record(), invalidRecord.exception());
+            }
+            chunkLineNumber += parsedChunk.lines();
+            currentChunk = parsedChunk.tripEvents().iterator();
+            submitChunks();
+        }
+        return true;
+    }
+
+    @Override
+    public TripEvent next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return currentChunk.next();
+    }
+
+    @Override
+    public void close() throws IOException {
+        executorService.shutdownNow();
+        parsedChunks.clear();
+        fileChannel.close();
+    }
+
+    private void submitChunks() {
+        try {
+            long fileSize = fileChannel.size();
+            while (parsedChunks.size() < maxParsedChunks && nextChunkPosition < fileSize) {
+                long chunkStart = nextChunkPosition;
+                long chunkEnd = findNextRecordPosition(Math.min(chunkStart + chunkSize, fileSize));
+                parsedChunks.add(executorService.submit(() -> parseChunk(chunkStart, chunkEnd)));
+                nextChunkPosition = chunkEnd;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ParsedChunk await(Future<ParsedChunk> parsedChunk) {
+        try {
+            return parsedChunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvalidTripEventException("Interrupted while parsing trip events", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InvalidTripEventException invalidTripEventException) {
+                throw invalidTripEventException;
+            } else if (e.getCause() instanceof IOException ioException) {
+                throw new UncheckedIOException(ioException);
+            }
+            throw new InvalidTripEventException("Invalid trip event", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the position after the line separator following the given position, or the file size if there is
+     * no line separator after the position.
+     */
+    private long findNextRecordPosition(long position) throws IOException {
+        long fileSize = fileChannel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < fileSize) {
+            buffer.clear();
+            int read = fileChannel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return fileSize;
+    }
+
+    private String readString(long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(end - start));
+        while (buffer.hasRemaining() && fileChannel.read(buffer, start + buffer.position()) > 0) {
+            // keep reading until the whole range is read
+        }
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the records of the chunk, the invalid records are kept with the chunk when the handler would skip them
+     * and thrown otherwise.
+     */
+    private ParsedChunk parseChunk(long chunkStart, long chunkEnd) throws IOException {
+        ByteBuffer chunk = fileChannel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkEnd - chunkStart);
+        TapRecordParser recordParser = new TapRecordParser(headerLine);
+        List<TripEvent> tripEvents = new ArrayList<>();
+        List<InvalidRecord> invalidRecords = new ArrayList<>();
+        int lineStart = 0;
+        int lineIndex = 0;
+        while (lineStart < chunk.limit()) {
+            int lineEnd = TapRecordParser.findLineEnd(chunk, lineStart, chunk.limit());
+            if (!TapRecordParser.isBlank(chunk, lineStart, lineEnd)) {
+                try {
+                    tripEvents.add(recordParser.parse(chunk, lineStart, lineEnd));
+                } catch (InvalidTripEventException e) {
+                    if (invalidTripEventHandler == InvalidTripEventHandler.FAIL) {
+                        throw e;
+                    }
+                    invalidRecords.add(new InvalidRecord(lineIndex,
+                            TapRecordParser.decode(chunk, lineStart, lineEnd).strip(), e));
+                }
+            }
+            lineStart = lineEnd + 1;
+            lineIndex++;
+        }
+        return new ParsedChunk(tripEvents, invalidRecords, lineIndex);
+    }
+}
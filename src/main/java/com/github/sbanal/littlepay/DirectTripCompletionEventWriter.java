@@ -0,0 +1,235 @@
+package com.github.sbanal.littlepay;
+
+import org.apache.commons.csv.CSVFormat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+/**
+ * Writes the trips csv file by formatting the date times of each record straight into a large byte buffer, encoding
+ * the other values into a reusable row buffer and copying the row after them. The byte buffer is written to the
+ * channel only when full. The date times, numbers, amounts and statuses never
+ * need quoting and are written as is, the identifier values are only passed to the csv format when they contain
+ * characters which may need quoting, so the output is the same as {@link TripCompletionEventWriter} with a csv
+ * printer.
+ * <p>
+ * Instances keep the row and date time buffers and should be used by a single thread at a time.
+ */
+class DirectTripCompletionEventWriter implements TripCompletionEventSink, Closeable {
+
+    static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    private static final int MAX_BYTES_PER_CHAR = 3;
+    // the started and finished date times and their delimiters
+    private static final int MAX_DATE_TIMES_LENGTH = 2 * (UtcDateTimeCodec.MAX_LENGTH + 1);
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final StringBuilder row = new StringBuilder(256);
+    private final UtcDateTimeCodec dateTimeCodec = new UtcDateTimeCodec();
+    private volatile long bytesWritten;
+
+    DirectTripCompletionEventWriter(Path tripsCsv) throws IOException {
+        this(FileChannel.open(tripsCsv, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE), DEFAULT_BUFFER_SIZE);
+    }
+
+    DirectTripCompletionEventWriter(WritableByteChannel channel, int bufferSize) throws IOException {
+        this(channel, bufferSize, 0);
+    }
+
+    /**
+     * Creates the writer which appends to a channel already holding the given number of bytes of the trips csv
+     * file, the header is only written when the channel is empty.
+     */
+    private DirectTripCompletionEventWriter(WritableByteChannel channel, int bufferSize, long position)
+            throws IOException {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.bytesWritten = position;
+        if (position > 0) {
+            return;
+        }
+        try {
+            row.append(String.join(",", TripCompletionEventWriter.HEADERS)).append('\n');
+            writeRow();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a writer which continues the trips csv file from the given position, as returned by
+     * {@link #bytesWritten()} after {@link #sync()}, discarding the bytes written after the position. A new file is
+     * written when the position is 0.
+     */
+    static DirectTripCompletionEventWriter resume(Path tripsCsv, long position) throws IOException {
+        FileChannel fileChannel = FileChannel.open(tripsCsv, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (fileChannel.size() < position) {
+                throw new IOException("Trips file " + tripsCsv + " is shorter than the resume position " + position);
+            }
+            fileChannel.truncate(position);
+            fileChannel.position(position);
+        } catch (IOException | RuntimeException e) {
+            fileChannel.close();
+            throw e;
+        }
+        return new DirectTripCompletionEventWriter(fileChannel, DEFAULT_BUFFER_SIZE, position);
+    }
+
+    @Override
+    public void write(TripCompletionEvent completionEvent) throws IOException {
+        row.setLength(0);
+        if (completionEvent.durationSecs() != null) {
+            row.append(completionEvent.durationSecs().longValue());
+        }
+        appendValue(completionEvent.fromStopId());
+        appendValue(completionEvent.toStopId());
+        row.append(',');
+        Money.append(row, completionEvent.chargeCents());
+        appendValue(completionEvent.companyId());
+        appendValue(completionEvent.busId());
+        row.append(',');
+        Pan.append(row, completionEvent.packedPan());
+        row.append(',');
+        row.append(completionEvent.status().name());
+        row.append('\n');
+        if (buffer.remaining() < MAX_DATE_TIMES_LENGTH + row.length() * MAX_BYTES_PER_CHAR) {
+            flush();
+            if (buffer.remaining() < MAX_DATE_TIMES_LENGTH + row.length() * MAX_BYTES_PER_CHAR) {
+                // a row larger than the buffer is written from the row buffer
+                row.insert(0, formatDateTime(completionEvent.started()) + ','
+                        + formatDateTime(completionEvent.finished()) + ',');
+                writeRow();
+                return;
+            }
+        }
+        putDateTime(completionEvent.started());
+        putDateTime(completionEvent.finished());
+        writeRow();
+    }
+
+    /**
+     * Returns the number of bytes of the records written so far, including the bytes not yet written to the channel.
+     */
+    long bytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Writes the buffered records to the channel and forces them to the storage device when the channel is a file,
+     * so all the bytes counted by {@link #bytesWritten()} survive a crash.
+     */
+    void sync() throws IOException {
+        flush();
+        if (channel instanceof FileChannel fileChannel) {
+            fileChannel.force(false);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (WritableByteChannel channel = this.channel) {
+            flush();
+        }
+    }
+
+    /**
+     * Formats the date time, if any, and its delimiter into the buffer.
+     */
+    private void putDateTime(Instant dateTimeUtc) {
+        int start = buffer.position();
+        int end = start;
+        if (dateTimeUtc != null) {
+            end += dateTimeCodec.format(dateTimeUtc.getEpochSecond(), buffer, start);
+        }
+        buffer.put(end++, (byte) ',');
+        buffer.position(end);
+        bytesWritten += end - start;
+    }
+
+    private String formatDateTime(Instant dateTimeUtc) {
+        return dateTimeUtc != null ? dateTimeCodec.format(dateTimeUtc.getEpochSecond()) : "";
+    }
+
+    /**
+     * Appends the delimiter and the value, which is quoted by the csv format if needed.
+     */
+    private void appendValue(String value) throws IOException {
+        if (value == null || isSafe(value)) {
+            row.append(',');
+            if (value != null) {
+                row.append(value);
+            }
+        } else {
+            CSVFormat.DEFAULT.print(value, row, false);
+        }
+    }
+
+    /**
+     * Returns true if the value only contains characters which are never quoted by the csv format, in any position.
+     */
+    private static boolean isSafe(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == ':' || c == '/')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies the row into the buffer, ASCII characters are copied as is and rows with other characters are encoded
+     * as UTF-8. The buffer is written to the channel first if the row may not fit.
+     */
+    private void writeRow() throws IOException {
+        int length = row.length();
+        if (buffer.remaining() < length * MAX_BYTES_PER_CHAR) {
+            flush();
+            if (buffer.remaining() < length * MAX_BYTES_PER_CHAR) {
+                ByteBuffer bytes = ByteBuffer.wrap(row.toString().getBytes(StandardCharsets.UTF_8));
+                bytesWritten += bytes.remaining();
+                writeFully(bytes);
+                return;
+            }
+        }
+        int start = buffer.position();
+        for (int i = 0; i < length; i++) {
+            char c = row.charAt(i);
+            if (c >= 0x80) {
+                buffer.position(start);
+                buffer.put(row.toString().getBytes(StandardCharsets.UTF_8));
+                bytesWritten += buffer.position() - start;
+                return;
+            }
+            buffer.put((byte) c);
+        }
+        bytesWritten += length;
+    }
+
+    /**
+     * Writes the buffered records to the channel, so they can be read from the trips csv file.
+     */
+    void flush() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.github.sbanal.littlepay;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the open trips on the heap in an open addressing hash table keyed by the packed PANs, so finding the open
+ * trip of a tap event neither boxes nor hashes a key object. The slots of the table are parallel arrays of the
+ * packed PANs, the tap on events and the previous and next slots of a doubly linked list in tap on order which the
+ * expiry walks from the oldest trip. The slots are found by linear probing and removed slots are marked deleted, the
+ * table is rebuilt in list order when the used slots exceed half of the slots.
+ */
+class HeapOpenTripStore implements OpenTripStore {
+
+    private static final int NO_SLOT = -1;
+    // marks a removed slot, whose tap on event is null like an empty slot's but which does not end a probe
+    private static final int DELETED = -2;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] packedPans;
+    private TripEvent[] tapOnTripEvents;
+    private int[] prev;
+    private int[] next;
+    private int size;
+    // slots which are used or deleted, a probe only ends on an empty slot
+    private int usedSlots;
+    private int head = NO_SLOT;
+    private int tail = NO_SLOT;
+
+    HeapOpenTripStore() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public TripEvent get(long packedPan) {
+        int slot = find(packedPan);
+        return slot == NO_SLOT ? null : tapOnTripEvents[slot];
+    }
+
+    @Override
+    public void add(TripEvent tapOnTripEvent) {
+        if ((usedSlots + 1) * 2L > packedPans.length) {
+            rebuild(tableCapacity(size + 1));
+        }
+        int slot = index(tapOnTripEvent.packedPan());
+        while (tapOnTripEvents[slot] != null) {
+            slot = (slot + 1) & (packedPans.length - 1);
+        }
+        if (next[slot] != DELETED) {
+            usedSlots++;
+        }
+        packedPans[slot] = tapOnTripEvent.packedPan();
+        tapOnTripEvents[slot] = tapOnTripEvent;
+        link(slot);
+        size++;
+    }
+
+    @Override
+    public boolean remove(long packedPan) {
+        int slot = find(packedPan);
+        if (slot == NO_SLOT) {
+            return false;
+        }
+        unlink(slot);
+        tapOnTripEvents[slot] = null;
+        next[slot] = DELETED;
+        size--;
+        return true;
+    }
+
+    @Override
+    public TripEvent oldest() {
+        return head == NO_SLOT ? null : tapOnTripEvents[head];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public List<TripEvent> values() {
+        List<TripEvent> values = new ArrayList<>(size);
+        for (int slot = head; slot != NO_SLOT; slot = next[slot]) {
+            values.add(tapOnTripEvents[slot]);
+        }
+        return values;
+    }
+
+    @Override
+    public void clear() {
+        allocate(INITIAL_CAPACITY);
+        size = 0;
+        usedSlots = 0;
+        head = NO_SLOT;
+        tail = NO_SLOT;
+    }
+
+    /**
+     * Returns the number of slots of the table.
+     */
+    int capacity() {
+        return packedPans.length;
+    }
+
+    private int find(long packedPan) {
+        int slot = index(packedPan);
+        while (true) {
+            if (tapOnTripEvents[slot] != null) {
+                if (packedPans[slot] == packedPan) {
+                    return slot;
+                }
+            } else if (next[slot] != DELETED) {
+                return NO_SLOT;
+            }
+            slot = (slot + 1) & (packedPans.length - 1);
+        }
+    }
+
+    private void link(int slot) {
+        prev[slot] = tail;
+        next[slot] = NO_SLOT;
+        if (tail == NO_SLOT) {
+            head = slot;
+        } else {
+            next[tail] = slot;
+        }
+        tail = slot;
+    }
+
+    private void unlink(int slot) {
+        if (prev[slot] == NO_SLOT) {
+            head = next[slot];
+        } else {
+            next[prev[slot]] = next[slot];
+        }
+        if (next[slot] == NO_SLOT) {
+            tail = prev[slot];
+        } else {
+            prev[next[slot]] = prev[slot];
+        }
+    }
+
+    /**
+     * Moves the open trips in tap on order into a new table of the given capacity, dropping the deleted slots.
+     */
+    private void rebuild(int newCapacity) {
+        TripEvent[] oldTapOnTripEvents = tapOnTripEvents;
+        int[] oldNext = next;
+        int oldHead = head;
+        allocate(newCapacity);
+        head = NO_SLOT;
+        tail = NO_SLOT;
+        usedSlots = 0;
+        for (int oldSlot = oldHead; oldSlot != NO_SLOT; oldSlot = oldNext[oldSlot]) {
+            TripEvent tapOnTripEvent = oldTapOnTripEvents[oldSlot];
+            int slot = index(tapOnTripEvent.packedPan());
+            while (tapOnTripEvents[slot] != null) {
+                slot = (slot + 1) & (newCapacity - 1);
+            }
+            packedPans[slot] = tapOnTripEvent.packedPan();
+            tapOnTripEvents[slot] = tapOnTripEvent;
+            link(slot);
+            usedSlots++;
+        }
+    }
+
+    private void allocate(int capacity) {
+        packedPans = new long[capacity];
+        tapOnTripEvents = new TripEvent[capacity];
+        prev = new int[capacity];
+        next = new int[capacity];
+        Arrays.fill(next, NO_SLOT);
+    }
+
+    /**
+     * Returns the power of two capacity which keeps the given number of open trips below a quarter of the slots.
+     */
+    private static int tableCapacity(int openTrips) {
+        int tableCapacity = INITIAL_CAPACITY;
+        while (tableCapacity < openTrips * 4L) {
+            if (tableCapacity == 1 << 30) {
+                throw new IllegalStateException("Too many open trips: " + openTrips);
+            }
+            tableCapacity <<= 1;
+        }
+        return tableCapacity;
+    }
+
+    private int index(long packedPan) {
+        return (int) Pan.hash(packedPan) & (packedPans.length - 1);
+    }
+
+}
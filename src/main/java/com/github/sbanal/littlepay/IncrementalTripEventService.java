@@ -0,0 +1,79 @@
+package com.github.sbanal.littlepay;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Processes a sequence of taps csv files incrementally, e.g. hourly files, where each run only reads the files not
+ * processed by the previous runs. The tap on events of the customers who have not tapped off at the end of a run are
+ * kept in a state file instead of being written as incomplete trips, so a trip which spans two files is completed
+ * by the run reading its tap off. The open trips expire after the max trip duration as the later tap events are
+ * read, which is therefore required so the trips of the customers who never tap off are written as incomplete.
+ * <p>
+ * The state only keeps the names of the processed files which are still given to the run, so a file removed from
+ * the input, e.g. archived, is forgotten.
+ * <p>
+ * The state file is only replaced once the trips of the run are written, a run which did not complete can be
+ * repeated and writes the same trips.
+ */
+public class IncrementalTripEventService extends TripEventService {
+
+    private static final Logger LOGGER = Logger.getLogger(IncrementalTripEventService.class.getName());
+
+    private final Path stateFile;
+
+    public IncrementalTripEventService(TripCostService tripCostService, TripEventServiceConfig config,
+                                       Path stateFile) {
+        super(tripCostService, config);
+        if (config.maxTripDuration() == null) {
+            throw new IllegalArgumentException("Invalid max trip duration, value is required to expire open trips");
+        }
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * Processes the taps csv files not processed by the previous runs in the given order and returns the files
+     * processed by this run. The files are identified by their file name.
+     */
+    public List<Path> processEvents(List<Path> tapsCsvFiles, TripEventReaderFactory readerFactory,
+                                    TripCompletionEventWriter tripCompletionEventsWriter) throws IOException {
+        PipelineMetrics metrics = metrics();
+        OpenTripState state = OpenTripState.read(stateFile);
+        TripEventMatcher tripEventMatcher = createTripEventMatcher();
+        tripEventMatcher.restoreOpenTrips(state.openTrips());
+        Set<String> tapsCsvFileNames = new HashSet<>();
+        for (Path tapsCsv : tapsCsvFiles) {
+            tapsCsvFileNames.add(tapsCsv.getFileName().toString());
+        }
+        Set<String> processedFiles = new LinkedHashSet<>(state.processedFiles());
+        processedFiles.retainAll(tapsCsvFileNames);
+
+        List<Path> newTapsCsvFiles = tapsCsvFiles.stream()
+                .filter(tapsCsv -> !processedFiles.contains(tapsCsv.getFileName().toString()))
+                .toList();
+        LOGGER.info("Processing " + newTapsCsvFiles.size() + " new taps files with " + state.openTrips().size()
+                + " open trips");
+        try (TripCompletionEventWriter writer = tripCompletionEventsWriter) {
+            metrics.monitorBytesWritten(writer::bytesWritten);
+            for (Path tapsCsv : newTapsCsvFiles) {
+                long startNanos = System.nanoTime();
+                try (TripEventReader reader = readerFactory.open(tapsCsv)) {
+                    for (TripEvent tripEvent : readEvents(reader)) {
+                        metrics.tapEvent();
+                        tripEventMatcher.match(tripEvent, writer);
+                    }
+                }
+                metrics.stageWallTime("process-tap-events", System.nanoTime() - startNanos);
+                processedFiles.add(tapsCsv.getFileName().toString());
+            }
+        }
+        new OpenTripState(List.copyOf(processedFiles), tripEventMatcher.openTrips()).write(stateFile);
+        return newTapsCsvFiles;
+    }
+
+}
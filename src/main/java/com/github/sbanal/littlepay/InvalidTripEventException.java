@@ -1,11 +1,42 @@
 package com.github.sbanal.littlepay;
 
 public class InvalidTripEventException extends RuntimeException {
+
+    /**
+     * Reason code of the invalid trip event, written to the quarantine file of the invalid tap records.
+     */
+    public enum Reason {
+        INVALID_RECORD,
+        INVALID_ID,
+        INVALID_DATE_TIME,
+        INVALID_TAP_TYPE,
+        EMPTY_STOP_ID,
+        EMPTY_COMPANY_ID,
+        EMPTY_BUS_ID,
+        EMPTY_PAN,
+        INVALID_PAN
+    }
+
+    private final Reason reason;
+
     public InvalidTripEventException(String message, Throwable e) {
-        super(message, e);
+        this(Reason.INVALID_RECORD, message, e);
     }
 
     public InvalidTripEventException(String message) {
-        super(message);
+        this(Reason.INVALID_RECORD, message, null);
+    }
+
+    public InvalidTripEventException(Reason reason, String message) {
+        this(reason, message, null);
+    }
+
+    public InvalidTripEventException(Reason reason, String message, Throwable e) {
+        super(message, e);
+        this.reason = reason;
+    }
+
+    public Reason reason() {
+        return reason;
     }
 }
@@ -0,0 +1,22 @@
+package com.github.sbanal.littlepay;
+
+/**
+ * Handles the tap records which cannot be parsed into a trip event. The record is skipped when the handler returns
+ * normally, the parsing is aborted when the handler throws.
+ */
+@FunctionalInterface
+public interface InvalidTripEventHandler {
+
+    /**
+     * Aborts the parsing on the first invalid tap record by throwing its exception.
+     */
+    InvalidTripEventHandler FAIL = (lineNumber, record, e) -> {
+        throw e;
+    };
+
+    /**
+     * Handles the invalid tap record at the given 1-based line number of the taps csv file, the header being line 1.
+     */
+    void invalidTripEvent(long lineNumber, String record, InvalidTripEventException e);
+
+}
@@ -1,32 +1,292 @@
 package com.github.sbanal.littlepay;
 
 
+import javax.management.JMException;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 public class LittlePayAppCli {
 
+    private static final Logger LOGGER = Logger.getLogger(LittlePayAppCli.class.getName());
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final LittlePayAppOptions options;
+
+    public LittlePayAppCli() {
+        this(LittlePayAppOptions.parse());
+    }
+
+    LittlePayAppCli(LittlePayAppOptions options) {
+        this.options = options;
+    }
+
     public static void main(String... args) throws IOException {
-        if (args.length < 3) {
+        LittlePayAppOptions options = LittlePayAppOptions.parse(args);
+        List<String> arguments = options.arguments();
+        if (options.manifestCsv() != null) {
+            new LittlePayAppCli(options).runJobsCommand(options.manifestCsv());
+            return;
+        }
+        if (arguments.size() < 3) {
             throw new IllegalArgumentException("Invalid argument, usage: " +
                     "./littlepay <trip cost csv file> <input taps csv file> <output trips csv file>");
         }
-        LittlePayAppCli littlePayAppCli = new LittlePayAppCli();
-        littlePayAppCli.processCommand(args[0], args[1], args[2]);
+        LittlePayAppCli littlePayAppCli = new LittlePayAppCli(options);
+        littlePayAppCli.processCommand(arguments.get(0), arguments.get(1), arguments.get(2));
     }
 
     public void processCommand(String tripCostCsv, String inputCsv, String outputCsv) throws IOException {
         TripCostService tripCostService = new TripCostService();
-        try (Reader tripCostReader = new FileReader(tripCostCsv);
-             Reader inputCsvReader = new FileReader(inputCsv);
-             Writer outputCsvWriter = new FileWriter(outputCsv)) {
+        PipelineMetrics metrics = new PipelineMetrics();
+        registerMetrics(metrics);
+        // the side files of a checkpointed job are resumed from its checkpoint
+        TripEventCheckpoint checkpoint = options.checkpointFile() != null
+                ? TripEventCheckpoint.read(Path.of(options.checkpointFile())) : null;
+        try (TapAnomalyReport anomalies = createTapAnomalyReport(checkpoint);
+             TapQuarantine quarantine = createTapQuarantine(checkpoint);
+             Reader tripCostReader = new FileReader(tripCostCsv)) {
+            long startNanos = System.nanoTime();
             tripCostService.load(tripCostReader);
+            metrics.stageWallTime("load-trip-costs", System.nanoTime() - startNanos);
+
+            InvalidTripEventHandler invalidTripEventHandler = createInvalidTripEventHandler(quarantine, metrics);
+            if (options.stateFile() != null) {
+                IncrementalTripEventService tripEventService = new IncrementalTripEventService(tripCostService,
+                        createTripEventServiceConfig(metrics, anomalies), Path.of(options.stateFile()));
+                List<Path> processedFiles = tripEventService.processEvents(listTapsCsvFiles(inputCsv),
+                        tapsCsv -> createTripEventReader(tapsCsv.toString(), invalidTripEventHandler),
+                        createTripCompletionEventWriter(outputCsv));
+                LOGGER.info("Processed taps files " + processedFiles);
+            } else if (options.checkpointFile() != null) {
+                CheckpointedTripEventService tripEventService = new CheckpointedTripEventService(tripCostService,
+                        createTripEventServiceConfig(metrics, anomalies), Path.of(options.checkpointFile()),
+                        options.checkpointInterval());
+                tripEventService.processEvents(Path.of(inputCsv), Path.of(outputCsv), invalidTripEventHandler,
+                        quarantine);
+            } else {
+                try (TripEventReader tripEventReader = createTripEventReader(inputCsv, invalidTripEventHandler);
+                     TripCompletionEventWriter tripCompletionEventWriter = createTripCompletionEventWriter(outputCsv)) {
+                    TripEventService tripEventService = createTripEventService(tripCostService, metrics, anomalies);
+                    tripEventService.processEvents(tripEventReader, tripCompletionEventWriter);
+                }
+            }
+            if (quarantine != null && quarantine.invalidTripEvents() > 0) {
+                LOGGER.warning("Skipped " + quarantine.invalidTripEvents() + " invalid tap records");
+            }
+            if (anomalies.getAnomalies() > 0) {
+                LOGGER.warning("Job anomalies\n" + anomalies.summary());
+            }
+        } finally {
+            metrics.finish();
+            LOGGER.info("Job metrics\n" + metrics.summary());
+            unregisterMetrics(metrics);
+        }
+    }
+
+    /**
+     * Runs the jobs of the manifest csv file concurrently, see {@link TripEventJobRunner}. The metrics of each job
+     * are logged when all the jobs are done, an exception is thrown if any job failed.
+     */
+    public void runJobsCommand(String manifestCsv) throws IOException {
+        List<TripEventJob> jobs = TripEventJob.readManifest(Path.of(manifestCsv));
+        TripEventJobRunner jobRunner = new TripEventJobRunner(options.maxTripDuration(), options.concurrentJobs(),
+                tapsCsv -> createTripEventReader(tapsCsv.toString(), InvalidTripEventHandler.FAIL),
+                tripsCsv -> createTripCompletionEventWriter(tripsCsv.toString()));
+        List<TripEventJobRunner.JobResult> results = jobRunner.run(jobs);
+        long failedJobs = 0;
+        for (TripEventJobRunner.JobResult result : results) {
+            LOGGER.info("Job " + result.job().tapsCsv() + " metrics\n" + result.metrics().summary());
+            if (result.anomalies().getAnomalies() > 0) {
+                LOGGER.warning("Job " + result.job().tapsCsv() + " anomalies\n" + result.anomalies().summary());
+            }
+            if (result.failed()) {
+                failedJobs++;
+            }
+        }
+        if (failedJobs > 0) {
+            throw new IOException(failedJobs + " of " + jobs.size() + " jobs failed, see the log for the failures");
+        }
+    }
 
-            TripEventReader tripEventReader = new TripEventReader(inputCsvReader);
-            TripCompletionEventWriter tripCompletionEventWriter = new TripCompletionEventWriter(outputCsvWriter);
+    /**
+     * Runs the daemon which processes the taps csv files dropped into the spool directory until the JVM is shut
+     * down, see {@link TripEventDaemon}.
+     */
+    public void serveCommand(String tripCostCsv, String spoolDir, String outputDir)
+            throws IOException, InterruptedException {
+        if (options.partitions() > 1 || options.checkpointFile() != null
+                || options.openTripStoreType() != OpenTripStoreType.HEAP || options.maxLateness() != null
+                || options.executionType() != LittlePayAppOptions.ExecutionType.SERIAL) {
+            throw new IllegalArgumentException("Invalid option '--partitions', '--checkpoint', '--open-trips', "
+                    + "'--max-lateness' or '--execution', cannot be used with the daemon");
+        }
+        if (options.maxTripDuration() == null) {
+            // the open trips of the customers who never tap off would otherwise never be written
+            throw new IllegalArgumentException("Invalid option '--max-trip-duration', value is required by the daemon");
+        }
+        TripCostService tripCostService = new TripCostService();
+        PipelineMetrics metrics = new PipelineMetrics();
+        registerMetrics(metrics);
+        try (TapAnomalyReport anomalies = createTapAnomalyReport(null);
+             TapQuarantine quarantine = createTapQuarantine(null);
+             Reader tripCostReader = new FileReader(tripCostCsv)) {
+            long startNanos = System.nanoTime();
+            tripCostService.load(tripCostReader);
+            metrics.stageWallTime("load-trip-costs", System.nanoTime() - startNanos);
+
+            InvalidTripEventHandler invalidTripEventHandler = createInvalidTripEventHandler(quarantine, metrics);
+            TripEventDaemon daemon = new TripEventDaemon(tripCostService,
+                    createTripEventServiceConfig(metrics, anomalies), Path.of(spoolDir), Path.of(outputDir),
+                    options.batchInterval(), options.rollInterval(),
+                    options.stateFile() != null ? Path.of(options.stateFile()) : null,
+                    tapsCsv -> createTripEventReader(tapsCsv.toString(), invalidTripEventHandler));
+            Thread shutdownHook = new Thread(() -> {
+                daemon.stop();
+                try {
+                    daemon.awaitTermination(SHUTDOWN_TIMEOUT);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+            try (TripCostReloader tripCostReloader = new TripCostReloader(tripCostService, Path.of(tripCostCsv))) {
+                tripCostReloader.start(options.reloadInterval());
+                daemon.run();
+            }
+        } finally {
+            metrics.finish();
+            LOGGER.info("Daemon metrics\n" + metrics.summary());
+            unregisterMetrics(metrics);
+        }
+    }
+
+    private static void registerMetrics(PipelineMetrics metrics) {
+        try {
+            metrics.register();
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Failed to register job metrics MXBean", e);
+        }
+    }
+
+    private static void unregisterMetrics(PipelineMetrics metrics) {
+        try {
+            metrics.unregister();
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Failed to unregister job metrics MXBean", e);
+        }
+    }
 
-            TripEventService tripEventService = new TripEventService(tripCostService);
-            tripEventService.processEvents(tripEventReader, tripCompletionEventWriter);
+    /**
+     * Returns the taps csv file, or the csv files of the directory ordered by name.
+     */
+    private static List<Path> listTapsCsvFiles(String input) throws IOException {
+        Path inputPath = Path.of(input);
+        if (!Files.isDirectory(inputPath)) {
+            return List.of(inputPath);
         }
+        try (Stream<Path> files = Files.list(inputPath)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".csv"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Creates the anomaly report, the rejected taps file of a checkpointed job is resumed from the given checkpoint
+     * or written from the start when the checkpoint is null.
+     */
+    private TapAnomalyReport createTapAnomalyReport(TripEventCheckpoint checkpoint) throws IOException {
+        if (options.checkpointFile() != null && options.rejectedTapsCsv() != null) {
+            return new TapAnomalyReport(Path.of(options.rejectedTapsCsv()),
+                    checkpoint != null ? checkpoint.rejectedTapsPosition() : 0);
+        }
+        if (options.rejectedTapsCsv() != null) {
+            return new TapAnomalyReport(new BufferedWriter(new FileWriter(options.rejectedTapsCsv())));
+        }
+        return new TapAnomalyReport();
+    }
+
+    /**
+     * Creates the quarantine, the quarantine file and invalid tap count of a checkpointed job are resumed from the
+     * given checkpoint or start from the first record when the checkpoint is null.
+     */
+    private TapQuarantine createTapQuarantine(TripEventCheckpoint checkpoint) throws IOException {
+        if (!options.skipInvalidTaps()) {
+            return null;
+        }
+        if (options.checkpointFile() != null && options.quarantineCsv() != null) {
+            return new TapQuarantine(Path.of(options.quarantineCsv()),
+                    checkpoint != null ? checkpoint.quarantinePosition() : 0,
+                    checkpoint != null ? checkpoint.invalidTaps() : 0, options.maxInvalidTaps());
+        }
+        if (options.quarantineCsv() != null) {
+            return new TapQuarantine(new BufferedWriter(new FileWriter(options.quarantineCsv())),
+                    options.maxInvalidTaps());
+        }
+        return new TapQuarantine(options.maxInvalidTaps());
+    }
+
+    private static InvalidTripEventHandler createInvalidTripEventHandler(TapQuarantine quarantine,
+                                                                        PipelineMetrics metrics) {
+        if (quarantine == null) {
+            return InvalidTripEventHandler.FAIL;
+        }
+        return (lineNumber, record, e) -> {
+            // the record exceeding the error budget is counted when the exception reaches the service
+            quarantine.invalidTripEvent(lineNumber, record, e);
+            metrics.parseError();
+        };
+    }
+
+    private TripEventReader createTripEventReader(String inputCsv, InvalidTripEventHandler invalidTripEventHandler)
+            throws IOException {
+        TripEventReader tripEventReader;
+        if (options.parserThreads() > 1) {
+            tripEventReader = TripEventReader.parallel(Path.of(inputCsv), options.parserThreads(),
+                    invalidTripEventHandler);
+        } else if (options.parserType() == LittlePayAppOptions.ParserType.MAPPED) {
+            tripEventReader = TripEventReader.mapped(Path.of(inputCsv), invalidTripEventHandler);
+        } else {
+            tripEventReader = new TripEventReader(new FileReader(inputCsv), invalidTripEventHandler);
+        }
+        if (options.sortDir() != null) {
+            return TripEventReader.sorted(tripEventReader, Path.of(options.sortDir()), options.sortRunSize());
+        }
+        return tripEventReader;
+    }
+
+    private TripCompletionEventWriter createTripCompletionEventWriter(String outputCsv) throws IOException {
+        if (options.writerType() == LittlePayAppOptions.WriterType.DIRECT) {
+            return TripCompletionEventWriter.direct(Path.of(outputCsv));
+        }
+        return new TripCompletionEventWriter(new BufferedWriter(new FileWriter(outputCsv)));
+    }
+
+    private TripEventService createTripEventService(TripCostService tripCostService, PipelineMetrics metrics,
+                                                    TapAnomalyReport anomalies) {
+        TripEventServiceConfig config = createTripEventServiceConfig(metrics, anomalies);
+        if (options.partitions() > 1) {
+            return new PartitionedTripEventService(tripCostService, config, options.partitions());
+        }
+        if (options.executionType() == LittlePayAppOptions.ExecutionType.PIPELINED) {
+            return new PipelinedTripEventService(tripCostService, config);
+        }
+        return new TripEventService(tripCostService, config);
+    }
+
+    private TripEventServiceConfig createTripEventServiceConfig(PipelineMetrics metrics, TapAnomalyReport anomalies) {
+        return TripEventServiceConfig.defaults()
+                .withMaxTripDuration(options.maxTripDuration())
+                .withMetrics(metrics)
+                .withAnomalies(anomalies)
+                .withOpenTripStoreType(options.openTripStoreType())
+                .withMaxLateness(options.maxLateness());
     }
 
 }
@@ -0,0 +1,395 @@
+package com.github.sbanal.littlepay;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Command line options of the application, options are provided in the format {@code --name=value} and can be
+ * given in any position. Any other argument is kept as a positional argument.
+ */
+class LittlePayAppOptions {
+
+    enum ParserType {
+        CSV,
+        MAPPED
+    }
+
+    enum WriterType {
+        CSV,
+        DIRECT
+    }
+
+    enum ExecutionType {
+        SERIAL,
+        PIPELINED
+    }
+
+    private static final String OPTION_PREFIX = "--";
+
+    private final List<String> arguments = new ArrayList<>();
+    private Duration maxTripDuration;
+    private int partitions = 1;
+    private int parserThreads = 1;
+    private ParserType parserType;
+    private WriterType writerType;
+    private String rejectedTapsCsv;
+    private String quarantineCsv;
+    private Long maxInvalidTaps;
+    private String checkpointFile;
+    private long checkpointInterval = 1_000_000;
+    private String stateFile;
+    private Duration batchInterval = Duration.ofMillis(200);
+    private Duration rollInterval = Duration.ofHours(1);
+    private Duration reloadInterval = Duration.ofSeconds(10);
+    private String manifestCsv;
+    private int concurrentJobs = Runtime.getRuntime().availableProcessors();
+    private OpenTripStoreType openTripStoreType = OpenTripStoreType.HEAP;
+    private Duration maxLateness;
+    private String sortDir;
+    private Integer sortRunSize;
+    private ExecutionType executionType = ExecutionType.SERIAL;
+
+    static LittlePayAppOptions parse(String... args) {
+        LittlePayAppOptions options = new LittlePayAppOptions();
+        for (String arg : args) {
+            if (!arg.startsWith(OPTION_PREFIX)) {
+                options.arguments.add(arg);
+                continue;
+            }
+            int valueIndex = arg.indexOf('=');
+            if (valueIndex < 0) {
+                throw new IllegalArgumentException("Invalid option '" + arg + "', value is required");
+            }
+            String name = arg.substring(OPTION_PREFIX.length(), valueIndex);
+            String value = arg.substring(valueIndex + 1);
+            switch (name) {
+                case "max-trip-duration" -> options.maxTripDuration = parseDuration(arg, value);
+                case "partitions" -> options.partitions = parsePositiveInt(arg, value);
+                case "parser-threads" -> options.parserThreads = parsePositiveInt(arg, value);
+                case "parser" -> options.parserType = parseParserType(arg, value);
+                case "writer" -> options.writerType = parseWriterType(arg, value);
+                case "rejected-taps" -> options.rejectedTapsCsv = parseFile(arg, value);
+                case "quarantine" -> options.quarantineCsv = parseFile(arg, value);
+                case "max-invalid-taps" -> options.maxInvalidTaps = parseNonNegativeLong(arg, value);
+                case "checkpoint" -> options.checkpointFile = parseFile(arg, value);
+                case "checkpoint-interval" -> options.checkpointInterval = parsePositiveLong(arg, value);
+                case "state" -> options.stateFile = parseFile(arg, value);
+                case "batch-interval" -> options.batchInterval = parsePositiveDuration(arg, value);
+                case "roll-interval" -> options.rollInterval = parsePositiveDuration(arg, value);
+                case "reload-interval" -> options.reloadInterval = parsePositiveDuration(arg, value);
+                case "manifest" -> options.manifestCsv = parseFile(arg, value);
+                case "concurrent-jobs" -> options.concurrentJobs = parsePositiveInt(arg, value);
+                case "open-trips" -> options.openTripStoreType = parseOpenTripStoreType(arg, value);
+                case "max-lateness" -> options.maxLateness = parsePositiveDuration(arg, value);
+                case "sort-dir" -> options.sortDir = parseFile(arg, value);
+                case "sort-run-size" -> options.sortRunSize = parsePositiveInt(arg, value);
+                case "execution" -> options.executionType = parseExecutionType(arg, value);
+                default -> throw new IllegalArgumentException("Invalid option '" + arg + "'");
+            }
+        }
+        if (options.checkpointFile != null && (options.partitions > 1 || options.parserThreads > 1)) {
+            throw new IllegalArgumentException("Invalid option '--checkpoint', cannot be used with "
+                    + "--partitions or --parser-threads");
+        }
+        if (options.checkpointFile != null && (options.parserType != null || options.writerType != null)) {
+            // checkpointed jobs always use the mapped parser and the direct writer
+            throw new IllegalArgumentException("Invalid option '--checkpoint', cannot be used with "
+                    + "--parser or --writer");
+        }
+        if (options.stateFile != null && (options.partitions > 1 || options.checkpointFile != null)) {
+            throw new IllegalArgumentException("Invalid option '--state', cannot be used with "
+                    + "--partitions or --checkpoint");
+        }
+        if (options.manifestCsv != null && (options.partitions > 1 || options.checkpointFile != null
+                || options.stateFile != null || options.skipInvalidTaps() || options.rejectedTapsCsv != null)) {
+            throw new IllegalArgumentException("Invalid option '--manifest', cannot be used with --partitions, "
+                    + "--checkpoint, --state, --quarantine, --max-invalid-taps or --rejected-taps");
+        }
+        if (options.openTripStoreType != OpenTripStoreType.HEAP && (options.checkpointFile != null
+                || options.stateFile != null || options.manifestCsv != null)) {
+            throw new IllegalArgumentException("Invalid option '--open-trips', cannot be used with "
+                    + "--checkpoint, --state or --manifest");
+        }
+        if (options.maxLateness != null && (options.checkpointFile != null || options.stateFile != null
+                || options.manifestCsv != null)) {
+            throw new IllegalArgumentException("Invalid option '--max-lateness', cannot be used with "
+                    + "--checkpoint, --state or --manifest");
+        }
+        if (options.sortRunSize != null && options.sortDir == null) {
+            throw new IllegalArgumentException("Invalid option '--sort-run-size', can only be used with --sort-dir");
+        }
+        if (options.sortDir != null && options.checkpointFile != null) {
+            throw new IllegalArgumentException("Invalid option '--sort-dir', cannot be used with --checkpoint");
+        }
+        if (options.executionType != ExecutionType.SERIAL && (options.partitions > 1 || options.checkpointFile != null
+                || options.stateFile != null || options.manifestCsv != null)) {
+            throw new IllegalArgumentException("Invalid option '--execution', cannot be used with --partitions, "
+                    + "--checkpoint, --state or --manifest");
+        }
+        if (options.stateFile != null && options.maxTripDuration == null) {
+            throw new IllegalArgumentException("Invalid option '--state', can only be used with --max-trip-duration");
+        }
+        return options;
+    }
+
+    private static Duration parseDuration(String arg, String value) {
+        try {
+            return Duration.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid option '" + arg + "', value must be an ISO-8601 duration", e);
+        }
+    }
+
+    private static Duration parsePositiveDuration(String arg, String value) {
+        Duration duration = parseDuration(arg, value);
+        if (duration.toMillis() < 1) {
+            throw new IllegalArgumentException("Invalid option '" + arg + "', value must be a positive duration");
+        }
+        return duration;
+    }
+
+    private static int parsePositiveInt(String arg, String value) {
+        try {
+            int intValue = Integer.parseInt(value);
+            if (intValue > 0) {
+                return intValue;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Invalid option '" + arg + "', value must be a positive number");
+    }
+
+    private static long parsePositiveLong(String arg, String value) {
+        try {
+            long longValue = Long.parseLong(value);
+            if (longValue > 0) {
+                return longValue;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Invalid option '" + arg + "', value must be a positive number");
+    }
+
+    private static long parseNonNegativeLong(String arg, String value) {
+        try {
+            long longValue = Long.parseLong(value);
+            if (longValue >= 0) {
+                return longValue;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Invalid option '" + arg + "', value must be zero or a positive number");
+    }
+
+    private static ParserType parseParserType(String arg, String value) {
+        try {
+            return ParserType.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid option '" + arg + "', value must be csv or mapped", e);
+        }
+    }
+
+    private static WriterType parseWriterType(String arg, String value) {
+        try {
+            return WriterType.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid option '" + arg + "', value must be csv or direct", e);
+        }
+    }
+
+    private static ExecutionType parseExecutionType(String arg, String value) {
+        try {
+            return ExecutionType.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid option '" + arg + "', value must be serial or pipelined", e);
+        }
+    }
+
+    private static OpenTripStoreType parseOpenTripStoreType(String arg, String value) {
+        try {
+            return OpenTripStoreType.valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid option '" + arg + "', value must be heap or off-heap", e);
+        }
+    }
+
+    private static String parseFile(String arg, String value) {
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Invalid option '" + arg + "', value must be a file");
+        }
+        return value;
+    }
+
+    List<String> arguments() {
+        return arguments;
+    }
+
+    /**
+     * Returns the max trip duration or null if trips do not expire.
+     */
+    Duration maxTripDuration() {
+        return maxTripDuration;
+    }
+
+    /**
+     * Returns the number of partitions the tap events are processed in parallel, 1 if processed sequentially.
+     */
+    int partitions() {
+        return partitions;
+    }
+
+    /**
+     * Returns the number of threads the taps csv file is parsed in parallel, 1 if parsed sequentially.
+     */
+    int parserThreads() {
+        return parserThreads;
+    }
+
+    /**
+     * Returns the parser of the taps csv file when parsed sequentially, the file is always memory mapped when parsed
+     * in parallel.
+     */
+    ParserType parserType() {
+        return parserType != null ? parserType : ParserType.CSV;
+    }
+
+    /**
+     * Returns the writer of the trips csv file.
+     */
+    WriterType writerType() {
+        return writerType != null ? writerType : WriterType.CSV;
+    }
+
+    /**
+     * Returns the csv file the tap events which cannot be matched into a trip are written to, or null if they are
+     * only counted.
+     */
+    String rejectedTapsCsv() {
+        return rejectedTapsCsv;
+    }
+
+    /**
+     * Returns true if the invalid tap records are skipped instead of aborting the job, when a quarantine file or an
+     * error budget is given.
+     */
+    boolean skipInvalidTaps() {
+        return quarantineCsv != null || maxInvalidTaps != null;
+    }
+
+    /**
+     * Returns the csv file the skipped invalid tap records are written to, or null if they are only counted.
+     */
+    String quarantineCsv() {
+        return quarantineCsv;
+    }
+
+    /**
+     * Returns the number of invalid tap records which can be skipped before the job is aborted, unlimited if only
+     * the quarantine file is given.
+     */
+    long maxInvalidTaps() {
+        return maxInvalidTaps != null ? maxInvalidTaps : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the file the checkpoints of the job are written to, or null if the job is not checkpointed. A job
+     * resumes from the checkpoint file if it exists.
+     */
+    String checkpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * Returns the number of tap events processed between checkpoints.
+     */
+    long checkpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Returns the file the open trips are kept in between the runs of an incremental job, or null if the job is not
+     * incremental.
+     */
+    String stateFile() {
+        return stateFile;
+    }
+
+    /**
+     * Returns the max time the daemon waits before reading the taps files of the spool directory, the files are
+     * read as soon as they arrive when the file system reports it.
+     */
+    Duration batchInterval() {
+        return batchInterval;
+    }
+
+    /**
+     * Returns the interval after which the daemon starts a new trips file.
+     */
+    Duration rollInterval() {
+        return rollInterval;
+    }
+
+    /**
+     * Returns the interval the daemon checks whether the trip cost csv file was modified and reloads it.
+     */
+    Duration reloadInterval() {
+        return reloadInterval;
+    }
+
+    /**
+     * Returns the csv file of the jobs run by a multi job run, or null if a single job is run.
+     */
+    String manifestCsv() {
+        return manifestCsv;
+    }
+
+    /**
+     * Returns the number of jobs of a multi job run which run at the same time, the number of processors by default.
+     */
+    int concurrentJobs() {
+        return concurrentJobs;
+    }
+
+    /**
+     * Returns where the tap on events of the customers who have not yet tapped off are kept.
+     */
+    OpenTripStoreType openTripStoreType() {
+        return openTripStoreType;
+    }
+
+    /**
+     * Returns the max time a tap event can arrive after later tap events and still be reordered, or null if the tap
+     * events are matched in the order they are read.
+     */
+    Duration maxLateness() {
+        return maxLateness;
+    }
+
+    /**
+     * Returns the directory the sorted runs of an unsorted taps file are spilled to, or null if the taps file is
+     * read in the order of its records.
+     */
+    String sortDir() {
+        return sortDir;
+    }
+
+    /**
+     * Returns the max number of tap events sorted in memory and spilled to one run.
+     */
+    int sortRunSize() {
+        return sortRunSize != null ? sortRunSize : TapExternalSorter.DEFAULT_RUN_SIZE;
+    }
+
+    /**
+     * Returns whether the taps file is read, matched and written on one thread or in stages on their own threads.
+     */
+    ExecutionType executionType() {
+        return executionType;
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.sbanal.littlepay;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Runs the application as a daemon which keeps the trip costs and open trips in memory and processes the taps csv
+ * files as they are dropped into a spool directory, see {@link TripEventDaemon}. The options are the options of
+ * {@link LittlePayAppCli}.
+ */
+public class LittlePayDaemonCli {
+
+    public static void main(String... args) throws IOException, InterruptedException {
+        LittlePayAppOptions options = LittlePayAppOptions.parse(args);
+        List<String> arguments = options.arguments();
+        if (arguments.size() < 3) {
+            throw new IllegalArgumentException("Invalid argument, usage: " +
+                    "./littlepay-daemon <trip cost csv file> <spool directory> <output trips directory>");
+        }
+        LittlePayAppCli littlePayAppCli = new LittlePayAppCli(options);
+        littlePayAppCli.serveCommand(arguments.get(0), arguments.get(1), arguments.get(2));
+    }
+
+}
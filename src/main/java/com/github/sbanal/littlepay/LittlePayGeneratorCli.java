@@ -0,0 +1,50 @@
+package com.github.sbanal.littlepay;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Generates a trip cost csv file and a matching taps csv file of any size for load testing, see
+ * {@link TapDataGenerator} for the generated data.
+ */
+public class LittlePayGeneratorCli {
+
+    private static final Logger LOGGER = Logger.getLogger(LittlePayGeneratorCli.class.getName());
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final LittlePayGeneratorOptions options;
+
+    public LittlePayGeneratorCli() {
+        this(LittlePayGeneratorOptions.parse());
+    }
+
+    LittlePayGeneratorCli(LittlePayGeneratorOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String... args) throws IOException {
+        LittlePayGeneratorOptions options = LittlePayGeneratorOptions.parse(args);
+        List<String> arguments = options.arguments();
+        if (arguments.size() < 2) {
+            throw new IllegalArgumentException("Invalid argument, usage: " +
+                    "./littlepay-generator <output trip cost csv file> <output taps csv file>");
+        }
+        LittlePayGeneratorCli littlePayGeneratorCli = new LittlePayGeneratorCli(options);
+        littlePayGeneratorCli.generateCommand(arguments.get(0), arguments.get(1));
+    }
+
+    public void generateCommand(String tripCostCsv, String tapsCsv) throws IOException {
+        TapDataGenerator generator = new TapDataGenerator(options);
+        try (Writer tripCostWriter = new BufferedWriter(new FileWriter(tripCostCsv), BUFFER_SIZE);
+             Writer tapsWriter = new BufferedWriter(new FileWriter(tapsCsv), BUFFER_SIZE)) {
+            long routes = generator.writeTripCosts(tripCostWriter);
+            long taps = generator.writeTaps(tapsWriter);
+            LOGGER.info("Generated " + routes + " routes in " + tripCostCsv + " and " + taps + " taps in " + tapsCsv);
+        }
+    }
+
+}
@@ -0,0 +1,221 @@
+package com.github.sbanal.littlepay;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line options of the data generator, options are provided in the format {@code --name=value} and can be
+ * given in any position. Any other argument is kept as a positional argument.
+ */
+class LittlePayGeneratorOptions {
+
+    private static final String OPTION_PREFIX = "--";
+
+    private final List<String> arguments = new ArrayList<>();
+    private long rows = 1_000_000;
+    private int pans = 10_000;
+    private int stops = 10;
+    private int routeSpan;
+    private double tapOffRatio = 0.9;
+    private double cancelRatio = 0.02;
+    private double tapsPerSecond = 10;
+    private Duration meanTripDuration = Duration.ofMinutes(20);
+    private Instant start = Instant.parse("2023-01-22T00:00:00Z");
+    private long seed = 42;
+
+    static LittlePayGeneratorOptions parse(String... args) {
+        LittlePayGeneratorOptions options = new LittlePayGeneratorOptions();
+        for (String arg : args) {
+            if (!arg.startsWith(OPTION_PREFIX)) {
+                options.arguments.add(arg);
+                continue;
+            }
+            int valueIndex = arg.indexOf('=');
+            if (valueIndex < 0) {
+                throw new IllegalArgumentException("Invalid option '" + arg + "', value is required");
+            }
+            String name = arg.substring(OPTION_PREFIX.length(), valueIndex);
+            String value = arg.substring(valueIndex + 1);
+            switch (name) {
+                case "rows" -> options.rows = parsePositiveLong(arg, value);
+                case "pans" -> options.pans = parsePositiveInt(arg, value);
+                case "stops" -> options.stops = parseStops(arg, value);
+                case "route-span" -> options.routeSpan = parsePositiveInt(arg, value);
+                case "tap-off-ratio" -> options.tapOffRatio = parseRatio(arg, value);
+                case "cancel-ratio" -> options.cancelRatio = parseRatio(arg, value);
+                case "taps-per-second" -> options.tapsPerSecond = parsePositiveDouble(arg, value);
+                case "mean-trip-duration" -> options.meanTripDuration = parseDuration(arg, value);
+                case "start" -> options.start = parseInstant(arg, value);
+                case "seed" -> options.seed = parseLong(arg, value);
+                default -> throw new IllegalArgumentException("Invalid option '" + arg + "'");
+            }
+        }
+        return options;
+    }
+
+    private static long parsePositiveLong(String arg, String value) {
+        try {
+            long longValue = Long.parseLong(value);
+            if (longValue > 0) {
+                return longValue;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Invalid option '" + arg + "', value must be a positive number");
+    }
+
+    private static int parsePositiveInt(String arg, String value) {
+        try {
+            int intValue = Integer.parseInt(value);
+            if (intValue > 0) {
+                return intValue;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Invalid option '" + arg + "', value must be a positive number");
+    }
+
+    private static int parseStops(String arg, String value) {
+        try {
+            int stops = Integer.parseInt(value);
+            if (stops >= 2) {
+                return stops;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Invalid option '" + arg + "', value must be at least 2");
+    }
+
+    private static double parseRatio(String arg, String value) {
+        try {
+            double ratio = Double.parseDouble(value);
+            if (ratio >= 0 && ratio <= 1) {
+                return ratio;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Invalid option '" + arg + "', value must be a ratio between 0 and 1");
+    }
+
+    private static double parsePositiveDouble(String arg, String value) {
+        try {
+            double doubleValue = Double.parseDouble(value);
+            if (doubleValue > 0 && Double.isFinite(doubleValue)) {
+                return doubleValue;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Invalid option '" + arg + "', value must be a positive number");
+    }
+
+    private static Duration parseDuration(String arg, String value) {
+        try {
+            Duration duration = Duration.parse(value);
+            if (!duration.isNegative() && !duration.isZero()) {
+                return duration;
+            }
+        } catch (DateTimeParseException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException("Invalid option '" + arg
+                + "', value must be a positive ISO-8601 duration");
+    }
+
+    private static Instant parseInstant(String arg, String value) {
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid option '" + arg + "', value must be an ISO-8601 instant", e);
+        }
+    }
+
+    private static long parseLong(String arg, String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid option '" + arg + "', value must be a number", e);
+        }
+    }
+
+    List<String> arguments() {
+        return arguments;
+    }
+
+    /**
+     * Returns the number of tap records to generate.
+     */
+    long rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of distinct customer PANs.
+     */
+    int pans() {
+        return pans;
+    }
+
+    /**
+     * Returns the number of stops, the stops are laid out on a line.
+     */
+    int stops() {
+        return stops;
+    }
+
+    /**
+     * Returns the maximum number of stops between the two stops of a route, 0 if every pair of stops has a route.
+     */
+    int routeSpan() {
+        return routeSpan;
+    }
+
+    /**
+     * Returns the ratio of trips where the customer taps off, the other trips are incomplete.
+     */
+    double tapOffRatio() {
+        return tapOffRatio;
+    }
+
+    /**
+     * Returns the ratio of the tapped off trips where the customer taps off at the tap on stop.
+     */
+    double cancelRatio() {
+        return cancelRatio;
+    }
+
+    /**
+     * Returns the average number of tap ons per second, tap ons arrive as a Poisson process.
+     */
+    double tapsPerSecond() {
+        return tapsPerSecond;
+    }
+
+    /**
+     * Returns the mean duration of the tapped off trips, durations are exponentially distributed.
+     */
+    Duration meanTripDuration() {
+        return meanTripDuration;
+    }
+
+    /**
+     * Returns the time of the first tap.
+     */
+    Instant start() {
+        return start;
+    }
+
+    /**
+     * Returns the seed of the random generator, the same options always generate the same files.
+     */
+    long seed() {
+        return seed;
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.sbanal.littlepay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Parses the taps csv file by memory mapping the file in windows aligned on record boundaries and parsing the
+ * records directly from the mapped bytes using {@link TapRecordParser}.
+ */
+class MappedTripEventParser implements Iterator<TripEvent>, Closeable {
+
+    static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final FileChannel fileChannel;
+    private final long fileSize;
+    private final int windowSize;
+    private final TapRecordParser recordParser;
+    private final InvalidTripEventHandler invalidTripEventHandler;
+    private MappedByteBuffer window;
+    private long windowPosition;
+    private int position;
+    // line number of the line at the position, the header is line 1
+    private long lineNumber;
+    private TripEvent nextTripEvent;
+
+    MappedTripEventParser(Path tapsCsv) throws IOException {
+        this(tapsCsv, DEFAULT_WINDOW_SIZE);
+    }
+
+    MappedTripEventParser(Path tapsCsv, int windowSize) throws IOException {
+        this(tapsCsv, windowSize, InvalidTripEventHandler.FAIL);
+    }
+
+    MappedTripEventParser(Path tapsCsv, int windowSize, InvalidTripEventHandler invalidTripEventHandler)
+            throws IOException {
+        this(tapsCsv, windowSize, invalidTripEventHandler, 0, 0);
+    }
+
+    /**
+     * Creates the parser which starts parsing at the given file position and line number, as returned by
+     * {@link #position()} and {@link #lineNumber()} of a previous parser of the same file, or at the first record
+     * when the position is 0.
+     */
+    MappedTripEventParser(Path tapsCsv, int windowSize, InvalidTripEventHandler invalidTripEventHandler,
+                          long startPosition, long startLineNumber) throws IOException {
+        this.invalidTripEventHandler = invalidTripEventHandler;
+        this.fileChannel = FileChannel.open(tapsCsv, StandardOpenOption.READ);
+        try {
+            this.fileSize = fileChannel.size();
+            this.windowSize = windowSize;
+            mapWindow(0);
+            int headerEnd = TapRecordParser.findLineEnd(window, 0, window.limit());
+            this.recordParser = new TapRecordParser(TapRecordParser.decode(window, 0, headerEnd));
+            this.position = Math.min(headerEnd + 1, window.limit());
+            this.lineNumber = 2;
+            if (startPosition > 0) {
+                mapWindow(startPosition);
+                this.lineNumber = startLineNumber;
+            }
+        } catch (IOException | RuntimeException e) {
+            fileChannel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (nextTripEvent == null) {
+            if (position >= window.limit()) {
+                long nextWindowPosition = windowPosition + window.limit();
+                if (nextWindowPosition >= fileSize) {
+                    return false;
+                }
+                mapWindow(nextWindowPosition);
+            }
+            int lineEnd = TapRecordParser.findLineEnd(window, position, window.limit());
+            if (!TapRecordParser.isBlank(window, position, lineEnd)) {
+                try {
+                    nextTripEvent = recordParser.parse(window, position, lineEnd);
+                } catch (InvalidTripEventException e) {
+                    invalidTripEventHandler.invalidTripEvent(lineNumber,
+                            TapRecordParser.decode(window, position, lineEnd).strip(), e);
+                }
+            }
+            position = lineEnd + 1;
+            lineNumber++;
+        }
+        return true;
+    }
+
+    @Override
+    public TripEvent next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        TripEvent tripEvent = nextTripEvent;
+        nextTripEvent = null;
+        return tripEvent;
+    }
+
+    /**
+     * Returns the file position of the next record to be parsed, must not be called after {@link #hasNext()} until
+     * the parsed record is returned by {@link #next()}.
+     */
+    long position() {
+        if (nextTripEvent != null) {
+            throw new IllegalStateException("Next trip event already parsed");
+        }
+        return windowPosition + position;
+    }
+
+    /**
+     * Returns the line number of the next record to be parsed.
+     */
+    long lineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileChannel.close();
+    }
+
+    /**
+     * Maps the window starting at the given file position, the window ends after the last line separator within
+     * the window size so records are never split between windows.
+     */
+    private void mapWindow(long windowPosition) {
+        try {
+            long size = Math.min(windowSize, fileSize - windowPosition);
+            MappedByteBuffer mappedWindow = fileChannel.map(FileChannel.MapMode.READ_ONLY, windowPosition, size);
+            if (windowPosition + size < fileSize) {
+                int limit = (int) size;
+                while (limit > 0 && mappedWindow.get(limit - 1) != '\n') {
+                    limit--;
+                }
+                if (limit == 0) {
+                    throw new InvalidTripEventException("Invalid trip event, record at position " + windowPosition
+                            + " is longer than " + windowSize + " bytes");
+                }
+                mappedWindow.limit(limit);
+            }
+            this.window = mappedWindow;
+            this.windowPosition = windowPosition;
+            this.position = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
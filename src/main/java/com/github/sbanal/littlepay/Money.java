@@ -0,0 +1,72 @@
+package com.github.sbanal.littlepay;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money amounts are carried as long cents so costs are exact and never rounded when added up or written. This class
+ * parses the dollar amounts of the trip cost csv file into cents and formats cents into the $d.cc amounts of the
+ * trips csv file, the same as {@code new DecimalFormat("$0.00")} without its per call cost and shared state.
+ */
+final class Money {
+
+    private Money() {
+    }
+
+    /**
+     * Parses a dollar amount such as {@code 3.25} into cents, amounts with more than two decimal places are rounded
+     * half even.
+     *
+     * @throws NumberFormatException if the value is not a decimal number or does not fit in a long
+     */
+    static long parseCents(String value) {
+        try {
+            return new BigDecimal(value.strip())
+                    .setScale(2, RoundingMode.HALF_EVEN)
+                    .unscaledValue()
+                    .longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Invalid amount '" + value + "'");
+        }
+    }
+
+    /**
+     * Formats the cents as a dollar amount such as {@code $3.25}, or {@code -$3.25} for negative amounts.
+     */
+    static String format(long cents) {
+        StringBuilder builder = new StringBuilder(16);
+        append(builder, cents);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the cents as a dollar amount to the builder, see {@link #format(long)}.
+     */
+    static void append(StringBuilder builder, long cents) {
+        if (cents < 0) {
+            builder.append('-');
+        }
+        builder.append('$');
+        appendUnsigned(builder, cents);
+    }
+
+    /**
+     * Appends the cents as a decimal amount without the dollar sign such as {@code 3.25}, the format parsed by
+     * {@link #parseCents(String)}.
+     */
+    static void appendDecimal(StringBuilder builder, long cents) {
+        if (cents < 0) {
+            builder.append('-');
+        }
+        appendUnsigned(builder, cents);
+    }
+
+    private static void appendUnsigned(StringBuilder builder, long cents) {
+        long dollars = Math.abs(cents / 100);
+        int remainingCents = (int) Math.abs(cents % 100);
+        builder.append(dollars)
+                .append('.')
+                .append((char) ('0' + remainingCents / 10))
+                .append((char) ('0' + remainingCents % 10));
+    }
+}
@@ -0,0 +1,285 @@
+package com.github.sbanal.littlepay;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.ref.Cleaner;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the open trips in an open addressing hash table of fixed width slots in a native memory segment, so the open
+ * trips cost no heap and are never scanned by the garbage collector however many trips are open. A slot holds the
+ * packed PAN, the tap on event id and whether it has one, time, stop, company and bus codes, and the previous and
+ * next slots of a doubly linked list in tap on order which the expiry walks from the oldest trip.
+ * <p>
+ * The slots are found by linear probing and removed slots are marked deleted. The table is rebuilt in list order
+ * when the used slots exceed 70% of the slots, into a table of twice as many slots as open trips, so the table holds
+ * between 1.4 and 2 slots per open trip. The memory of a table is freed as soon as it is rebuilt or cleared instead
+ * of waiting for a garbage collection, a store which is dropped without being cleared is freed once it is
+ * unreachable. A tap on event is only decoded into a {@link TripEvent} when it is returned.
+ */
+class OffHeapOpenTripStore implements OpenTripStore {
+
+    private static final long PAN = 0;
+    private static final long ID = 8;
+    private static final long EPOCH_SECOND = 16;
+    private static final long NANOS = 24;
+    private static final long STOP = 28;
+    private static final long COMPANY = 32;
+    private static final long BUS = 36;
+    private static final long PREV = 40;
+    private static final long NEXT = 44;
+    private static final long STATE = 48;
+    private static final long HAS_ID = 49;
+    // padded so the longs of the slots stay aligned
+    private static final long SLOT_SIZE = 56;
+
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    private static final byte DELETED = 2;
+
+    private static final int NO_SLOT = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Table table = new Table();
+    private MemorySegment slots;
+    private int capacity;
+    private int size;
+    // slots which are used or deleted, a probe only ends on an empty slot
+    private int usedSlots;
+    private int head = NO_SLOT;
+    private int tail = NO_SLOT;
+
+    OffHeapOpenTripStore() {
+        CLEANER.register(this, table);
+        allocate(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public TripEvent get(long packedPan) {
+        int slot = find(packedPan);
+        return slot == NO_SLOT ? null : read(slot);
+    }
+
+    @Override
+    public void add(TripEvent tapOnTripEvent) {
+        if ((usedSlots + 1) * 10L > capacity * 7L) {
+            rebuild(tableCapacity(size + 1));
+        }
+        int slot = index(tapOnTripEvent.packedPan());
+        while (state(slot) == USED) {
+            slot = slot + 1 == capacity ? 0 : slot + 1;
+        }
+        if (state(slot) == EMPTY) {
+            usedSlots++;
+        }
+        long offset = slot * SLOT_SIZE;
+        Long id = tapOnTripEvent.id();
+        slots.set(ValueLayout.JAVA_LONG, offset + PAN, tapOnTripEvent.packedPan());
+        slots.set(ValueLayout.JAVA_LONG, offset + ID, id != null ? id : 0);
+        slots.set(ValueLayout.JAVA_BYTE, offset + HAS_ID, (byte) (id != null ? 1 : 0));
+        slots.set(ValueLayout.JAVA_LONG, offset + EPOCH_SECOND, tapOnTripEvent.dateTimeUtc().getEpochSecond());
+        slots.set(ValueLayout.JAVA_INT, offset + NANOS, tapOnTripEvent.dateTimeUtc().getNano());
+        slots.set(ValueLayout.JAVA_INT, offset + STOP, tapOnTripEvent.stopCode());
+        slots.set(ValueLayout.JAVA_INT, offset + COMPANY, tapOnTripEvent.companyCode());
+        slots.set(ValueLayout.JAVA_INT, offset + BUS, tapOnTripEvent.busCode());
+        slots.set(ValueLayout.JAVA_BYTE, offset + STATE, USED);
+        link(slot);
+        size++;
+    }
+
+    @Override
+    public boolean remove(long packedPan) {
+        int slot = find(packedPan);
+        if (slot == NO_SLOT) {
+            return false;
+        }
+        unlink(slot);
+        slots.set(ValueLayout.JAVA_BYTE, slot * SLOT_SIZE + STATE, DELETED);
+        size--;
+        return true;
+    }
+
+    @Override
+    public TripEvent oldest() {
+        return head == NO_SLOT ? null : read(head);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public List<TripEvent> values() {
+        List<TripEvent> tapOnTripEvents = new ArrayList<>(size);
+        for (int slot = head; slot != NO_SLOT; slot = getInt(slot, NEXT)) {
+            tapOnTripEvents.add(read(slot));
+        }
+        return tapOnTripEvents;
+    }
+
+    @Override
+    public void clear() {
+        table.close();
+        allocate(INITIAL_CAPACITY);
+        size = 0;
+        usedSlots = 0;
+        head = NO_SLOT;
+        tail = NO_SLOT;
+    }
+
+    /**
+     * Returns the number of slots of the table.
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    private int find(long packedPan) {
+        int slot = index(packedPan);
+        while (true) {
+            byte state = state(slot);
+            if (state == EMPTY) {
+                return NO_SLOT;
+            }
+            if (state == USED && slots.get(ValueLayout.JAVA_LONG, slot * SLOT_SIZE + PAN) == packedPan) {
+                return slot;
+            }
+            slot = slot + 1 == capacity ? 0 : slot + 1;
+        }
+    }
+
+    private TripEvent read(int slot) {
+        long offset = slot * SLOT_SIZE;
+        boolean hasId = slots.get(ValueLayout.JAVA_BYTE, offset + HAS_ID) != 0;
+        return new TripEvent(
+                hasId ? slots.get(ValueLayout.JAVA_LONG, offset + ID) : null,
+                Instant.ofEpochSecond(slots.get(ValueLayout.JAVA_LONG, offset + EPOCH_SECOND),
+                        slots.get(ValueLayout.JAVA_INT, offset + NANOS)),
+                TapType.ON,
+                slots.get(ValueLayout.JAVA_INT, offset + STOP),
+                slots.get(ValueLayout.JAVA_INT, offset + COMPANY),
+                slots.get(ValueLayout.JAVA_INT, offset + BUS),
+                slots.get(ValueLayout.JAVA_LONG, offset + PAN));
+    }
+
+    private void link(int slot) {
+        putInt(slot, PREV, tail);
+        putInt(slot, NEXT, NO_SLOT);
+        if (tail == NO_SLOT) {
+            head = slot;
+        } else {
+            putInt(tail, NEXT, slot);
+        }
+        tail = slot;
+    }
+
+    private void unlink(int slot) {
+        int prev = getInt(slot, PREV);
+        int next = getInt(slot, NEXT);
+        if (prev == NO_SLOT) {
+            head = next;
+        } else {
+            putInt(prev, NEXT, next);
+        }
+        if (next == NO_SLOT) {
+            tail = prev;
+        } else {
+            putInt(next, PREV, prev);
+        }
+    }
+
+    /**
+     * Moves the open trips in tap on order into a new table of the given capacity, dropping the deleted slots, and
+     * frees the old table.
+     */
+    private void rebuild(int newCapacity) {
+        Arena oldArena = table.arena;
+        MemorySegment oldSlots = slots;
+        int oldHead = head;
+        allocate(newCapacity);
+        head = NO_SLOT;
+        tail = NO_SLOT;
+        usedSlots = 0;
+        int oldSlot = oldHead;
+        while (oldSlot != NO_SLOT) {
+            long oldOffset = oldSlot * SLOT_SIZE;
+            oldSlot = oldSlots.get(ValueLayout.JAVA_INT, oldOffset + NEXT);
+
+            int slot = index(oldSlots.get(ValueLayout.JAVA_LONG, oldOffset + PAN));
+            while (state(slot) != EMPTY) {
+                slot = slot + 1 == capacity ? 0 : slot + 1;
+            }
+            MemorySegment.copy(oldSlots, oldOffset, slots, slot * SLOT_SIZE, SLOT_SIZE);
+            link(slot);
+            usedSlots++;
+        }
+        oldArena.close();
+    }
+
+    private void allocate(int newCapacity) {
+        Arena arena = Arena.ofShared();
+        // the memory of an arena is zeroed, so all the slots start empty
+        slots = arena.allocate(newCapacity * SLOT_SIZE, Long.BYTES);
+        table.arena = arena;
+        capacity = newCapacity;
+    }
+
+    /**
+     * Returns the capacity which keeps the given number of open trips at half of the slots.
+     */
+    private static int tableCapacity(int openTrips) {
+        long tableCapacity = Math.max(INITIAL_CAPACITY, openTrips * 2L);
+        if (tableCapacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many open trips to be kept off heap: " + openTrips);
+        }
+        return (int) tableCapacity;
+    }
+
+    /**
+     * Returns the slot of the packed PAN, the high bits of the hash are scaled to the capacity which need not be a
+     * power of two.
+     */
+    private int index(long packedPan) {
+        return (int) (((Pan.hash(packedPan) >>> 32) * capacity) >>> 32);
+    }
+
+    private byte state(int slot) {
+        return slots.get(ValueLayout.JAVA_BYTE, slot * SLOT_SIZE + STATE);
+    }
+
+    private int getInt(int slot, long field) {
+        return slots.get(ValueLayout.JAVA_INT, slot * SLOT_SIZE + field);
+    }
+
+    private void putInt(int slot, long field, int value) {
+        slots.set(ValueLayout.JAVA_INT, slot * SLOT_SIZE + field, value);
+    }
+
+    /**
+     * Holds the arena of the current table, so the cleaner which frees the table of an unreachable store does not
+     * reference the store. The arena is shared since a matcher can be created and used on different threads.
+     */
+    private static final class Table implements Runnable {
+
+        private volatile Arena arena;
+
+        @Override
+        public void run() {
+            close();
+        }
+
+        void close() {
+            Arena current = arena;
+            arena = null;
+            if (current != null) {
+                current.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.github.sbanal.littlepay;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * State carried between the runs of an incremental job: the names of the taps csv files already processed, the
+ * trips csv file and the number of its bytes written by the processed files when the trips are appended to the same
+ * file across runs, and the tap on events of the customers who have not yet tapped off at the end of the last file.
+ * The trips file name is null when each run writes its own trips file.
+ */
+record OpenTripState(List<String> processedFiles, String tripsFile, long tripsPosition, List<TripEvent> openTrips) {
+
+    static final OpenTripState EMPTY = new OpenTripState(List.of(), List.of());
+
+    private static final int MAGIC = 0x4C50534F;
+    private static final int VERSION = 2;
+
+    OpenTripState(List<String> processedFiles, List<TripEvent> openTrips) {
+        this(processedFiles, null, 0, openTrips);
+    }
+
+    /**
+     * Reads the state file, returns {@link #EMPTY} if the file does not exist.
+     */
+    static OpenTripState read(Path stateFile) throws IOException {
+        OpenTripState state = StateFiles.read(stateFile, MAGIC, VERSION, in -> {
+            int processedFileCount = in.readInt();
+            List<String> processedFiles = new ArrayList<>(processedFileCount);
+            for (int i = 0; i < processedFileCount; i++) {
+                processedFiles.add(in.readUTF());
+            }
+            String tripsFile = in.readBoolean() ? in.readUTF() : null;
+            long tripsPosition = in.readLong();
+            return new OpenTripState(processedFiles, tripsFile, tripsPosition, StateFiles.readOpenTrips(in));
+        });
+        return state != null ? state : EMPTY;
+    }
+
+    /**
+     * Replaces the state file, the state file is either the previous or the new state after a crash.
+     */
+    void write(Path stateFile) throws IOException {
+        StateFiles.write(stateFile, MAGIC, VERSION, out -> {
+            out.writeInt(processedFiles.size());
+            for (String processedFile : processedFiles) {
+                out.writeUTF(processedFile);
+            }
+            out.writeBoolean(tripsFile != null);
+            if (tripsFile != null) {
+                out.writeUTF(tripsFile);
+            }
+            out.writeLong(tripsPosition);
+            StateFiles.writeOpenTrips(out, openTrips);
+        });
+    }
+}
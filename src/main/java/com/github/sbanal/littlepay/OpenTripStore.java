@@ -0,0 +1,41 @@
+package com.github.sbanal.littlepay;
+
+import java.util.List;
+
+/**
+ * Keeps the tap on events of the customers who have not yet tapped off, keyed by the {@link Pan packed PAN} and
+ * ordered by the order they were added, which is the tap on order since tap events are read in DateTimeUTC order.
+ * Instances are not thread safe.
+ */
+interface OpenTripStore {
+
+    /**
+     * Returns the tap on event of the customer or null if the customer has no open trip.
+     */
+    TripEvent get(long packedPan);
+
+    /**
+     * Adds the tap on event of a customer who has no open trip as the newest open trip.
+     */
+    void add(TripEvent tapOnTripEvent);
+
+    /**
+     * Removes the open trip of the customer, returns false if the customer has no open trip.
+     */
+    boolean remove(long packedPan);
+
+    /**
+     * Returns the oldest open trip or null if there are no open trips.
+     */
+    TripEvent oldest();
+
+    int size();
+
+    /**
+     * Returns the open trips from the oldest to the newest.
+     */
+    List<TripEvent> values();
+
+    void clear();
+
+}
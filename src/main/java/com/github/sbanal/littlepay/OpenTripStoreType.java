@@ -0,0 +1,13 @@
+package com.github.sbanal.littlepay;
+
+/**
+ * Where the matcher keeps the tap on events of the customers who have not yet tapped off.
+ */
+public enum OpenTripStoreType {
+    HEAP,
+    OFF_HEAP;
+
+    OpenTripStore create() {
+        return this == OFF_HEAP ? new OffHeapOpenTripStore() : new HeapOpenTripStore();
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.sbanal.littlepay;
+
+import java.nio.ByteBuffer;
+
+/**
+ * PANs are carried as packed longs so they are compared, hashed and kept as primitive keys without a string per tap
+ * event, and are only rendered back to their digits when written. A PAN of 1 to 19 digits is packed into its digits
+ * plus the number of all the PANs with fewer digits, which keeps the leading zeros and fits every 19 digit PAN since
+ * the packed values are unsigned. This class parses the PANs of the taps csv file into packed PANs and formats them
+ * for the trips csv file.
+ */
+final class Pan {
+
+    static final int MAX_DIGITS = 19;
+
+    /**
+     * Returned by {@link #parse(ByteBuffer, int, int)} for a value which is not a PAN, no PAN is packed into it.
+     */
+    static final long INVALID = -1;
+
+    // OFFSETS[digits] is the number of PANs with fewer digits, OFFSETS[MAX_DIGITS + 1] is the number of PANs
+    private static final long[] OFFSETS = new long[MAX_DIGITS + 2];
+
+    static {
+        long powerOfTen = 10;
+        for (int digits = 1; digits <= MAX_DIGITS; digits++) {
+            // 10^19 overflows a signed long but is exact as an unsigned long
+            OFFSETS[digits + 1] = OFFSETS[digits] + powerOfTen;
+            powerOfTen *= 10;
+        }
+    }
+
+    private Pan() {
+    }
+
+    /**
+     * Packs a PAN such as {@code 5500005555555559}.
+     *
+     * @throws IllegalArgumentException if the value is not 1 to 19 digits
+     */
+    static long parse(CharSequence value) {
+        int length = value.length();
+        if (length >= 1 && length <= MAX_DIGITS) {
+            long digits = 0;
+            int i = 0;
+            while (i < length && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+                digits = digits * 10 + (value.charAt(i) - '0');
+                i++;
+            }
+            if (i == length) {
+                return digits + OFFSETS[length];
+            }
+        }
+        throw new IllegalArgumentException("Invalid PAN '" + value + "', value must be 1 to " + MAX_DIGITS
+                + " digits");
+    }
+
+    /**
+     * Packs the PAN in the bytes of the buffer between start and end, returns {@link #INVALID} if the bytes are not
+     * 1 to 19 ASCII digits.
+     */
+    static long parse(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        if (length < 1 || length > MAX_DIGITS) {
+            return INVALID;
+        }
+        long digits = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            digits = digits * 10 + digit;
+        }
+        return digits + OFFSETS[length];
+    }
+
+    /**
+     * Formats the packed PAN as its digits, see {@link #append(StringBuilder, long)}.
+     */
+    static String format(long pan) {
+        StringBuilder builder = new StringBuilder(MAX_DIGITS);
+        append(builder, pan);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the digits of the packed PAN to the builder, including its leading zeros.
+     */
+    static void append(StringBuilder builder, long pan) {
+        int length = 1;
+        while (Long.compareUnsigned(pan, OFFSETS[length + 1]) >= 0) {
+            length++;
+        }
+        long digits = pan - OFFSETS[length];
+        int start = builder.length();
+        builder.setLength(start + length);
+        for (int i = start + length - 1; i >= start; i--) {
+            builder.setCharAt(i, (char) ('0' + Long.remainderUnsigned(digits, 10)));
+            digits = Long.divideUnsigned(digits, 10);
+        }
+    }
+
+    /**
+     * Returns a hash of the packed PAN whose low bits are well spread, e.g. to index a hash table or a partition.
+     */
+    static long hash(long pan) {
+        long hash = pan;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+}
@@ -0,0 +1,217 @@
+package com.github.sbanal.littlepay;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Processes the tap events in parallel by partitioning the events by customer PAN. Each partition has its own
+ * {@link TripEventMatcher} running on its own thread, so the tap events of a customer are still matched in the order
+ * they are read. The trips are written in batches as each partition completes them, the order of the trips in the
+ * output is therefore not the same as the order written by {@link TripEventService}.
+ */
+public class PartitionedTripEventService extends TripEventService {
+
+    private static final int BATCH_SIZE = 1024;
+    private static final int QUEUE_CAPACITY = 8;
+    private static final List<TripEvent> END_OF_EVENTS = new ArrayList<>(0);
+
+    private final int partitionCount;
+
+    /**
+     * Creates the service which matches the tap events in the given number of partitions, with the optional settings
+     * of the given config, see {@link TripEventServiceConfig}.
+     */
+    public PartitionedTripEventService(TripCostService tripCostService, TripEventServiceConfig config,
+                                       int partitionCount) {
+        super(tripCostService, config);
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("Invalid partition count, value must be positive");
+        }
+        this.partitionCount = partitionCount;
+    }
+
+    @Override
+    public void processEvents(TripEventReader tripEventsReader,
+                              TripCompletionEventWriter tripCompletionEventsWriter) throws IOException {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        PipelineMetrics metrics = metrics();
+        try (TripEventReader reader = tripEventsReader; TripCompletionEventWriter writer = tripCompletionEventsWriter) {
+            metrics.monitorBytesWritten(writer::bytesWritten);
+            ExecutorService executorService = Executors.newFixedThreadPool(partitionCount);
+            Partition[] partitions = new Partition[partitionCount];
+            for (int i = 0; i < partitionCount; i++) {
+                partitions[i] = new Partition(createTripEventMatcher(), writer, failure, metrics);
+                executorService.execute(partitions[i]);
+            }
+            long startNanos = System.nanoTime();
+            try {
+                for (TripEvent tripEvent : orderedEvents(reader)) {
+                    if (failure.get() != null) {
+                        break;
+                    }
+                    metrics.tapEvent();
+                    partitions[partitionOf(tripEvent.packedPan())].add(tripEvent);
+                }
+                metrics.stageWallTime("dispatch-tap-events", System.nanoTime() - startNanos);
+            } catch (RuntimeException | InterruptedIOException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                try {
+                    for (Partition partition : partitions) {
+                        partition.finish();
+                    }
+                    executorService.shutdown();
+                    awaitTermination(executorService);
+                } finally {
+                    executorService.shutdownNow();
+                }
+            }
+        }
+
+        Throwable e = failure.get();
+        if (e instanceof IOException ioException) {
+            throw ioException;
+        } else if (e instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        } else if (e instanceof Error error) {
+            throw error;
+        } else if (e != null) {
+            throw new IOException("Failed processing tap events", e);
+        }
+    }
+
+    private int partitionOf(long packedPan) {
+        return (int) Long.remainderUnsigned(Pan.hash(packedPan), partitionCount);
+    }
+
+    private static void awaitTermination(ExecutorService executorService) throws InterruptedIOException {
+        try {
+            while (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+                // keep waiting, partitions always terminate once they receive the end of events
+            }
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for partitions to complete");
+        }
+    }
+
+    /**
+     * Receives the batches of tap events of a partition from the reading thread and matches them on its own thread.
+     * When any partition fails, even with an {@link Error}, the remaining batches are drained without being
+     * processed so the reading thread never blocks on a full queue.
+     */
+    private static final class Partition implements Runnable {
+
+        private final BlockingQueue<List<TripEvent>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final List<TripCompletionEvent> completionEvents = new ArrayList<>();
+        private final TripEventMatcher tripEventMatcher;
+        private final TripCompletionEventWriter writer;
+        private final AtomicReference<Throwable> failure;
+        private final PipelineMetrics metrics;
+        private List<TripEvent> batch = new ArrayList<>(BATCH_SIZE);
+
+        Partition(TripEventMatcher tripEventMatcher, TripCompletionEventWriter writer,
+                  AtomicReference<Throwable> failure, PipelineMetrics metrics) {
+            this.tripEventMatcher = tripEventMatcher;
+            this.writer = writer;
+            this.failure = failure;
+            this.metrics = metrics;
+        }
+
+        void add(TripEvent tripEvent) throws InterruptedIOException {
+            batch.add(tripEvent);
+            if (batch.size() == BATCH_SIZE) {
+                put(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+
+        void finish() throws InterruptedIOException {
+            if (!batch.isEmpty()) {
+                put(batch);
+                batch = new ArrayList<>(0);
+            }
+            put(END_OF_EVENTS);
+        }
+
+        private void put(List<TripEvent> tripEvents) throws InterruptedIOException {
+            try {
+                queue.put(tripEvents);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while dispatching tap events");
+            }
+        }
+
+        @Override
+        public void run() {
+            boolean endOfEvents = false;
+            try {
+                List<TripEvent> tripEvents;
+                while ((tripEvents = queue.take()) != END_OF_EVENTS) {
+                    if (failure.get() == null) {
+                        long startNanos = System.nanoTime();
+                        for (TripEvent tripEvent : tripEvents) {
+                            tripEventMatcher.match(tripEvent, completionEvents::add);
+                        }
+                        metrics.stageWallTime("match-tap-events", System.nanoTime() - startNanos);
+                        writeCompletionEvents();
+                    }
+                }
+                endOfEvents = true;
+                if (failure.get() == null) {
+                    // customer did not tap-off
+                    long startNanos = System.nanoTime();
+                    tripEventMatcher.complete(completionEvents::add);
+                    metrics.stageWallTime("complete-trips", System.nanoTime() - startNanos);
+                    writeCompletionEvents();
+                }
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, e);
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+                if (!endOfEvents) {
+                    drain();
+                }
+                if (e instanceof Error error) {
+                    throw error;
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                while (queue.take() != END_OF_EVENTS) {
+                    // discard, the job has failed
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void writeCompletionEvents() throws IOException {
+            if (completionEvents.isEmpty()) {
+                return;
+            }
+            long startNanos = System.nanoTime();
+            synchronized (writer) {
+                for (TripCompletionEvent completionEvent : completionEvents) {
+                    writer.write(completionEvent);
+                }
+            }
+            metrics.stageWallTime("write-trips", System.nanoTime() - startNanos);
+            completionEvents.clear();
+        }
+    }
+}
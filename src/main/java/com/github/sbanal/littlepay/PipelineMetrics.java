@@ -0,0 +1,260 @@
+package com.github.sbanal.littlepay;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and timers of a job, updated by the reader, matcher and writer while the job runs. The counters are
+ * {@link LongAdder}s so partitions can update them concurrently without contention. The cost lookup latency is
+ * sampled by the matcher since timing every lookup would cost more than the lookup itself.
+ * <p>
+ * The metrics can be registered as an MXBean to watch a running job, and {@link #summary()} is logged at job end.
+ */
+public class PipelineMetrics implements PipelineMetricsMXBean {
+
+    private static final String OBJECT_NAME = "com.github.sbanal.littlepay:type=PipelineMetrics,name=";
+    private static final AtomicInteger JOB_IDS = new AtomicInteger();
+
+    private final long startNanos = System.nanoTime();
+    private volatile long finishNanos;
+    private final LongAdder tapEvents = new LongAdder();
+    private final LongAdder parseErrors = new LongAdder();
+    private final LongAdder openTrips = new LongAdder();
+    private final LongAdder orphanTapOffs = new LongAdder();
+    private final LongAdder lateTaps = new LongAdder();
+    private final LongAdder completedTrips = new LongAdder();
+    private final LongAdder incompleteTrips = new LongAdder();
+    private final LongAdder cancelledTrips = new LongAdder();
+    private volatile LongSupplier bytesWritten = () -> 0;
+    private final LatencyHistogram costLookupLatency = new LatencyHistogram();
+    private final Map<String, Long> stageWallTimeNanos = Collections.synchronizedMap(new LinkedHashMap<>());
+    private ObjectName objectName;
+
+    void tapEvent() {
+        tapEvents.increment();
+    }
+
+    void parseError() {
+        parseErrors.increment();
+    }
+
+    void tripOpened() {
+        openTrips.increment();
+    }
+
+    void tripClosed() {
+        openTrips.decrement();
+    }
+
+    void orphanTapOff() {
+        orphanTapOffs.increment();
+    }
+
+    void lateTap() {
+        lateTaps.increment();
+    }
+
+    void trip(TripCompletionStatus status) {
+        switch (status) {
+            case COMPLETED -> completedTrips.increment();
+            case INCOMPLETE -> incompleteTrips.increment();
+            case CANCELLED -> cancelledTrips.increment();
+        }
+    }
+
+    /**
+     * Sets the source of the number of bytes written by the job.
+     */
+    void monitorBytesWritten(LongSupplier bytesWritten) {
+        this.bytesWritten = bytesWritten;
+    }
+
+    void costLookup(long latencyNanos) {
+        costLookupLatency.record(latencyNanos);
+    }
+
+    /**
+     * Records the wall time of a stage, the wall time of stages with the same name is added up.
+     */
+    void stageWallTime(String name, long nanos) {
+        stageWallTimeNanos.merge(name, nanos, Long::sum);
+    }
+
+    /**
+     * Stops the job clock, the rates are calculated up to this point.
+     */
+    public void finish() {
+        finishNanos = System.nanoTime();
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server under a name unique to the job, until
+     * {@link #unregister()} is called.
+     */
+    public synchronized void register() throws JMException {
+        ObjectName name = new ObjectName(OBJECT_NAME + "job-" + JOB_IDS.incrementAndGet());
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        this.objectName = name;
+    }
+
+    public synchronized void unregister() throws JMException {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } finally {
+            objectName = null;
+        }
+    }
+
+    @Override
+    public long getTapEvents() {
+        return tapEvents.sum();
+    }
+
+    @Override
+    public double getTapEventsPerSecond() {
+        return perSecond(getTapEvents());
+    }
+
+    @Override
+    public long getParseErrors() {
+        return parseErrors.sum();
+    }
+
+    @Override
+    public long getOpenTrips() {
+        return openTrips.sum();
+    }
+
+    @Override
+    public long getOrphanTapOffs() {
+        return orphanTapOffs.sum();
+    }
+
+    @Override
+    public long getLateTaps() {
+        return lateTaps.sum();
+    }
+
+    @Override
+    public long getCompletedTrips() {
+        return completedTrips.sum();
+    }
+
+    @Override
+    public long getIncompleteTrips() {
+        return incompleteTrips.sum();
+    }
+
+    @Override
+    public long getCancelledTrips() {
+        return cancelledTrips.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.getAsLong();
+    }
+
+    @Override
+    public double getBytesWrittenPerSecond() {
+        return perSecond(getBytesWritten());
+    }
+
+    @Override
+    public Map<String, Long> getCostLookupLatencyNanos() {
+        return costLookupLatency.percentiles();
+    }
+
+    @Override
+    public Map<String, Long> getStageWallTimeMillis() {
+        Map<String, Long> stageWallTimeMillis = new LinkedHashMap<>();
+        synchronized (stageWallTimeNanos) {
+            stageWallTimeNanos.forEach((name, nanos) ->
+                    stageWallTimeMillis.put(name, TimeUnit.NANOSECONDS.toMillis(nanos)));
+        }
+        return stageWallTimeMillis;
+    }
+
+    /**
+     * Returns the metrics formatted for the job end log.
+     */
+    public String summary() {
+        return String.format(Locale.ROOT, """
+                        tap events: %d (%.0f/s), parse errors: %d, orphan tap offs: %d, open trips: %d, late taps: %d
+                        trips: %d completed, %d incomplete, %d cancelled
+                        bytes written: %d (%.0f/s)
+                        cost lookup latency ns: %s
+                        stage wall time ms: %s""",
+                getTapEvents(), getTapEventsPerSecond(), getParseErrors(), getOrphanTapOffs(), getOpenTrips(),
+                getLateTaps(),
+                getCompletedTrips(), getIncompleteTrips(), getCancelledTrips(),
+                getBytesWritten(), getBytesWrittenPerSecond(),
+                getCostLookupLatencyNanos(),
+                getStageWallTimeMillis());
+    }
+
+    private double perSecond(long count) {
+        long endNanos = finishNanos != 0 ? finishNanos : System.nanoTime();
+        double seconds = (endNanos - startNanos) / 1e9;
+        return seconds > 0 ? count / seconds : 0;
+    }
+
+    /**
+     * Histogram with power of two buckets, bucket i counts the latencies below 2^i nanoseconds not counted by the
+     * previous bucket. The percentiles are the upper bound of their bucket, capped by the max latency.
+     */
+    private static final class LatencyHistogram {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            long latency = Math.max(0, nanos);
+            buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(latency));
+            max.accumulateAndGet(latency, Math::max);
+        }
+
+        Map<String, Long> percentiles() {
+            long[] counts = new long[buckets.length()];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            Map<String, Long> percentiles = new LinkedHashMap<>();
+            percentiles.put("samples", total);
+            percentiles.put("p50", percentile(counts, total, 0.50));
+            percentiles.put("p90", percentile(counts, total, 0.90));
+            percentiles.put("p99", percentile(counts, total, 0.99));
+            percentiles.put("max", max.get());
+            return percentiles;
+        }
+
+        private long percentile(long[] counts, long total, double percentile) {
+            long rank = (long) Math.ceil(total * percentile);
+            long count = 0;
+            for (int i = 0; i < counts.length; i++) {
+                count += counts[i];
+                if (count >= rank && count > 0) {
+                    long upperBound = i == Long.SIZE - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+                    return Math.min(upperBound, max.get());
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.sbanal.littlepay;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link PipelineMetrics} of a running job, registered under the
+ * {@code com.github.sbanal.littlepay:type=PipelineMetrics} domain while the job runs.
+ */
+public interface PipelineMetricsMXBean {
+
+    long getTapEvents();
+
+    double getTapEventsPerSecond();
+
+    long getParseErrors();
+
+    long getOpenTrips();
+
+    long getOrphanTapOffs();
+
+    long getLateTaps();
+
+    long getCompletedTrips();
+
+    long getIncompleteTrips();
+
+    long getCancelledTrips();
+
+    long getBytesWritten();
+
+    double getBytesWrittenPerSecond();
+
+    /**
+     * Returns the sampled trip cost lookup latency in nanoseconds by percentile, e.g. p50, p99 and max.
+     */
+    Map<String, Long> getCostLookupLatencyNanos();
+
+    /**
+     * Returns the wall time in milliseconds of each completed stage of the job in the order the stages ran.
+     */
+    Map<String, Long> getStageWallTimeMillis();
+
+}
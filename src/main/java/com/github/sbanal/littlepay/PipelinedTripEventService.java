@@ -0,0 +1,279 @@
+package com.github.sbanal.littlepay;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Processes the tap events in three stages running on their own threads, so reading the taps file, matching the tap
+ * events and writing the trips overlap and the throughput is close to the one of the slowest stage. The stages are
+ * connected by bounded queues of batches of events, a stage blocks when the queue to the next stage is full so only a
+ * few batches are kept in memory. The tap events are matched by one {@link TripEventMatcher}, the trips are therefore
+ * written in the same order as {@link TripEventService}.
+ * <p>
+ * The wall time of each stage excludes the time it waits on the queues, so the slowest stage has the largest wall
+ * time.
+ */
+public class PipelinedTripEventService extends TripEventService {
+
+    private static final int BATCH_SIZE = 1024;
+    private static final int QUEUE_CAPACITY = 8;
+
+    /**
+     * Creates the service with the optional settings of the given config, see {@link TripEventServiceConfig}.
+     */
+    public PipelinedTripEventService(TripCostService tripCostService, TripEventServiceConfig config) {
+        super(tripCostService, config);
+    }
+
+    /**
+     * Reads the tap events on a reader thread and writes the trips on a writer thread while the tap events are
+     * matched on the calling thread. When any stage fails, even with an {@link Error}, the other stages stop and the
+     * failure is thrown once all the stages are done.
+     */
+    @Override
+    public void processEvents(TripEventReader tripEventsReader,
+                              TripCompletionEventWriter tripCompletionEventsWriter) throws IOException {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        PipelineMetrics metrics = metrics();
+        try (TripEventReader reader = tripEventsReader; TripCompletionEventWriter writer = tripCompletionEventsWriter) {
+            metrics.monitorBytesWritten(writer::bytesWritten);
+            StageQueue<TripEvent> tripEvents = new StageQueue<>();
+            StageQueue<TripCompletionEvent> completionEvents = new StageQueue<>();
+            Thread readerThread = Thread.ofPlatform().name("tap-reader").daemon()
+                    .start(() -> read(reader, tripEvents, failure));
+            Thread writerThread = Thread.ofPlatform().name("trip-writer").daemon()
+                    .start(() -> write(completionEvents, writer, failure));
+            try {
+                match(tripEvents, completionEvents, failure);
+            } finally {
+                join(readerThread, failure);
+                join(writerThread, failure);
+            }
+        }
+
+        Throwable e = failure.get();
+        if (e instanceof IOException ioException) {
+            throw ioException;
+        } else if (e instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        } else if (e instanceof Error error) {
+            throw error;
+        } else if (e != null) {
+            throw new IOException("Failed processing tap events", e);
+        }
+    }
+
+    private void read(TripEventReader reader, StageQueue<TripEvent> tripEvents, AtomicReference<Throwable> failure) {
+        PipelineMetrics metrics = metrics();
+        try {
+            Iterator<TripEvent> orderedEvents = orderedEvents(reader).iterator();
+            List<TripEvent> batch = new ArrayList<>(BATCH_SIZE);
+            long startNanos = System.nanoTime();
+            while (failure.get() == null && orderedEvents.hasNext()) {
+                batch.add(orderedEvents.next());
+                if (batch.size() == BATCH_SIZE) {
+                    metrics.stageWallTime("read-tap-events", System.nanoTime() - startNanos);
+                    tripEvents.put(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                    startNanos = System.nanoTime();
+                }
+            }
+            metrics.stageWallTime("read-tap-events", System.nanoTime() - startNanos);
+            if (!batch.isEmpty()) {
+                tripEvents.put(batch);
+            }
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+            rethrowError(e);
+        } finally {
+            tripEvents.finish(failure);
+        }
+    }
+
+    private void match(StageQueue<TripEvent> tripEvents, StageQueue<TripCompletionEvent> completionEvents,
+                       AtomicReference<Throwable> failure) {
+        PipelineMetrics metrics = metrics();
+        BatchSink sink = new BatchSink(completionEvents);
+        boolean endOfEvents = false;
+        try {
+            TripEventMatcher tripEventMatcher = createTripEventMatcher();
+            List<TripEvent> batch;
+            while ((batch = tripEvents.take()) != null) {
+                if (failure.get() != null) {
+                    // discard, a stage has failed
+                    continue;
+                }
+                long startNanos = System.nanoTime();
+                long waitNanos = completionEvents.putWaitNanos();
+                for (TripEvent tripEvent : batch) {
+                    metrics.tapEvent();
+                    tripEventMatcher.match(tripEvent, sink);
+                }
+                metrics.stageWallTime("match-tap-events", System.nanoTime() - startNanos
+                        - (completionEvents.putWaitNanos() - waitNanos));
+            }
+            endOfEvents = true;
+            if (failure.get() == null) {
+                // customer did not tap-off
+                long startNanos = System.nanoTime();
+                long waitNanos = completionEvents.putWaitNanos();
+                tripEventMatcher.complete(sink);
+                metrics.stageWallTime("complete-trips", System.nanoTime() - startNanos
+                        - (completionEvents.putWaitNanos() - waitNanos));
+                sink.flush();
+            }
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+            if (!endOfEvents) {
+                tripEvents.drain();
+            }
+            rethrowError(e);
+        } finally {
+            completionEvents.finish(failure);
+        }
+    }
+
+    private void write(StageQueue<TripCompletionEvent> completionEvents, TripCompletionEventWriter writer,
+                       AtomicReference<Throwable> failure) {
+        PipelineMetrics metrics = metrics();
+        try {
+            List<TripCompletionEvent> batch;
+            while ((batch = completionEvents.take()) != null) {
+                if (failure.get() != null) {
+                    // discard, a stage has failed
+                    continue;
+                }
+                long startNanos = System.nanoTime();
+                for (TripCompletionEvent completionEvent : batch) {
+                    writer.write(completionEvent);
+                }
+                metrics.stageWallTime("write-trips", System.nanoTime() - startNanos);
+            }
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+            completionEvents.drain();
+            rethrowError(e);
+        }
+    }
+
+    /**
+     * Rethrows an {@link Error} once a stage has recorded it and stopped, an exception is only thrown by
+     * {@link #processEvents(TripEventReader, TripCompletionEventWriter)}.
+     */
+    private static void rethrowError(Throwable e) {
+        if (e instanceof Error error) {
+            throw error;
+        }
+    }
+
+    private static void join(Thread thread, AtomicReference<Throwable> failure) throws InterruptedIOException {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            failure.compareAndSet(null, e);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + thread.getName() + " to complete");
+        }
+    }
+
+    /**
+     * Collects the trips completed by the matcher into batches which are passed to the writer stage once full.
+     */
+    private static final class BatchSink implements TripCompletionEventSink {
+
+        private final StageQueue<TripCompletionEvent> completionEvents;
+        private List<TripCompletionEvent> batch = new ArrayList<>(BATCH_SIZE);
+
+        BatchSink(StageQueue<TripCompletionEvent> completionEvents) {
+            this.completionEvents = completionEvents;
+        }
+
+        @Override
+        public void write(TripCompletionEvent completionEvent) throws IOException {
+            batch.add(completionEvent);
+            if (batch.size() == BATCH_SIZE) {
+                completionEvents.put(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+
+        void flush() throws InterruptedIOException {
+            if (!batch.isEmpty()) {
+                completionEvents.put(batch);
+                batch = new ArrayList<>(0);
+            }
+        }
+    }
+
+    /**
+     * Passes the batches of events from one stage to the next in a bounded ring of batches. The end of the events is
+     * marked by a shared empty batch, a stage which fails drains the batches of the previous stage so the previous
+     * stage never blocks on a full queue.
+     */
+    private static final class StageQueue<T> {
+
+        private static final List<?> END_OF_EVENTS = new ArrayList<>(0);
+
+        private final BlockingQueue<List<T>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        // only read and written by the thread of the previous stage
+        private long putWaitNanos;
+
+        void put(List<T> batch) throws InterruptedIOException {
+            long startNanos = System.nanoTime();
+            try {
+                queue.put(batch);
+                putWaitNanos += System.nanoTime() - startNanos;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while passing events to the next stage");
+            }
+        }
+
+        /**
+         * Returns the time the previous stage was blocked on a full queue.
+         */
+        long putWaitNanos() {
+            return putWaitNanos;
+        }
+
+        /**
+         * Returns the next batch, or null once the previous stage finished.
+         */
+        List<T> take() throws InterruptedIOException {
+            try {
+                List<T> batch = queue.take();
+                return batch == END_OF_EVENTS ? null : batch;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for events of the previous stage");
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void finish(AtomicReference<Throwable> failure) {
+            try {
+                queue.put((List<T>) END_OF_EVENTS);
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, e);
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void drain() {
+            try {
+                while (queue.take() != END_OF_EVENTS) {
+                    // discard, the job has failed
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
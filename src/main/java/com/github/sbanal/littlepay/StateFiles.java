@@ -0,0 +1,140 @@
+package com.github.sbanal.littlepay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the binary files which keep the state of a job between runs. The files start with a magic
+ * number and a version, and are written to a temporary file synced to the storage device which then replaces the
+ * file, so the file is either the previous or the new state after a crash.
+ */
+final class StateFiles {
+
+    @FunctionalInterface
+    interface StateWriter {
+
+        void write(DataOutputStream out) throws IOException;
+
+    }
+
+    @FunctionalInterface
+    interface StateReader<T> {
+
+        T read(DataInputStream in) throws IOException;
+
+    }
+
+    private StateFiles() {
+    }
+
+    /**
+     * Reads the state file, returns null if the file does not exist.
+     */
+    static <T> T read(Path stateFile, int magic, int version, StateReader<T> reader) throws IOException {
+        InputStream inputStream;
+        try {
+            inputStream = Files.newInputStream(stateFile);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream))) {
+            if (in.readInt() != magic || in.readInt() != version) {
+                throw new IOException("Invalid state file " + stateFile);
+            }
+            return reader.read(in);
+        }
+    }
+
+    static void write(Path stateFile, int magic, int version, StateWriter writer) throws IOException {
+        Path tempFile = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOutputStream))) {
+            out.writeInt(magic);
+            out.writeInt(version);
+            writer.write(out);
+            out.flush();
+            fileOutputStream.getFD().sync();
+        }
+        Files.move(tempFile, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the tap on events of open trips. The stop, company and bus identifiers are written as strings since
+     * the symbol codes are only valid within a JVM, each distinct identifier is written once and then referred to by
+     * its index.
+     */
+    static void writeOpenTrips(DataOutputStream out, List<TripEvent> openTrips) throws IOException {
+        SymbolIndex symbols = new SymbolIndex();
+        out.writeInt(openTrips.size());
+        for (TripEvent tapOnTripEvent : openTrips) {
+            out.writeLong(tapOnTripEvent.id());
+            out.writeLong(tapOnTripEvent.dateTimeUtc().getEpochSecond());
+            out.writeByte(tapOnTripEvent.tapType().ordinal());
+            symbols.write(out, tapOnTripEvent.stopId());
+            symbols.write(out, tapOnTripEvent.companyId());
+            symbols.write(out, tapOnTripEvent.busId());
+            out.writeUTF(tapOnTripEvent.pan());
+        }
+    }
+
+    static List<TripEvent> readOpenTrips(DataInputStream in) throws IOException {
+        List<String> symbols = new ArrayList<>();
+        int openTripCount = in.readInt();
+        List<TripEvent> openTrips = new ArrayList<>(openTripCount);
+        for (int i = 0; i < openTripCount; i++) {
+            openTrips.add(new TripEvent(
+                    in.readLong(),
+                    Instant.ofEpochSecond(in.readLong()),
+                    TapType.values()[in.readByte()],
+                    readSymbol(in, symbols),
+                    readSymbol(in, symbols),
+                    readSymbol(in, symbols),
+                    in.readUTF()));
+        }
+        return openTrips;
+    }
+
+    private static String readSymbol(DataInputStream in, List<String> symbols) throws IOException {
+        int index = in.readInt();
+        if (index < symbols.size()) {
+            return symbols.get(index);
+        }
+        String symbol = in.readUTF();
+        symbols.add(symbol);
+        return symbol;
+    }
+
+    /**
+     * Indexes of the identifiers written so far, a new identifier is written as the next index followed by the
+     * identifier.
+     */
+    private static final class SymbolIndex {
+
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+        void write(DataOutputStream out, String symbol) throws IOException {
+            Integer index = indexes.get(symbol);
+            if (index != null) {
+                out.writeInt(index);
+                return;
+            }
+            out.writeInt(indexes.size());
+            out.writeUTF(symbol);
+            indexes.put(symbol, indexes.size());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.sbanal.littlepay;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps identifiers to dense int codes starting from 0, so the identifiers can be stored and compared as ints and
+ * used as array indexes. The codes are assigned on first use and are never removed, the tables are meant for the
+ * stop, company and bus identifiers which only have a few hundred distinct values. Instances are thread safe.
+ */
+class SymbolTable {
+
+    static final int NO_CODE = -1;
+
+    static final SymbolTable STOPS = new SymbolTable();
+    static final SymbolTable COMPANIES = new SymbolTable();
+    static final SymbolTable BUSES = new SymbolTable();
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[64];
+    private int size;
+
+    /**
+     * Returns the code of the value, assigning the next code if the value has no code yet. Returns
+     * {@link #NO_CODE} for a null value.
+     */
+    int code(String value) {
+        if (value == null) {
+            return NO_CODE;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : addCode(value);
+    }
+
+    /**
+     * Returns the code of the value or {@link #NO_CODE} if the value is null or has no code.
+     */
+    int find(String value) {
+        if (value == null) {
+            return NO_CODE;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : NO_CODE;
+    }
+
+    /**
+     * Returns the value of the code or null if the code is {@link #NO_CODE}.
+     */
+    String value(int code) {
+        return code == NO_CODE ? null : values[code];
+    }
+
+    /**
+     * Returns the number of codes assigned, all the codes are less than this value.
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    private synchronized int addCode(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        codes.put(value, size);
+        return size++;
+    }
+}
@@ -0,0 +1,234 @@
+package com.github.sbanal.littlepay;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.logging.Logger;
+
+/**
+ * Collects the tap events which cannot be matched into a trip. The anomalies are counted by stop and company and
+ * only the first few are kept as examples, so a feed where most taps are anomalous is processed as fast as a clean
+ * one. A warning is logged for the first anomaly and then at most once per log interval with the running count.
+ * <p>
+ * The rejected tap events can also be written to a side csv file, in the taps csv columns followed by the reason.
+ * Instances are thread safe and can be shared by the partitions of a job. A side file can be resumed from a checkpoint,
+ * it is truncated to the size it had when the checkpoint was written.
+ */
+public class TapAnomalyReport implements Closeable {
+
+    enum Reason {
+        TAP_OFF_WITHOUT_TAP_ON,
+        LATE_TAP
+    }
+
+    static final String[] HEADERS = {
+            "ID",
+            "DateTimeUTC",
+            "TapType",
+            "StopId",
+            "CompanyId",
+            "BusID",
+            "PAN",
+            "Reason"
+    };
+    static final int MAX_EXAMPLES = 10;
+
+    private static final Logger LOGGER = Logger.getLogger(TapAnomalyReport.class.getName());
+    private static final long LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int TOP_COUNTS = 10;
+
+    private final LongAdder anomalies = new LongAdder();
+    private final Map<Integer, LongAdder> anomaliesByStop = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> anomaliesByCompany = new ConcurrentHashMap<>();
+    private final AtomicInteger exampleCount = new AtomicInteger();
+    private final List<TripEvent> examples = new ArrayList<>(MAX_EXAMPLES);
+    private final AtomicLong nextLogNanos = new AtomicLong(System.nanoTime());
+    private final CSVPrinter rejectedTaps;
+    private final FileChannel channel;
+    private final UtcDateTimeCodec dateTimeCodec = new UtcDateTimeCodec();
+
+    public TapAnomalyReport() {
+        this.rejectedTaps = null;
+        this.channel = null;
+    }
+
+    /**
+     * Creates the report which also writes the rejected tap events to the given writer.
+     */
+    public TapAnomalyReport(Writer rejectedTapsWriter) throws IOException {
+        Objects.requireNonNull(rejectedTapsWriter, "rejectedTapsWriter cannot be null");
+        this.channel = null;
+        this.rejectedTaps = new CSVPrinter(rejectedTapsWriter, csvFormat(false));
+    }
+
+    /**
+     * Creates the report which writes the rejected tap events to the given file from the given position, the file
+     * is truncated to the position and the header is only written at position 0.
+     */
+    TapAnomalyReport(Path rejectedTapsCsv, long position) throws IOException {
+        this.channel = FileChannel.open(rejectedTapsCsv, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            channel.truncate(position).position(position);
+            this.rejectedTaps = new CSVPrinter(new BufferedWriter(Channels.newWriter(channel,
+                    StandardCharsets.UTF_8)), csvFormat(position > 0));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static CSVFormat csvFormat(boolean skipHeader) {
+        return CSVFormat.DEFAULT
+                .withHeader(HEADERS)
+                .withSkipHeaderRecord(skipHeader)
+                .withDelimiter(',')
+                .withRecordSeparator("\n");
+    }
+
+    /**
+     * Records a customer tap off event without a tap on event.
+     */
+    void orphanTapOff(TripEvent tripEvent) throws IOException {
+        reject(tripEvent, Reason.TAP_OFF_WITHOUT_TAP_ON);
+    }
+
+    /**
+     * Records a tap event which arrived later than the max lateness and could not be reordered.
+     */
+    void lateTap(TripEvent tripEvent) throws IOException {
+        reject(tripEvent, Reason.LATE_TAP);
+    }
+
+    private void reject(TripEvent tripEvent, Reason reason) throws IOException {
+        anomalies.increment();
+        anomaliesByStop.computeIfAbsent(tripEvent.stopCode(), code -> new LongAdder()).increment();
+        anomaliesByCompany.computeIfAbsent(tripEvent.companyCode(), code -> new LongAdder()).increment();
+        if (exampleCount.get() < MAX_EXAMPLES && exampleCount.getAndIncrement() < MAX_EXAMPLES) {
+            synchronized (examples) {
+                examples.add(tripEvent);
+            }
+        }
+        if (rejectedTaps != null) {
+            writeRejectedTap(tripEvent, reason);
+        }
+        long nowNanos = System.nanoTime();
+        long logNanos = nextLogNanos.get();
+        if (nowNanos - logNanos >= 0 && nextLogNanos.compareAndSet(logNanos, nowNanos + LOG_INTERVAL_NANOS)) {
+            LOGGER.warning("skipping, " + anomalies.sum() + " tap events could not be matched so far, last "
+                    + reason + " " + tripEvent);
+        }
+    }
+
+    private synchronized void writeRejectedTap(TripEvent tripEvent, Reason reason) throws IOException {
+        rejectedTaps.printRecord(
+                tripEvent.id(),
+                dateTimeCodec.format(tripEvent.dateTimeUtc().getEpochSecond()),
+                tripEvent.tapType().name(),
+                tripEvent.stopId(),
+                tripEvent.companyId(),
+                tripEvent.busId(),
+                tripEvent.pan(),
+                reason.name());
+    }
+
+    public long getAnomalies() {
+        return anomalies.sum();
+    }
+
+    /**
+     * Returns the number of anomalies of the stops with the most anomalies, ordered by count.
+     */
+    public Map<String, Long> getAnomaliesByStop() {
+        return topCounts(anomaliesByStop, SymbolTable.STOPS::value);
+    }
+
+    /**
+     * Returns the number of anomalies of the companies with the most anomalies, ordered by count.
+     */
+    public Map<String, Long> getAnomaliesByCompany() {
+        return topCounts(anomaliesByCompany, SymbolTable.COMPANIES::value);
+    }
+
+    /**
+     * Returns the first anomalous tap events, at most {@link #MAX_EXAMPLES}.
+     */
+    List<TripEvent> examples() {
+        synchronized (examples) {
+            return List.copyOf(examples);
+        }
+    }
+
+    /**
+     * Returns the anomaly counts and examples formatted for the job end log.
+     */
+    public String summary() {
+        StringBuilder summary = new StringBuilder()
+                .append("tap events which could not be matched: ").append(getAnomalies())
+                .append("\nby stop: ").append(getAnomaliesByStop())
+                .append("\nby company: ").append(getAnomaliesByCompany())
+                .append("\nexamples:");
+        for (TripEvent example : examples()) {
+            summary.append("\n  ").append(example);
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Flushes the rejected tap events written so far and forces them to the storage device when written to a file.
+     */
+    synchronized void sync() throws IOException {
+        if (rejectedTaps != null) {
+            rejectedTaps.flush();
+        }
+        if (channel != null) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the rejected taps file flushed so far, or 0 if the report is not written to a
+     * file.
+     */
+    synchronized long bytesWritten() throws IOException {
+        return channel != null ? channel.position() : 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (rejectedTaps != null) {
+            rejectedTaps.close();
+        }
+    }
+
+    private static Map<String, Long> topCounts(Map<Integer, LongAdder> counts, IntFunction<String> ids) {
+        Map<String, Long> topCounts = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue().sum()))
+                .sorted(Map.Entry.<Integer, Long>comparingByValue(Comparator.reverseOrder())
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(TOP_COUNTS)
+                .forEach(entry -> topCounts.put(String.valueOf(ids.apply(entry.getKey())), entry.getValue()));
+        return topCounts;
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.sbanal.littlepay;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+
+/**
+ * Generates synthetic trip cost and taps csv files for load testing. The stops are laid out on a line and every
+ * pair of stops within the route span has a route whose cost grows with the number of stops travelled, so every
+ * generated trip has a cost.
+ * <p>
+ * Tap ons arrive as a Poisson process at the configured rate and are made by a random customer who is not on a trip.
+ * A ratio of the trips tap off after an exponentially distributed trip duration, some of them at the tap on stop,
+ * the other trips are never tapped off. The taps are generated in time order and written as they are generated, only
+ * the trips waiting to be tapped off are kept in memory so files of any number of rows can be generated.
+ */
+class TapDataGenerator {
+
+    static final String TRIP_COST_HEADER = "FromStopId, ToStopId, Cost";
+    static final String TAPS_HEADER = "ID, DateTimeUTC, TapType, StopId, CompanyId, BusID, PAN";
+
+    private static final int BUSES = 100;
+    private static final int COMPANIES = 5;
+    private static final long FIRST_PAN = 4000_0000_0000_0000L;
+    private static final long BASE_FARE_CENTS = 200;
+    private static final long FARE_PER_STOP_CENTS = 75;
+
+    /**
+     * Receives the generated taps in time order.
+     */
+    @FunctionalInterface
+    interface TapSink {
+
+        void tap(long id, long epochSecond, TapType tapType, int stop, int bus, int pan) throws IOException;
+
+    }
+
+    private record PendingTapOff(double time, int stop, int bus, int pan) {
+    }
+
+    private final LittlePayGeneratorOptions options;
+    private final int routeSpan;
+
+    TapDataGenerator(LittlePayGeneratorOptions options) {
+        this.options = options;
+        int maxRouteSpan = options.stops() - 1;
+        this.routeSpan = options.routeSpan() == 0 ? maxRouteSpan : Math.min(options.routeSpan(), maxRouteSpan);
+    }
+
+    static String stopId(int stop) {
+        return "Stop" + (stop + 1);
+    }
+
+    static String busId(int bus) {
+        return "Bus" + (bus + 1);
+    }
+
+    static String companyId(int bus) {
+        return "Company" + (bus % COMPANIES + 1);
+    }
+
+    static String pan(int pan) {
+        return String.valueOf(FIRST_PAN + pan);
+    }
+
+    static long tripCost(int fromStop, int toStop) {
+        return BASE_FARE_CENTS + FARE_PER_STOP_CENTS * Math.abs(toStop - fromStop);
+    }
+
+    /**
+     * Writes the trip cost csv file and returns the number of routes written.
+     */
+    long writeTripCosts(Writer writer) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        writer.write(TRIP_COST_HEADER);
+        writer.write('\n');
+        long routes = 0;
+        for (int fromStop = 0; fromStop < options.stops(); fromStop++) {
+            for (int toStop = fromStop + 1; toStop <= fromStop + routeSpan && toStop < options.stops(); toStop++) {
+                line.setLength(0);
+                line.append(stopId(fromStop)).append(", ").append(stopId(toStop)).append(", ");
+                Money.appendDecimal(line, tripCost(fromStop, toStop));
+                line.append('\n');
+                writer.append(line);
+                routes++;
+            }
+        }
+        return routes;
+    }
+
+    /**
+     * Writes the taps csv file and returns the number of taps written.
+     */
+    long writeTaps(Writer writer) throws IOException {
+        UtcDateTimeCodec dateTimeCodec = new UtcDateTimeCodec();
+        StringBuilder line = new StringBuilder(128);
+        writer.write(TAPS_HEADER);
+        writer.write('\n');
+        return generateTaps((id, epochSecond, tapType, stop, bus, pan) -> {
+            line.setLength(0);
+            line.append(id).append(", ")
+                    .append(dateTimeCodec.format(epochSecond)).append(", ")
+                    .append(tapType.name()).append(", ")
+                    .append("Stop").append(stop + 1).append(", ")
+                    .append("Company").append(bus % COMPANIES + 1).append(", ")
+                    .append("Bus").append(bus + 1).append(", ")
+                    .append(FIRST_PAN + pan)
+                    .append('\n');
+            writer.append(line);
+        });
+    }
+
+    /**
+     * Generates the taps in time order and returns the number of taps generated.
+     */
+    long generateTaps(TapSink sink) throws IOException {
+        SplittableRandom random = new SplittableRandom(options.seed());
+        PriorityQueue<PendingTapOff> pendingTapOffs =
+                new PriorityQueue<>(Comparator.comparingDouble(PendingTapOff::time));
+        BitSet customersOnTrip = new BitSet(options.pans());
+        double meanTapOnInterval = 1 / options.tapsPerSecond();
+        double meanTripSeconds = options.meanTripDuration().toMillis() / 1000.0;
+        double time = options.start().getEpochSecond();
+        long id = 0;
+        while (id < options.rows()) {
+            time += exponential(random, meanTapOnInterval);
+            while (!pendingTapOffs.isEmpty() && pendingTapOffs.peek().time() <= time && id < options.rows()) {
+                PendingTapOff tapOff = pendingTapOffs.poll();
+                customersOnTrip.clear(tapOff.pan());
+                sink.tap(++id, (long) tapOff.time(), TapType.OFF, tapOff.stop(), tapOff.bus(), tapOff.pan());
+            }
+            int pan = random.nextInt(options.pans());
+            if (id == options.rows() || customersOnTrip.get(pan)) {
+                continue;
+            }
+            int stop = random.nextInt(options.stops());
+            int bus = random.nextInt(BUSES);
+            sink.tap(++id, (long) time, TapType.ON, stop, bus, pan);
+            if (random.nextDouble() < options.tapOffRatio()) {
+                int tapOffStop = random.nextDouble() < options.cancelRatio() ? stop : randomRouteStop(random, stop);
+                double tapOffTime = time + Math.max(1, exponential(random, meanTripSeconds));
+                pendingTapOffs.add(new PendingTapOff(tapOffTime, tapOffStop, bus, pan));
+                customersOnTrip.set(pan);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Returns a random stop other than the given stop which has a route from the given stop.
+     */
+    private int randomRouteStop(SplittableRandom random, int stop) {
+        int lowestStop = Math.max(0, stop - routeSpan);
+        int highestStop = Math.min(options.stops() - 1, stop + routeSpan);
+        int routeStop = lowestStop + random.nextInt(highestStop - lowestStop);
+        return routeStop >= stop ? routeStop + 1 : routeStop;
+    }
+
+    private static double exponential(SplittableRandom random, double mean) {
+        return -Math.log(1 - random.nextDouble()) * mean;
+    }
+}
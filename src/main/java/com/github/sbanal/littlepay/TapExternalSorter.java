@@ -0,0 +1,327 @@
+package com.github.sbanal.littlepay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts the tap events of a taps file which is not ordered by DateTimeUTC within a fixed memory budget, for files
+ * whose events arrive too far out of order for {@link TapReorderBuffer}. The tap events are read into runs of at most
+ * the run size, each run is sorted by DateTimeUTC and ID and spilled to a temporary file, and the runs are then merged
+ * k-way. At most fan-in runs are merged at once, more runs are first merged in passes of consecutive groups of fan-in
+ * runs into longer runs, so only the run size events and at most fan-in open files and read buffers are kept however
+ * large the taps file. The tap events of a file which fit in one run are sorted in memory without a temporary file.
+ * Tap events with the same DateTimeUTC and ID are returned in the order they were read.
+ * <p>
+ * The runs are written on the first call to {@link #hasNext()}, the runs of a pass are deleted once merged and the
+ * last runs on close. A run stores each tap event in 42 bytes with the stop, company and bus as their
+ * {@link SymbolTable} codes, which are valid since the runs are only read by the JVM which wrote them.
+ */
+final class TapExternalSorter implements Iterator<TripEvent>, Closeable {
+
+    static final int DEFAULT_RUN_SIZE = 1 << 20;
+    static final int DEFAULT_FAN_IN = 64;
+
+    private static final int RUN_BUFFER_SIZE = 1 << 16;
+    private static final TapType[] TAP_TYPES = TapType.values();
+
+    private final Iterator<TripEvent> tripEvents;
+    private final Path sortDir;
+    private final int runSize;
+    private final int fanIn;
+    // the run files not yet deleted, in the order of their tap events
+    private final List<Path> runFiles = new ArrayList<>();
+    private final List<RunReader> runReaders = new ArrayList<>();
+    private int spilledRuns;
+    private Iterator<TripEvent> sortedTripEvents;
+
+    /**
+     * Creates the sorter which writes its runs to the given directory.
+     */
+    TapExternalSorter(Iterator<TripEvent> tripEvents, Path sortDir, int runSize) {
+        this(tripEvents, sortDir, runSize, DEFAULT_FAN_IN);
+    }
+
+    TapExternalSorter(Iterator<TripEvent> tripEvents, Path sortDir, int runSize, int fanIn) {
+        if (runSize < 1) {
+            throw new IllegalArgumentException("Invalid run size, value must be positive");
+        }
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("Invalid fan-in, value must be at least 2");
+        }
+        this.tripEvents = tripEvents;
+        this.sortDir = sortDir;
+        this.runSize = runSize;
+        this.fanIn = fanIn;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (sortedTripEvents == null) {
+            try {
+                sortedTripEvents = sortRuns();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return sortedTripEvents.hasNext();
+    }
+
+    @Override
+    public TripEvent next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return sortedTripEvents.next();
+    }
+
+    /**
+     * Returns the number of runs spilled to temporary files, 0 if the tap events were sorted in memory.
+     */
+    int runs() {
+        return spilledRuns;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (RunReader runReader : runReaders) {
+            try {
+                runReader.close();
+            } catch (IOException e) {
+                failure = addSuppressed(failure, e);
+            }
+        }
+        for (Path runFile : runFiles) {
+            try {
+                Files.deleteIfExists(runFile);
+            } catch (IOException e) {
+                failure = addSuppressed(failure, e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private Iterator<TripEvent> sortRuns() throws IOException {
+        List<TripEvent> run = new ArrayList<>();
+        while (tripEvents.hasNext()) {
+            run.add(tripEvents.next());
+            if (run.size() == runSize) {
+                spill(run);
+            }
+        }
+        if (runFiles.isEmpty()) {
+            run.sort(TripEvent.DATE_TIME_UTC_ORDER);
+            return run.iterator();
+        }
+        if (!run.isEmpty()) {
+            spill(run);
+        }
+        while (runFiles.size() > fanIn) {
+            mergePass();
+        }
+        openRunReaders(runFiles);
+        return new RunMerger(runReaders);
+    }
+
+    /**
+     * Sorts the run and writes it to a new temporary file, the run is cleared so its capacity is reused.
+     */
+    private void spill(List<TripEvent> run) throws IOException {
+        run.sort(TripEvent.DATE_TIME_UTC_ORDER);
+        runFiles.add(writeRun(run.size(), run.iterator()));
+        spilledRuns++;
+        run.clear();
+    }
+
+    /**
+     * Merges each consecutive group of fan-in runs into one run which replaces the group, so the tap events of
+     * the merged runs keep their order.
+     */
+    private void mergePass() throws IOException {
+        List<Path> mergedRunFiles = new ArrayList<>();
+        try {
+            for (int start = 0; start < runFiles.size(); start += fanIn) {
+                List<Path> group = runFiles.subList(start, Math.min(start + fanIn, runFiles.size()));
+                if (group.size() == 1) {
+                    mergedRunFiles.add(group.get(0));
+                    continue;
+                }
+                openRunReaders(group);
+                long size = 0;
+                for (RunReader runReader : runReaders) {
+                    size += runReader.size;
+                }
+                mergedRunFiles.add(writeRun(size, new RunMerger(runReaders)));
+                closeRunReaders();
+                for (Path runFile : group) {
+                    Files.delete(runFile);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // the runs of the pass are deleted on close
+            for (Path mergedRunFile : mergedRunFiles) {
+                Files.deleteIfExists(mergedRunFile);
+            }
+            throw e;
+        }
+        runFiles.clear();
+        runFiles.addAll(mergedRunFiles);
+    }
+
+    private Path writeRun(long size, Iterator<TripEvent> sortedRun) throws IOException {
+        Path runFile = Files.createTempFile(sortDir, "taps-run-", ".bin");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(runFile), RUN_BUFFER_SIZE))) {
+            out.writeLong(size);
+            while (sortedRun.hasNext()) {
+                TripEvent tripEvent = sortedRun.next();
+                out.writeLong(tripEvent.dateTimeUtc().getEpochSecond());
+                out.writeInt(tripEvent.dateTimeUtc().getNano());
+                out.writeBoolean(tripEvent.id() != null);
+                out.writeLong(tripEvent.id() != null ? tripEvent.id() : 0);
+                out.writeByte(tripEvent.tapType().ordinal());
+                out.writeInt(tripEvent.stopCode());
+                out.writeInt(tripEvent.companyCode());
+                out.writeInt(tripEvent.busCode());
+                out.writeLong(tripEvent.packedPan());
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(runFile);
+            throw e;
+        }
+        return runFile;
+    }
+
+    private void openRunReaders(List<Path> files) throws IOException {
+        for (Path runFile : files) {
+            runReaders.add(new RunReader(runFile, runReaders.size()));
+        }
+    }
+
+    private void closeRunReaders() throws IOException {
+        try {
+            for (RunReader runReader : runReaders) {
+                runReader.close();
+            }
+        } finally {
+            runReaders.clear();
+        }
+    }
+
+    private static IOException addSuppressed(IOException failure, IOException e) {
+        if (failure == null) {
+            return e;
+        }
+        failure.addSuppressed(e);
+        return failure;
+    }
+
+    /**
+     * Reads the tap events of a run one at a time, the current tap event is null once the run is read.
+     */
+    private static final class RunReader implements Closeable {
+
+        private final DataInputStream in;
+        private final int index;
+        private final long size;
+        private long remaining;
+        private TripEvent tripEvent;
+
+        RunReader(Path runFile, int index) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(runFile), RUN_BUFFER_SIZE));
+            this.index = index;
+            try {
+                this.size = in.readLong();
+                this.remaining = size;
+                advance();
+            } catch (IOException | RuntimeException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        void advance() throws IOException {
+            if (remaining == 0) {
+                tripEvent = null;
+                return;
+            }
+            remaining--;
+            Instant dateTimeUtc = Instant.ofEpochSecond(in.readLong(), in.readInt());
+            boolean hasId = in.readBoolean();
+            long id = in.readLong();
+            tripEvent = new TripEvent(
+                    hasId ? id : null,
+                    dateTimeUtc,
+                    TAP_TYPES[in.readByte()],
+                    in.readInt(),
+                    in.readInt(),
+                    in.readInt(),
+                    in.readLong());
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Merges the runs by returning the smallest current tap event of the runs, the tap events which are equal are
+     * returned in run order so the sort is stable.
+     */
+    private static final class RunMerger implements Iterator<TripEvent> {
+
+        private final PriorityQueue<RunReader> runReaders = new PriorityQueue<>(
+                Comparator.<RunReader, TripEvent>comparing(runReader -> runReader.tripEvent,
+                                TripEvent.DATE_TIME_UTC_ORDER)
+                        .thenComparingInt(runReader -> runReader.index));
+
+        RunMerger(List<RunReader> runReaders) {
+            for (RunReader runReader : runReaders) {
+                if (runReader.tripEvent != null) {
+                    this.runReaders.add(runReader);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !runReaders.isEmpty();
+        }
+
+        @Override
+        public TripEvent next() {
+            RunReader runReader = runReaders.poll();
+            if (runReader == null) {
+                throw new NoSuchElementException();
+            }
+            TripEvent tripEvent = runReader.tripEvent;
+            try {
+                runReader.advance();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (runReader.tripEvent != null) {
+                runReaders.add(runReader);
+            }
+            return tripEvent;
+        }
+    }
+
+}
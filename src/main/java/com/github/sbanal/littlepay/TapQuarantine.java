@@ -0,0 +1,143 @@
+package com.github.sbanal.littlepay;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Skips the tap records which cannot be parsed so a batch is not aborted by a few malformed rows. The skipped
+ * records can be written to a quarantine csv file with their line number and reason code, to be fixed and
+ * reprocessed. The parsing is aborted once the number of invalid records exceeds the error budget.
+ * <p>
+ * A quarantine written to a file can be resumed from a checkpoint, the file is truncated to the size it had when
+ * the checkpoint was written and the invalid records counted before the checkpoint count against the error budget.
+ */
+public class TapQuarantine implements InvalidTripEventHandler, Closeable {
+
+    static final String[] HEADERS = {
+            "LineNumber",
+            "Reason",
+            "Message",
+            "Record"
+    };
+
+    private final CSVPrinter quarantinedTaps;
+    private final FileChannel channel;
+    private final long maxInvalidTripEvents;
+    private volatile long invalidTripEvents;
+
+    /**
+     * Creates the quarantine which only counts the invalid records.
+     */
+    public TapQuarantine(long maxInvalidTripEvents) {
+        this.quarantinedTaps = null;
+        this.channel = null;
+        this.maxInvalidTripEvents = validateMaxInvalidTripEvents(maxInvalidTripEvents);
+    }
+
+    /**
+     * Creates the quarantine which writes the invalid records to the given writer.
+     */
+    public TapQuarantine(Writer quarantineWriter, long maxInvalidTripEvents) throws IOException {
+        Objects.requireNonNull(quarantineWriter, "quarantineWriter cannot be null");
+        this.maxInvalidTripEvents = validateMaxInvalidTripEvents(maxInvalidTripEvents);
+        this.channel = null;
+        this.quarantinedTaps = new CSVPrinter(quarantineWriter, csvFormat(false));
+    }
+
+    /**
+     * Creates the quarantine which writes the invalid records to the given file from the given position, the file
+     * is truncated to the position and the header is only written at position 0. The given number of invalid records
+     * were skipped before the position.
+     */
+    TapQuarantine(Path quarantineCsv, long position, long invalidTripEvents, long maxInvalidTripEvents)
+            throws IOException {
+        this.maxInvalidTripEvents = validateMaxInvalidTripEvents(maxInvalidTripEvents);
+        this.invalidTripEvents = invalidTripEvents;
+        this.channel = FileChannel.open(quarantineCsv, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            channel.truncate(position).position(position);
+            this.quarantinedTaps = new CSVPrinter(new BufferedWriter(Channels.newWriter(channel,
+                    StandardCharsets.UTF_8)), csvFormat(position > 0));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static CSVFormat csvFormat(boolean skipHeader) {
+        return CSVFormat.DEFAULT
+                .withHeader(HEADERS)
+                .withSkipHeaderRecord(skipHeader)
+                .withDelimiter(',')
+                .withRecordSeparator("\n");
+    }
+
+    private static long validateMaxInvalidTripEvents(long maxInvalidTripEvents) {
+        if (maxInvalidTripEvents < 0) {
+            throw new IllegalArgumentException("Invalid max invalid trip events, value must not be negative");
+        }
+        return maxInvalidTripEvents;
+    }
+
+    @Override
+    public synchronized void invalidTripEvent(long lineNumber, String record, InvalidTripEventException e) {
+        invalidTripEvents++;
+        if (quarantinedTaps != null) {
+            try {
+                quarantinedTaps.printRecord(lineNumber, e.reason().name(), e.getMessage(), record);
+            } catch (IOException ioException) {
+                throw new UncheckedIOException(ioException);
+            }
+        }
+        if (invalidTripEvents > maxInvalidTripEvents) {
+            throw new InvalidTripEventException(e.reason(), "Invalid trip events exceed the error budget of "
+                    + maxInvalidTripEvents + ", line " + lineNumber + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the number of invalid records skipped so far, including the record exceeding the error budget.
+     */
+    public long invalidTripEvents() {
+        return invalidTripEvents;
+    }
+
+    /**
+     * Flushes the invalid records written so far and forces them to the storage device when written to a file.
+     */
+    synchronized void sync() throws IOException {
+        if (quarantinedTaps != null) {
+            quarantinedTaps.flush();
+        }
+        if (channel != null) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Returns the number of bytes of the quarantine file flushed so far, or 0 if the quarantine is not written to a
+     * file.
+     */
+    synchronized long bytesWritten() throws IOException {
+        return channel != null ? channel.position() : 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (quarantinedTaps != null) {
+            quarantinedTaps.close();
+        }
+    }
+}
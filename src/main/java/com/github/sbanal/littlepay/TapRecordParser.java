@@ -0,0 +1,274 @@
+package com.github.sbanal.littlepay;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parses the tap records of the taps csv file directly from the bytes of a buffer, without the intermediate
+ * strings and formatters used by the csv parser. The ID, DateTimeUTC and TapType values are parsed from the bytes,
+ * the DateTimeUTC using {@link UtcDateTimeCodec}, and the PAN is packed from its digits by {@link Pan}. The stop,
+ * company and bus values are looked up by their bytes in a cache of their {@link SymbolTable} codes, only the values
+ * not seen before are decoded into strings. Any value which cannot be parsed by this fast path is parsed by
+ * {@link TripEventReader#toTripEvent} so the trip events and errors are the same as when parsed by the csv parser.
+ * Records must not contain quoted values.
+ * <p>
+ * Instances keep the positions of the current record and should be used by a single thread.
+ */
+class TapRecordParser {
+
+    static final String[] COLUMNS = {"ID", "DateTimeUTC", "TapType", "StopId", "CompanyId", "BusID", "PAN"};
+    private static final int ID = 0;
+    private static final int DATE_TIME_UTC = 1;
+    private static final int TAP_TYPE = 2;
+    private static final int STOP_ID = 3;
+    private static final int COMPANY_ID = 4;
+    private static final int BUS_ID = 5;
+    private static final int PAN = 6;
+    private static final long INVALID = UtcDateTimeCodec.INVALID;
+
+    private final int[] fieldOfColumn;
+    private final String missingColumn;
+    private final int[] fieldStart = new int[COLUMNS.length];
+    private final int[] fieldEnd = new int[COLUMNS.length];
+    private final SymbolCache stopCodes = new SymbolCache(SymbolTable.STOPS);
+    private final SymbolCache companyCodes = new SymbolCache(SymbolTable.COMPANIES);
+    private final SymbolCache busCodes = new SymbolCache(SymbolTable.BUSES);
+    private byte[] scratch = new byte[64];
+
+    TapRecordParser(String headerLine) {
+        List<String> headers = new ArrayList<>();
+        for (String header : headerLine.strip().split(",", -1)) {
+            headers.add(header.strip().toUpperCase(Locale.ROOT));
+        }
+        this.fieldOfColumn = new int[headers.size()];
+        Arrays.fill(fieldOfColumn, -1);
+        String missingColumn = null;
+        for (int field = 0; field < COLUMNS.length; field++) {
+            int column = headers.indexOf(COLUMNS[field].toUpperCase(Locale.ROOT));
+            if (column < 0) {
+                missingColumn = missingColumn == null ? COLUMNS[field] : missingColumn;
+            } else {
+                fieldOfColumn[column] = field;
+            }
+        }
+        this.missingColumn = missingColumn;
+    }
+
+    /**
+     * Returns the position of the line separator of the line starting at the given position, or the limit if the
+     * line has no line separator.
+     */
+    static int findLineEnd(ByteBuffer buffer, int position, int limit) {
+        for (int i = position; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    static boolean isBlank(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if ((buffer.get(i) & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses the record of the line between the given positions, excluding the line separator.
+     */
+    TripEvent parse(ByteBuffer buffer, int lineStart, int lineEnd) {
+        if (missingColumn != null) {
+            throw new InvalidTripEventException("Invalid trip event, column '" + missingColumn + "' not found");
+        }
+        Arrays.fill(fieldStart, -1);
+        int column = 0;
+        int valueStart = lineStart;
+        for (int i = lineStart; i <= lineEnd; i++) {
+            if (i == lineEnd || buffer.get(i) == ',') {
+                if (column < fieldOfColumn.length && fieldOfColumn[column] >= 0) {
+                    int start = valueStart;
+                    int end = i;
+                    while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+                        start++;
+                    }
+                    while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+                        end--;
+                    }
+                    fieldStart[fieldOfColumn[column]] = start;
+                    fieldEnd[fieldOfColumn[column]] = end;
+                }
+                column++;
+                valueStart = i + 1;
+            }
+        }
+        for (int field = 0; field < COLUMNS.length; field++) {
+            if (fieldStart[field] < 0) {
+                throw new InvalidTripEventException("Invalid trip event, expected " + COLUMNS.length + " columns");
+            }
+        }
+
+        long id = parseId(buffer);
+        long epochSecond = UtcDateTimeCodec.parseEpochSecond(
+                buffer, fieldStart[DATE_TIME_UTC], fieldEnd[DATE_TIME_UTC]);
+        TapType tapType = parseTapType(buffer);
+        long packedPan = Pan.parse(buffer, fieldStart[PAN], fieldEnd[PAN]);
+        if (id == INVALID || epochSecond == INVALID || tapType == null || packedPan == Pan.INVALID
+                || hasEmptyValue()) {
+            return TripEventReader.toTripEvent(
+                    decodeField(buffer, ID),
+                    decodeField(buffer, DATE_TIME_UTC),
+                    decodeField(buffer, TAP_TYPE),
+                    decodeField(buffer, STOP_ID),
+                    decodeField(buffer, COMPANY_ID),
+                    decodeField(buffer, BUS_ID),
+                    decodeField(buffer, PAN));
+        }
+        return new TripEvent(
+                id,
+                Instant.ofEpochSecond(epochSecond),
+                tapType,
+                stopCodes.code(buffer, fieldStart[STOP_ID], fieldEnd[STOP_ID]),
+                companyCodes.code(buffer, fieldStart[COMPANY_ID], fieldEnd[COMPANY_ID]),
+                busCodes.code(buffer, fieldStart[BUS_ID], fieldEnd[BUS_ID]),
+                packedPan);
+    }
+
+    private boolean hasEmptyValue() {
+        for (int field = STOP_ID; field <= PAN; field++) {
+            if (fieldStart[field] == fieldEnd[field]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String decodeField(ByteBuffer buffer, int field) {
+        int length = fieldEnd[field] - fieldStart[field];
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(fieldStart[field], scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses unsigned ids of up to 18 digits, anything else is left to {@link Long#parseLong}.
+     */
+    private long parseId(ByteBuffer buffer) {
+        int start = fieldStart[ID];
+        int end = fieldEnd[ID];
+        if (start == end || end - start > 18) {
+            return INVALID;
+        }
+        long id = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            id = id * 10 + digit;
+        }
+        return id;
+    }
+
+    private TapType parseTapType(ByteBuffer buffer) {
+        int start = fieldStart[TAP_TYPE];
+        int length = fieldEnd[TAP_TYPE] - start;
+        if (length == 2 && buffer.get(start) == 'O' && buffer.get(start + 1) == 'N') {
+            return TapType.ON;
+        }
+        if (length == 3 && buffer.get(start) == 'O' && buffer.get(start + 1) == 'F' && buffer.get(start + 2) == 'F') {
+            return TapType.OFF;
+        }
+        return null;
+    }
+
+    /**
+     * Open addressing cache of the symbol codes keyed by the bytes of the values, so the values seen before are
+     * neither decoded nor hashed as strings.
+     */
+    private static final class SymbolCache {
+
+        private final SymbolTable symbolTable;
+        private byte[][] keys = new byte[256][];
+        private int[] codes = new int[256];
+        private int size;
+
+        SymbolCache(SymbolTable symbolTable) {
+            this.symbolTable = symbolTable;
+        }
+
+        int code(ByteBuffer buffer, int start, int end) {
+            int mask = keys.length - 1;
+            int slot = hash(buffer, start, end) & mask;
+            while (keys[slot] != null) {
+                if (matches(keys[slot], buffer, start, end)) {
+                    return codes[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            byte[] key = new byte[end - start];
+            buffer.get(start, key);
+            int code = symbolTable.code(new String(key, StandardCharsets.UTF_8));
+            keys[slot] = key;
+            codes[slot] = code;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+            return code;
+        }
+
+        private void resize() {
+            byte[][] oldKeys = keys;
+            int[] oldCodes = codes;
+            keys = new byte[oldKeys.length * 2][];
+            codes = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    ByteBuffer key = ByteBuffer.wrap(oldKeys[i]);
+                    int slot = hash(key, 0, oldKeys[i].length) & mask;
+                    while (keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    codes[slot] = oldCodes[i];
+                }
+            }
+        }
+
+        private static int hash(ByteBuffer buffer, int start, int end) {
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        private static boolean matches(byte[] key, ByteBuffer buffer, int start, int end) {
+            if (key.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buffer.get(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.sbanal.littlepay;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Reorders the tap events of a feed where events arrive up to a max lateness after later events, e.g. device uploads
+ * which arrive minutes late, so they are matched in DateTimeUTC order. The events are kept in a min heap ordered by
+ * DateTimeUTC and ID and an event is only released once it is older than the watermark, the latest DateTimeUTC read
+ * less the max lateness, so only the events of the lateness window are kept in memory. An event older than the
+ * watermark arrived too late to be reordered and is passed to the late tap handler instead of being released.
+ * <p>
+ * The remaining events are released once the tap events are all read. Instances are not thread safe.
+ */
+final class TapReorderBuffer implements Iterator<TripEvent> {
+
+    private final Iterator<TripEvent> tripEvents;
+    private final Duration maxLateness;
+    private final Consumer<TripEvent> lateTapHandler;
+    private final PriorityQueue<TripEvent> window = new PriorityQueue<>(TripEvent.DATE_TIME_UTC_ORDER);
+    private Instant watermark = Instant.MIN;
+
+    TapReorderBuffer(Iterator<TripEvent> tripEvents, Duration maxLateness, Consumer<TripEvent> lateTapHandler) {
+        if (maxLateness.isNegative() || maxLateness.isZero()) {
+            throw new IllegalArgumentException("Invalid max lateness, value must be positive");
+        }
+        this.tripEvents = tripEvents;
+        this.maxLateness = maxLateness;
+        this.lateTapHandler = lateTapHandler;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (window.isEmpty() || !window.peek().dateTimeUtc().isBefore(watermark)) {
+            if (!tripEvents.hasNext()) {
+                return !window.isEmpty();
+            }
+            add(tripEvents.next());
+        }
+        return true;
+    }
+
+    @Override
+    public TripEvent next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return window.poll();
+    }
+
+    /**
+     * Returns the number of tap events waiting for the watermark.
+     */
+    int size() {
+        return window.size();
+    }
+
+    private void add(TripEvent tripEvent) {
+        // the events older than the watermark may already have been released
+        if (tripEvent.dateTimeUtc().isBefore(watermark)) {
+            lateTapHandler.accept(tripEvent);
+            return;
+        }
+        window.add(tripEvent);
+        Instant eventWatermark = tripEvent.dateTimeUtc().minus(maxLateness);
+        if (eventWatermark.isAfter(watermark)) {
+            watermark = eventWatermark;
+        }
+    }
+
+}
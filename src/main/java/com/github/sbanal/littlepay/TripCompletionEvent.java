@@ -2,7 +2,40 @@ package com.github.sbanal.littlepay;
 
 import java.time.Instant;
 
-record TripCompletionEvent(Instant started, Instant finished, Long durationSecs, String fromStopId, String toStopId,
-                           float chargeAmount, String companyId, String busId, String pan, TripCompletionStatus status) {
+/**
+ * Trip completion event where the stop, company and bus identifiers are stored as codes of the {@link SymbolTable},
+ * the to stop code is {@link SymbolTable#NO_CODE} for incomplete trips. The charge is in cents and the PAN is packed
+ * by {@link Pan}.
+ */
+record TripCompletionEvent(Instant started, Instant finished, Long durationSecs, int fromStopCode, int toStopCode,
+                           long chargeCents, int companyCode, int busCode, long packedPan,
+                           TripCompletionStatus status) {
 
+    TripCompletionEvent(Instant started, Instant finished, Long durationSecs, String fromStopId, String toStopId,
+                        long chargeCents, String companyId, String busId, String pan,
+                        TripCompletionStatus status) {
+        this(started, finished, durationSecs, SymbolTable.STOPS.code(fromStopId), SymbolTable.STOPS.code(toStopId),
+                chargeCents, SymbolTable.COMPANIES.code(companyId), SymbolTable.BUSES.code(busId), Pan.parse(pan),
+                status);
+    }
+
+    String fromStopId() {
+        return SymbolTable.STOPS.value(fromStopCode);
+    }
+
+    String toStopId() {
+        return SymbolTable.STOPS.value(toStopCode);
+    }
+
+    String companyId() {
+        return SymbolTable.COMPANIES.value(companyCode);
+    }
+
+    String busId() {
+        return SymbolTable.BUSES.value(busCode);
+    }
+
+    String pan() {
+        return Pan.format(packedPan);
+    }
 }
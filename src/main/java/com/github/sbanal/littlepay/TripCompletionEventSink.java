@@ -0,0 +1,13 @@
+package com.github.sbanal.littlepay;
+
+import java.io.IOException;
+
+/**
+ * Receives the trip completion events as soon as the trip is completed, cancelled or considered incomplete.
+ */
+@FunctionalInterface
+interface TripCompletionEventSink {
+
+    void write(TripCompletionEvent completionEvent) throws IOException;
+
+}
@@ -0,0 +1,14 @@
+package com.github.sbanal.littlepay;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Opens the writer of a trips csv file, used by the services which write more than one trips csv file.
+ */
+@FunctionalInterface
+public interface TripCompletionEventWriterFactory {
+
+    TripCompletionEventWriter open(Path tripsCsv) throws IOException;
+
+}
@@ -0,0 +1,90 @@
+package com.github.sbanal.littlepay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reloads the trip costs of a {@link TripCostService} when its trip cost csv file is modified, the modification time
+ * is checked every interval on a background thread. The new version is effective from the time it is loaded, so the
+ * trips tapped on before the file was reloaded keep their previous cost whatever the modification time of the file,
+ * e.g. a file copied with its original time. The file should be replaced by renaming a complete file over it.
+ */
+class TripCostReloader implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(TripCostReloader.class.getName());
+
+    private final TripCostService tripCostService;
+    private final Path tripCostCsv;
+    private final Clock clock;
+    private final ScheduledExecutorService executorService;
+    private FileTime lastModifiedTime;
+
+    /**
+     * Creates the reloader of the trip costs loaded from the current content of the trip cost csv file.
+     */
+    TripCostReloader(TripCostService tripCostService, Path tripCostCsv) throws IOException {
+        this(tripCostService, tripCostCsv, Clock.systemUTC());
+    }
+
+    TripCostReloader(TripCostService tripCostService, Path tripCostCsv, Clock clock) throws IOException {
+        this.tripCostService = tripCostService;
+        this.tripCostCsv = tripCostCsv;
+        this.clock = clock;
+        this.lastModifiedTime = Files.getLastModifiedTime(tripCostCsv);
+        this.executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "trip-cost-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts checking the trip cost csv file every interval.
+     */
+    void start(Duration interval) {
+        executorService.scheduleWithFixedDelay(() -> {
+            try {
+                reloadIfModified();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to reload " + tripCostCsv + ", keeping version "
+                        + tripCostService.version(), e);
+            }
+        }, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Reloads the trip costs if the trip cost csv file was modified since the last load, returns true if reloaded.
+     * A file which cannot be loaded is retried on the next check.
+     */
+    synchronized boolean reloadIfModified() throws IOException {
+        FileTime modifiedTime = Files.getLastModifiedTime(tripCostCsv);
+        if (modifiedTime.equals(lastModifiedTime)) {
+            return false;
+        }
+        Instant effectiveFrom = clock.instant();
+        try (Reader reader = Files.newBufferedReader(tripCostCsv)) {
+            long version = tripCostService.reload(reader, effectiveFrom);
+            LOGGER.info("Reloaded " + tripCostCsv + " as version " + version + " effective from " + effectiveFrom);
+        }
+        lastModifiedTime = modifiedTime;
+        return true;
+    }
+
+    @Override
+    public void close() {
+        executorService.shutdownNow();
+    }
+
+}
@@ -3,95 +3,164 @@ package com.github.sbanal.littlepay;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
-import org.apache.commons.lang3.StringUtils;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.util.*;
+import java.time.Instant;
+import java.util.Arrays;
 
+/**
+ * Keeps the versions of the trip costs as immutable {@link TripCostTable}s, each effective for the trips tapped on
+ * from its effective time. A new version is built from a trip cost csv file by {@link #reload(Reader, Instant)} while
+ * trips are costed against the previous versions, and is published by atomically replacing the array of versions,
+ * so the readers never lock or wait. A trip is costed against the version effective at its tap on time, the trips
+ * tapped on before the first version are costed against the first version.
+ * <p>
+ * The trip costs of the first version can be changed by {@link #load(Reader)}, {@link #addTripCost(String, String,
+ * long)} and {@link #calculateIncompleteTripCost()} until the first reload, these methods are meant to prepare the
+ * trip costs before the tap events are processed and are not thread safe.
+ */
 public class TripCostService {
-    private static final float CANCELLED_TRIP_COST = 0.0f;
 
-    private final Set<String> routeStops = new HashSet<>();
-    private final Map<TripRoute, Float> tripCostTable = new HashMap<>();
-    private final Map<String, Set<String>> routeEdges = new HashMap<>();
+    /**
+     * Default max number of versions kept, the trips tapped on before the oldest kept version are costed against it.
+     */
+    static final int MAX_VERSIONS = 8;
 
-    public void load(Reader reader) throws IOException {
-        try (CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT
-                .withFirstRecordAsHeader()
-                .withIgnoreHeaderCase()
-                .withTrim())) {
-            for (CSVRecord csvRecord : csvParser.getRecords()) {
-                addTripCost(
-                        csvRecord.get("FromStopId"),
-                        csvRecord.get("ToStopId"),
-                        Float.parseFloat(csvRecord.get("Cost"))
-                );
-            }
-        }
-        calculateIncompleteTripCost();
+    private final int maxVersions;
+    private volatile TripCostTable[] versions = {new TripCostTable(1, Instant.MIN)};
+
+    public TripCostService() {
+        this(MAX_VERSIONS);
     }
 
-    public void addTripCost(String routeStartStopId, String routeEndStopId, Float tripCost) {
-        if (StringUtils.isEmpty(routeStartStopId)) {
-            throw new IllegalArgumentException("Invalid route start stop id");
+    TripCostService(int maxVersions) {
+        if (maxVersions < 1) {
+            throw new IllegalArgumentException("Invalid max versions, value must be positive");
         }
-        if (StringUtils.isEmpty(routeEndStopId)) {
-            throw new IllegalArgumentException("Invalid route end stop id");
-        }
-        if (StringUtils.equals(routeStartStopId, routeEndStopId)) {
-            throw new IllegalArgumentException("Invalid route start and route end stop id, values cannot be the same");
-        }
-        this.routeStops.add(routeStartStopId);
-        this.routeStops.add(routeEndStopId);
-        this.tripCostTable.put(new TripRoute(routeStartStopId, routeEndStopId), tripCost);
-        this.tripCostTable.put(new TripRoute(routeEndStopId, routeStartStopId), tripCost);
-        addEdge(routeStartStopId, routeEndStopId);
-        addEdge(routeEndStopId, routeStartStopId);
+        this.maxVersions = maxVersions;
+    }
+
+    public void load(Reader reader) throws IOException {
+        TripCostTable tripCostTable = firstVersion();
+        readTripCosts(reader, tripCostTable);
+        tripCostTable.calculateIncompleteTripCost();
     }
 
-    private void addEdge(String routeStartStopId, String routeEndStopId) {
-        Set<String> routeEdges = this.routeEdges.get(routeStartStopId);
-        if (routeEdges == null) {
-            this.routeEdges.put(routeStartStopId, new HashSet<>(Collections.singletonList(routeEndStopId)));
-        } else {
-            routeEdges.add(routeEndStopId);
+    /**
+     * Builds a new version of the trip costs from the trip cost csv file and publishes it, the trips tapped on from
+     * the effective time are costed against the new version. The effective time must be after the effective time of
+     * the latest version. Returns the version number.
+     */
+    public synchronized long reload(Reader reader, Instant effectiveFrom) throws IOException {
+        TripCostTable[] currentVersions = versions;
+        TripCostTable latest = currentVersions[currentVersions.length - 1];
+        if (!effectiveFrom.isAfter(latest.effectiveFrom())) {
+            throw new IllegalArgumentException("Invalid effective time " + effectiveFrom
+                    + ", value must be after the effective time of version " + latest.version());
         }
+        TripCostTable tripCostTable = new TripCostTable(latest.version() + 1, effectiveFrom);
+        readTripCosts(reader, tripCostTable);
+        tripCostTable.calculateIncompleteTripCost();
+
+        int keptVersions = Math.min(currentVersions.length, maxVersions - 1);
+        TripCostTable[] newVersions = Arrays.copyOfRange(currentVersions, currentVersions.length - keptVersions,
+                currentVersions.length + 1);
+        newVersions[keptVersions] = tripCostTable;
+        versions = newVersions;
+        return tripCostTable.version();
+    }
+
+    public void addTripCost(String routeStartStopId, String routeEndStopId, long tripCost) {
+        firstVersion().addTripCost(routeStartStopId, routeEndStopId, tripCost);
     }
 
     public void calculateIncompleteTripCost() {
-        for (String routeStartStopId : this.routeStops) {
-            float maxCost = Float.MIN_VALUE;
-            for (String routeEndStopId : this.routeEdges.get(routeStartStopId)) {
-                maxCost = Math.max(this.tripCostTable.get(new TripRoute(routeStartStopId, routeEndStopId)), maxCost);
-            }
-            this.tripCostTable.put(new TripRoute(routeStartStopId, null), maxCost);
-        }
+        firstVersion().calculateIncompleteTripCost();
     }
 
-    public Float getTripCost(String routeStartStopId, String routeEndStopId) {
-        if (!this.routeStops.contains(routeStartStopId)) {
+    /**
+     * Returns the number of the latest version.
+     */
+    public long version() {
+        TripCostTable[] currentVersions = versions;
+        return currentVersions[currentVersions.length - 1].version();
+    }
+
+    /**
+     * Returns the cost in cents of the route between the stops in the latest version, the route end stop id is null
+     * for an incomplete trip.
+     */
+    public long getTripCost(String routeStartStopId, String routeEndStopId) {
+        TripCostTable tripCostTable = latestVersion();
+        int routeStartStopCode = SymbolTable.STOPS.find(routeStartStopId);
+        if (!tripCostTable.isRouteStop(routeStartStopCode)) {
             throw new IllegalArgumentException("Invalid route start stop Id '" + routeStartStopId + "'");
         }
-        if (routeEndStopId != null && !this.routeStops.contains(routeEndStopId)) {
+        int routeEndStopCode = SymbolTable.STOPS.find(routeEndStopId);
+        if (routeEndStopId != null && !tripCostTable.isRouteStop(routeEndStopCode)) {
             throw new IllegalArgumentException("Invalid route end stop Id '" + routeEndStopId + "'");
         }
+        return tripCostTable.getTripCost(routeStartStopCode, routeEndStopCode);
+    }
+
+    /**
+     * Returns the cost in cents of the route between the stops identified by their {@link SymbolTable#STOPS} codes
+     * in the latest version, the route end stop code is {@link SymbolTable#NO_CODE} for an incomplete trip.
+     */
+    public long getTripCost(int routeStartStopCode, int routeEndStopCode) {
+        return latestVersion().getTripCost(routeStartStopCode, routeEndStopCode);
+    }
+
+    /**
+     * Returns the cost in cents of the route between the stops identified by their {@link SymbolTable#STOPS} codes
+     * in the version effective at the tap on time, the route end stop code is {@link SymbolTable#NO_CODE} for an
+     * incomplete trip.
+     */
+    public long getTripCost(Instant tapOnTime, int routeStartStopCode, int routeEndStopCode) {
+        return effectiveVersion(tapOnTime).getTripCost(routeStartStopCode, routeEndStopCode);
+    }
 
-        Float tripCost;
-        if (this.routeStops.contains(routeEndStopId)) {
-            if (StringUtils.equals(routeStartStopId, routeEndStopId)) {
-                tripCost = CANCELLED_TRIP_COST;
-            } else {
-                tripCost = this.tripCostTable.get(new TripRoute(routeStartStopId, routeEndStopId));
+    /**
+     * Returns the version effective at the tap on time, the versions are searched from the latest since most trips
+     * are costed against the latest version.
+     */
+    TripCostTable effectiveVersion(Instant tapOnTime) {
+        TripCostTable[] currentVersions = versions;
+        for (int i = currentVersions.length - 1; i > 0; i--) {
+            if (!currentVersions[i].effectiveFrom().isAfter(tapOnTime)) {
+                return currentVersions[i];
             }
-        } else {
-            tripCost = this.tripCostTable.get(new TripRoute(routeStartStopId, null));
         }
-        if (tripCost == null) {
-            throw new IllegalArgumentException("Invalid route start '" + routeStartStopId + "'" +
-                    " and route end '" + routeEndStopId + "' combination");
+        return currentVersions[0];
+    }
+
+    private TripCostTable latestVersion() {
+        TripCostTable[] currentVersions = versions;
+        return currentVersions[currentVersions.length - 1];
+    }
+
+    private TripCostTable firstVersion() {
+        TripCostTable[] currentVersions = versions;
+        if (currentVersions.length > 1) {
+            throw new IllegalStateException("Trip costs cannot be changed after a reload, reload a new version");
+        }
+        return currentVersions[0];
+    }
+
+    private static void readTripCosts(Reader reader, TripCostTable tripCostTable) throws IOException {
+        try (CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT
+                .withFirstRecordAsHeader()
+                .withIgnoreHeaderCase()
+                .withTrim())) {
+            for (CSVRecord csvRecord : csvParser.getRecords()) {
+                tripCostTable.addTripCost(
+                        csvRecord.get("FromStopId"),
+                        csvRecord.get("ToStopId"),
+                        Money.parseCents(csvRecord.get("Cost"))
+                );
+            }
         }
-        return tripCost;
     }
 
 }
@@ -0,0 +1,174 @@
+package com.github.sbanal.littlepay;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * A version of the trip costs, effective for the trips tapped on from its effective time. The route stops of the
+ * table are given dense local indexes, mapped from their {@link SymbolTable#STOPS} codes when the table is built, and
+ * the trip cost in cents of each route is kept in a dense matrix indexed by the local indexes of the route start and
+ * end stops, and the incomplete trip cost of each stop in an array indexed by the local index, so looking up a trip
+ * cost is a few array reads without hashing, boxing or allocation. The matrix grows with the square of the stops of
+ * this table only, not of all the stops read by the JVM. Routes without a cost are kept as {@link #NO_TRIP_COST}.
+ * <p>
+ * A table is only modified while it is built, it is read only once published by {@link TripCostService} and can
+ * then be read by any number of threads.
+ */
+final class TripCostTable {
+
+    static final long NO_TRIP_COST = Long.MIN_VALUE;
+
+    private static final long CANCELLED_TRIP_COST = 0;
+    private static final int MIN_STOP_CAPACITY = 16;
+    private static final int NO_STOP_INDEX = -1;
+    // largest matrix the JVM can allocate as one array
+    private static final long MAX_TABLE_SIZE = Integer.MAX_VALUE - 8;
+
+    private final long version;
+    private final Instant effectiveFrom;
+    // local index of each stop code, NO_STOP_INDEX for the stops which are not route stops of this table
+    private int[] stopIndexes = new int[0];
+    private int stopCount;
+    private int stopCapacity;
+    private long[] tripCostTable = new long[0];
+    private long[] incompleteTripCostTable = new long[0];
+
+    TripCostTable(long version, Instant effectiveFrom) {
+        this.version = version;
+        this.effectiveFrom = effectiveFrom;
+    }
+
+    long version() {
+        return version;
+    }
+
+    /**
+     * Returns the time from which the trips tapped on are costed with this table.
+     */
+    Instant effectiveFrom() {
+        return effectiveFrom;
+    }
+
+    void addTripCost(String routeStartStopId, String routeEndStopId, long tripCost) {
+        if (StringUtils.isEmpty(routeStartStopId)) {
+            throw new IllegalArgumentException("Invalid route start stop id");
+        }
+        if (StringUtils.isEmpty(routeEndStopId)) {
+            throw new IllegalArgumentException("Invalid route end stop id");
+        }
+        if (StringUtils.equals(routeStartStopId, routeEndStopId)) {
+            throw new IllegalArgumentException("Invalid route start and route end stop id, values cannot be the same");
+        }
+        int routeStartStopIndex = addRouteStop(SymbolTable.STOPS.code(routeStartStopId));
+        int routeEndStopIndex = addRouteStop(SymbolTable.STOPS.code(routeEndStopId));
+        this.tripCostTable[routeStartStopIndex * stopCapacity + routeEndStopIndex] = tripCost;
+        this.tripCostTable[routeEndStopIndex * stopCapacity + routeStartStopIndex] = tripCost;
+    }
+
+    /**
+     * Returns the local index of the stop, giving the stop the next local index if it is not yet a route stop.
+     */
+    private int addRouteStop(int stopCode) {
+        if (stopCode >= stopIndexes.length) {
+            int oldLength = stopIndexes.length;
+            stopIndexes = Arrays.copyOf(stopIndexes, Math.max(stopCode + 1, oldLength * 2));
+            Arrays.fill(stopIndexes, oldLength, stopIndexes.length, NO_STOP_INDEX);
+        }
+        if (stopIndexes[stopCode] == NO_STOP_INDEX) {
+            ensureStopCapacity(stopCount + 1);
+            stopIndexes[stopCode] = stopCount++;
+        }
+        return stopIndexes[stopCode];
+    }
+
+    /**
+     * Grows the matrix so it can be indexed by local indexes less than the given capacity, the matrix rows are copied
+     * since the row length changes.
+     */
+    private void ensureStopCapacity(int minStopCapacity) {
+        if (minStopCapacity <= stopCapacity) {
+            return;
+        }
+        int newStopCapacity = Math.max(MIN_STOP_CAPACITY, stopCapacity);
+        while (newStopCapacity < minStopCapacity) {
+            newStopCapacity *= 2;
+        }
+        if ((long) newStopCapacity * newStopCapacity > MAX_TABLE_SIZE) {
+            newStopCapacity = (int) Math.sqrt(MAX_TABLE_SIZE);
+            if (newStopCapacity < minStopCapacity) {
+                throw new IllegalArgumentException("Invalid trip costs, too many route stops: " + minStopCapacity);
+            }
+        }
+        long[] newTripCostTable = new long[newStopCapacity * newStopCapacity];
+        Arrays.fill(newTripCostTable, NO_TRIP_COST);
+        for (int row = 0; row < stopCapacity; row++) {
+            System.arraycopy(tripCostTable, row * stopCapacity, newTripCostTable, row * newStopCapacity,
+                    stopCapacity);
+        }
+        long[] newIncompleteTripCostTable = Arrays.copyOf(incompleteTripCostTable, newStopCapacity);
+        Arrays.fill(newIncompleteTripCostTable, stopCapacity, newStopCapacity, NO_TRIP_COST);
+        this.tripCostTable = newTripCostTable;
+        this.incompleteTripCostTable = newIncompleteTripCostTable;
+        this.stopCapacity = newStopCapacity;
+    }
+
+    void calculateIncompleteTripCost() {
+        for (int routeStartStopIndex = 0; routeStartStopIndex < stopCount; routeStartStopIndex++) {
+            long maxCost = 0;
+            int row = routeStartStopIndex * stopCapacity;
+            for (int routeEndStopIndex = 0; routeEndStopIndex < stopCount; routeEndStopIndex++) {
+                long tripCost = this.tripCostTable[row + routeEndStopIndex];
+                if (tripCost != NO_TRIP_COST) {
+                    maxCost = Math.max(tripCost, maxCost);
+                }
+            }
+            this.incompleteTripCostTable[routeStartStopIndex] = maxCost;
+        }
+    }
+
+    /**
+     * Returns the cost in cents of the route between the stops identified by their {@link SymbolTable#STOPS} codes,
+     * the route end stop code is {@link SymbolTable#NO_CODE} for an incomplete trip.
+     */
+    long getTripCost(int routeStartStopCode, int routeEndStopCode) {
+        if (!isRouteStop(routeStartStopCode)) {
+            throw new IllegalArgumentException("Invalid route start stop Id '"
+                    + SymbolTable.STOPS.value(routeStartStopCode) + "'");
+        }
+        if (routeEndStopCode != SymbolTable.NO_CODE && !isRouteStop(routeEndStopCode)) {
+            throw new IllegalArgumentException("Invalid route end stop Id '"
+                    + SymbolTable.STOPS.value(routeEndStopCode) + "'");
+        }
+
+        long tripCost;
+        int routeStartStopIndex = stopIndexes[routeStartStopCode];
+        if (routeEndStopCode != SymbolTable.NO_CODE) {
+            if (routeStartStopCode == routeEndStopCode) {
+                tripCost = CANCELLED_TRIP_COST;
+            } else {
+                tripCost = this.tripCostTable[routeStartStopIndex * stopCapacity + stopIndexes[routeEndStopCode]];
+            }
+        } else {
+            tripCost = this.incompleteTripCostTable[routeStartStopIndex];
+        }
+        if (tripCost == NO_TRIP_COST) {
+            throw new IllegalArgumentException("Invalid route start '" + SymbolTable.STOPS.value(routeStartStopCode)
+                    + "'" + " and route end '" + SymbolTable.STOPS.value(routeEndStopCode) + "' combination");
+        }
+        return tripCost;
+    }
+
+    boolean isRouteStop(int stopCode) {
+        return stopCode >= 0 && stopCode < stopIndexes.length && stopIndexes[stopCode] != NO_STOP_INDEX;
+    }
+
+    /**
+     * Returns the number of rows and columns of the trip cost matrix.
+     */
+    int stopCapacity() {
+        return stopCapacity;
+    }
+
+}
@@ -1,6 +1,49 @@
 package com.github.sbanal.littlepay;
 
 import java.time.Instant;
+import java.util.Comparator;
 
-record TripEvent(Long id, Instant dateTimeUtc, TapType tapType, String stopId, String companyId, String busId, String pan) {
+/**
+ * Tap event where the stop, company and bus identifiers are stored as codes of the {@link SymbolTable} and the PAN
+ * is packed by {@link Pan}.
+ */
+record TripEvent(Long id, Instant dateTimeUtc, TapType tapType, int stopCode, int companyCode, int busCode,
+                 long packedPan) {
+
+    /**
+     * Orders the tap events by DateTimeUTC and then by ID, the tap events without ID last.
+     */
+    static final Comparator<TripEvent> DATE_TIME_UTC_ORDER = Comparator.comparing(TripEvent::dateTimeUtc)
+            .thenComparing(TripEvent::id, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    /**
+     * @throws IllegalArgumentException if the PAN is not 1 to 19 digits
+     */
+    TripEvent(Long id, Instant dateTimeUtc, TapType tapType, String stopId, String companyId, String busId,
+              String pan) {
+        this(id, dateTimeUtc, tapType, SymbolTable.STOPS.code(stopId), SymbolTable.COMPANIES.code(companyId),
+                SymbolTable.BUSES.code(busId), Pan.parse(pan));
+    }
+
+    String stopId() {
+        return SymbolTable.STOPS.value(stopCode);
+    }
+
+    String companyId() {
+        return SymbolTable.COMPANIES.value(companyCode);
+    }
+
+    String busId() {
+        return SymbolTable.BUSES.value(busCode);
+    }
+
+    String pan() {
+        return Pan.format(packedPan);
+    }
+
+    @Override
+    public String toString() {
+        return "TripEvent[id=" + id + ", dateTimeUtc=" + dateTimeUtc + ", tapType=" + tapType + ", stopId="
+                + stopId() + ", companyId=" + companyId() + ", busId=" + busId() + ", pan=" + pan() + "]";
+    }
 }
@@ -0,0 +1,49 @@
+package com.github.sbanal.littlepay;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Progress of a job processing a taps csv file: the position and line number of the next record to read, the size
+ * of the trips csv file written so far, the number of invalid tap records skipped so far, the sizes of the quarantine
+ * and rejected taps csv files written so far and the tap on events of the customers who have not yet tapped off.
+ */
+record TripEventCheckpoint(long tapsCsvSize, long inputPosition, long lineNumber, long outputPosition,
+                           long invalidTaps, long quarantinePosition, long rejectedTapsPosition,
+                           List<TripEvent> openTrips) {
+
+    private static final int MAGIC = 0x4C505443;
+    private static final int VERSION = 2;
+
+    /**
+     * Reads the checkpoint file, returns null if the file does not exist.
+     */
+    static TripEventCheckpoint read(Path checkpointFile) throws IOException {
+        return StateFiles.read(checkpointFile, MAGIC, VERSION, in -> new TripEventCheckpoint(
+                in.readLong(),
+                in.readLong(),
+                in.readLong(),
+                in.readLong(),
+                in.readLong(),
+                in.readLong(),
+                in.readLong(),
+                StateFiles.readOpenTrips(in)));
+    }
+
+    /**
+     * Replaces the checkpoint file, the checkpoint file is either the previous or the new checkpoint after a crash.
+     */
+    void write(Path checkpointFile) throws IOException {
+        StateFiles.write(checkpointFile, MAGIC, VERSION, out -> {
+            out.writeLong(tapsCsvSize);
+            out.writeLong(inputPosition);
+            out.writeLong(lineNumber);
+            out.writeLong(outputPosition);
+            out.writeLong(invalidTaps);
+            out.writeLong(quarantinePosition);
+            out.writeLong(rejectedTapsPosition);
+            StateFiles.writeOpenTrips(out, openTrips);
+        });
+    }
+}
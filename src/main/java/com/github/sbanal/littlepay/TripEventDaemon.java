@@ -0,0 +1,273 @@
+package com.github.sbanal.littlepay;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Processes the taps csv files dropped into a spool directory as they arrive, so a tap event is matched into a trip
+ * within a batch interval instead of waiting for the next batch job. The trip costs and the tap on events of the
+ * customers who have not yet tapped off stay in memory between the files, the trips are appended to a trips csv
+ * file in the output directory which is rolled every roll interval.
+ * <p>
+ * The csv files in the spool directory are processed in name order as micro-batches, the files of a batch are moved
+ * to the {@code processed} subdirectory once their trips are written, or to the {@code failed} subdirectory when
+ * they cannot be read or processed, e.g. a tap at a stop without a trip cost. Producers should write a file under a
+ * name which does not end in {@code .csv}, or which starts with a dot, and rename it once complete.
+ * <p>
+ * When a state file is given, the open trips are written to it after every batch and restored on start. The state
+ * file also holds the trips csv file and its size after the last complete batch, and is written before the first
+ * trip of a new trips csv file. A restart truncates the trips csv file to that size, so the trips of a batch which
+ * did not complete, e.g. flushed before the daemon stopped, are discarded and written once when the batch is
+ * processed again. When a batch fails before it completes the state file is not written, so a restart resumes from
+ * the state of the last complete batch.
+ */
+public class TripEventDaemon extends TripEventService {
+
+    private static final Logger LOGGER = Logger.getLogger(TripEventDaemon.class.getName());
+    private static final DateTimeFormatter ROLL_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private final Path spoolDir;
+    private final Path processedDir;
+    private final Path failedDir;
+    private final Path outputDir;
+    private final Duration batchInterval;
+    private final Duration rollInterval;
+    private final Path stateFile;
+    private final TripEventReaderFactory readerFactory;
+    private final Clock clock;
+    private final TripEventMatcher tripEventMatcher;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile boolean running = true;
+    // the open trips only match the state file once the batch they were matched in is complete
+    private boolean batchInProgress;
+    // the trips csv file and its size recorded in the state file
+    private String stateTripsFile;
+    private long stateTripsPosition;
+    private Instant rollStart;
+    private Path tripsCsv;
+    private DirectTripCompletionEventWriter writer;
+
+    /**
+     * Creates the daemon which reads the taps csv files of the spool directory every batch interval, or as soon as
+     * a file arrives, and writes the trips to a new trips csv file of the output directory every roll interval. The
+     * state file can be null if the open trips are only kept in memory.
+     */
+    public TripEventDaemon(TripCostService tripCostService, TripEventServiceConfig config, Path spoolDir,
+                           Path outputDir, Duration batchInterval, Duration rollInterval, Path stateFile,
+                           TripEventReaderFactory readerFactory) {
+        this(tripCostService, config, spoolDir, outputDir, batchInterval, rollInterval, stateFile, readerFactory,
+                Clock.systemUTC());
+    }
+
+    TripEventDaemon(TripCostService tripCostService, TripEventServiceConfig config, Path spoolDir, Path outputDir,
+                    Duration batchInterval, Duration rollInterval, Path stateFile,
+                    TripEventReaderFactory readerFactory, Clock clock) {
+        super(tripCostService, config);
+        if (batchInterval.isNegative() || batchInterval.isZero()) {
+            throw new IllegalArgumentException("Invalid batch interval, value must be positive");
+        }
+        if (rollInterval.toMillis() < 1) {
+            throw new IllegalArgumentException("Invalid roll interval, value must be positive");
+        }
+        this.spoolDir = spoolDir;
+        this.processedDir = spoolDir.resolve("processed");
+        this.failedDir = spoolDir.resolve("failed");
+        this.outputDir = outputDir;
+        this.batchInterval = batchInterval;
+        this.rollInterval = rollInterval;
+        this.stateFile = stateFile;
+        this.readerFactory = readerFactory;
+        this.clock = clock;
+        this.tripEventMatcher = createTripEventMatcher();
+    }
+
+    /**
+     * Processes the taps csv files of the spool directory until {@link #stop()} is called, the current trips csv
+     * file is closed and the open trips are written to the state file before returning.
+     */
+    public void run() throws IOException, InterruptedException {
+        try {
+            Files.createDirectories(processedDir);
+            Files.createDirectories(failedDir);
+            Files.createDirectories(outputDir);
+            restoreState();
+            try (WatchService watchService = spoolDir.getFileSystem().newWatchService()) {
+                spoolDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+                LOGGER.info("Watching " + spoolDir + " for taps files, writing trips to " + outputDir);
+                while (running) {
+                    processBatch();
+                    // the directory is listed again after the wait, the events only end the wait early
+                    WatchKey watchKey = watchService.poll(batchInterval.toNanos(), TimeUnit.NANOSECONDS);
+                    if (watchKey != null) {
+                        watchKey.pollEvents();
+                        watchKey.reset();
+                    }
+                }
+            } finally {
+                closeWriter();
+                if (!batchInProgress) {
+                    writeState(List.of(), stateTripsFile, stateTripsPosition);
+                }
+            }
+        } finally {
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * Stops the daemon after the current batch, {@link #awaitTermination(Duration)} waits until it has stopped.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Waits until {@link #run()} has returned, returns false if the daemon is still running after the timeout.
+     */
+    public boolean awaitTermination(Duration timeout) throws InterruptedException {
+        return terminated.await(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void restoreState() throws IOException {
+        if (stateFile == null) {
+            return;
+        }
+        OpenTripState state = OpenTripState.read(stateFile);
+        tripEventMatcher.restoreOpenTrips(state.openTrips());
+        if (state.tripsFile() != null) {
+            // discards the trips of the batch which did not complete, its taps files are still in the spool directory
+            DirectTripCompletionEventWriter.resume(outputDir.resolve(state.tripsFile()), state.tripsPosition())
+                    .close();
+        }
+        stateTripsFile = state.tripsFile();
+        stateTripsPosition = state.tripsPosition();
+        // the files of the last batch were processed before the daemon stopped but may not have been moved
+        for (String processedFile : state.processedFiles()) {
+            Path tapsCsv = spoolDir.resolve(processedFile);
+            if (Files.exists(tapsCsv)) {
+                Files.move(tapsCsv, processedDir.resolve(processedFile), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        LOGGER.info("Restored " + state.openTrips().size() + " open trips from " + stateFile);
+    }
+
+    private void processBatch() throws IOException {
+        List<Path> tapsCsvFiles = listTapsCsvFiles();
+        if (tapsCsvFiles.isEmpty()) {
+            return;
+        }
+        batchInProgress = true;
+        PipelineMetrics metrics = metrics();
+        DirectTripCompletionEventWriter writer = rollWriter();
+        String tripsFile = tripsCsv.getFileName().toString();
+        if (stateFile != null && !tripsFile.equals(stateTripsFile)) {
+            // the state refers to the new trips file before the batch writes to it, so a restart truncates it
+            writer.sync();
+            writeState(List.of(), tripsFile, writer.bytesWritten());
+        }
+        List<String> processedFiles = new ArrayList<>();
+        long startNanos = System.nanoTime();
+        for (Path tapsCsv : tapsCsvFiles) {
+            try (TripEventReader reader = readerFactory.open(tapsCsv)) {
+                for (TripEvent tripEvent : readEvents(reader)) {
+                    metrics.tapEvent();
+                    tripEventMatcher.match(tripEvent, writer);
+                }
+                processedFiles.add(tapsCsv.getFileName().toString());
+            } catch (IOException | RuntimeException e) {
+                // the trips of the records read before the failed record are already written, the file is not
+                // processed again so the tap on events it matched are not matched twice
+                LOGGER.log(Level.SEVERE, "Failed to process taps file " + tapsCsv + ", moving it to " + failedDir,
+                        e);
+                Files.move(tapsCsv, failedDir.resolve(tapsCsv.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        metrics.stageWallTime("process-tap-events", System.nanoTime() - startNanos);
+        if (stateFile != null) {
+            // the trips are synced before the state which no longer holds their tap on events is written
+            writer.sync();
+            writeState(processedFiles, tripsFile, writer.bytesWritten());
+        } else {
+            writer.flush();
+        }
+        batchInProgress = false;
+        for (String processedFile : processedFiles) {
+            Files.move(spoolDir.resolve(processedFile), processedDir.resolve(processedFile),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Returns the complete taps csv files of the spool directory ordered by name.
+     */
+    private List<Path> listTapsCsvFiles() throws IOException {
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            return files.filter(file -> {
+                        String fileName = file.getFileName().toString();
+                        return fileName.endsWith(".csv") && !fileName.startsWith(".") && Files.isRegularFile(file);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Returns the writer of the trips csv file of the current roll interval, closing the writer of the previous
+     * interval. The trips csv file is appended to if it exists, e.g. when the daemon is restarted.
+     */
+    private DirectTripCompletionEventWriter rollWriter() throws IOException {
+        long rollMillis = rollInterval.toMillis();
+        Instant now = clock.instant();
+        Instant currentRollStart = Instant.ofEpochMilli(Math.floorDiv(now.toEpochMilli(), rollMillis) * rollMillis);
+        if (writer != null && currentRollStart.equals(rollStart)) {
+            return writer;
+        }
+        closeWriter();
+        tripsCsv = outputDir.resolve("trips-" + ROLL_FORMAT.format(currentRollStart) + ".csv");
+        writer = DirectTripCompletionEventWriter.resume(tripsCsv, Files.exists(tripsCsv) ? Files.size(tripsCsv) : 0);
+        rollStart = currentRollStart;
+        metrics().monitorBytesWritten(writer::bytesWritten);
+        LOGGER.info("Writing trips to " + tripsCsv);
+        return writer;
+    }
+
+    private void closeWriter() throws IOException {
+        if (writer != null) {
+            try {
+                writer.close();
+            } finally {
+                writer = null;
+            }
+        }
+    }
+
+    /**
+     * Writes the open trips to the state file with the trips csv file and its size, which must be synced.
+     */
+    private void writeState(List<String> processedFiles, String tripsFile, long tripsPosition) throws IOException {
+        if (stateFile != null) {
+            new OpenTripState(processedFiles, tripsFile, tripsPosition, tripEventMatcher.openTrips()).write(stateFile);
+            stateTripsFile = tripsFile;
+            stateTripsPosition = tripsPosition;
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.github.sbanal.littlepay;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A job of a jobs manifest: the trip cost csv file, the taps csv file and the trips csv file of one operator.
+ */
+public record TripEventJob(Path tripCostCsv, Path tapsCsv, Path tripsCsv) {
+
+    static final String[] HEADERS = {
+            "TripCostCsv",
+            "TapsCsv",
+            "TripsCsv"
+    };
+
+    /**
+     * Reads the jobs of the manifest csv file, the relative file paths are resolved against the manifest directory.
+     */
+    public static List<TripEventJob> readManifest(Path manifestCsv) throws IOException {
+        Path baseDir = manifestCsv.toAbsolutePath().getParent();
+        List<TripEventJob> jobs = new ArrayList<>();
+        try (Reader reader = Files.newBufferedReader(manifestCsv);
+             CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT
+                     .withFirstRecordAsHeader()
+                     .withIgnoreHeaderCase()
+                     .withIgnoreEmptyLines()
+                     .withTrim())) {
+            for (String header : HEADERS) {
+                if (!csvParser.getHeaderMap().containsKey(header)) {
+                    throw new IOException("Invalid jobs manifest " + manifestCsv + ", header must be "
+                            + String.join(", ", HEADERS));
+                }
+            }
+            for (CSVRecord csvRecord : csvParser) {
+                if (!csvRecord.isConsistent()) {
+                    throw new IOException("Invalid jobs manifest " + manifestCsv + ", line "
+                            + csvParser.getCurrentLineNumber() + " must have the columns "
+                            + String.join(", ", HEADERS));
+                }
+                jobs.add(new TripEventJob(
+                        baseDir.resolve(csvRecord.get(HEADERS[0])),
+                        baseDir.resolve(csvRecord.get(HEADERS[1])),
+                        baseDir.resolve(csvRecord.get(HEADERS[2]))));
+            }
+        }
+        return jobs;
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.github.sbanal.littlepay;
+
+import javax.management.JMException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the jobs of a jobs manifest concurrently in one JVM, e.g. one job per operator, each job on its own virtual
+ * thread so the jobs waiting on I/O do not hold a platform thread. The jobs whose trip cost csv files have the same
+ * content share one {@link TripCostService}, which is only read once loaded. Each job has its own metrics and
+ * anomaly report, and a failed job does not stop the other jobs.
+ */
+public class TripEventJobRunner {
+
+    private static final Logger LOGGER = Logger.getLogger(TripEventJobRunner.class.getName());
+
+    /**
+     * Outcome of a job, the failure is null if the job completed.
+     */
+    public record JobResult(TripEventJob job, PipelineMetrics metrics, TapAnomalyReport anomalies,
+                            Exception failure) {
+
+        public boolean failed() {
+            return failure != null;
+        }
+
+    }
+
+    private final Duration maxTripDuration;
+    private final int maxConcurrentJobs;
+    private final TripEventReaderFactory readerFactory;
+    private final TripCompletionEventWriterFactory writerFactory;
+    private final Map<String, FutureTask<TripCostService>> tripCostServices = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the runner which runs at most the given number of jobs at the same time, the other jobs wait for a
+     * running job to complete.
+     */
+    public TripEventJobRunner(Duration maxTripDuration, int maxConcurrentJobs, TripEventReaderFactory readerFactory,
+                              TripCompletionEventWriterFactory writerFactory) {
+        if (maxConcurrentJobs < 1) {
+            throw new IllegalArgumentException("Invalid max concurrent jobs, value must be positive");
+        }
+        this.maxTripDuration = maxTripDuration;
+        this.maxConcurrentJobs = maxConcurrentJobs;
+        this.readerFactory = readerFactory;
+        this.writerFactory = writerFactory;
+    }
+
+    /**
+     * Runs the jobs and returns their results in the order of the jobs once all the jobs are done.
+     */
+    public List<JobResult> run(List<TripEventJob> jobs) {
+        Semaphore permits = new Semaphore(maxConcurrentJobs);
+        List<Future<JobResult>> futures = new ArrayList<>(jobs.size());
+        try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (TripEventJob job : jobs) {
+                futures.add(executorService.submit(() -> {
+                    try {
+                        permits.acquire();
+                    } catch (InterruptedException e) {
+                        return new JobResult(job, new PipelineMetrics(), new TapAnomalyReport(),
+                                new InterruptedIOException("Job interrupted before it started"));
+                    }
+                    try {
+                        return runJob(job);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        }
+        return futures.stream().map(Future::resultNow).toList();
+    }
+
+    /**
+     * Returns the number of distinct trip cost tables loaded so far.
+     */
+    int tripCostTables() {
+        return tripCostServices.size();
+    }
+
+    private JobResult runJob(TripEventJob job) {
+        PipelineMetrics metrics = new PipelineMetrics();
+        TapAnomalyReport anomalies = new TapAnomalyReport();
+        registerMetrics(metrics);
+        try {
+            long startNanos = System.nanoTime();
+            TripCostService tripCostService = loadTripCostService(job.tripCostCsv());
+            metrics.stageWallTime("load-trip-costs", System.nanoTime() - startNanos);
+            try (TripEventReader tripEventReader = readerFactory.open(job.tapsCsv());
+                 TripCompletionEventWriter tripCompletionEventWriter = writerFactory.open(job.tripsCsv())) {
+                new TripEventService(tripCostService, TripEventServiceConfig.defaults()
+                        .withMaxTripDuration(maxTripDuration).withMetrics(metrics).withAnomalies(anomalies))
+                        .processEvents(tripEventReader, tripCompletionEventWriter);
+            }
+            return new JobResult(job, metrics, anomalies, null);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Failed to process " + job.tapsCsv(), e);
+            return new JobResult(job, metrics, anomalies, e);
+        } finally {
+            metrics.finish();
+            unregisterMetrics(metrics);
+        }
+    }
+
+    /**
+     * Returns the trip cost service of the trip cost csv file, loading it only if no trip cost csv file with the same
+     * content was loaded before. The jobs which need a trip cost csv file being loaded wait for it.
+     */
+    private TripCostService loadTripCostService(Path tripCostCsv) throws IOException {
+        byte[] tripCosts = Files.readAllBytes(tripCostCsv);
+        FutureTask<TripCostService> loadTask = new FutureTask<>(() -> {
+            TripCostService tripCostService = new TripCostService();
+            tripCostService.load(new InputStreamReader(new ByteArrayInputStream(tripCosts), StandardCharsets.UTF_8));
+            return tripCostService;
+        });
+        FutureTask<TripCostService> sharedLoadTask = tripCostServices.putIfAbsent(sha256(tripCosts), loadTask);
+        if (sharedLoadTask == null) {
+            sharedLoadTask = loadTask;
+            loadTask.run();
+        }
+        try {
+            return sharedLoadTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading " + tripCostCsv);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Failed to load " + tripCostCsv, e.getCause());
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    private static void registerMetrics(PipelineMetrics metrics) {
+        try {
+            metrics.register();
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Failed to register job metrics MXBean", e);
+        }
+    }
+
+    private static void unregisterMetrics(PipelineMetrics metrics) {
+        try {
+            metrics.unregister();
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Failed to unregister job metrics MXBean", e);
+        }
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.github.sbanal.littlepay;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Matches the tap on and tap off events of each customer into trips. Only the tap on events of the customers who
+ * have not yet tapped off are kept, instances are not thread safe and should be used by a single thread.
+ */
+class TripEventMatcher {
+
+    // one in every 64 trip cost lookups is timed
+    private static final int COST_LOOKUP_SAMPLE_MASK = 63;
+
+    private final TripCostService tripCostService;
+    private final Duration maxTripDuration;
+    private final PipelineMetrics metrics;
+    private final TapAnomalyReport anomalies;
+    // ordered by tap on time since tap events are read in DateTimeUTC order
+    private final OpenTripStore customerTapOnTripEvent;
+    private int costLookups;
+
+    TripEventMatcher(TripCostService tripCostService, Duration maxTripDuration, PipelineMetrics metrics,
+                     TapAnomalyReport anomalies) {
+        this(tripCostService, maxTripDuration, metrics, anomalies, new HeapOpenTripStore());
+    }
+
+    TripEventMatcher(TripCostService tripCostService, Duration maxTripDuration, PipelineMetrics metrics,
+                     TapAnomalyReport anomalies, OpenTripStore openTripStore) {
+        this.tripCostService = tripCostService;
+        this.maxTripDuration = maxTripDuration;
+        this.metrics = metrics;
+        this.anomalies = anomalies;
+        this.customerTapOnTripEvent = openTripStore;
+    }
+
+    void match(TripEvent tripEvent, TripCompletionEventSink sink) throws IOException {
+        expireTapOnTripEvents(tripEvent.dateTimeUtc(), sink);
+
+        TripEvent tapOnTripEvent = customerTapOnTripEvent.get(tripEvent.packedPan());
+        if (tripEvent.tapType() == TapType.ON) {
+            if (tapOnTripEvent != null) {
+                // customer started a new trip but did not tap off previously
+                sink.write(createIncompleteTripEvent(tapOnTripEvent));
+                customerTapOnTripEvent.remove(tripEvent.packedPan());
+                metrics.tripClosed();
+            }
+            // customer started a new trip
+            customerTapOnTripEvent.add(tripEvent);
+            metrics.tripOpened();
+        } else {
+            if (tapOnTripEvent == null) {
+                // anomaly, customer tap-off without a tap-on event
+                anomalies.orphanTapOff(tripEvent);
+                metrics.orphanTapOff();
+            } else {
+                // customer completed a trip by tap-off
+                sink.write(createCompleteTripEvent(tapOnTripEvent, tripEvent));
+                customerTapOnTripEvent.remove(tripEvent.packedPan());
+                metrics.tripClosed();
+            }
+        }
+    }
+
+    /**
+     * Returns the tap on events of the customers who have not yet tapped off, in tap on order.
+     */
+    List<TripEvent> openTrips() {
+        return customerTapOnTripEvent.values();
+    }
+
+    /**
+     * Restores the tap on events of the customers who have not yet tapped off, in tap on order as returned by
+     * {@link #openTrips()}, so the matching continues as if the previous tap events were matched by this instance.
+     */
+    void restoreOpenTrips(List<TripEvent> openTrips) {
+        for (TripEvent tapOnTripEvent : openTrips) {
+            boolean replaced = customerTapOnTripEvent.remove(tapOnTripEvent.packedPan());
+            customerTapOnTripEvent.add(tapOnTripEvent);
+            if (!replaced) {
+                metrics.tripOpened();
+            }
+        }
+    }
+
+    /**
+     * Writes the trips of the customers who did not tap off as incomplete, called after all the tap events are read.
+     */
+    void complete(TripCompletionEventSink sink) throws IOException {
+        for (TripEvent startTripEvent : customerTapOnTripEvent.values()) {
+            sink.write(createIncompleteTripEvent(startTripEvent));
+            metrics.tripClosed();
+        }
+        customerTapOnTripEvent.clear();
+    }
+
+    /**
+     * Writes as incomplete trip and removes the tap on events older than the max trip duration relative to the
+     * given tap event time. Since the store is ordered by tap on time, only the oldest entries are visited.
+     */
+    private void expireTapOnTripEvents(Instant watermark, TripCompletionEventSink sink) throws IOException {
+        if (maxTripDuration == null) {
+            return;
+        }
+        long expiryEpochSecond = watermark.getEpochSecond() - maxTripDuration.getSeconds();
+        TripEvent tapOnTripEvent;
+        while ((tapOnTripEvent = customerTapOnTripEvent.oldest()) != null
+                && tapOnTripEvent.dateTimeUtc().getEpochSecond() < expiryEpochSecond) {
+            sink.write(createIncompleteTripEvent(tapOnTripEvent));
+            customerTapOnTripEvent.remove(tapOnTripEvent.packedPan());
+            metrics.tripClosed();
+        }
+    }
+
+    private TripCompletionEvent createIncompleteTripEvent(TripEvent startTripEvent) {
+        TripCompletionEvent completionEvent = new TripCompletionEvent(
+                startTripEvent.dateTimeUtc(),
+                null,
+                null,
+                startTripEvent.stopCode(),
+                SymbolTable.NO_CODE,
+                getTripCost(startTripEvent.dateTimeUtc(), startTripEvent.stopCode(), SymbolTable.NO_CODE),
+                startTripEvent.companyCode(),
+                startTripEvent.busCode(),
+                startTripEvent.packedPan(),
+                TripCompletionStatus.INCOMPLETE
+        );
+        metrics.trip(completionEvent.status());
+        return completionEvent;
+    }
+
+    private TripCompletionEvent createCompleteTripEvent(TripEvent startTripEvent, TripEvent endTripEvent) {
+        long tripDurationInSeconds = Duration.between(startTripEvent.dateTimeUtc(), endTripEvent.dateTimeUtc())
+                .getSeconds();
+        TripCompletionStatus completionStatus = startTripEvent.stopCode() == endTripEvent.stopCode() ?
+                TripCompletionStatus.CANCELLED : TripCompletionStatus.COMPLETED;
+        TripCompletionEvent completionEvent = new TripCompletionEvent(
+                startTripEvent.dateTimeUtc(),
+                endTripEvent.dateTimeUtc(),
+                tripDurationInSeconds,
+                startTripEvent.stopCode(),
+                endTripEvent.stopCode(),
+                getTripCost(startTripEvent.dateTimeUtc(), startTripEvent.stopCode(), endTripEvent.stopCode()),
+                startTripEvent.companyCode(),
+                startTripEvent.busCode(),
+                startTripEvent.packedPan(),
+                completionStatus
+        );
+        metrics.trip(completionEvent.status());
+        return completionEvent;
+    }
+
+    /**
+     * Returns the trip cost in the trip costs version effective at the tap on time of the trip.
+     */
+    private long getTripCost(Instant tapOnTime, int routeStartStopCode, int routeEndStopCode) {
+        if ((++costLookups & COST_LOOKUP_SAMPLE_MASK) != 0) {
+            return tripCostService.getTripCost(tapOnTime, routeStartStopCode, routeEndStopCode);
+        }
+        long startNanos = System.nanoTime();
+        long tripCost = tripCostService.getTripCost(tapOnTime, routeStartStopCode, routeEndStopCode);
+        metrics.costLookup(System.nanoTime() - startNanos);
+        return tripCost;
+    }
+
+}
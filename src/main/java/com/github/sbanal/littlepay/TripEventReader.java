@@ -1,5 +1,6 @@
 package com.github.sbanal.littlepay;
 
+import com.github.sbanal.littlepay.InvalidTripEventException.Reason;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
@@ -8,81 +9,211 @@ import org.apache.commons.lang3.StringUtils;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.file.Path;
 import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 
-public class TripEventReader implements Closeable {
+public class TripEventReader implements Iterable<TripEvent>, Closeable {
 
-    private static final DateTimeFormatter UTC_DATE_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
-
-    private final Reader reader;
-    private final CSVParser csvParser;
+    private final Closeable resource;
+    private final Iterator<TripEvent> tripEvents;
 
     public TripEventReader(Reader reader) throws IOException {
+        this(reader, InvalidTripEventHandler.FAIL);
+    }
+
+    /**
+     * Creates a reader which passes the records which cannot be parsed to the given handler, the records are
+     * skipped unless the handler throws.
+     */
+    public TripEventReader(Reader reader, InvalidTripEventHandler invalidTripEventHandler) throws IOException {
         Objects.requireNonNull(reader, "reader must not be null");
-        this.reader = reader;
-        this.csvParser = new CSVParser(reader, CSVFormat.DEFAULT
+        CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT
                 .withFirstRecordAsHeader()
                 .withIgnoreHeaderCase()
                 .withTrim());
+        this.resource = () -> {
+            reader.close();
+            csvParser.close();
+        };
+        Iterator<CSVRecord> csvRecords = csvParser.iterator();
+        this.tripEvents = new Iterator<>() {
+            private TripEvent nextTripEvent;
+
+            @Override
+            public boolean hasNext() {
+                while (nextTripEvent == null && csvRecords.hasNext()) {
+                    CSVRecord csvRecord = csvRecords.next();
+                    try {
+                        nextTripEvent = toTripEvent(csvRecord);
+                    } catch (InvalidTripEventException e) {
+                        invalidTripEventHandler.invalidTripEvent(csvParser.getCurrentLineNumber(),
+                                String.join(",", csvRecord.values()), e);
+                    }
+                }
+                return nextTripEvent != null;
+            }
+
+            @Override
+            public TripEvent next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                TripEvent tripEvent = nextTripEvent;
+                nextTripEvent = null;
+                return tripEvent;
+            }
+        };
+    }
+
+    TripEventReader(Iterator<TripEvent> tripEvents, Closeable resource) {
+        this.tripEvents = tripEvents;
+        this.resource = resource;
+    }
+
+    /**
+     * Creates a reader which splits the taps csv file into chunks aligned on record boundaries and parses the chunks
+     * concurrently using the given number of threads. The trip events are returned in the same order as the records
+     * in the file. The chunks are parsed the same way as {@link #mapped(Path)}, records must not contain quoted values.
+     */
+    public static TripEventReader parallel(Path tapsCsv, int parallelism) throws IOException {
+        return parallel(tapsCsv, parallelism, InvalidTripEventHandler.FAIL);
+    }
+
+    /**
+     * Creates a reader like {@link #parallel(Path, int)} which passes the records which cannot be parsed to the given
+     * handler in the order of the records in the file.
+     */
+    public static TripEventReader parallel(Path tapsCsv, int parallelism,
+                                           InvalidTripEventHandler invalidTripEventHandler) throws IOException {
+        ChunkedTripEventParser parser = new ChunkedTripEventParser(tapsCsv, parallelism,
+                ChunkedTripEventParser.DEFAULT_CHUNK_SIZE, invalidTripEventHandler);
+        return new TripEventReader(parser, parser);
+    }
+
+    /**
+     * Creates a reader which memory maps the taps csv file and parses the records directly from the mapped bytes,
+     * which is faster and allocates less than the csv parser. Records must not contain quoted values.
+     */
+    public static TripEventReader mapped(Path tapsCsv) throws IOException {
+        return mapped(tapsCsv, InvalidTripEventHandler.FAIL);
+    }
+
+    /**
+     * Creates a reader like {@link #mapped(Path)} which passes the records which cannot be parsed to the given
+     * handler.
+     */
+    public static TripEventReader mapped(Path tapsCsv, InvalidTripEventHandler invalidTripEventHandler)
+            throws IOException {
+        MappedTripEventParser parser = new MappedTripEventParser(tapsCsv, MappedTripEventParser.DEFAULT_WINDOW_SIZE,
+                invalidTripEventHandler);
+        return new TripEventReader(parser, parser);
+    }
+
+    /**
+     * Creates a reader which returns the trip events of the given reader sorted by DateTimeUTC and ID, for taps files
+     * which are not ordered. The trip events are sorted in runs of the given size which are spilled to temporary
+     * files in the sort directory and merged, the files are deleted when the reader is closed.
+     */
+    public static TripEventReader sorted(TripEventReader reader, Path sortDir, int runSize) {
+        TapExternalSorter sorter = new TapExternalSorter(reader.iterator(), sortDir, runSize);
+        return new TripEventReader(sorter, () -> {
+            try (reader) {
+                sorter.close();
+            }
+        });
     }
 
     @Override
     public void close() throws IOException {
-        this.reader.close();
-        this.csvParser.close();
+        this.resource.close();
     }
 
+    /**
+     * Reads all the remaining trip events in memory. Use {@link #iterator()} for large input files.
+     */
     public List<TripEvent> readEvents() {
         List<TripEvent> tripEvents = new ArrayList<>();
-        for (CSVRecord csvRecord : csvParser) {
-            try {
-                Long id = Long.parseLong(csvRecord.get("ID"));
-                Instant dateTimeUTC;
-                try {
-                    dateTimeUTC = LocalDateTime.parse(csvRecord.get("DateTimeUTC"), UTC_DATE_FORMATTER)
-                        .toInstant(ZoneOffset.UTC);
-                } catch (DateTimeParseException e) {
-                    throw new InvalidTripEventException("Invalid trip event DateTimeUTC for record " + id, e);
-                }
-                TapType tapType;
-                try {
-                    tapType = TapType.valueOf(csvRecord.get("TapType"));
-                } catch (IllegalArgumentException e) {
-                    throw new InvalidTripEventException("Invalid trip event TapType for record " + id, e);
-                }
-                String stopId = csvRecord.get("StopId");
-                if (StringUtils.isEmpty(stopId)) {
-                    throw new InvalidTripEventException("Invalid trip event StopId for record " + id);
-                }
-                String companyId = csvRecord.get("CompanyId");
-                if (StringUtils.isEmpty(companyId)) {
-                    throw new InvalidTripEventException("Invalid trip event CompanyId for record " + id);
-                }
-                String busId = csvRecord.get("BusID");
-                if (StringUtils.isEmpty(busId)) {
-                    throw new InvalidTripEventException("Invalid trip event BusID for record " + id);
-                }
-                String pan = csvRecord.get("PAN");
-                if (StringUtils.isEmpty(pan)) {
-                    throw new InvalidTripEventException("Invalid trip event PAN for record " + id);
-                }
-                tripEvents.add(new TripEvent(id, dateTimeUTC, tapType, stopId, companyId, busId, pan));
-            } catch (InvalidTripEventException e) {
-                throw e;
-            } catch (NumberFormatException e) {
-                throw new InvalidTripEventException("Invalid trip event ID for record " + csvRecord.get("ID"), e);
-            } catch (Exception e) {
-                throw new InvalidTripEventException("Invalid trip event", e);
-            }
+        for (TripEvent tripEvent : this) {
+            tripEvents.add(tripEvent);
         }
         return tripEvents;
     }
 
+    /**
+     * Returns an iterator which parses the trip events one record at a time as they are read from the
+     * underlying reader. The events can only be iterated once.
+     */
+    @Override
+    public Iterator<TripEvent> iterator() {
+        return tripEvents;
+    }
+
+    private static TripEvent toTripEvent(CSVRecord csvRecord) {
+        try {
+            return toTripEvent(
+                    csvRecord.get("ID"),
+                    csvRecord.get("DateTimeUTC"),
+                    csvRecord.get("TapType"),
+                    csvRecord.get("StopId"),
+                    csvRecord.get("CompanyId"),
+                    csvRecord.get("BusID"),
+                    csvRecord.get("PAN"));
+        } catch (InvalidTripEventException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new InvalidTripEventException("Invalid trip event", e);
+        }
+    }
+
+    static TripEvent toTripEvent(String idValue, String dateTimeUtcValue, String tapTypeValue, String stopId,
+                                 String companyId, String busId, String pan) {
+        Long id;
+        try {
+            id = Long.parseLong(idValue);
+        } catch (NumberFormatException e) {
+            throw new InvalidTripEventException(Reason.INVALID_ID, "Invalid trip event ID for record " + idValue, e);
+        }
+        Instant dateTimeUTC;
+        try {
+            dateTimeUTC = Instant.ofEpochSecond(UtcDateTimeCodec.parseEpochSecond(dateTimeUtcValue));
+        } catch (DateTimeParseException e) {
+            throw new InvalidTripEventException(Reason.INVALID_DATE_TIME,
+                    "Invalid trip event DateTimeUTC for record " + id, e);
+        }
+        TapType tapType;
+        try {
+            tapType = TapType.valueOf(tapTypeValue);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidTripEventException(Reason.INVALID_TAP_TYPE,
+                    "Invalid trip event TapType for record " + id, e);
+        }
+        if (StringUtils.isEmpty(stopId)) {
+            throw new InvalidTripEventException(Reason.EMPTY_STOP_ID, "Invalid trip event StopId for record " + id);
+        }
+        if (StringUtils.isEmpty(companyId)) {
+            throw new InvalidTripEventException(Reason.EMPTY_COMPANY_ID,
+                    "Invalid trip event CompanyId for record " + id);
+        }
+        if (StringUtils.isEmpty(busId)) {
+            throw new InvalidTripEventException(Reason.EMPTY_BUS_ID, "Invalid trip event BusID for record " + id);
+        }
+        if (StringUtils.isEmpty(pan)) {
+            throw new InvalidTripEventException(Reason.EMPTY_PAN, "Invalid trip event PAN for record " + id);
+        }
+        long packedPan;
+        try {
+            packedPan = Pan.parse(pan);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidTripEventException(Reason.INVALID_PAN, "Invalid trip event PAN for record " + id, e);
+        }
+        return new TripEvent(id, dateTimeUTC, tapType, SymbolTable.STOPS.code(stopId),
+                SymbolTable.COMPANIES.code(companyId), SymbolTable.BUSES.code(busId), packedPan);
+    }
+
 }
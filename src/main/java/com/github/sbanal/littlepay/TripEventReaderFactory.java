@@ -0,0 +1,14 @@
+package com.github.sbanal.littlepay;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Opens the reader of a taps csv file, used by the services which process more than one taps csv file.
+ */
+@FunctionalInterface
+public interface TripEventReaderFactory {
+
+    TripEventReader open(Path tapsCsv) throws IOException;
+
+}
@@ -1,104 +1,113 @@
 package com.github.sbanal.littlepay;
 
-import org.apache.commons.lang3.StringUtils;
-
 import java.io.IOException;
-import java.time.Duration;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.logging.Logger;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Objects;
 
 public class TripEventService {
 
-    private static final Logger LOGGER = Logger.getLogger(TripEventService.class.getName());
     private final TripCostService tripCostService;
+    private final TripEventServiceConfig config;
+    private final PipelineMetrics metrics;
+    private final TapAnomalyReport anomalies;
 
     public TripEventService(TripCostService tripCostService) {
+        this(tripCostService, TripEventServiceConfig.defaults());
+    }
+
+    /**
+     * Creates the service with the optional settings of the given config, see {@link TripEventServiceConfig}.
+     */
+    public TripEventService(TripCostService tripCostService, TripEventServiceConfig config) {
         this.tripCostService = tripCostService;
+        this.config = Objects.requireNonNull(config, "config cannot be null");
+        this.metrics = config.metrics();
+        this.anomalies = config.anomalies();
     }
 
+    /**
+     * Processes the tap events as they are read and writes each trip as soon as it is completed, only the
+     * tap on events of the customers who have not yet tapped off are kept in memory.
+     */
     public void processEvents(TripEventReader tripEventsReader,
                               TripCompletionEventWriter tripCompletionEventsWriter) throws IOException {
-        Map<String, TripEvent> customerTapOnTripEvent = new HashMap<>();
-        List<TripCompletionEvent> tripCompletionEvents = new ArrayList<>();
+        TripEventMatcher tripEventMatcher = createTripEventMatcher();
 
         try (TripEventReader reader = tripEventsReader; TripCompletionEventWriter writer = tripCompletionEventsWriter) {
+            metrics.monitorBytesWritten(writer::bytesWritten);
+            long startNanos = System.nanoTime();
+            for (TripEvent tripEvent : orderedEvents(reader)) {
+                metrics.tapEvent();
+                tripEventMatcher.match(tripEvent, writer);
+            }
+            metrics.stageWallTime("process-tap-events", System.nanoTime() - startNanos);
+            // customer did not tap-off
+            startNanos = System.nanoTime();
+            tripEventMatcher.complete(writer);
+            metrics.stageWallTime("complete-trips", System.nanoTime() - startNanos);
+        }
+    }
 
-            List<TripEvent> tripEventList = reader.readEvents();
-            tripEventList.forEach(tripEvent -> {
-                TripEvent tapOnTripEvent = customerTapOnTripEvent.get(tripEvent.pan());
-                if (tripEvent.tapType() == TapType.ON) {
-                    if (tapOnTripEvent == null) {
-                        // customer started a new trip
-                        customerTapOnTripEvent.put(tripEvent.pan(), tripEvent);
-                    } else {
-                        // customer started a new trip but did not tap off previously
-                        TripCompletionEvent completionEvent = createIncompleteTripEvent(tapOnTripEvent);
-                        tripCompletionEvents.add(completionEvent);
-                        customerTapOnTripEvent.put(tripEvent.pan(), tripEvent);
-                    }
-                } else {
-                    if (tapOnTripEvent == null) {
-                        // anomaly, customer tap-off without a tap-on event
-                        LOGGER.warning("skipping, customer tap-off event without a tap-on event " + tripEvent);
-                    } else {
-                        // customer completed a trip by tap-off
-                        TripCompletionEvent completionEvent = createCompleteTripEvent(tapOnTripEvent, tripEvent);
-                        tripCompletionEvents.add(completionEvent);
-                        customerTapOnTripEvent.remove(tripEvent.pan());
-                    }
-                }
-            });
+    public PipelineMetrics metrics() {
+        return metrics;
+    }
 
-            // customer did not tap-off
-            for (TripEvent startTripEvent : customerTapOnTripEvent.values()) {
-                TripCompletionEvent completionEvent = createIncompleteTripEvent(startTripEvent);
-                tripCompletionEvents.add(completionEvent);
-                customerTapOnTripEvent.remove(startTripEvent.pan());
-            }
+    public TapAnomalyReport anomalies() {
+        return anomalies;
+    }
 
-            for (TripCompletionEvent completionEvent : tripCompletionEvents) {
-                writer.write(completionEvent);
-            }
+    TripEventMatcher createTripEventMatcher() {
+        return new TripEventMatcher(tripCostService, config.maxTripDuration(), metrics, anomalies,
+                config.openTripStoreType().create());
+    }
+
+    /**
+     * Returns the tap events of the reader in DateTimeUTC order, reordering them within the max lateness if given.
+     */
+    Iterable<TripEvent> orderedEvents(TripEventReader reader) {
+        Iterable<TripEvent> tripEvents = readEvents(reader);
+        if (config.maxLateness() == null) {
+            return tripEvents;
         }
+        return () -> new TapReorderBuffer(tripEvents.iterator(), config.maxLateness(), this::lateTap);
     }
 
-    private TripCompletionEvent createIncompleteTripEvent(TripEvent startTripEvent) {
-        TripCompletionEvent completionEvent = new TripCompletionEvent(
-                startTripEvent.dateTimeUtc(),
-                null,
-                null,
-                startTripEvent.stopId(),
-                null,
-                tripCostService.getTripCost(startTripEvent.stopId(), null),
-                startTripEvent.companyId(),
-                startTripEvent.busId(),
-                startTripEvent.pan(),
-                TripCompletionStatus.INCOMPLETE
-        );
-        return completionEvent;
+    private void lateTap(TripEvent tripEvent) {
+        metrics.lateTap();
+        try {
+            anomalies.lateTap(tripEvent);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
-    private TripCompletionEvent createCompleteTripEvent(TripEvent startTripEvent, TripEvent endTripEvent) {
-        long tripDurationInSeconds = Duration.between(startTripEvent.dateTimeUtc(), endTripEvent.dateTimeUtc())
-                .getSeconds();
-        TripCompletionStatus completionStatus = StringUtils.equals(startTripEvent.stopId(), endTripEvent.stopId()) ?
-                TripCompletionStatus.CANCELLED : TripCompletionStatus.COMPLETED;
-        TripCompletionEvent completionEvent = new TripCompletionEvent(
-                startTripEvent.dateTimeUtc(),
-                endTripEvent.dateTimeUtc(),
-                tripDurationInSeconds,
-                startTripEvent.stopId(),
-                endTripEvent.stopId(),
-                tripCostService.getTripCost(startTripEvent.stopId(), endTripEvent.stopId()),
-                startTripEvent.companyId(),
-                startTripEvent.busId(),
-                startTripEvent.pan(),
-                completionStatus
-        );
-        return completionEvent;
+    /**
+     * Returns the tap events of the reader, counting the tap events which cannot be parsed as parse errors.
+     */
+    Iterable<TripEvent> readEvents(TripEventReader reader) {
+        Iterator<TripEvent> tripEvents = reader.iterator();
+        return () -> new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return tripEvents.hasNext();
+                } catch (InvalidTripEventException e) {
+                    metrics.parseError();
+                    throw e;
+                }
+            }
+
+            @Override
+            public TripEvent next() {
+                try {
+                    return tripEvents.next();
+                } catch (InvalidTripEventException e) {
+                    metrics.parseError();
+                    throw e;
+                }
+            }
+        };
     }
 
 }
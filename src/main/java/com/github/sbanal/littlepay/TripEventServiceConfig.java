@@ -0,0 +1,74 @@
+package com.github.sbanal.littlepay;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Optional settings of the trip event services: the max trip duration, the metrics, the anomaly report, the open trip
+ * store and the max lateness. A config starts from {@link #defaults()} and each {@code with} method returns a new
+ * config with one setting changed.
+ */
+public record TripEventServiceConfig(Duration maxTripDuration, PipelineMetrics metrics, TapAnomalyReport anomalies,
+                                     OpenTripStoreType openTripStoreType, Duration maxLateness) {
+
+    public TripEventServiceConfig {
+        if (maxTripDuration != null && (maxTripDuration.isNegative() || maxTripDuration.isZero())) {
+            throw new IllegalArgumentException("Invalid max trip duration, value must be positive");
+        }
+        if (maxLateness != null && (maxLateness.isNegative() || maxLateness.isZero())) {
+            throw new IllegalArgumentException("Invalid max lateness, value must be positive");
+        }
+        Objects.requireNonNull(metrics, "metrics cannot be null");
+        Objects.requireNonNull(anomalies, "anomalies cannot be null");
+        Objects.requireNonNull(openTripStoreType, "openTripStoreType cannot be null");
+    }
+
+    /**
+     * Returns the config without trip expiry and reordering, with new metrics and anomaly report and the open trips
+     * kept on the heap.
+     */
+    public static TripEventServiceConfig defaults() {
+        return new TripEventServiceConfig(null, new PipelineMetrics(), new TapAnomalyReport(), OpenTripStoreType.HEAP,
+                null);
+    }
+
+    /**
+     * Returns the config with the maximum duration of a trip, a customer who did not tap off within this duration
+     * since tap on is considered to have an incomplete trip. A null duration disables the expiry and the customer
+     * trip is only considered incomplete on the next tap on or after all the tap events are read.
+     */
+    public TripEventServiceConfig withMaxTripDuration(Duration maxTripDuration) {
+        return new TripEventServiceConfig(maxTripDuration, metrics, anomalies, openTripStoreType, maxLateness);
+    }
+
+    /**
+     * Returns the config with the metrics the counters and timers of the processing are recorded in.
+     */
+    public TripEventServiceConfig withMetrics(PipelineMetrics metrics) {
+        return new TripEventServiceConfig(maxTripDuration, metrics, anomalies, openTripStoreType, maxLateness);
+    }
+
+    /**
+     * Returns the config with the report the tap events which cannot be matched into a trip are recorded in.
+     */
+    public TripEventServiceConfig withAnomalies(TapAnomalyReport anomalies) {
+        return new TripEventServiceConfig(maxTripDuration, metrics, anomalies, openTripStoreType, maxLateness);
+    }
+
+    /**
+     * Returns the config with the type of store of the tap on events of the customers who have not yet tapped off,
+     * {@link OpenTripStoreType#OFF_HEAP} keeps them out of the garbage collected heap.
+     */
+    public TripEventServiceConfig withOpenTripStoreType(OpenTripStoreType openTripStoreType) {
+        return new TripEventServiceConfig(maxTripDuration, metrics, anomalies, openTripStoreType, maxLateness);
+    }
+
+    /**
+     * Returns the config which reorders the tap events arriving up to the given max lateness after later tap events
+     * before matching them, see {@link TapReorderBuffer}. The tap events arriving later are recorded as anomalies and
+     * not matched. A null max lateness disables the reordering and the tap events must be read in DateTimeUTC order.
+     */
+    public TripEventServiceConfig withMaxLateness(Duration maxLateness) {
+        return new TripEventServiceConfig(maxTripDuration, metrics, anomalies, openTripStoreType, maxLateness);
+    }
+}
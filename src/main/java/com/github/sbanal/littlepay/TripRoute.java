@@ -1,4 +0,0 @@
-package com.github.sbanal.littlepay;
-
-record TripRoute(String startStopId, String endStopId) {
-}
@@ -0,0 +1,195 @@
+package com.github.sbanal.littlepay;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Parses and formats the dd-MM-yyyy HH:mm:ss UTC date time values of the csv files from and to epoch seconds
+ * without going through the java.time formatters. Values outside the years 0001 to 9999, and values which the fast
+ * path does not accept such as 24:00:00 or days beyond the end of the month, are handled by the date formatter so
+ * the results are always the same as {@link #UTC_DATE_FORMATTER}.
+ * <p>
+ * Formatting keeps the date of the last formatted value since consecutive values are usually on the same day, as
+ * ASCII bytes which can be copied into a byte buffer without creating a string. Instances are therefore not thread
+ * safe. Parsing is done by static methods and is thread safe.
+ */
+class UtcDateTimeCodec {
+
+    static final DateTimeFormatter UTC_DATE_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+    static final int LENGTH = "dd-MM-yyyy HH:mm:ss".length();
+    // longer than the values written by the date formatter, up to the years of LocalDateTime.MIN and MAX
+    static final int MAX_LENGTH = 32;
+    static final long INVALID = Long.MIN_VALUE;
+
+    private static final int DATE_LENGTH = "dd-MM-yyyy ".length();
+    private static final long SECONDS_PER_DAY = 86400;
+    private static final long MIN_EPOCH_DAY = LocalDate.of(1, 1, 1).toEpochDay();
+    private static final long MAX_EPOCH_DAY = LocalDate.of(9999, 12, 31).toEpochDay();
+
+    private final byte[] buffer = new byte[LENGTH];
+    private long bufferEpochDay = INVALID;
+
+    /**
+     * Parses the date time value into UTC epoch seconds.
+     *
+     * @throws java.time.format.DateTimeParseException if the value is not a valid date time
+     */
+    static long parseEpochSecond(CharSequence value) {
+        if (value.length() == LENGTH && value.charAt(2) == '-' && value.charAt(5) == '-' && value.charAt(10) == ' '
+                && value.charAt(13) == ':' && value.charAt(16) == ':') {
+            long epochSecond = toEpochSecond(
+                    parseDigits(value, 6, 4),
+                    parseDigits(value, 3, 2),
+                    parseDigits(value, 0, 2),
+                    parseDigits(value, 11, 2),
+                    parseDigits(value, 14, 2),
+                    parseDigits(value, 17, 2));
+            if (epochSecond != INVALID) {
+                return epochSecond;
+            }
+        }
+        return LocalDateTime.parse(value, UTC_DATE_FORMATTER).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Parses the date time value between the given positions of the buffer into UTC epoch seconds, returns
+     * {@link #INVALID} if the value is not accepted by the fast path and should be parsed by
+     * {@link #parseEpochSecond(CharSequence)}.
+     */
+    static long parseEpochSecond(ByteBuffer buffer, int start, int end) {
+        if (end - start != LENGTH
+                || buffer.get(start + 2) != '-' || buffer.get(start + 5) != '-' || buffer.get(start + 10) != ' '
+                || buffer.get(start + 13) != ':' || buffer.get(start + 16) != ':') {
+            return INVALID;
+        }
+        return toEpochSecond(
+                parseDigits(buffer, start + 6, 4),
+                parseDigits(buffer, start + 3, 2),
+                parseDigits(buffer, start, 2),
+                parseDigits(buffer, start + 11, 2),
+                parseDigits(buffer, start + 14, 2),
+                parseDigits(buffer, start + 17, 2));
+    }
+
+    /**
+     * Formats the UTC epoch seconds into a date time value.
+     */
+    String format(long epochSecond) {
+        if (!formatFastPath(epochSecond)) {
+            return formatSlowPath(epochSecond);
+        }
+        return new String(buffer, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Formats the UTC epoch seconds into a date time value written as ASCII bytes at the given index of the buffer
+     * and returns the number of bytes written. The buffer must have room for {@link #MAX_LENGTH} bytes at the index,
+     * its position is not changed.
+     */
+    int format(long epochSecond, ByteBuffer dst, int index) {
+        if (!formatFastPath(epochSecond)) {
+            String value = formatSlowPath(epochSecond);
+            for (int i = 0; i < value.length(); i++) {
+                dst.put(index + i, (byte) value.charAt(i));
+            }
+            return value.length();
+        }
+        dst.put(index, buffer, 0, LENGTH);
+        return LENGTH;
+    }
+
+    /**
+     * Formats the UTC epoch seconds into the buffer, returns false if the value is outside the fast path years.
+     */
+    private boolean formatFastPath(long epochSecond) {
+        long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        if (epochDay < MIN_EPOCH_DAY || epochDay > MAX_EPOCH_DAY) {
+            return false;
+        }
+        if (epochDay != bufferEpochDay) {
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            writeDigits(date.getDayOfMonth(), 0, 2);
+            buffer[2] = '-';
+            writeDigits(date.getMonthValue(), 3, 2);
+            buffer[5] = '-';
+            writeDigits(date.getYear(), 6, 4);
+            buffer[10] = ' ';
+            buffer[13] = ':';
+            buffer[16] = ':';
+            bufferEpochDay = epochDay;
+        }
+        int secondOfDay = (int) Math.floorMod(epochSecond, SECONDS_PER_DAY);
+        writeDigits(secondOfDay / 3600, DATE_LENGTH, 2);
+        writeDigits(secondOfDay / 60 % 60, 14, 2);
+        writeDigits(secondOfDay % 60, 17, 2);
+        return true;
+    }
+
+    private static String formatSlowPath(long epochSecond) {
+        return UTC_DATE_FORMATTER.format(Instant.ofEpochSecond(epochSecond).atOffset(ZoneOffset.UTC));
+    }
+
+    private void writeDigits(int value, int offset, int length) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static int parseDigits(CharSequence value, int start, int length) {
+        int result = 0;
+        for (int i = start; i < start + length; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private static int parseDigits(ByteBuffer buffer, int start, int length) {
+        int result = 0;
+        for (int i = start; i < start + length; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private static long toEpochSecond(int year, int month, int day, int hour, int minute, int second) {
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID;
+        }
+        return toEpochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    /**
+     * Returns the days since 1970-01-01 of the given proleptic Gregorian date, the year must not be negative.
+     */
+    private static long toEpochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointedTripEventServiceTest {
+
+    private static final Duration MAX_TRIP_DURATION = Duration.ofHours(1);
+
+    @TempDir
+    Path tempDir;
+    private Path tapsCsv;
+    private Path tripsCsv;
+    private Path checkpointFile;
+    private TripCostService tripCostService;
+    private String expectedTrips;
+
+    @BeforeEach
+    void generateTaps() throws IOException {
+        TapDataGenerator generator = new TapDataGenerator(LittlePayGeneratorOptions.parse(
+                "--rows=5000", "--pans=200", "--stops=10"));
+        StringWriter tripCosts = new StringWriter();
+        generator.writeTripCosts(tripCosts);
+        tripCostService = new TripCostService();
+        tripCostService.load(new StringReader(tripCosts.toString()));
+        StringWriter taps = new StringWriter();
+        generator.writeTaps(taps);
+        tapsCsv = Files.writeString(tempDir.resolve("taps.csv"), taps.toString());
+        tripsCsv = tempDir.resolve("trips.csv");
+        checkpointFile = tempDir.resolve("trips.checkpoint");
+
+        StringWriter trips = new StringWriter();
+        new TripEventService(tripCostService, TripEventServiceConfig.defaults().withMaxTripDuration(MAX_TRIP_DURATION))
+                .processEvents(new TripEventReader(new FileReader(tapsCsv.toFile())),
+                        new TripCompletionEventWriter(trips));
+        expectedTrips = trips.toString();
+    }
+
+    @Test
+    void processEvents_withoutCheckpoint_shouldWriteSameTripsAndDeleteCheckpoint() throws IOException {
+        createService(100).processEvents(tapsCsv, tripsCsv, InvalidTripEventHandler.FAIL, null);
+
+        assertEquals(expectedTrips, Files.readString(tripsCsv));
+        assertFalse(Files.exists(checkpointFile));
+    }
+
+    @Test
+    void processEvents_whenResumedAfterFailure_shouldWriteSameTripsAsUninterruptedJob() throws IOException {
+        List<String> taps = Files.readAllLines(tapsCsv);
+        String validTap = taps.get(3210);
+        // same length so the checkpoint still matches the taps file once the record is fixed
+        taps.set(3210, validTap.replace(", ON, ", ", NO, ").replace(", OFF, ", ", FFO, "));
+        Files.write(tapsCsv, taps);
+
+        assertThrows(InvalidTripEventException.class,
+                () -> createService(1000).processEvents(tapsCsv, tripsCsv, InvalidTripEventHandler.FAIL, null));
+        TripEventCheckpoint checkpoint = TripEventCheckpoint.read(checkpointFile);
+        assertNotNull(checkpoint);
+        assertEquals(3002, checkpoint.lineNumber());
+        assertTrue(Files.size(tripsCsv) > checkpoint.outputPosition());
+
+        taps.set(3210, validTap);
+        Files.write(tapsCsv, taps);
+        createService(1000).processEvents(tapsCsv, tripsCsv, InvalidTripEventHandler.FAIL, null);
+
+        assertEquals(expectedTrips, Files.readString(tripsCsv));
+        assertFalse(Files.exists(checkpointFile));
+    }
+
+    @Test
+    void processEvents_whenResumedWithQuarantine_shouldWriteSameQuarantineAsUninterruptedJob() throws IOException {
+        List<String> taps = Files.readAllLines(tapsCsv);
+        for (int line : List.of(1500, 3050, 3100)) {
+            taps.set(line, taps.get(line).replace(", ON, ", ", NO, ").replace(", OFF, ", ", FFO, "));
+        }
+        Files.write(tapsCsv, taps);
+        Path expectedTripsCsv = tempDir.resolve("expected-trips.csv");
+        Path expectedQuarantineCsv = tempDir.resolve("expected-quarantine.csv");
+        try (TapQuarantine quarantine = new TapQuarantine(expectedQuarantineCsv, 0, 0, 3)) {
+            createService(1000).processEvents(tapsCsv, expectedTripsCsv, quarantine::invalidTripEvent, quarantine);
+        }
+
+        Path quarantineCsv = tempDir.resolve("quarantine.csv");
+        try (TapQuarantine quarantine = new TapQuarantine(quarantineCsv, 0, 0, 3)) {
+            // the job crashes after the record of line 3051 was quarantined past the last checkpoint
+            InvalidTripEventHandler crashingHandler = (lineNumber, record, e) -> {
+                if (lineNumber == 3101) {
+                    throw new IllegalStateException("crash");
+                }
+                quarantine.invalidTripEvent(lineNumber, record, e);
+            };
+            assertThrows(IllegalStateException.class,
+                    () -> createService(1000).processEvents(tapsCsv, tripsCsv, crashingHandler, quarantine));
+            assertEquals(2, quarantine.invalidTripEvents());
+        }
+        TripEventCheckpoint checkpoint = TripEventCheckpoint.read(checkpointFile);
+        assertNotNull(checkpoint);
+        assertEquals(1, checkpoint.invalidTaps());
+        assertTrue(Files.size(quarantineCsv) > checkpoint.quarantinePosition());
+
+        try (TapQuarantine quarantine = new TapQuarantine(quarantineCsv, checkpoint.quarantinePosition(),
+                checkpoint.invalidTaps(), 3)) {
+            createService(1000).processEvents(tapsCsv, tripsCsv, quarantine::invalidTripEvent, quarantine);
+            assertEquals(3, quarantine.invalidTripEvents());
+        }
+
+        assertEquals(Files.readString(expectedTripsCsv), Files.readString(tripsCsv));
+        assertEquals(Files.readString(expectedQuarantineCsv), Files.readString(quarantineCsv));
+        assertFalse(Files.exists(checkpointFile));
+    }
+
+    @Test
+    void processEvents_whenTapsFileChanged_shouldThrowException() throws IOException {
+        new TripEventCheckpoint(1, 10, 2, 0, 0, 0, 0, List.of()).write(checkpointFile);
+
+        IOException ex = assertThrows(IOException.class,
+                () -> createService(100).processEvents(tapsCsv, tripsCsv, InvalidTripEventHandler.FAIL, null));
+        assertTrue(ex.getMessage().contains("was written for a taps file of 1 bytes"), ex.getMessage());
+    }
+
+    @Test
+    void constructor_withNonPositiveCheckpointInterval_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> createService(0));
+        assertEquals("Invalid checkpoint interval, value must be positive", ex.getMessage());
+    }
+
+    private CheckpointedTripEventService createService(long checkpointInterval) {
+        return new CheckpointedTripEventService(tripCostService,
+                TripEventServiceConfig.defaults().withMaxTripDuration(MAX_TRIP_DURATION), checkpointFile,
+                checkpointInterval);
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectTripCompletionEventWriterTest {
+
+    private static final Instant TAP_ON = Instant.parse("2023-01-22T13:00:00Z");
+
+    @Test
+    void write_withTrips_shouldWriteSameOutputAsCsvPrinter() throws IOException {
+        List<TripCompletionEvent> completionEvents = List.of(
+                completedTrip("Stop1", "Stop2", 325L, "Company1", "Bus37", "5500005555555559"),
+                new TripCompletionEvent(TAP_ON, null, null, "Stop3", null, 730L, "Company1", "Bus36",
+                        "4111111111111111", TripCompletionStatus.INCOMPLETE),
+                new TripCompletionEvent(TAP_ON, TAP_ON.plusSeconds(120), 120L, "Stop1", "Stop1", 0L, "Company1",
+                        "Bus37", "4111111111111111", TripCompletionStatus.CANCELLED));
+
+        assertEquals(writeWithCsvPrinter(completionEvents), writeDirect(completionEvents, 1024));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"Stop, 1", "Stop \"1\"", " Stop1", "Stop1 ", "#Stop1", "Stop\n1", "Stöp1", "", "車站"})
+    void write_withValuesWhichMayNeedQuoting_shouldWriteSameOutputAsCsvPrinter(String value) throws IOException {
+        List<TripCompletionEvent> completionEvents = List.of(
+                completedTrip(value, "Stop2", 325L, value, value, "5500005555555559"),
+                completedTrip("Stop1", value, -1050L, "Company1", "Bus1", "4111111111111111"));
+
+        assertEquals(writeWithCsvPrinter(completionEvents), writeDirect(completionEvents, 1024));
+    }
+
+    @Test
+    void write_withRowsLargerThanBuffer_shouldWriteSameOutputAsCsvPrinter() throws IOException {
+        List<TripCompletionEvent> completionEvents = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            completionEvents.add(completedTrip("Stop" + i, "Stöp" + (i + 1), i, "Company" + (i % 3),
+                    "Bus" + (i % 7), "4111111111" + i));
+        }
+        completionEvents.add(completedTrip("Stop1", "Stop2".repeat(100), 1L, "Company1", "Bus1", "4111111111111111"));
+
+        assertEquals(writeWithCsvPrinter(completionEvents), writeDirect(completionEvents, 256));
+    }
+
+    @Test
+    void direct_withTripsCsvFile_shouldWriteAllTripsOnClose(@TempDir Path tempDir) throws IOException {
+        Path tripsCsv = tempDir.resolve("trips.csv");
+        Files.writeString(tripsCsv, "previous content which is longer than the new content".repeat(100));
+        List<TripCompletionEvent> completionEvents = List.of(
+                completedTrip("Stop1", "Stop2", 325L, "Company1", "Bus37", "5500005555555559"));
+
+        try (TripCompletionEventWriter writer = TripCompletionEventWriter.direct(tripsCsv)) {
+            for (TripCompletionEvent completionEvent : completionEvents) {
+                writer.write(completionEvent);
+            }
+        }
+
+        assertEquals(writeWithCsvPrinter(completionEvents), Files.readString(tripsCsv));
+    }
+
+    @Test
+    void bytesWritten_withTrips_shouldReturnBytesOfRowsWritten(@TempDir Path tempDir) throws IOException {
+        Path tripsCsv = tempDir.resolve("trips.csv");
+        List<TripCompletionEvent> completionEvents = List.of(
+                completedTrip("Stop1", "Stop2", 325L, "Company1", "Bus37", "5500005555555559"),
+                completedTrip("Stöp1", "車站", 325L, "Company1", "Bus37", "5500005555555559"));
+
+        long bytesWritten;
+        try (TripCompletionEventWriter writer = TripCompletionEventWriter.direct(tripsCsv)) {
+            for (TripCompletionEvent completionEvent : completionEvents) {
+                writer.write(completionEvent);
+            }
+            bytesWritten = writer.bytesWritten();
+        }
+
+        assertEquals(Files.size(tripsCsv), bytesWritten);
+    }
+
+    private static TripCompletionEvent completedTrip(String fromStopId, String toStopId, long chargeCents,
+                                                     String companyId, String busId, String pan) {
+        return new TripCompletionEvent(TAP_ON, TAP_ON.plusSeconds(300), 300L, fromStopId, toStopId, chargeCents,
+                companyId, busId, pan, TripCompletionStatus.COMPLETED);
+    }
+
+    private static String writeWithCsvPrinter(List<TripCompletionEvent> completionEvents) throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        try (TripCompletionEventWriter writer = new TripCompletionEventWriter(stringWriter)) {
+            for (TripCompletionEvent completionEvent : completionEvents) {
+                writer.write(completionEvent);
+            }
+        }
+        return stringWriter.toString();
+    }
+
+    private static String writeDirect(List<TripCompletionEvent> completionEvents, int bufferSize)
+            throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (DirectTripCompletionEventWriter writer =
+                     new DirectTripCompletionEventWriter(Channels.newChannel(outputStream), bufferSize)) {
+            for (TripCompletionEvent completionEvent : completionEvents) {
+                writer.write(completionEvent);
+            }
+        }
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+}
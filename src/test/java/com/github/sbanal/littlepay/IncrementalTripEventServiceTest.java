@@ -0,0 +1,119 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalTripEventServiceTest {
+
+    private static final Duration MAX_TRIP_DURATION = Duration.ofHours(1);
+
+    @Test
+    void processEvents_withFilesOverSeveralRuns_shouldCompleteTripsSpanningFiles(@TempDir Path tempDir)
+            throws IOException {
+        TapDataGenerator generator = new TapDataGenerator(LittlePayGeneratorOptions.parse(
+                "--rows=3000", "--pans=100", "--stops=10", "--taps-per-second=0.5"));
+        StringWriter tripCosts = new StringWriter();
+        generator.writeTripCosts(tripCosts);
+        TripCostService tripCostService = new TripCostService();
+        tripCostService.load(new StringReader(tripCosts.toString()));
+        StringWriter taps = new StringWriter();
+        generator.writeTaps(taps);
+        Path allTapsCsv = Files.writeString(tempDir.resolve("all-taps.csv"), taps.toString());
+        List<String> tapLines = Files.readAllLines(allTapsCsv);
+        List<Path> tapsCsvFiles = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            List<String> fileLines = new ArrayList<>();
+            fileLines.add(tapLines.get(0));
+            fileLines.addAll(tapLines.subList(1 + i * 1000, 1 + (i + 1) * 1000));
+            tapsCsvFiles.add(Files.write(tempDir.resolve("taps-" + i + ".csv"), fileLines));
+        }
+        Path stateFile = tempDir.resolve("taps.state");
+
+        StringWriter expectedTrips = new StringWriter();
+        new TripEventService(tripCostService, TripEventServiceConfig.defaults().withMaxTripDuration(MAX_TRIP_DURATION))
+                .processEvents(new TripEventReader(new FileReader(allTapsCsv.toFile())),
+                        new TripCompletionEventWriter(expectedTrips));
+        List<String> actualTripLines = new ArrayList<>();
+        actualTripLines.addAll(processRun(tripCostService, stateFile, tapsCsvFiles.subList(0, 1)));
+        actualTripLines.addAll(processRun(tripCostService, stateFile, tapsCsvFiles.subList(0, 2)));
+        actualTripLines.addAll(processRun(tripCostService, stateFile, tapsCsvFiles));
+
+        OpenTripState state = OpenTripState.read(stateFile);
+        assertEquals(List.of("taps-0.csv", "taps-1.csv", "taps-2.csv"), state.processedFiles());
+        List<String> expectedTripLines = expectedTrips.toString().lines().skip(1).toList();
+        // the trips still open after the last file are only written as incomplete by the single run
+        assertFalse(state.openTrips().isEmpty());
+        assertEquals(expectedTripLines.size(), actualTripLines.size() + state.openTrips().size());
+        assertEquals(expectedTripLines.subList(0, actualTripLines.size()), actualTripLines);
+    }
+
+    @Test
+    void processEvents_whenFilesAlreadyProcessed_shouldNotReadFilesAgain(@TempDir Path tempDir) throws IOException {
+        Path tapsCsv = Files.writeString(tempDir.resolve("taps-0.csv"), """
+                ID, DateTimeUTC, TapType, StopId, CompanyId, BusID, PAN
+                1, 22-01-2023 13:00:00, ON, Stop1, Company1, Bus37, 5500005555555559
+                """);
+        Path stateFile = tempDir.resolve("taps.state");
+        TripCostService tripCostService = new TripCostService();
+
+        assertEquals(List.of(), processRun(tripCostService, stateFile, List.of(tapsCsv)));
+        StringWriter trips = new StringWriter();
+        List<Path> processedFiles = new IncrementalTripEventService(tripCostService,
+                TripEventServiceConfig.defaults().withMaxTripDuration(MAX_TRIP_DURATION), stateFile)
+                .processEvents(List.of(tapsCsv), file -> fail("file already processed"),
+                        new TripCompletionEventWriter(trips));
+
+        assertEquals(List.of(), processedFiles);
+        assertEquals(List.of("Started,Finished,DurationSecs,FromStopId,ToStopId,ChargeAmount,CompanyId,BusID,PAN,"
+                + "Status"), trips.toString().lines().toList());
+        assertEquals(List.of("5500005555555559"),
+                OpenTripState.read(stateFile).openTrips().stream().map(TripEvent::pan).toList());
+    }
+
+    @Test
+    void processEvents_whenProcessedFileRemovedFromInput_shouldForgetFile(@TempDir Path tempDir) throws IOException {
+        List<Path> tapsCsvFiles = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            tapsCsvFiles.add(Files.writeString(tempDir.resolve("taps-" + i + ".csv"),
+                    "ID, DateTimeUTC, TapType, StopId, CompanyId, BusID, PAN\n"));
+        }
+        Path stateFile = tempDir.resolve("taps.state");
+        TripCostService tripCostService = new TripCostService();
+
+        processRun(tripCostService, stateFile, tapsCsvFiles.subList(0, 2));
+        processRun(tripCostService, stateFile, tapsCsvFiles.subList(1, 3));
+
+        assertEquals(List.of("taps-1.csv", "taps-2.csv"), OpenTripState.read(stateFile).processedFiles());
+    }
+
+    @Test
+    void constructor_withoutMaxTripDuration_shouldThrowException(@TempDir Path tempDir) {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> new IncrementalTripEventService(new TripCostService(), TripEventServiceConfig.defaults(),
+                        tempDir.resolve("taps.state")));
+        assertEquals("Invalid max trip duration, value is required to expire open trips", ex.getMessage());
+    }
+
+    private static List<String> processRun(TripCostService tripCostService, Path stateFile, List<Path> tapsCsvFiles)
+            throws IOException {
+        StringWriter trips = new StringWriter();
+        IncrementalTripEventService service = new IncrementalTripEventService(tripCostService,
+                TripEventServiceConfig.defaults().withMaxTripDuration(MAX_TRIP_DURATION), stateFile);
+        service.processEvents(tapsCsvFiles, tapsCsv -> new TripEventReader(new FileReader(tapsCsv.toFile())),
+                new TripCompletionEventWriter(trips));
+        return trips.toString().lines().skip(1).toList();
+    }
+
+}
@@ -1,12 +1,20 @@
 package com.github.sbanal.littlepay;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class LittlePayAppCliTest {
@@ -36,4 +44,183 @@ class LittlePayAppCliTest {
         assertEquals(expectedContent, content);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void processCommand_withPartitions_shouldWriteSameTripsInAnyOrder(@TempDir Path tempDir) throws IOException {
+        Path outputTripsFile = tempDir.resolve("trips.csv");
+        LittlePayAppCli.main(
+                "--partitions=4",
+                "src/test/resources/trip-cost.csv",
+                "src/test/resources/taps.csv",
+                outputTripsFile.toString());
+
+        List<String> lines = Files.readAllLines(outputTripsFile);
+        assertEquals("Started,Finished,DurationSecs,FromStopId,ToStopId,ChargeAmount,CompanyId,BusID,PAN,Status",
+                lines.get(0));
+        assertEquals(List.of(
+                "22-01-2023 09:20:00,,,Stop3,,$7.30,Company1,Bus36,4111111111111111,INCOMPLETE",
+                "22-01-2023 13:00:00,22-01-2023 13:05:00,300,Stop1,Stop2,$3.25,Company1,Bus37,5500005555555559,COMPLETED",
+                "23-01-2023 08:00:00,23-01-2023 08:02:00,120,Stop1,Stop1,$0.00,Company1,Bus37,4111111111111111,CANCELLED"
+        ), lines.subList(1, lines.size()).stream().sorted().toList());
+    }
+
+    @Test
+    public void processCommand_withParserThreads_shouldWriteSameTrips(@TempDir Path tempDir) throws IOException {
+        Path outputTripsFile = tempDir.resolve("trips.csv");
+        LittlePayAppCli.main(
+                "--parser-threads=4",
+                "src/test/resources/trip-cost.csv",
+                "src/test/resources/taps.csv",
+                outputTripsFile.toString());
+
+        assertEquals(Files.readString(Paths.get("src/test/resources/trips.csv")), Files.readString(outputTripsFile));
+    }
+
+    @Test
+    public void processCommand_withMappedParser_shouldWriteSameTrips(@TempDir Path tempDir) throws IOException {
+        Path outputTripsFile = tempDir.resolve("trips.csv");
+        LittlePayAppCli.main(
+                "--parser=mapped",
+                "src/test/resources/trip-cost.csv",
+                "src/test/resources/taps.csv",
+                outputTripsFile.toString());
+
+        assertEquals(Files.readString(Paths.get("src/test/resources/trips.csv")), Files.readString(outputTripsFile));
+    }
+
+    @Test
+    public void processCommand_withPipelinedExecution_shouldWriteSameTrips(@TempDir Path tempDir) throws IOException {
+        Path outputTripsFile = tempDir.resolve("trips.csv");
+        LittlePayAppCli.main(
+                "--execution=pipelined",
+                "src/test/resources/trip-cost.csv",
+                "src/test/resources/taps.csv",
+                outputTripsFile.toString());
+
+        assertEquals(Files.readString(Paths.get("src/test/resources/trips.csv")), Files.readString(outputTripsFile));
+    }
+
+    @Test
+    public void processCommand_withDirectWriter_shouldWriteSameTrips(@TempDir Path tempDir) throws IOException {
+        Path outputTripsFile = tempDir.resolve("trips.csv");
+        LittlePayAppCli.main(
+                "--writer=direct",
+                "src/test/resources/trip-cost.csv",
+                "src/test/resources/taps.csv",
+                outputTripsFile.toString());
+
+        assertEquals(Files.readString(Paths.get("src/test/resources/trips.csv")), Files.readString(outputTripsFile));
+    }
+
+    @Test
+    public void processCommand_withSortDirAndUnsortedTaps_shouldWriteSameTrips(@TempDir Path tempDir)
+            throws IOException {
+        List<String> taps = Files.readAllLines(Paths.get("src/test/resources/taps.csv"));
+        List<String> unsortedTaps = new ArrayList<>(taps.subList(1, taps.size()));
+        Collections.reverse(unsortedTaps);
+        unsortedTaps.add(0, taps.get(0));
+        Path inputTapsFile = tempDir.resolve("taps.csv");
+        Files.write(inputTapsFile, unsortedTaps);
+        Path sortDir = Files.createDirectory(tempDir.resolve("sort"));
+        Path outputTripsFile = tempDir.resolve("trips.csv");
+
+        LittlePayAppCli.main(
+                "--sort-dir=" + sortDir,
+                "--sort-run-size=2",
+                "src/test/resources/trip-cost.csv",
+                inputTapsFile.toString(),
+                outputTripsFile.toString());
+
+        assertEquals(Files.readString(Paths.get("src/test/resources/trips.csv")), Files.readString(outputTripsFile));
+        try (Stream<Path> runFiles = Files.list(sortDir)) {
+            assertEquals(0, runFiles.count());
+        }
+    }
+
+    @Test
+    public void processCommand_withQuarantine_shouldSkipInvalidTapsAndWriteQuarantine(@TempDir Path tempDir)
+            throws IOException {
+        List<String> taps = Files.readAllLines(Paths.get("src/test/resources/taps.csv"));
+        Path inputTapsFile = tempDir.resolve("taps.csv");
+        Files.write(inputTapsFile, List.of(taps.get(0), taps.get(1),
+                "99, 22-01-2023 13:01:00, SKIP, Stop1, Company1, Bus37, 5500005555555559"));
+        Files.write(inputTapsFile, taps.subList(2, taps.size()), StandardOpenOption.APPEND);
+        Path outputTripsFile = tempDir.resolve("trips.csv");
+        Path quarantineFile = tempDir.resolve("quarantine.csv");
+
+        LittlePayAppCli.main(
+                "--quarantine=" + quarantineFile,
+                "--max-invalid-taps=1",
+                "src/test/resources/trip-cost.csv",
+                inputTapsFile.toString(),
+                outputTripsFile.toString());
+
+        assertEquals(Files.readString(Paths.get("src/test/resources/trips.csv")), Files.readString(outputTripsFile));
+        assertEquals("""
+                LineNumber,Reason,Message,Record
+                3,INVALID_TAP_TYPE,Invalid trip event TapType for record 99,"99,22-01-2023 13:01:00,SKIP,Stop1,\
+                Company1,Bus37,5500005555555559"
+                """, Files.readString(quarantineFile));
+    }
+
+    @Test
+    public void processCommand_withCheckpoint_shouldWriteSameTripsAndDeleteCheckpoint(@TempDir Path tempDir)
+            throws IOException {
+        Path outputTripsFile = tempDir.resolve("trips.csv");
+        Path checkpointFile = tempDir.resolve("trips.checkpoint");
+        LittlePayAppCli.main(
+                "--checkpoint=" + checkpointFile,
+                "--checkpoint-interval=1",
+                "src/test/resources/trip-cost.csv",
+                "src/test/resources/taps.csv",
+                outputTripsFile.toString());
+
+        assertEquals(Files.readString(Paths.get("src/test/resources/trips.csv")), Files.readString(outputTripsFile));
+        assertFalse(Files.exists(checkpointFile));
+    }
+
+    @Test
+    public void processCommand_withStateAndTapsDirectory_shouldCarryOpenTripsToNextRun(@TempDir Path tempDir)
+            throws IOException {
+        List<String> taps = Files.readAllLines(Paths.get("src/test/resources/taps.csv"));
+        Path tapsDir = Files.createDirectory(tempDir.resolve("taps"));
+        Files.write(tapsDir.resolve("taps-00.csv"), taps.subList(0, 2));
+        Path stateFile = tempDir.resolve("taps.state");
+        Path firstTripsFile = tempDir.resolve("trips-00.csv");
+        Path secondTripsFile = tempDir.resolve("trips-01.csv");
+
+        LittlePayAppCli.main("--state=" + stateFile, "--max-trip-duration=PT3H", "src/test/resources/trip-cost.csv",
+                tapsDir.toString(), firstTripsFile.toString());
+        Files.write(tapsDir.resolve("taps-01.csv"), List.of(taps.get(0), taps.get(2)));
+        LittlePayAppCli.main("--state=" + stateFile, "--max-trip-duration=PT3H", "src/test/resources/trip-cost.csv",
+                tapsDir.toString(), secondTripsFile.toString());
+
+        List<String> expectedTrips = Files.readAllLines(Paths.get("src/test/resources/trips.csv"));
+        assertEquals(List.of(expectedTrips.get(0)), Files.readAllLines(firstTripsFile));
+        assertEquals(expectedTrips.subList(0, 2), Files.readAllLines(secondTripsFile));
+    }
+
+    @Test
+    public void processCommand_withManifest_shouldRunEachJob(@TempDir Path tempDir) throws IOException {
+        Path manifestCsv = Files.writeString(tempDir.resolve("jobs.csv"), """
+                TripCostCsv,TapsCsv,TripsCsv
+                %1$s,%2$s,trips-0.csv
+                %1$s,%2$s,trips-1.csv
+                """.formatted(Paths.get("src/test/resources/trip-cost.csv").toAbsolutePath(),
+                Paths.get("src/test/resources/taps.csv").toAbsolutePath()));
+
+        LittlePayAppCli.main("--manifest=" + manifestCsv, "--writer=direct");
+
+        List<String> expectedTrips = Files.readAllLines(Paths.get("src/test/resources/trips.csv"));
+        assertEquals(expectedTrips, Files.readAllLines(tempDir.resolve("trips-0.csv")));
+        assertEquals(expectedTrips, Files.readAllLines(tempDir.resolve("trips-1.csv")));
+    }
+
+    @Test
+    public void serveCommand_withoutMaxTripDuration_shouldThrowException(@TempDir Path tempDir) {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> LittlePayDaemonCli.main(
+                "src/test/resources/trip-cost.csv", tempDir.resolve("spool").toString(),
+                tempDir.resolve("trips").toString()));
+        assertEquals("Invalid option '--max-trip-duration', value is required by the daemon", ex.getMessage());
+    }
+
+}
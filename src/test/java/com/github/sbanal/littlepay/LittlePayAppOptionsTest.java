@@ -0,0 +1,327 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LittlePayAppOptionsTest {
+
+    @Test
+    void parse_withNoOptions_shouldReturnDefaultOptions() {
+        LittlePayAppOptions options = LittlePayAppOptions.parse("trip-cost.csv", "taps.csv", "trips.csv");
+
+        assertEquals(List.of("trip-cost.csv", "taps.csv", "trips.csv"), options.arguments());
+        assertNull(options.maxTripDuration());
+        assertEquals(1, options.partitions());
+        assertEquals(1, options.parserThreads());
+        assertEquals(LittlePayAppOptions.ParserType.CSV, options.parserType());
+        assertEquals(LittlePayAppOptions.WriterType.CSV, options.writerType());
+        assertNull(options.rejectedTapsCsv());
+        assertFalse(options.skipInvalidTaps());
+        assertNull(options.checkpointFile());
+        assertEquals(1_000_000, options.checkpointInterval());
+        assertNull(options.stateFile());
+        assertEquals(Duration.ofMillis(200), options.batchInterval());
+        assertEquals(Duration.ofHours(1), options.rollInterval());
+        assertEquals(Duration.ofSeconds(10), options.reloadInterval());
+        assertNull(options.manifestCsv());
+        assertEquals(Runtime.getRuntime().availableProcessors(), options.concurrentJobs());
+        assertEquals(OpenTripStoreType.HEAP, options.openTripStoreType());
+        assertNull(options.maxLateness());
+        assertNull(options.sortDir());
+        assertEquals(TapExternalSorter.DEFAULT_RUN_SIZE, options.sortRunSize());
+        assertEquals(LittlePayAppOptions.ExecutionType.SERIAL, options.executionType());
+    }
+
+    @Test
+    void parse_withPipelinedExecution_shouldReturnPipelinedExecutionType() {
+        LittlePayAppOptions options = LittlePayAppOptions.parse("--execution=pipelined");
+
+        assertEquals(LittlePayAppOptions.ExecutionType.PIPELINED, options.executionType());
+    }
+
+    @Test
+    void parse_withPipelinedExecutionAndPartitions_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--execution=pipelined", "--partitions=4"));
+        assertEquals("Invalid option '--execution', cannot be used with --partitions, --checkpoint, --state or "
+                + "--manifest", ex.getMessage());
+    }
+
+    @Test
+    void parse_withInvalidExecution_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--execution=parallel"));
+        assertEquals("Invalid option '--execution=parallel', value must be serial or pipelined", ex.getMessage());
+    }
+
+    @Test
+    void parse_withSortDir_shouldReturnSortDirAndRunSize() {
+        LittlePayAppOptions options = LittlePayAppOptions.parse("--sort-dir=/tmp/sort", "--sort-run-size=1000");
+
+        assertEquals("/tmp/sort", options.sortDir());
+        assertEquals(1000, options.sortRunSize());
+    }
+
+    @Test
+    void parse_withSortRunSizeWithoutSortDir_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--sort-run-size=1000"));
+        assertEquals("Invalid option '--sort-run-size', can only be used with --sort-dir", ex.getMessage());
+    }
+
+    @Test
+    void parse_withSortDirAndCheckpoint_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--sort-dir=/tmp/sort", "--checkpoint=taps.checkpoint"));
+        assertEquals("Invalid option '--sort-dir', cannot be used with --checkpoint", ex.getMessage());
+    }
+
+    @Test
+    void parse_withMaxLateness_shouldReturnMaxLateness() {
+        LittlePayAppOptions options = LittlePayAppOptions.parse("--max-lateness=PT5M");
+
+        assertEquals(Duration.ofMinutes(5), options.maxLateness());
+    }
+
+    @Test
+    void parse_withMaxLatenessAndCheckpoint_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--max-lateness=PT5M", "--checkpoint=taps.checkpoint"));
+        assertEquals("Invalid option '--max-lateness', cannot be used with --checkpoint, --state or --manifest",
+                ex.getMessage());
+    }
+
+    @Test
+    void parse_withOffHeapOpenTrips_shouldReturnOffHeapOpenTripStoreType() {
+        LittlePayAppOptions options = LittlePayAppOptions.parse("--open-trips=off-heap");
+
+        assertEquals(OpenTripStoreType.OFF_HEAP, options.openTripStoreType());
+    }
+
+    @Test
+    void parse_withInvalidOpenTrips_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--open-trips=disk"));
+        assertEquals("Invalid option '--open-trips=disk', value must be heap or off-heap", ex.getMessage());
+    }
+
+    @Test
+    void parse_withOffHeapOpenTripsAndState_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--open-trips=off-heap", "--state=taps.state"));
+        assertEquals("Invalid option '--open-trips', cannot be used with --checkpoint, --state or --manifest",
+                ex.getMessage());
+    }
+
+    @Test
+    void parse_withManifest_shouldReturnManifestAndConcurrentJobs() {
+        LittlePayAppOptions options = LittlePayAppOptions.parse("--manifest=jobs.csv", "--concurrent-jobs=16");
+
+        assertEquals("jobs.csv", options.manifestCsv());
+        assertEquals(16, options.concurrentJobs());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"--partitions=2", "--state=taps.state", "--quarantine=quarantine.csv"})
+    void parse_withManifestAndSingleJobOption_shouldThrowException(String arg) {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--manifest=jobs.csv", arg));
+        assertEquals("Invalid option '--manifest', cannot be used with --partitions, --checkpoint, --state, "
+                + "--quarantine, --max-invalid-taps or --rejected-taps", ex.getMessage());
+    }
+
+    @Test
+    void parse_withBatchAndRollInterval_shouldReturnIntervals() {
+        LittlePayAppOptions options = LittlePayAppOptions.parse("--batch-interval=PT0.5S", "--roll-interval=PT15M",
+                "--reload-interval=PT1M");
+
+        assertEquals(Duration.ofMillis(500), options.batchInterval());
+        assertEquals(Duration.ofMinutes(15), options.rollInterval());
+        assertEquals(Duration.ofMinutes(1), options.reloadInterval());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"--batch-interval=PT0S", "--roll-interval=-PT1M", "--reload-interval=PT0S",
+            "--max-lateness=PT0S"})
+    void parse_withNonPositiveInterval_shouldThrowException(String arg) {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse(arg));
+        assertEquals("Invalid option '" + arg + "', value must be a positive duration", ex.getMessage());
+    }
+
+    @Test
+    void parse_withState_shouldReturnStateFile() {
+        LittlePayAppOptions options = LittlePayAppOptions.parse("--state=taps.state", "--max-trip-duration=PT3H");
+
+        assertEquals("taps.state", options.stateFile());
+    }
+
+    @Test
+    void parse_withStateWithoutMaxTripDuration_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--state=taps.state"));
+        assertEquals("Invalid option '--state', can only be used with --max-trip-duration", ex.getMessage());
+    }
+
+    @Test
+    void parse_withStateAndCheckpoint_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--state=taps.state", "--checkpoint=trips.checkpoint"));
+        assertEquals("Invalid option '--state', cannot be used with --partitions or --checkpoint", ex.getMessage());
+    }
+
+    @Test
+    void parse_withCheckpoint_shouldReturnCheckpointFileAndInterval() {
+        LittlePayAppOptions options = LittlePayAppOptions.parse("--checkpoint=trips.checkpoint",
+                "--checkpoint-interval=5000");
+
+        assertEquals("trips.checkpoint", options.checkpointFile());
+        assertEquals(5000, options.checkpointInterval());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"--parser=mapped", "--writer=direct"})
+    void parse_withCheckpointAndParserOrWriter_shouldThrowException(String arg) {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--checkpoint=trips.checkpoint", arg));
+        assertEquals("Invalid option '--checkpoint', cannot be used with --parser or --writer", ex.getMessage());
+    }
+
+    @Test
+    void parse_withCheckpointAndPartitions_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--checkpoint=trips.checkpoint", "--partitions=2"));
+        assertEquals("Invalid option '--checkpoint', cannot be used with --partitions or --parser-threads",
+                ex.getMessage());
+    }
+
+    @Test
+    void parse_withQuarantine_shouldSkipInvalidTapsWithoutErrorBudget() {
+        LittlePayAppOptions options = LittlePayAppOptions.parse("--quarantine=quarantine.csv");
+
+        assertTrue(options.skipInvalidTaps());
+        assertEquals("quarantine.csv", options.quarantineCsv());
+        assertEquals(Long.MAX_VALUE, options.maxInvalidTaps());
+    }
+
+    @Test
+    void parse_withMaxInvalidTaps_shouldSkipInvalidTapsWithErrorBudget() {
+        LittlePayAppOptions options = LittlePayAppOptions.parse("--max-invalid-taps=0");
+
+        assertTrue(options.skipInvalidTaps());
+        assertNull(options.quarantineCsv());
+        assertEquals(0, options.maxInvalidTaps());
+    }
+
+    @Test
+    void parse_withNegativeMaxInvalidTaps_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--max-invalid-taps=-1"));
+        assertEquals("Invalid option '--max-invalid-taps=-1', value must be zero or a positive number",
+                ex.getMessage());
+    }
+
+    @Test
+    void parse_withRejectedTaps_shouldReturnRejectedTapsCsv() {
+        LittlePayAppOptions options = LittlePayAppOptions.parse("--rejected-taps=rejected-taps.csv");
+
+        assertEquals("rejected-taps.csv", options.rejectedTapsCsv());
+    }
+
+    @Test
+    void parse_withEmptyRejectedTaps_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--rejected-taps="));
+        assertEquals("Invalid option '--rejected-taps=', value must be a file", ex.getMessage());
+    }
+
+    @Test
+    void parse_withMappedParser_shouldReturnMappedParserType() {
+        LittlePayAppOptions options = LittlePayAppOptions.parse("--parser=mapped");
+
+        assertEquals(LittlePayAppOptions.ParserType.MAPPED, options.parserType());
+    }
+
+    @Test
+    void parse_withInvalidParser_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--parser=xml"));
+        assertEquals("Invalid option '--parser=xml', value must be csv or mapped", ex.getMessage());
+    }
+
+    @Test
+    void parse_withDirectWriter_shouldReturnDirectWriterType() {
+        LittlePayAppOptions options = LittlePayAppOptions.parse("--writer=direct");
+
+        assertEquals(LittlePayAppOptions.WriterType.DIRECT, options.writerType());
+    }
+
+    @Test
+    void parse_withInvalidWriter_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--writer=json"));
+        assertEquals("Invalid option '--writer=json', value must be csv or direct", ex.getMessage());
+    }
+
+    @Test
+    void parse_withParserThreads_shouldReturnParserThreads() {
+        LittlePayAppOptions options = LittlePayAppOptions.parse("--parser-threads=4", "trip-cost.csv");
+
+        assertEquals(List.of("trip-cost.csv"), options.arguments());
+        assertEquals(4, options.parserThreads());
+    }
+
+    @Test
+    void parse_withPartitions_shouldReturnPartitions() {
+        LittlePayAppOptions options = LittlePayAppOptions.parse("trip-cost.csv", "--partitions=8");
+
+        assertEquals(List.of("trip-cost.csv"), options.arguments());
+        assertEquals(8, options.partitions());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "-1", "a"})
+    void parse_withInvalidPartitions_shouldThrowException(String partitions) {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--partitions=" + partitions));
+        assertEquals("Invalid option '--partitions=" + partitions + "', value must be a positive number",
+                ex.getMessage());
+    }
+
+    @Test
+    void parse_withMaxTripDuration_shouldReturnMaxTripDuration() {
+        LittlePayAppOptions options = LittlePayAppOptions.parse(
+                "--max-trip-duration=PT2H", "trip-cost.csv", "taps.csv", "trips.csv");
+
+        assertEquals(List.of("trip-cost.csv", "taps.csv", "trips.csv"), options.arguments());
+        assertEquals(Duration.ofHours(2), options.maxTripDuration());
+    }
+
+    @Test
+    void parse_withInvalidMaxTripDuration_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--max-trip-duration=2h"));
+        assertEquals("Invalid option '--max-trip-duration=2h', value must be an ISO-8601 duration", ex.getMessage());
+    }
+
+    @Test
+    void parse_withUnknownOption_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--unknown=1"));
+        assertEquals("Invalid option '--unknown=1'", ex.getMessage());
+    }
+
+    @Test
+    void parse_withOptionWithoutValue_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayAppOptions.parse("--max-trip-duration"));
+        assertEquals("Invalid option '--max-trip-duration', value is required", ex.getMessage());
+    }
+
+}
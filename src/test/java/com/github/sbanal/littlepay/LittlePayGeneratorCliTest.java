@@ -0,0 +1,42 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LittlePayGeneratorCliTest {
+
+    @Test
+    public void generateCommand_withIncompleteInput() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayGeneratorCli.main("trip-cost.csv"));
+        assertEquals("Invalid argument, usage: " +
+                "./littlepay-generator <output trip cost csv file> <output taps csv file>", ex.getMessage());
+    }
+
+    @Test
+    public void generateCommand_withOptions_shouldGenerateFilesProcessedByApp(@TempDir Path tempDir)
+            throws IOException {
+        Path tripCostCsv = tempDir.resolve("trip-cost.csv");
+        Path tapsCsv = tempDir.resolve("taps.csv");
+        Path tripsCsv = tempDir.resolve("trips.csv");
+
+        LittlePayGeneratorCli.main("--rows=10000", "--pans=500", "--stops=30", "--route-span=5",
+                tripCostCsv.toString(), tapsCsv.toString());
+        LittlePayAppCli.main(tripCostCsv.toString(), tapsCsv.toString(), tripsCsv.toString());
+
+        List<String> taps = Files.readAllLines(tapsCsv);
+        List<String> trips = Files.readAllLines(tripsCsv);
+        long tapOns = taps.stream().filter(tap -> tap.contains(", ON, ")).count();
+        assertEquals(10001, taps.size());
+        assertEquals(tapOns + 1, trips.size());
+    }
+
+}
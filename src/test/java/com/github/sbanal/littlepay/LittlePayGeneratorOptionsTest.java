@@ -0,0 +1,88 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LittlePayGeneratorOptionsTest {
+
+    @Test
+    void parse_withNoOptions_shouldReturnDefaultOptions() {
+        LittlePayGeneratorOptions options = LittlePayGeneratorOptions.parse("trip-cost.csv", "taps.csv");
+
+        assertEquals(List.of("trip-cost.csv", "taps.csv"), options.arguments());
+        assertEquals(1_000_000, options.rows());
+        assertEquals(10_000, options.pans());
+        assertEquals(10, options.stops());
+        assertEquals(0, options.routeSpan());
+        assertEquals(0.9, options.tapOffRatio());
+        assertEquals(0.02, options.cancelRatio());
+        assertEquals(10, options.tapsPerSecond());
+        assertEquals(Duration.ofMinutes(20), options.meanTripDuration());
+        assertEquals(Instant.parse("2023-01-22T00:00:00Z"), options.start());
+        assertEquals(42, options.seed());
+    }
+
+    @Test
+    void parse_withOptions_shouldReturnOptions() {
+        LittlePayGeneratorOptions options = LittlePayGeneratorOptions.parse(
+                "--rows=100000000", "trip-cost.csv", "--pans=5000000", "--stops=200", "--route-span=20",
+                "--tap-off-ratio=0.8", "--cancel-ratio=0.1", "--taps-per-second=2500.5",
+                "--mean-trip-duration=PT35M", "--start=2024-03-01T06:00:00Z", "--seed=-7", "taps.csv");
+
+        assertEquals(List.of("trip-cost.csv", "taps.csv"), options.arguments());
+        assertEquals(100_000_000, options.rows());
+        assertEquals(5_000_000, options.pans());
+        assertEquals(200, options.stops());
+        assertEquals(20, options.routeSpan());
+        assertEquals(0.8, options.tapOffRatio());
+        assertEquals(0.1, options.cancelRatio());
+        assertEquals(2500.5, options.tapsPerSecond());
+        assertEquals(Duration.ofMinutes(35), options.meanTripDuration());
+        assertEquals(Instant.parse("2024-03-01T06:00:00Z"), options.start());
+        assertEquals(-7, options.seed());
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "--rows=0|value must be a positive number",
+            "--pans=-1|value must be a positive number",
+            "--pans=3000000000|value must be a positive number",
+            "--route-span=a|value must be a positive number",
+            "--stops=1|value must be at least 2",
+            "--tap-off-ratio=1.5|value must be a ratio between 0 and 1",
+            "--cancel-ratio=-0.1|value must be a ratio between 0 and 1",
+            "--taps-per-second=0|value must be a positive number",
+            "--taps-per-second=Infinity|value must be a positive number",
+            "--mean-trip-duration=PT0S|value must be a positive ISO-8601 duration",
+            "--mean-trip-duration=20m|value must be a positive ISO-8601 duration",
+            "--start=2024-03-01|value must be an ISO-8601 instant",
+            "--seed=x|value must be a number",
+    })
+    void parse_withInvalidOption_shouldThrowException(String arg, String message) {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayGeneratorOptions.parse(arg));
+        assertEquals("Invalid option '" + arg + "', " + message, ex.getMessage());
+    }
+
+    @Test
+    void parse_withUnknownOption_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayGeneratorOptions.parse("--partitions=4"));
+        assertEquals("Invalid option '--partitions=4'", ex.getMessage());
+    }
+
+    @Test
+    void parse_withOptionWithoutValue_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> LittlePayGeneratorOptions.parse("--rows"));
+        assertEquals("Invalid option '--rows', value is required", ex.getMessage());
+    }
+
+}
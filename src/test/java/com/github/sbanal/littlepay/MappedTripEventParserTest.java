@@ -0,0 +1,96 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedTripEventParserTest {
+
+    @Test
+    void next_withSmallWindows_shouldReturnTripEventsInFileOrder(@TempDir Path tempDir) throws IOException {
+        StringBuilder content = new StringBuilder("ID, DateTimeUTC, TapType, StopId, CompanyId, BusID, PAN\n");
+        for (int i = 1; i <= 1000; i++) {
+            content.append(i).append(", 22-01-2023 13:").append(String.format("%02d", i % 60)).append(":00, ")
+                    .append(i % 2 == 0 ? "OFF" : "ON").append(", Stop").append(i % 3).append(", Company1, Bus37, ")
+                    .append(5500005555555559L + i).append(i % 10 == 0 ? "\r\n\n" : "\n");
+        }
+        Path tapsCsv = Files.writeString(tempDir.resolve("taps.csv"), content);
+
+        List<TripEvent> expectedTripEvents = new TripEventReader(new FileReader(tapsCsv.toFile())).readEvents();
+        List<TripEvent> actualTripEvents = new ArrayList<>();
+        try (MappedTripEventParser parser = new MappedTripEventParser(tapsCsv, 256)) {
+            parser.forEachRemaining(actualTripEvents::add);
+        }
+
+        assertEquals(1000, actualTripEvents.size());
+        assertEquals(expectedTripEvents, actualTripEvents);
+    }
+
+    @Test
+    void next_withTestResourcesTaps_shouldReturnSameTripEventsAsCsvParser() throws IOException {
+        Path tapsCsv = Path.of("src/test/resources/taps.csv");
+
+        List<TripEvent> expectedTripEvents = new TripEventReader(new FileReader(tapsCsv.toFile())).readEvents();
+        try (TripEventReader tripEventReader = TripEventReader.mapped(tapsCsv)) {
+            assertEquals(expectedTripEvents, tripEventReader.readEvents());
+        }
+    }
+
+    @Test
+    void next_withEmptyFile_shouldReturnNoTripEvents(@TempDir Path tempDir) throws IOException {
+        Path tapsCsv = Files.writeString(tempDir.resolve("taps.csv"), "");
+
+        try (MappedTripEventParser parser = new MappedTripEventParser(tapsCsv)) {
+            assertFalse(parser.hasNext());
+        }
+    }
+
+    @Test
+    void next_withRecordLongerThanWindow_shouldThrowException(@TempDir Path tempDir) throws IOException {
+        Path tapsCsv = Files.writeString(tempDir.resolve("taps.csv"), """
+                ID, DateTimeUTC, TapType, StopId, CompanyId, BusID, PAN
+                1, 22-01-2023 13:00:00, ON, Stop1, Company1, Bus37, 5500005555555559
+                """);
+
+        try (MappedTripEventParser parser = new MappedTripEventParser(tapsCsv, 64)) {
+            InvalidTripEventException ex = assertThrows(InvalidTripEventException.class, parser::next);
+            assertEquals("Invalid trip event, record at position 56 is longer than 64 bytes", ex.getMessage());
+        }
+    }
+
+    @Test
+    void next_withInvalidRecordHandler_shouldSkipInvalidRecordsWithLineNumbers(@TempDir Path tempDir)
+            throws IOException {
+        Path tapsCsv = Files.writeString(tempDir.resolve("taps.csv"), """
+                ID, DateTimeUTC, TapType, StopId, CompanyId, BusID, PAN
+                1, 22-01-2023 13:00:00, ON, Stop1, Company1, Bus37, 5500005555555559
+                2, 22-01-2023 13:05:00, invalid, Stop2, Company1, Bus37, 5500005555555559
+
+                3, 22-01-2023 13:05:00, OFF, Stop2, Company1, Bus37, 5500005555555559
+                4, 22-01-2023 13:05:00, ON, , Company1, Bus37, 4111111111111111
+                5, 22-01-2023 13:06:00, ON, Stop2, Company1, Bus37, 4111111111111111
+                """);
+        List<String> invalidRecords = new ArrayList<>();
+        InvalidTripEventHandler handler = (lineNumber, record, e) ->
+                invalidRecords.add(lineNumber + " " + e.reason() + " " + record);
+
+        List<Long> ids = new ArrayList<>();
+        try (MappedTripEventParser parser = new MappedTripEventParser(tapsCsv, 128, handler)) {
+            parser.forEachRemaining(tripEvent -> ids.add(tripEvent.id()));
+        }
+
+        assertEquals(List.of(1L, 3L, 5L), ids);
+        assertEquals(List.of(
+                "3 INVALID_TAP_TYPE 2, 22-01-2023 13:05:00, invalid, Stop2, Company1, Bus37, 5500005555555559",
+                "6 EMPTY_STOP_ID 4, 22-01-2023 13:05:00, ON, , Company1, Bus37, 4111111111111111"), invalidRecords);
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "3.25, 325",
+            "5.5, 550",
+            "7, 700",
+            "0.00, 0",
+            "' 1.50 ', 150",
+            "0.005, 0",
+            "0.015, 2",
+            "-2.10, -210",
+            "123456789.99, 12345678999",
+    })
+    void parseCents_withAmount_shouldReturnCents(String value, long cents) {
+        assertEquals(cents, Money.parseCents(value));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "abc", "$1.00", "1.2.3", "99999999999999999999"})
+    void parseCents_withInvalidAmount_shouldThrowException(String value) {
+        assertThrows(NumberFormatException.class, () -> Money.parseCents(value));
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, 1, 9, 10, 99, 100, 325, 12345678999L, -1, -99, -210, Long.MAX_VALUE, Long.MIN_VALUE + 1})
+    void format_withCents_shouldMatchDecimalFormat(long cents) {
+        String expected = new DecimalFormat("$0.00").format(BigDecimal.valueOf(cents, 2));
+
+        assertEquals(expected, Money.format(cents));
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, 5, 325, 12345678999L, -210})
+    void appendDecimal_withCents_shouldBeParsedBackToSameCents(long cents) {
+        StringBuilder builder = new StringBuilder();
+        Money.appendDecimal(builder, cents);
+
+        assertFalse(builder.toString().contains("$"));
+        assertEquals(cents, Money.parseCents(builder.toString()));
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenTripStateTest {
+
+    @Test
+    void read_withWrittenState_shouldReturnSameState(@TempDir Path tempDir) throws IOException {
+        Path stateFile = tempDir.resolve("taps.state");
+        OpenTripState state = new OpenTripState(List.of("taps-00.csv", "taps-01.csv"), "trips-00.csv", 1024, List.of(
+                new TripEvent(3L, Instant.parse("2023-01-22T09:20:00Z"), TapType.ON, "Stop3", "Company1", "Bus36",
+                        "4111111111111111"),
+                new TripEvent(7L, Instant.parse("2023-01-22T13:00:00Z"), TapType.ON, "Stop3", "Company1", "Bus37",
+                        "5500005555555559")));
+
+        state.write(stateFile);
+
+        assertEquals(state, OpenTripState.read(stateFile));
+    }
+
+    @Test
+    void read_withMissingFile_shouldReturnEmptyState(@TempDir Path tempDir) throws IOException {
+        assertSame(OpenTripState.EMPTY, OpenTripState.read(tempDir.resolve("taps.state")));
+    }
+
+}
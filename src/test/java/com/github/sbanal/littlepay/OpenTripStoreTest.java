@@ -0,0 +1,131 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenTripStoreTest {
+
+    private static final Instant TAP_ON_TIME = Instant.parse("2023-01-22T13:00:00.123456789Z");
+
+    @ParameterizedTest
+    @EnumSource(OpenTripStoreType.class)
+    void get_whenTapOnEventAdded_shouldReturnSameTapOnEvent(OpenTripStoreType openTripStoreType) {
+        OpenTripStore store = openTripStoreType.create();
+        TripEvent tapOnTripEvent = tapOn(7L, "5500005555555559");
+        TripEvent tapOnTripEventWithoutId = tapOn(null, "4111111111111111");
+        TripEvent tapOnTripEventWithMinId = tapOn(Long.MIN_VALUE, "4000056655665556");
+
+        store.add(tapOnTripEvent);
+        store.add(tapOnTripEventWithoutId);
+        store.add(tapOnTripEventWithMinId);
+
+        assertEquals(tapOnTripEvent, store.get(Pan.parse("5500005555555559")));
+        assertEquals(tapOnTripEventWithoutId, store.get(Pan.parse("4111111111111111")));
+        assertEquals(tapOnTripEventWithMinId, store.get(Pan.parse("4000056655665556")));
+        assertNull(store.get(Pan.parse("5500005555555550")));
+        assertEquals(3, store.size());
+    }
+
+    @ParameterizedTest
+    @EnumSource(OpenTripStoreType.class)
+    void remove_whenTapOnEventRemoved_shouldKeepOtherTapOnEventsInTapOnOrder(OpenTripStoreType openTripStoreType) {
+        OpenTripStore store = openTripStoreType.create();
+        TripEvent first = tapOn(1L, "1111");
+        TripEvent second = tapOn(2L, "2222");
+        TripEvent third = tapOn(3L, "3333");
+        store.add(first);
+        store.add(second);
+        store.add(third);
+
+        assertTrue(store.remove(Pan.parse("2222")));
+        assertFalse(store.remove(Pan.parse("2222")));
+
+        assertNull(store.get(Pan.parse("2222")));
+        assertEquals(List.of(first, third), store.values());
+        assertTrue(store.remove(Pan.parse("1111")));
+        assertEquals(third, store.oldest());
+    }
+
+    @ParameterizedTest
+    @EnumSource(OpenTripStoreType.class)
+    void add_whenTableGrows_shouldKeepTapOnEventsInTapOnOrder(OpenTripStoreType openTripStoreType) {
+        OpenTripStore store = openTripStoreType.create();
+        List<TripEvent> tapOnTripEvents = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            TripEvent tapOnTripEvent = tapOn((long) i, String.valueOf(4_000_000_000_000_000L + i));
+            store.add(tapOnTripEvent);
+            tapOnTripEvents.add(tapOnTripEvent);
+            if (i % 3 == 0) {
+                assertTrue(store.remove(tapOnTripEvent.packedPan()));
+                tapOnTripEvents.remove(tapOnTripEvents.size() - 1);
+            }
+        }
+
+        assertTrue(capacity(store) > tapOnTripEvents.size());
+        assertEquals(tapOnTripEvents.size(), store.size());
+        assertEquals(tapOnTripEvents, store.values());
+        assertEquals(tapOnTripEvents.get(0), store.oldest());
+        assertEquals(tapOnTripEvents.get(5000), store.get(tapOnTripEvents.get(5000).packedPan()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(OpenTripStoreType.class)
+    void add_whenTapOnEventsRemovedRepeatedly_shouldReuseDeletedSlots(OpenTripStoreType openTripStoreType) {
+        OpenTripStore store = openTripStoreType.create();
+        for (int i = 0; i < 100_000; i++) {
+            TripEvent tapOnTripEvent = tapOn((long) i, String.valueOf(5_000_000_000_000_000L + i));
+            store.add(tapOnTripEvent);
+            assertTrue(store.remove(tapOnTripEvent.packedPan()));
+        }
+
+        assertEquals(0, store.size());
+        assertNull(store.oldest());
+        assertEquals(1024, capacity(store));
+    }
+
+    @ParameterizedTest
+    @EnumSource(OpenTripStoreType.class)
+    void clear_whenTapOnEventsAdded_shouldRemoveAllTapOnEvents(OpenTripStoreType openTripStoreType) {
+        OpenTripStore store = openTripStoreType.create();
+        store.add(tapOn(1L, "1111"));
+
+        store.clear();
+
+        assertEquals(0, store.size());
+        assertNull(store.get(Pan.parse("1111")));
+        assertEquals(List.of(), store.values());
+    }
+
+    @Test
+    void add_whenOffHeapTableGrows_shouldKeepLoadBetweenHalfAndSeventyPercent() {
+        OffHeapOpenTripStore store = new OffHeapOpenTripStore();
+        for (int i = 0; i < 100_000; i++) {
+            store.add(tapOn((long) i, String.valueOf(6_000_000_000_000_000L + i)));
+            if (store.capacity() > 1024) {
+                double load = (double) store.size() / store.capacity();
+                assertTrue(load >= 0.5 && load <= 0.7, "load " + load + " at " + store.size() + " open trips");
+            }
+        }
+        store.clear();
+
+        assertEquals(1024, store.capacity());
+        assertNull(store.get(Pan.parse("6000000000000000000")));
+    }
+
+    private static int capacity(OpenTripStore store) {
+        return store instanceof OffHeapOpenTripStore offHeapStore ? offHeapStore.capacity()
+                : ((HeapOpenTripStore) store).capacity();
+    }
+
+    private static TripEvent tapOn(Long id, String pan) {
+        return new TripEvent(id, TAP_ON_TIME, TapType.ON, "Stop1", "Company1", "Bus37", pan);
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PanTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0", "9", "00", "0042", "5500005555555559", "4111111111111111111", "9999999999999999999",
+            "0000000000000000000"})
+    void format_withParsedPan_shouldReturnSamePan(String pan) {
+        assertEquals(pan, Pan.format(Pan.parse(pan)));
+    }
+
+    @Test
+    void parse_withLeadingZeros_shouldReturnDifferentPackedPans() {
+        assertNotEquals(Pan.parse("42"), Pan.parse("042"));
+        assertNotEquals(Pan.parse("9"), Pan.parse("00"));
+        assertNotEquals(Pan.parse("9999999999999999999"), Pan.INVALID);
+    }
+
+    @Test
+    void parse_withBytes_shouldReturnSamePackedPanAsString() {
+        ByteBuffer buffer = ByteBuffer.wrap("ON,5500005555555559,".getBytes(StandardCharsets.US_ASCII));
+
+        assertEquals(Pan.parse("5500005555555559"), Pan.parse(buffer, 3, 19));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "PAN1", "12 34", "-1234", "12345678901234567890"})
+    void parse_withInvalidPan_shouldThrowException(String pan) {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> Pan.parse(pan));
+        assertEquals("Invalid PAN '" + pan + "', value must be 1 to 19 digits", ex.getMessage());
+        ByteBuffer buffer = ByteBuffer.wrap(pan.getBytes(StandardCharsets.US_ASCII));
+        assertEquals(Pan.INVALID, Pan.parse(buffer, 0, buffer.limit()));
+    }
+
+    @Test
+    void append_withPackedPan_shouldAppendDigits() {
+        StringBuilder builder = new StringBuilder("PAN=");
+
+        Pan.append(builder, Pan.parse("0012"));
+
+        assertEquals("PAN=0012", builder.toString());
+    }
+
+}
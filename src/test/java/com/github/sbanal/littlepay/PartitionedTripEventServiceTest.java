@@ -0,0 +1,144 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+
+import static com.github.sbanal.littlepay.TripEventFixtures.createTripEvents;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PartitionedTripEventServiceTest {
+
+    @Test
+    void processEvents_withManyCustomers_shouldWriteSameTripEventsAsSequentialProcessing() throws IOException {
+        TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
+        when(mockTripCostService.getTripCost(any(), anyInt(), anyInt())).thenReturn(325L);
+        when(mockTripCostService.getTripCost(any(), anyInt(), eq(SymbolTable.NO_CODE))).thenReturn(730L);
+        List<TripEvent> tripEvents = createTripEvents(5000);
+
+        TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
+        when(mockTripEventReader.iterator()).thenReturn(tripEvents.iterator());
+        new TripEventService(mockTripCostService)
+                .processEvents(mockTripEventReader, mockTripCompletionEventWriter);
+        ArgumentCaptor<TripCompletionEvent> expectedCaptor = ArgumentCaptor.forClass(TripCompletionEvent.class);
+        verify(mockTripCompletionEventWriter, atLeastOnce()).write(expectedCaptor.capture());
+
+        TripEventReader mockPartitionedTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockPartitionedTripCompletionEventWriter =
+                Mockito.mock(TripCompletionEventWriter.class);
+        when(mockPartitionedTripEventReader.iterator()).thenReturn(tripEvents.iterator());
+        new PartitionedTripEventService(mockTripCostService, TripEventServiceConfig.defaults(), 4)
+                .processEvents(mockPartitionedTripEventReader, mockPartitionedTripCompletionEventWriter);
+        ArgumentCaptor<TripCompletionEvent> actualCaptor = ArgumentCaptor.forClass(TripCompletionEvent.class);
+        verify(mockPartitionedTripCompletionEventWriter, atLeastOnce()).write(actualCaptor.capture());
+
+        List<TripCompletionEvent> expectedCompletionEvents = expectedCaptor.getAllValues();
+        List<TripCompletionEvent> actualCompletionEvents = actualCaptor.getAllValues();
+        assertEquals(expectedCompletionEvents.size(), actualCompletionEvents.size());
+        assertEquals(new HashSet<>(expectedCompletionEvents), new HashSet<>(actualCompletionEvents));
+        verify(mockPartitionedTripEventReader).close();
+        verify(mockPartitionedTripCompletionEventWriter).close();
+    }
+
+    @Test
+    void processEvents_withSameCustomer_shouldMatchTripEventsInReadOrder() throws IOException {
+        TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
+        when(mockTripCostService.getTripCost(any(), eq(stop("stop1")), eq(SymbolTable.NO_CODE))).thenReturn(55500L);
+        when(mockTripCostService.getTripCost(any(), eq(stop("stop1")), eq(stop("stop2")))).thenReturn(12300L);
+        TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
+        Instant tapOnDateTime = Instant.now();
+        when(mockTripEventReader.iterator()).thenReturn(List.of(
+                new TripEvent(1L, tapOnDateTime, TapType.ON, "stop1", "company1", "bus1", "123123123"),
+                new TripEvent(2L, tapOnDateTime.plusSeconds(60), TapType.ON, "stop1", "company1", "bus1", "123123123"),
+                new TripEvent(3L, tapOnDateTime.plusSeconds(120), TapType.OFF, "stop2", "company1", "bus1", "123123123")
+        ).iterator());
+
+        new PartitionedTripEventService(mockTripCostService, TripEventServiceConfig.defaults(), 3)
+                .processEvents(mockTripEventReader, mockTripCompletionEventWriter);
+
+        ArgumentCaptor<TripCompletionEvent> tripCompletionEventArgumentCaptor =
+                ArgumentCaptor.forClass(TripCompletionEvent.class);
+        verify(mockTripCompletionEventWriter, times(2)).write(tripCompletionEventArgumentCaptor.capture());
+        List<TripCompletionEvent> tripCompletionEvents = tripCompletionEventArgumentCaptor.getAllValues();
+        assertEquals(TripCompletionStatus.INCOMPLETE, tripCompletionEvents.get(0).status());
+        assertEquals(tapOnDateTime, tripCompletionEvents.get(0).started());
+        assertEquals(TripCompletionStatus.COMPLETED, tripCompletionEvents.get(1).status());
+        assertEquals(60, tripCompletionEvents.get(1).durationSecs());
+    }
+
+    @Test
+    void processEvents_whenTripCostFails_shouldThrowException() throws IOException {
+        TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
+        when(mockTripCostService.getTripCost(any(), anyInt(), anyInt()))
+                .thenThrow(new IllegalArgumentException("Invalid route start stop Id 'stop1'"));
+        TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
+        when(mockTripEventReader.iterator()).thenReturn(createTripEvents(5000).iterator());
+
+        PartitionedTripEventService service = new PartitionedTripEventService(mockTripCostService,
+                TripEventServiceConfig.defaults(), 4);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.processEvents(mockTripEventReader, mockTripCompletionEventWriter));
+        assertEquals("Invalid route start stop Id 'stop1'", ex.getMessage());
+        verify(mockTripCompletionEventWriter, never()).write(any());
+        verify(mockTripCompletionEventWriter).close();
+    }
+
+    @Test
+    void processEvents_whenPartitionThrowsError_shouldDrainAndThrowError() throws IOException {
+        TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
+        when(mockTripCostService.getTripCost(any(), anyInt(), anyInt()))
+                .thenThrow(new OutOfMemoryError("Java heap space"));
+        TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
+        when(mockTripEventReader.iterator()).thenReturn(createTripEvents(50_000).iterator());
+
+        PartitionedTripEventService service = new PartitionedTripEventService(mockTripCostService,
+                TripEventServiceConfig.defaults(), 1);
+        OutOfMemoryError error = assertThrows(OutOfMemoryError.class,
+                () -> service.processEvents(mockTripEventReader, mockTripCompletionEventWriter));
+        assertEquals("Java heap space", error.getMessage());
+        verify(mockTripCompletionEventWriter, never()).write(any());
+        verify(mockTripCompletionEventWriter).close();
+    }
+
+    @Test
+    void processEvents_whenReaderFails_shouldThrowException() throws IOException {
+        TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
+        TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
+        when(mockTripEventReader.iterator())
+                .thenThrow(new InvalidTripEventException("Invalid trip event TapType for record 1"));
+
+        PartitionedTripEventService service = new PartitionedTripEventService(mockTripCostService,
+                TripEventServiceConfig.defaults(), 2);
+        InvalidTripEventException ex = assertThrows(InvalidTripEventException.class,
+                () -> service.processEvents(mockTripEventReader, mockTripCompletionEventWriter));
+        assertEquals("Invalid trip event TapType for record 1", ex.getMessage());
+        verify(mockTripCompletionEventWriter, never()).write(any());
+    }
+
+    @Test
+    void constructor_withInvalidPartitionCount_shouldThrowException() {
+        TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> new PartitionedTripEventService(mockTripCostService, TripEventServiceConfig.defaults(), 0));
+        assertEquals("Invalid partition count, value must be positive", ex.getMessage());
+    }
+
+    private static int stop(String stopId) {
+        return SymbolTable.STOPS.code(stopId);
+    }
+
+}
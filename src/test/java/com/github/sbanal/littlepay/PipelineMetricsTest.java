@@ -0,0 +1,126 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineMetricsTest {
+
+    @Test
+    void trip_withEachStatus_shouldCountTripsByStatus() {
+        PipelineMetrics metrics = new PipelineMetrics();
+
+        metrics.trip(TripCompletionStatus.COMPLETED);
+        metrics.trip(TripCompletionStatus.COMPLETED);
+        metrics.trip(TripCompletionStatus.INCOMPLETE);
+        metrics.trip(TripCompletionStatus.CANCELLED);
+
+        assertEquals(2, metrics.getCompletedTrips());
+        assertEquals(1, metrics.getIncompleteTrips());
+        assertEquals(1, metrics.getCancelledTrips());
+    }
+
+    @Test
+    void tripClosed_whenTripsOpened_shouldCountOpenTrips() {
+        PipelineMetrics metrics = new PipelineMetrics();
+
+        metrics.tripOpened();
+        metrics.tripOpened();
+        metrics.tripClosed();
+
+        assertEquals(1, metrics.getOpenTrips());
+    }
+
+    @Test
+    void getCostLookupLatencyNanos_whenLatenciesRecorded_shouldReturnBucketUpperBoundPercentiles() {
+        PipelineMetrics metrics = new PipelineMetrics();
+        for (int i = 0; i < 98; i++) {
+            metrics.costLookup(100);
+        }
+        metrics.costLookup(1000);
+        metrics.costLookup(5000);
+
+        Map<String, Long> percentiles = metrics.getCostLookupLatencyNanos();
+
+        assertEquals(100L, percentiles.get("samples"));
+        assertEquals(127L, percentiles.get("p50"));
+        assertEquals(127L, percentiles.get("p90"));
+        assertEquals(1023L, percentiles.get("p99"));
+        assertEquals(5000L, percentiles.get("max"));
+    }
+
+    @Test
+    void getCostLookupLatencyNanos_whenNoLatencyRecorded_shouldReturnZeroPercentiles() {
+        Map<String, Long> percentiles = new PipelineMetrics().getCostLookupLatencyNanos();
+
+        assertEquals(Map.of("samples", 0L, "p50", 0L, "p90", 0L, "p99", 0L, "max", 0L), percentiles);
+    }
+
+    @Test
+    void stageWallTime_whenStageRunsTwice_shouldAddUpWallTime() {
+        PipelineMetrics metrics = new PipelineMetrics();
+
+        metrics.stageWallTime("match", 2_000_000);
+        metrics.stageWallTime("write", 1_000_000);
+        metrics.stageWallTime("match", 3_000_000);
+
+        Map<String, Long> stageWallTimeMillis = metrics.getStageWallTimeMillis();
+        assertEquals(Set.of("match", "write"), stageWallTimeMillis.keySet());
+        assertEquals(5L, stageWallTimeMillis.get("match"));
+    }
+
+    @Test
+    void getBytesWritten_whenMonitored_shouldReturnWriterBytes() {
+        PipelineMetrics metrics = new PipelineMetrics();
+        assertEquals(0, metrics.getBytesWritten());
+
+        metrics.monitorBytesWritten(() -> 1024);
+
+        assertEquals(1024, metrics.getBytesWritten());
+    }
+
+    @Test
+    void register_whenRegistered_shouldExposeMetricsUntilUnregistered() throws JMException {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName query = new ObjectName("com.github.sbanal.littlepay:type=PipelineMetrics,*");
+        Set<ObjectName> registered = mBeanServer.queryNames(query, null);
+        PipelineMetrics metrics = new PipelineMetrics();
+        metrics.tapEvent();
+
+        metrics.register();
+        try {
+            Set<ObjectName> names = mBeanServer.queryNames(query, null);
+            names.removeAll(registered);
+            assertEquals(1, names.size());
+            assertEquals(1L, mBeanServer.getAttribute(names.iterator().next(), "TapEvents"));
+        } finally {
+            metrics.unregister();
+        }
+
+        assertEquals(registered, mBeanServer.queryNames(query, null));
+    }
+
+    @Test
+    void summary_whenFinished_shouldIncludeCounters() {
+        PipelineMetrics metrics = new PipelineMetrics();
+        metrics.tapEvent();
+        metrics.parseError();
+        metrics.orphanTapOff();
+        metrics.trip(TripCompletionStatus.COMPLETED);
+        metrics.finish();
+
+        String summary = metrics.summary();
+
+        assertTrue(summary.contains("tap events: 1 "), summary);
+        assertTrue(summary.contains("parse errors: 1, orphan tap offs: 1, open trips: 0"), summary);
+        assertTrue(summary.contains("trips: 1 completed, 0 incomplete, 0 cancelled"), summary);
+    }
+
+}
@@ -0,0 +1,108 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.List;
+
+import static com.github.sbanal.littlepay.TripEventFixtures.createTripEvents;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PipelinedTripEventServiceTest {
+
+    @Test
+    void processEvents_withManyCustomers_shouldWriteTripEventsInSequentialOrderAndTimeEachStage()
+            throws IOException {
+        TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
+        when(mockTripCostService.getTripCost(any(), anyInt(), anyInt())).thenReturn(325L);
+        when(mockTripCostService.getTripCost(any(), anyInt(), eq(SymbolTable.NO_CODE))).thenReturn(730L);
+        List<TripEvent> tripEvents = createTripEvents(5000);
+
+        TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
+        when(mockTripEventReader.iterator()).thenReturn(tripEvents.iterator());
+        new TripEventService(mockTripCostService)
+                .processEvents(mockTripEventReader, mockTripCompletionEventWriter);
+        ArgumentCaptor<TripCompletionEvent> expectedCaptor = ArgumentCaptor.forClass(TripCompletionEvent.class);
+        verify(mockTripCompletionEventWriter, atLeastOnce()).write(expectedCaptor.capture());
+
+        TripEventReader mockPipelinedTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockPipelinedTripCompletionEventWriter =
+                Mockito.mock(TripCompletionEventWriter.class);
+        when(mockPipelinedTripEventReader.iterator()).thenReturn(tripEvents.iterator());
+        PipelineMetrics metrics = new PipelineMetrics();
+        new PipelinedTripEventService(mockTripCostService, TripEventServiceConfig.defaults().withMetrics(metrics))
+                .processEvents(mockPipelinedTripEventReader, mockPipelinedTripCompletionEventWriter);
+        ArgumentCaptor<TripCompletionEvent> actualCaptor = ArgumentCaptor.forClass(TripCompletionEvent.class);
+        verify(mockPipelinedTripCompletionEventWriter, atLeastOnce()).write(actualCaptor.capture());
+
+        assertEquals(expectedCaptor.getAllValues(), actualCaptor.getAllValues());
+        assertEquals(5000, metrics.getTapEvents());
+        assertTrue(metrics.getStageWallTimeMillis().keySet()
+                .containsAll(List.of("read-tap-events", "match-tap-events", "complete-trips", "write-trips")));
+    }
+
+    @Test
+    void processEvents_whenMatchStageFails_shouldDrainReaderStageAndThrowException() throws IOException {
+        TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
+        when(mockTripCostService.getTripCost(any(), anyInt(), anyInt()))
+                .thenThrow(new IllegalArgumentException("Invalid route start stop Id 'stop1'"));
+        TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
+        // many more batches than the queues hold, so the reader stage blocks unless the match stage drains it
+        when(mockTripEventReader.iterator()).thenReturn(createTripEvents(50_000).iterator());
+
+        PipelinedTripEventService service = new PipelinedTripEventService(mockTripCostService,
+                TripEventServiceConfig.defaults());
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.processEvents(mockTripEventReader, mockTripCompletionEventWriter));
+        assertEquals("Invalid route start stop Id 'stop1'", ex.getMessage());
+        verify(mockTripCompletionEventWriter, never()).write(any());
+        verify(mockTripEventReader).close();
+        verify(mockTripCompletionEventWriter).close();
+    }
+
+    @Test
+    void processEvents_whenWriterStageFails_shouldDrainMatchStageAndThrowException() throws IOException {
+        TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
+        when(mockTripCostService.getTripCost(any(), anyInt(), anyInt())).thenReturn(325L);
+        TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
+        when(mockTripEventReader.iterator()).thenReturn(createTripEvents(50_000).iterator());
+        doThrow(new IOException("No space left on device")).when(mockTripCompletionEventWriter).write(any());
+
+        PipelinedTripEventService service = new PipelinedTripEventService(mockTripCostService,
+                TripEventServiceConfig.defaults());
+        IOException ex = assertThrows(IOException.class,
+                () -> service.processEvents(mockTripEventReader, mockTripCompletionEventWriter));
+        assertEquals("No space left on device", ex.getMessage());
+        // the batches passed to the writer stage after the failure are discarded
+        verify(mockTripCompletionEventWriter, times(1)).write(any());
+        verify(mockTripCompletionEventWriter).close();
+    }
+
+    @Test
+    void processEvents_whenWriterStageThrowsError_shouldDrainMatchStageAndThrowError() throws IOException {
+        TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
+        when(mockTripCostService.getTripCost(any(), anyInt(), anyInt())).thenReturn(325L);
+        TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
+        when(mockTripEventReader.iterator()).thenReturn(createTripEvents(50_000).iterator());
+        doThrow(new OutOfMemoryError("Java heap space")).when(mockTripCompletionEventWriter).write(any());
+
+        PipelinedTripEventService service = new PipelinedTripEventService(mockTripCostService,
+                TripEventServiceConfig.defaults());
+        OutOfMemoryError error = assertThrows(OutOfMemoryError.class,
+                () -> service.processEvents(mockTripEventReader, mockTripCompletionEventWriter));
+        assertEquals("Java heap space", error.getMessage());
+        verify(mockTripCompletionEventWriter, times(1)).write(any());
+        verify(mockTripCompletionEventWriter).close();
+    }
+
+}
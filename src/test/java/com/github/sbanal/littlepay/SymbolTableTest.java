@@ -0,0 +1,60 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolTableTest {
+
+    @Test
+    void code_withNewValues_shouldAssignDenseCodes() {
+        SymbolTable symbolTable = new SymbolTable();
+
+        assertEquals(0, symbolTable.code("Stop1"));
+        assertEquals(1, symbolTable.code("Stop2"));
+        assertEquals(0, symbolTable.code("Stop1"));
+        assertEquals(2, symbolTable.size());
+        assertEquals("Stop1", symbolTable.value(0));
+        assertEquals("Stop2", symbolTable.value(1));
+    }
+
+    @Test
+    void code_withNullValue_shouldReturnNoCode() {
+        SymbolTable symbolTable = new SymbolTable();
+
+        assertEquals(SymbolTable.NO_CODE, symbolTable.code(null));
+        assertNull(symbolTable.value(SymbolTable.NO_CODE));
+        assertEquals(0, symbolTable.size());
+    }
+
+    @Test
+    void find_withUnknownValue_shouldReturnNoCodeWithoutAssigningCode() {
+        SymbolTable symbolTable = new SymbolTable();
+        symbolTable.code("Stop1");
+
+        assertEquals(0, symbolTable.find("Stop1"));
+        assertEquals(SymbolTable.NO_CODE, symbolTable.find("Stop2"));
+        assertEquals(SymbolTable.NO_CODE, symbolTable.find(null));
+        assertEquals(1, symbolTable.size());
+    }
+
+    @Test
+    void code_fromManyThreads_shouldAssignOneCodePerValue() {
+        SymbolTable symbolTable = new SymbolTable();
+        Set<Integer> codes = ConcurrentHashMap.newKeySet();
+
+        IntStream.range(0, 10_000).parallel().forEach(i -> codes.add(symbolTable.code("Bus" + (i % 500))));
+
+        assertEquals(500, symbolTable.size());
+        assertEquals(500, codes.size());
+        for (String value : List.of("Bus0", "Bus250", "Bus499")) {
+            assertEquals(value, symbolTable.value(symbolTable.find(value)));
+        }
+    }
+
+}
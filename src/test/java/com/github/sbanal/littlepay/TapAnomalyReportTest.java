@@ -0,0 +1,102 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TapAnomalyReportTest {
+
+    private static final Instant TAP_OFF = Instant.parse("2023-01-22T13:05:00Z");
+
+    @Test
+    void orphanTapOff_withTapOffs_shouldCountByStopAndCompany() throws IOException {
+        TapAnomalyReport anomalies = new TapAnomalyReport();
+
+        anomalies.orphanTapOff(tapOff(1L, "Stop1", "Company1"));
+        anomalies.orphanTapOff(tapOff(2L, "Stop2", "Company1"));
+        anomalies.orphanTapOff(tapOff(3L, "Stop2", "Company2"));
+
+        assertEquals(3, anomalies.getAnomalies());
+        assertEquals(Map.of("Stop2", 2L, "Stop1", 1L), anomalies.getAnomaliesByStop());
+        assertEquals("Stop2", anomalies.getAnomaliesByStop().keySet().iterator().next());
+        assertEquals(Map.of("Company1", 2L, "Company2", 1L), anomalies.getAnomaliesByCompany());
+    }
+
+    @Test
+    void orphanTapOff_withMoreTapOffsThanMaxExamples_shouldKeepFirstExamples() throws IOException {
+        TapAnomalyReport anomalies = new TapAnomalyReport();
+
+        for (long id = 1; id <= 100; id++) {
+            anomalies.orphanTapOff(tapOff(id, "Stop1", "Company1"));
+        }
+
+        assertEquals(100, anomalies.getAnomalies());
+        assertEquals(TapAnomalyReport.MAX_EXAMPLES, anomalies.examples().size());
+        assertEquals(1L, anomalies.examples().get(0).id());
+    }
+
+    @Test
+    void orphanTapOff_withRejectedTapsWriter_shouldWriteRejectedTapsWithReason() throws IOException {
+        StringWriter stringWriter = new StringWriter();
+
+        try (TapAnomalyReport anomalies = new TapAnomalyReport(stringWriter)) {
+            anomalies.orphanTapOff(tapOff(7L, "Stop1", "Company1"));
+        }
+
+        assertEquals("""
+                ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN,Reason
+                7,22-01-2023 13:05:00,OFF,Stop1,Company1,Bus37,5500005555555559,TAP_OFF_WITHOUT_TAP_ON
+                """, stringWriter.toString());
+    }
+
+    @Test
+    void orphanTapOff_withResumedRejectedTapsFile_shouldTruncateFileToPosition(@TempDir Path tempDir)
+            throws IOException {
+        Path rejectedTapsCsv = tempDir.resolve("rejected-taps.csv");
+        long position;
+        try (TapAnomalyReport anomalies = new TapAnomalyReport(rejectedTapsCsv, 0)) {
+            anomalies.orphanTapOff(tapOff(7L, "Stöp1", "Company1"));
+            anomalies.sync();
+            position = anomalies.bytesWritten();
+            assertEquals(Files.size(rejectedTapsCsv), position);
+            // written after the checkpoint, discarded on resume
+            anomalies.orphanTapOff(tapOff(8L, "Stop2", "Company1"));
+        }
+
+        try (TapAnomalyReport anomalies = new TapAnomalyReport(rejectedTapsCsv, position)) {
+            anomalies.orphanTapOff(tapOff(9L, "Stop2", "Company1"));
+        }
+
+        assertEquals("""
+                ID,DateTimeUTC,TapType,StopId,CompanyId,BusID,PAN,Reason
+                7,22-01-2023 13:05:00,OFF,Stöp1,Company1,Bus37,5500005555555559,TAP_OFF_WITHOUT_TAP_ON
+                9,22-01-2023 13:05:00,OFF,Stop2,Company1,Bus37,5500005555555559,TAP_OFF_WITHOUT_TAP_ON
+                """, Files.readString(rejectedTapsCsv));
+    }
+
+    @Test
+    void summary_withTapOffs_shouldIncludeCountsAndExamples() throws IOException {
+        TapAnomalyReport anomalies = new TapAnomalyReport();
+        anomalies.orphanTapOff(tapOff(1L, "Stop1", "Company1"));
+
+        String summary = anomalies.summary();
+
+        assertTrue(summary.contains("tap events which could not be matched: 1"), summary);
+        assertTrue(summary.contains("by stop: {Stop1=1}"), summary);
+        assertTrue(summary.contains("by company: {Company1=1}"), summary);
+        assertTrue(summary.contains("TripEvent[id=1,"), summary);
+    }
+
+    private static TripEvent tapOff(long id, String stopId, String companyId) {
+        return new TripEvent(id, TAP_OFF, TapType.OFF, stopId, companyId, "Bus37", "5500005555555559");
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TapDataGeneratorTest {
+
+    private record Tap(long id, long epochSecond, TapType tapType, int stop, int bus, int pan) {
+    }
+
+    @Test
+    void writeTripCosts_withRouteSpan_shouldWriteRoutesWithinSpan() throws IOException {
+        TapDataGenerator generator = new TapDataGenerator(LittlePayGeneratorOptions.parse(
+                "--stops=4", "--route-span=2"));
+        StringWriter writer = new StringWriter();
+
+        long routes = generator.writeTripCosts(writer);
+
+        assertEquals(5, routes);
+        assertEquals("""
+                FromStopId, ToStopId, Cost
+                Stop1, Stop2, 2.75
+                Stop1, Stop3, 3.50
+                Stop2, Stop3, 2.75
+                Stop2, Stop4, 3.50
+                Stop3, Stop4, 2.75
+                """, writer.toString());
+    }
+
+    @Test
+    void writeTaps_withOptions_shouldWriteTapsInTimeOrder() throws IOException {
+        TapDataGenerator generator = new TapDataGenerator(LittlePayGeneratorOptions.parse(
+                "--rows=5", "--pans=1", "--stops=2", "--tap-off-ratio=1", "--cancel-ratio=0",
+                "--taps-per-second=1", "--mean-trip-duration=PT1S"));
+        StringWriter writer = new StringWriter();
+
+        long taps = generator.writeTaps(writer);
+
+        assertEquals(5, taps);
+        List<TripEvent> tripEvents = new TripEventReader(new StringReader(writer.toString())).readEvents();
+        assertEquals(5, tripEvents.size());
+        for (int i = 0; i < tripEvents.size(); i++) {
+            TripEvent tripEvent = tripEvents.get(i);
+            assertEquals(i + 1, tripEvent.id());
+            assertEquals(i % 2 == 0 ? TapType.ON : TapType.OFF, tripEvent.tapType());
+            assertEquals("4000000000000000", tripEvent.pan());
+            if (i > 0) {
+                assertFalse(tripEvent.dateTimeUtc().isBefore(tripEvents.get(i - 1).dateTimeUtc()));
+            }
+        }
+    }
+
+    @Test
+    void generateTaps_withSameOptions_shouldGenerateSameTaps() throws IOException {
+        LittlePayGeneratorOptions options = LittlePayGeneratorOptions.parse("--rows=1000", "--pans=50");
+
+        assertEquals(generateTaps(options), generateTaps(options));
+    }
+
+    @Test
+    void generateTaps_withRatios_shouldTapOffAtRouteStops() throws IOException {
+        List<Tap> taps = generateTaps(LittlePayGeneratorOptions.parse(
+                "--rows=20000", "--pans=100", "--stops=50", "--route-span=3", "--tap-off-ratio=0.5",
+                "--cancel-ratio=0.25"));
+
+        Tap[] tapOns = new Tap[100];
+        int tapOffs = 0;
+        int cancelled = 0;
+        for (Tap tap : taps) {
+            if (tap.tapType() == TapType.ON) {
+                tapOns[tap.pan()] = tap;
+                continue;
+            }
+            Tap tapOn = tapOns[tap.pan()];
+            assertNotNull(tapOn);
+            assertTrue(tap.epochSecond() > tapOn.epochSecond());
+            assertEquals(tapOn.bus(), tap.bus());
+            assertTrue(Math.abs(tap.stop() - tapOn.stop()) <= 3);
+            tapOns[tap.pan()] = null;
+            tapOffs++;
+            cancelled += tap.stop() == tapOn.stop() ? 1 : 0;
+        }
+        int tripCount = taps.size() - tapOffs;
+        assertEquals(0.5, (double) tapOffs / tripCount, 0.05);
+        assertEquals(0.25, (double) cancelled / tapOffs, 0.05);
+    }
+
+    @Test
+    void generateTaps_withNoTapOffs_shouldOnlyTapOn() throws IOException {
+        List<Tap> taps = generateTaps(LittlePayGeneratorOptions.parse("--rows=100", "--tap-off-ratio=0"));
+
+        assertEquals(100, taps.size());
+        assertTrue(taps.stream().allMatch(tap -> tap.tapType() == TapType.ON));
+    }
+
+    private static List<Tap> generateTaps(LittlePayGeneratorOptions options) throws IOException {
+        List<Tap> taps = new ArrayList<>();
+        new TapDataGenerator(options).generateTaps((id, epochSecond, tapType, stop, bus, pan) ->
+                taps.add(new Tap(id, epochSecond, tapType, stop, bus, pan)));
+        return taps;
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TapExternalSorterTest {
+
+    private static final Instant TAP_TIME = Instant.parse("2023-01-22T13:00:00Z");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void next_withEventsFittingOneRun_shouldSortInMemory() throws IOException {
+        try (TapExternalSorter sorter = new TapExternalSorter(List.of(
+                tap(1L, 60), tap(2L, 0), tap(3L, 30)).iterator(), tempDir, 10)) {
+
+            assertEquals(List.of(2L, 3L, 1L), ids(sorter));
+            assertEquals(0, sorter.runs());
+            assertEquals(0, runFiles());
+        }
+    }
+
+    @Test
+    void next_withEventsOfManyRuns_shouldMergeRunsInDateTimeUtcOrder() throws IOException {
+        List<TripEvent> tripEvents = new ArrayList<>();
+        Random random = new Random(42);
+        for (long id = 1; id <= 1_000; id++) {
+            tripEvents.add(tap(id, random.nextInt(100_000)));
+        }
+        List<Long> expectedIds = tripEvents.stream()
+                .sorted(TripEvent.DATE_TIME_UTC_ORDER)
+                .map(TripEvent::id)
+                .toList();
+
+        TapExternalSorter sorter = new TapExternalSorter(tripEvents.iterator(), tempDir, 64);
+        List<Long> ids;
+        try (sorter) {
+            ids = ids(sorter);
+            assertEquals(16, sorter.runs());
+            assertEquals(16, runFiles());
+        }
+
+        assertEquals(expectedIds, ids);
+        assertEquals(0, runFiles());
+    }
+
+    @Test
+    void next_withMoreRunsThanFanIn_shouldMergeRunsInPassesAndKeepReadOrder() throws IOException {
+        List<TripEvent> tripEvents = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 1_000; i++) {
+            // few distinct date times and ids, so the read order of equal tap events is checked across the passes
+            tripEvents.add(new TripEvent((long) random.nextInt(10), TAP_TIME.plusSeconds(random.nextInt(20)),
+                    TapType.ON, "Stop1", "Company1", "Bus37", String.valueOf(5_500_005_555_550_000L + i)));
+        }
+        List<String> expectedPans = tripEvents.stream()
+                .sorted(TripEvent.DATE_TIME_UTC_ORDER)
+                .map(TripEvent::pan)
+                .toList();
+
+        List<String> pans = new ArrayList<>();
+        try (TapExternalSorter sorter = new TapExternalSorter(tripEvents.iterator(), tempDir, 4, 3)) {
+            assertTrue(sorter.hasNext());
+            assertEquals(250, sorter.runs());
+            assertTrue(runFiles() <= 3);
+            sorter.forEachRemaining(tripEvent -> pans.add(tripEvent.pan()));
+        }
+
+        assertEquals(expectedPans, pans);
+        assertEquals(0, runFiles());
+    }
+
+    @Test
+    void next_withSameDateTimeUtcAndId_shouldReturnEventsInReadOrder() throws IOException {
+        List<TripEvent> tripEvents = List.of(
+                tap(null, 0, "Stop1"), tap(null, 0, "Stop2"), tap(1L, 0, "Stop3"), tap(null, 0, "Stop4"),
+                tap(null, 0, "Stop5"));
+
+        try (TapExternalSorter sorter = new TapExternalSorter(tripEvents.iterator(), tempDir, 2)) {
+            List<String> stopIds = new ArrayList<>();
+            sorter.forEachRemaining(tripEvent -> stopIds.add(tripEvent.stopId()));
+
+            assertEquals(List.of("Stop3", "Stop1", "Stop2", "Stop4", "Stop5"), stopIds);
+        }
+    }
+
+    @Test
+    void next_withSpilledRuns_shouldReturnSameEvents() throws IOException {
+        TripEvent tapOn = new TripEvent(7L, TAP_TIME.plusNanos(123_456_789), TapType.ON, "Stop1", "Company1",
+                "Bus37", "0055000055555559");
+        TripEvent minIdTapOn = new TripEvent(Long.MIN_VALUE, TAP_TIME, TapType.ON, "Stop1", "Company1", "Bus37",
+                "4111111111111111");
+        TripEvent tapOff = new TripEvent(null, TAP_TIME.plusSeconds(300), TapType.OFF, "Stop2", "Company2",
+                "Bus38", "4111111111111111111");
+
+        try (TapExternalSorter sorter = new TapExternalSorter(List.of(tapOff, tapOn, minIdTapOn).iterator(), tempDir,
+                1)) {
+            List<TripEvent> sortedTripEvents = new ArrayList<>();
+            sorter.forEachRemaining(sortedTripEvents::add);
+
+            assertEquals(3, sorter.runs());
+            assertEquals(List.of(minIdTapOn, tapOn, tapOff), sortedTripEvents);
+            assertEquals("0055000055555559", sortedTripEvents.get(1).pan());
+            assertEquals("Company2", sortedTripEvents.get(2).companyId());
+        }
+    }
+
+    @Test
+    void constructor_withZeroRunSize_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> new TapExternalSorter(List.<TripEvent>of().iterator(), tempDir, 0));
+        assertEquals("Invalid run size, value must be positive", ex.getMessage());
+    }
+
+    @Test
+    void constructor_withFanInOfOne_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> new TapExternalSorter(List.<TripEvent>of().iterator(), tempDir, 10, 1));
+        assertEquals("Invalid fan-in, value must be at least 2", ex.getMessage());
+    }
+
+    private long runFiles() throws IOException {
+        try (Stream<Path> runFiles = Files.list(tempDir)) {
+            return runFiles.count();
+        }
+    }
+
+    private static List<Long> ids(TapExternalSorter sorter) {
+        List<Long> ids = new ArrayList<>();
+        sorter.forEachRemaining(tripEvent -> ids.add(tripEvent.id()));
+        return ids;
+    }
+
+    private static TripEvent tap(Long id, long seconds) {
+        return tap(id, seconds, "Stop1");
+    }
+
+    private static TripEvent tap(Long id, long seconds, String stopId) {
+        return new TripEvent(id, TAP_TIME.plusSeconds(seconds), TapType.ON, stopId, "Company1", "Bus37",
+                "5500005555555559");
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TapQuarantineTest {
+
+    @Test
+    void invalidTripEvent_withQuarantineWriter_shouldWriteRecordWithLineNumberAndReason() throws IOException {
+        StringWriter stringWriter = new StringWriter();
+
+        try (TapQuarantine quarantine = new TapQuarantine(stringWriter, 10)) {
+            quarantine.invalidTripEvent(3, "2, 22-01-2023 13:05:00, invalid, Stop2, Company1, Bus37, 550",
+                    new InvalidTripEventException(InvalidTripEventException.Reason.INVALID_TAP_TYPE,
+                            "Invalid trip event TapType for record 2"));
+            assertEquals(1, quarantine.invalidTripEvents());
+        }
+
+        assertEquals("""
+                LineNumber,Reason,Message,Record
+                3,INVALID_TAP_TYPE,Invalid trip event TapType for record 2,"2, 22-01-2023 13:05:00, invalid, Stop2, \
+                Company1, Bus37, 550"
+                """, stringWriter.toString());
+    }
+
+    @Test
+    void invalidTripEvent_withResumedQuarantineFile_shouldTruncateFileAndKeepInvalidCount(@TempDir Path tempDir)
+            throws IOException {
+        Path quarantineCsv = tempDir.resolve("quarantine.csv");
+        InvalidTripEventException invalidTripEvent = new InvalidTripEventException(
+                InvalidTripEventException.Reason.INVALID_ID, "Invalid trip event ID for record a");
+        long position;
+        try (TapQuarantine quarantine = new TapQuarantine(quarantineCsv, 0, 0, 2)) {
+            quarantine.invalidTripEvent(2, "a", invalidTripEvent);
+            quarantine.sync();
+            position = quarantine.bytesWritten();
+            assertEquals(Files.size(quarantineCsv), position);
+            // written after the checkpoint, discarded on resume
+            quarantine.invalidTripEvent(5, "a", invalidTripEvent);
+        }
+
+        try (TapQuarantine quarantine = new TapQuarantine(quarantineCsv, position, 1, 2)) {
+            quarantine.invalidTripEvent(5, "b", invalidTripEvent);
+            assertThrows(InvalidTripEventException.class, () -> quarantine.invalidTripEvent(7, "c", invalidTripEvent));
+            assertEquals(3, quarantine.invalidTripEvents());
+        }
+
+        assertEquals("""
+                LineNumber,Reason,Message,Record
+                2,INVALID_ID,Invalid trip event ID for record a,a
+                5,INVALID_ID,Invalid trip event ID for record a,b
+                7,INVALID_ID,Invalid trip event ID for record a,c
+                """, Files.readString(quarantineCsv));
+    }
+
+    @Test
+    void invalidTripEvent_whenErrorBudgetExceeded_shouldThrowException() {
+        TapQuarantine quarantine = new TapQuarantine(1);
+        InvalidTripEventException invalidTripEvent = new InvalidTripEventException(
+                InvalidTripEventException.Reason.INVALID_ID, "Invalid trip event ID for record a");
+
+        quarantine.invalidTripEvent(2, "a", invalidTripEvent);
+        InvalidTripEventException ex = assertThrows(InvalidTripEventException.class,
+                () -> quarantine.invalidTripEvent(5, "a", invalidTripEvent));
+
+        assertEquals("Invalid trip events exceed the error budget of 1, line 5: Invalid trip event ID for record a",
+                ex.getMessage());
+        assertEquals(InvalidTripEventException.Reason.INVALID_ID, ex.reason());
+        assertEquals(2, quarantine.invalidTripEvents());
+    }
+
+    @Test
+    void constructor_withNegativeMaxInvalidTripEvents_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> new TapQuarantine(-1));
+        assertEquals("Invalid max invalid trip events, value must not be negative", ex.getMessage());
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TapRecordParserTest {
+
+    private static final String HEADER = "ID, DateTimeUTC, TapType, StopId, CompanyId, BusID, PAN";
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "1, 22-01-2023 13:00:00, ON, Stop1, Company1, Bus37, 5500005555555559",
+            "2, 22-01-2023 13:05:00, OFF, Stop2, Company1, Bus37, 5500005555555559",
+            "3,29-02-2024 23:59:59,ON,Stop1,Company1,Bus37,4111111111111111",
+            "4, 01-01-1970 00:00:00, ON, Stop1, Company1, Bus37, 4111111111111111",
+            "5, 31-12-1969 23:59:59, ON, Stop1, Company1, Bus37, 4111111111111111",
+            "6, 31-02-2023 10:00:00, ON, Stop1, Company1, Bus37, 4111111111111111",
+            "7, 01-03-2100 10:00:00, ON, Stop1, Company1, Bus37, 4111111111111111",
+            "7, 22-01-2023 24:00:00, ON, Stop1, Company1, Bus37, 4111111111111111",
+            "+8, 01-03-2000 10:00:00, ON, Stop1, Company1, Bus37, 4111111111111111",
+            "9223372036854775807, 15-08-0001 10:00:00, ON, Stop1, Company1, Bus37, 4111111111111111",
+            "10, 22-01-2023 13:00:00, ON, Café, Ünion, Bus37é, 4111111111111111",
+    })
+    void parse_withValidRecord_shouldReturnSameTripEventAsCsvParser(String line) throws IOException {
+        TripEvent expectedTripEvent = new TripEventReader(new StringReader(HEADER + "\n" + line))
+                .readEvents().get(0);
+
+        assertEquals(expectedTripEvent, parse(HEADER, line));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "1a, 22-01-2023 13:00:00, ON, Stop1, Company1, Bus37, 5500005555555559",
+            "1, 22-01-2023a 13:00:00, ON, Stop1, Company1, Bus37, 5500005555555559",
+            "1, 22-13-2023 13:00:00, ON, Stop1, Company1, Bus37, 5500005555555559",
+            "1, 22-01-2023 13:00:00, on, Stop1, Company1, Bus37, 5500005555555559",
+            "1, 22-01-2023 13:00:00, ON, , Company1, Bus37, 5500005555555559",
+            "1, 22-01-2023 13:00:00, ON, Stop1, , Bus37, 5500005555555559",
+            "1, 22-01-2023 13:00:00, ON, Stop1, Company1, , 5500005555555559",
+            "1, 22-01-2023 13:00:00, ON, Stop1, Company1, Bus37, ",
+    })
+    void parse_withInvalidRecord_shouldThrowSameExceptionAsCsvParser(String line) {
+        InvalidTripEventException expected = assertThrows(InvalidTripEventException.class,
+                () -> new TripEventReader(new StringReader(HEADER + "\n" + line)).readEvents());
+
+        InvalidTripEventException ex = assertThrows(InvalidTripEventException.class, () -> parse(HEADER, line));
+        assertEquals(expected.getMessage(), ex.getMessage());
+    }
+
+    @Test
+    void parse_withNonAsciiValues_shouldKeepNonAsciiCharactersAtStartAndEnd() {
+        TripEvent tripEvent = parse(HEADER, "1, 22-01-2023 13:00:00, ON, Café, Ünion, Bus37é, 5500005555555559");
+
+        assertEquals("Café", tripEvent.stopId());
+        assertEquals("Ünion", tripEvent.companyId());
+        assertEquals("Bus37é", tripEvent.busId());
+    }
+
+    @Test
+    void isBlank_withNonAsciiLine_shouldReturnFalse() {
+        ByteBuffer buffer = ByteBuffer.wrap(" é ".getBytes(StandardCharsets.UTF_8));
+
+        assertFalse(TapRecordParser.isBlank(buffer, 0, buffer.limit()));
+    }
+
+    @Test
+    void parse_withMissingValues_shouldThrowException() {
+        InvalidTripEventException ex = assertThrows(InvalidTripEventException.class,
+                () -> parse(HEADER, "1, 22-01-2023 13:00:00, ON"));
+        assertEquals("Invalid trip event, expected 7 columns", ex.getMessage());
+    }
+
+    @Test
+    void parse_withMissingColumn_shouldThrowException() {
+        InvalidTripEventException ex = assertThrows(InvalidTripEventException.class,
+                () -> parse("ID, DateTimeUTC, TapType", "1, 22-01-2023 13:00:00, ON"));
+        assertEquals("Invalid trip event, column 'StopId' not found", ex.getMessage());
+    }
+
+    private static TripEvent parse(String header, String line) {
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        return new TapRecordParser(header).parse(buffer, 0, buffer.limit());
+    }
+
+}
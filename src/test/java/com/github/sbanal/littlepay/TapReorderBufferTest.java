@@ -0,0 +1,95 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TapReorderBufferTest {
+
+    private static final Instant TAP_TIME = Instant.parse("2023-01-22T13:00:00Z");
+
+    @Test
+    void next_withEventsWithinMaxLateness_shouldReturnEventsInDateTimeUtcOrder() {
+        List<TripEvent> lateTaps = new ArrayList<>();
+        TapReorderBuffer reorderBuffer = new TapReorderBuffer(List.of(
+                tap(1L, 60), tap(2L, 0), tap(4L, 300), tap(3L, 120), tap(5L, 290)).iterator(),
+                Duration.ofMinutes(5), lateTaps::add);
+
+        assertEquals(List.of(2L, 1L, 3L, 5L, 4L), ids(reorderBuffer));
+        assertEquals(List.of(), lateTaps);
+    }
+
+    @Test
+    void next_withSameDateTimeUtc_shouldReturnEventsInIdOrder() {
+        TapReorderBuffer reorderBuffer = new TapReorderBuffer(List.of(
+                tap(3L, 0), tap(null, 0), tap(1L, 0), tap(2L, 0)).iterator(), Duration.ofMinutes(5), tripEvent -> {
+        });
+
+        assertEquals(List.of(1L, 2L, 3L), ids(reorderBuffer).subList(0, 3));
+    }
+
+    @Test
+    void next_withEventOlderThanWatermark_shouldPassEventToLateTapHandler() {
+        List<TripEvent> lateTaps = new ArrayList<>();
+        TapReorderBuffer reorderBuffer = new TapReorderBuffer(List.of(
+                tap(1L, 0), tap(2L, 600), tap(3L, 299), tap(4L, 300)).iterator(), Duration.ofMinutes(5),
+                lateTaps::add);
+
+        assertEquals(List.of(1L, 4L, 2L), ids(reorderBuffer));
+        assertEquals(List.of(tap(3L, 299)), lateTaps);
+    }
+
+    @Test
+    void hasNext_whenWatermarkPassed_shouldOnlyKeepEventsOfLatenessWindow() {
+        Iterator<TripEvent> tripEvents = new Iterator<>() {
+            private int id;
+
+            @Override
+            public boolean hasNext() {
+                return id < 10_000;
+            }
+
+            @Override
+            public TripEvent next() {
+                id++;
+                return tap((long) id, id);
+            }
+        };
+        TapReorderBuffer reorderBuffer = new TapReorderBuffer(tripEvents, Duration.ofSeconds(100), tripEvent -> {
+        });
+
+        int maxSize = 0;
+        while (reorderBuffer.hasNext()) {
+            maxSize = Math.max(maxSize, reorderBuffer.size());
+            reorderBuffer.next();
+        }
+        // the taps of the 101 seconds from the watermark to the latest tap and the tap released next
+        assertEquals(102, maxSize);
+    }
+
+    @Test
+    void constructor_withZeroMaxLateness_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> new TapReorderBuffer(List.<TripEvent>of().iterator(), Duration.ZERO, tripEvent -> {
+                }));
+        assertEquals("Invalid max lateness, value must be positive", ex.getMessage());
+    }
+
+    private static List<Long> ids(TapReorderBuffer reorderBuffer) {
+        List<Long> ids = new ArrayList<>();
+        reorderBuffer.forEachRemaining(tripEvent -> ids.add(tripEvent.id()));
+        return ids;
+    }
+
+    private static TripEvent tap(Long id, long seconds) {
+        return new TripEvent(id, TAP_TIME.plusSeconds(seconds), TapType.ON, "Stop1", "Company1", "Bus37",
+                "5500005555555559");
+    }
+
+}
@@ -31,7 +31,7 @@ class TripCompletionEventWriterTest {
                     100L,
                     "stop1",
                     "stop2",
-                    1.23f,
+                    123L,
                     "company1",
                     "bus1",
                     "123123",
@@ -61,7 +61,7 @@ class TripCompletionEventWriterTest {
                     null,
                     "stop1",
                     null,
-                    1.23f,
+                    123L,
                     "company1",
                     "bus1",
                     "123123",
@@ -92,7 +92,7 @@ class TripCompletionEventWriterTest {
                     100L,
                     "stop1",
                     "stop1",
-                    0.0f,
+                    0L,
                     "company1",
                     "bus1",
                     "123123",
@@ -109,4 +109,19 @@ class TripCompletionEventWriterTest {
                 formatToUtcStr(tapOnDateTime), formatToUtcStr(tapOffDateTime));
         assertEquals(expectedOutput, stringWriter.toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    void bytesWritten_withTrip_shouldReturnCharactersWrittenToWriter() throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        Instant tapOnDateTime = Instant.now();
+
+        long bytesWritten;
+        try (TripCompletionEventWriter tripCompletionEventWriter = new TripCompletionEventWriter(stringWriter)) {
+            tripCompletionEventWriter.write(new TripCompletionEvent(tapOnDateTime, tapOnDateTime.plusSeconds(600),
+                    600L, "stop1", "stop2", 325L, "company1", "bus1", "123123", TripCompletionStatus.COMPLETED));
+            bytesWritten = tripCompletionEventWriter.bytesWritten();
+        }
+
+        assertEquals(stringWriter.toString().length(), bytesWritten);
+    }
+}
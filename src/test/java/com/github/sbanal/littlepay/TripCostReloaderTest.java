@@ -0,0 +1,82 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TripCostReloaderTest {
+
+    private static final String TRIP_COSTS = """
+            FromStopId, ToStopId, Cost
+            Stop1, Stop2, 3.25
+            """;
+
+    @Test
+    void reloadIfModified_whenFileReplaced_shouldReloadEffectiveFromLoadTime(@TempDir Path tempDir)
+            throws IOException {
+        Path tripCostCsv = Files.writeString(tempDir.resolve("trip-cost.csv"), TRIP_COSTS);
+        TripCostService tripCostService = new TripCostService();
+        tripCostService.load(new StringReader(TRIP_COSTS));
+        Instant loadTime = Instant.parse("2030-01-22T12:00:00Z");
+        // e.g. a file copied with its original modification time
+        Instant modifiedTime = Instant.parse("2020-01-22T12:00:00Z");
+
+        try (TripCostReloader reloader = new TripCostReloader(tripCostService, tripCostCsv,
+                Clock.fixed(loadTime, ZoneOffset.UTC))) {
+            assertFalse(reloader.reloadIfModified());
+
+            Path newTripCostCsv = Files.writeString(tempDir.resolve("trip-cost.csv.tmp"), """
+                    FromStopId, ToStopId, Cost
+                    Stop1, Stop2, 4.00
+                    """);
+            Files.setLastModifiedTime(newTripCostCsv, FileTime.from(modifiedTime));
+            Files.move(newTripCostCsv, tripCostCsv, StandardCopyOption.REPLACE_EXISTING);
+
+            assertTrue(reloader.reloadIfModified());
+            assertFalse(reloader.reloadIfModified());
+        }
+
+        int stop1 = SymbolTable.STOPS.find("Stop1");
+        int stop2 = SymbolTable.STOPS.find("Stop2");
+        assertEquals(2, tripCostService.version());
+        assertEquals(325L, tripCostService.getTripCost(loadTime.minusSeconds(1), stop1, stop2));
+        assertEquals(400L, tripCostService.getTripCost(loadTime, stop1, stop2));
+    }
+
+    @Test
+    void reloadIfModified_withInvalidFile_shouldKeepVersionAndRetryUntilLoaded(@TempDir Path tempDir)
+            throws IOException {
+        Path tripCostCsv = Files.writeString(tempDir.resolve("trip-cost.csv"), TRIP_COSTS);
+        TripCostService tripCostService = new TripCostService();
+        tripCostService.load(new StringReader(TRIP_COSTS));
+
+        try (TripCostReloader reloader = new TripCostReloader(tripCostService, tripCostCsv)) {
+            Files.writeString(tripCostCsv, "FromStopId, ToStopId, Cost\nStop1, Stop1, 4.00\n");
+            Files.setLastModifiedTime(tripCostCsv, FileTime.from(Instant.parse("2030-01-22T12:00:00Z")));
+
+            assertThrows(IllegalArgumentException.class, reloader::reloadIfModified);
+            assertThrows(IllegalArgumentException.class, reloader::reloadIfModified);
+            assertEquals(1, tripCostService.version());
+
+            Files.writeString(tripCostCsv, TRIP_COSTS);
+            Files.setLastModifiedTime(tripCostCsv, FileTime.from(Instant.parse("2030-01-22T12:00:00Z")));
+
+            assertTrue(reloader.reloadIfModified());
+            assertFalse(reloader.reloadIfModified());
+        }
+
+        assertEquals(2, tripCostService.version());
+    }
+
+}
@@ -7,6 +7,8 @@ import org.junit.jupiter.params.provider.NullAndEmptySource;
 
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringReader;
+import java.time.Instant;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -17,7 +19,7 @@ class TripCostServiceTest {
     void addTripCost_whenEmptyRouteStartStopId_shouldThrowException(String routeStartStopId) {
         TripCostService service = new TripCostService();
         IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
-                () -> service.addTripCost(routeStartStopId, "stop2", 1.0f));
+                () -> service.addTripCost(routeStartStopId, "stop2", 100L));
         assertEquals("Invalid route start stop id", ex.getMessage());
     }
 
@@ -26,7 +28,7 @@ class TripCostServiceTest {
     void addTripCost_whenEmptyRouteEndStopId_shouldThrowException(String routeEndStopId) {
         TripCostService service = new TripCostService();
         IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
-                () -> service.addTripCost("stop1", routeEndStopId, 1.0f));
+                () -> service.addTripCost("stop1", routeEndStopId, 100L));
         assertEquals("Invalid route end stop id", ex.getMessage());
     }
 
@@ -34,14 +36,14 @@ class TripCostServiceTest {
     void addTripCost_withSameStopIds_shouldThrowException() {
         TripCostService service = new TripCostService();
         IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
-                () -> service.addTripCost("stop1", "stop1", 1.0f));
+                () -> service.addTripCost("stop1", "stop1", 100L));
         assertEquals("Invalid route start and route end stop id, values cannot be the same", ex.getMessage());
     }
 
     @Test
     void addTripCost_withNoneEmptyStopIds_shouldReturnSuccess() {
         TripCostService service = new TripCostService();
-        assertDoesNotThrow(() -> service.addTripCost("stop1", "stop2", 1.0f));
+        assertDoesNotThrow(() -> service.addTripCost("stop1", "stop2", 100L));
     }
 
     @ParameterizedTest
@@ -74,14 +76,14 @@ class TripCostServiceTest {
 
     @ParameterizedTest
     @CsvSource({
-            "3.25, Stop1, Stop2",
-            "3.25, Stop2, Stop1",
-            "5.50, Stop3, Stop2",
-            "5.50, Stop2, Stop3",
-            "7.30, Stop1, Stop3",
-            "7.30, Stop3, Stop1",
+            "325, Stop1, Stop2",
+            "325, Stop2, Stop1",
+            "550, Stop3, Stop2",
+            "550, Stop2, Stop3",
+            "730, Stop1, Stop3",
+            "730, Stop3, Stop1",
     })
-    void getTripCost_withTripCostLoadedAndCompletedTrip_shouldReturnTripCost(float cost,
+    void getTripCost_withTripCostLoadedAndCompletedTrip_shouldReturnTripCost(long cost,
                                                                              String startStopId,
                                                                              String endStopId) throws IOException {
         TripCostService service = new TripCostService();
@@ -92,16 +94,16 @@ class TripCostServiceTest {
 
     @ParameterizedTest
     @CsvSource({
-            "3.25, stop1, stop2",
-            "3.25, stop2, stop1",
-            "5.50, stop3, stop2",
-            "5.50, stop2, stop3",
-            "7.30, stop1, stop3",
-            "7.30, stop3, stop1",
-            "1.50, stop2, stop4",
-            "1.50, stop4, stop2",
+            "325, stop1, stop2",
+            "325, stop2, stop1",
+            "550, stop3, stop2",
+            "550, stop2, stop3",
+            "730, stop1, stop3",
+            "730, stop3, stop1",
+            "150, stop2, stop4",
+            "150, stop4, stop2",
     })
-    void getTripCost_withCompletedTrip_shouldReturnTripCost(float cost, String startStopId, String endStopId) {
+    void getTripCost_withCompletedTrip_shouldReturnTripCost(long cost, String startStopId, String endStopId) {
         TripCostService service = createMockService();
 
         assertEquals(cost, service.getTripCost(startStopId, endStopId));
@@ -117,29 +119,149 @@ class TripCostServiceTest {
     void getTripCost_withCancelledTrip_shouldReturnZeroTripCost(String startStopId, String endStopId) {
         TripCostService service = createMockService();
 
-        assertEquals(0.0f, service.getTripCost(startStopId, endStopId));
+        assertEquals(0L, service.getTripCost(startStopId, endStopId));
     }
 
     @ParameterizedTest
     @CsvSource({
-            "7.30, stop1",
-            "5.50, stop2",
-            "7.30, stop3",
-            "1.50, stop4",
+            "730, stop1",
+            "550, stop2",
+            "730, stop3",
+            "150, stop4",
     })
-    void getTripCost_withIncompleteTrip_shouldReturnTripCost(float cost, String startStopId) {
+    void getTripCost_withIncompleteTrip_shouldReturnTripCost(long cost, String startStopId) {
         TripCostService service = createMockService();
         service.calculateIncompleteTripCost();
 
         assertEquals(cost, service.getTripCost(startStopId, null));
     }
 
+    @Test
+    void getTripCost_withIncompleteTripCostNotCalculated_shouldThrowException() {
+        TripCostService service = createMockService();
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.getTripCost("stop1", null));
+        assertEquals("Invalid route start 'stop1' and route end 'null' combination", ex.getMessage());
+    }
+
+    @Test
+    void getTripCost_withStopCodes_shouldReturnSameTripCostAsStopIds() {
+        TripCostService service = createMockService();
+        service.calculateIncompleteTripCost();
+
+        assertEquals(325L, service.getTripCost(SymbolTable.STOPS.find("stop1"), SymbolTable.STOPS.find("stop2")));
+        assertEquals(730L, service.getTripCost(SymbolTable.STOPS.find("stop1"), SymbolTable.NO_CODE));
+        assertEquals(0L, service.getTripCost(SymbolTable.STOPS.find("stop4"), SymbolTable.STOPS.find("stop4")));
+    }
+
+    @Test
+    void getTripCost_withMoreStopsThanInitialCapacity_shouldKeepTripCosts() {
+        TripCostService service = createMockService();
+        for (int i = 0; i < 100; i++) {
+            service.addTripCost("hub", "spoke" + i, i * 100L + 50);
+        }
+        service.calculateIncompleteTripCost();
+
+        assertEquals(325L, service.getTripCost("stop2", "stop1"));
+        assertEquals(150L, service.getTripCost("stop4", "stop2"));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i * 100L + 50, service.getTripCost("spoke" + i, "hub"));
+            assertEquals(i * 100L + 50, service.getTripCost("spoke" + i, null));
+        }
+        assertEquals(9950L, service.getTripCost("hub", null));
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.getTripCost("spoke1", "spoke2"));
+        assertEquals("Invalid route start 'spoke1' and route end 'spoke2' combination", ex.getMessage());
+    }
+
+    @Test
+    void addTripCost_afterManyStopsRead_shouldSizeTableByOwnRouteStops() {
+        // stops read by other jobs or versions get larger codes than the routes of this table
+        for (int i = 0; i < 50_000; i++) {
+            SymbolTable.STOPS.code("readStop" + i);
+        }
+        TripCostService service = new TripCostService();
+        service.addTripCost("lateStop1", "lateStop2", 250L);
+        service.calculateIncompleteTripCost();
+
+        assertEquals(250L, service.getTripCost("lateStop2", "lateStop1"));
+        assertEquals(250L, service.getTripCost("lateStop1", null));
+        assertEquals(16, service.effectiveVersion(Instant.now()).stopCapacity());
+    }
+
+    @Test
+    void reload_withNewVersion_shouldCostTripsByVersionEffectiveAtTapOnTime() throws IOException {
+        TripCostService service = createMockService();
+        service.calculateIncompleteTripCost();
+        Instant effectiveFrom = Instant.parse("2023-01-22T12:00:00Z");
+
+        long version = service.reload(new StringReader("""
+                FromStopId, ToStopId, Cost
+                stop1, stop2, 4.00
+                stop2, stop3, 6.00
+                """), effectiveFrom);
+
+        int stop1 = SymbolTable.STOPS.find("stop1");
+        int stop2 = SymbolTable.STOPS.find("stop2");
+        assertEquals(2, version);
+        assertEquals(2, service.version());
+        assertEquals(325L, service.getTripCost(effectiveFrom.minusSeconds(1), stop1, stop2));
+        assertEquals(400L, service.getTripCost(effectiveFrom, stop1, stop2));
+        assertEquals(600L, service.getTripCost(effectiveFrom, stop2, SymbolTable.NO_CODE));
+        assertEquals(400L, service.getTripCost("stop2", "stop1"));
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.getTripCost(effectiveFrom, SymbolTable.STOPS.find("stop4"), stop2));
+        assertEquals("Invalid route start stop Id 'stop4'", ex.getMessage());
+        assertEquals(150L, service.getTripCost(effectiveFrom.minusSeconds(1), SymbolTable.STOPS.find("stop4"), stop2));
+    }
+
+    @Test
+    void reload_withEffectiveTimeNotAfterLatestVersion_shouldThrowException() throws IOException {
+        TripCostService service = createMockService();
+        Instant effectiveFrom = Instant.parse("2023-01-22T12:00:00Z");
+        service.reload(new StringReader("FromStopId, ToStopId, Cost\nstop1, stop2, 4.00\n"), effectiveFrom);
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> service.reload(
+                new StringReader("FromStopId, ToStopId, Cost\nstop1, stop2, 5.00\n"), effectiveFrom));
+        assertEquals("Invalid effective time 2023-01-22T12:00:00Z, value must be after the effective time of version 2",
+                ex.getMessage());
+        assertEquals(2, service.version());
+    }
+
+    @Test
+    void addTripCost_afterReload_shouldThrowException() throws IOException {
+        TripCostService service = createMockService();
+        service.reload(new StringReader("FromStopId, ToStopId, Cost\nstop1, stop2, 4.00\n"), Instant.EPOCH);
+
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+                () -> service.addTripCost("stop1", "stop3", 100L));
+        assertEquals("Trip costs cannot be changed after a reload, reload a new version", ex.getMessage());
+    }
+
+    @Test
+    void reload_withMoreThanMaxVersions_shouldCostOlderTripsByOldestKeptVersion() throws IOException {
+        TripCostService service = new TripCostService(2);
+        service.addTripCost("stop1", "stop2", 325L);
+        for (int i = 1; i <= 4; i++) {
+            service.reload(new StringReader("FromStopId, ToStopId, Cost\nstop1, stop2, " + i + ".00\n"),
+                    Instant.EPOCH.plusSeconds(i));
+        }
+
+        int stop1 = SymbolTable.STOPS.find("stop1");
+        int stop2 = SymbolTable.STOPS.find("stop2");
+        assertEquals(5, service.version());
+        assertEquals(300L, service.getTripCost(Instant.EPOCH, stop1, stop2));
+        assertEquals(300L, service.getTripCost(Instant.EPOCH.plusSeconds(3), stop1, stop2));
+        assertEquals(400L, service.getTripCost(Instant.EPOCH.plusSeconds(4), stop1, stop2));
+    }
+
     private TripCostService createMockService() {
         TripCostService service = new TripCostService();
-        service.addTripCost("stop1", "stop2", 3.25f);
-        service.addTripCost("stop2", "stop3", 5.50f);
-        service.addTripCost("stop1", "stop3", 7.30f);
-        service.addTripCost("stop2", "stop4", 1.50f);
+        service.addTripCost("stop1", "stop2", 325L);
+        service.addTripCost("stop2", "stop3", 550L);
+        service.addTripCost("stop1", "stop3", 730L);
+        service.addTripCost("stop2", "stop4", 150L);
         return service;
     }
 
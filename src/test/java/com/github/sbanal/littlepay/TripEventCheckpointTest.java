@@ -0,0 +1,45 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TripEventCheckpointTest {
+
+    @Test
+    void read_withWrittenCheckpoint_shouldReturnSameCheckpoint(@TempDir Path tempDir) throws IOException {
+        Path checkpointFile = tempDir.resolve("trips.checkpoint");
+        TripEventCheckpoint checkpoint = new TripEventCheckpoint(4096, 1024, 15, 2048, 3, 512, 256, List.of(
+                new TripEvent(3L, Instant.parse("2023-01-22T09:20:00Z"), TapType.ON, "Stop3", "Company1", "Bus36",
+                        "4111111111111111"),
+                new TripEvent(1L, Instant.parse("2023-01-22T13:00:00Z"), TapType.ON, "Stöp1", "Company1", "Bus37",
+                        "5500005555555559")));
+
+        checkpoint.write(checkpointFile);
+        checkpoint.write(checkpointFile);
+
+        assertEquals(checkpoint, TripEventCheckpoint.read(checkpointFile));
+        assertEquals(List.of(checkpointFile), Files.list(tempDir).toList());
+    }
+
+    @Test
+    void read_withMissingFile_shouldReturnNull(@TempDir Path tempDir) throws IOException {
+        assertNull(TripEventCheckpoint.read(tempDir.resolve("trips.checkpoint")));
+    }
+
+    @Test
+    void read_withInvalidFile_shouldThrowException(@TempDir Path tempDir) throws IOException {
+        Path checkpointFile = Files.writeString(tempDir.resolve("trips.checkpoint"), "not a checkpoint");
+
+        IOException ex = assertThrows(IOException.class, () -> TripEventCheckpoint.read(checkpointFile));
+        assertEquals("Invalid state file " + checkpointFile, ex.getMessage());
+    }
+
+}
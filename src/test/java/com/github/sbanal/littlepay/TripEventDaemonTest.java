@@ -0,0 +1,203 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TripEventDaemonTest {
+
+    private static final String TAPS_HEADER = "ID, DateTimeUTC, TapType, StopId, CompanyId, BusID, PAN";
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2023-01-22T13:20:00Z"), ZoneOffset.UTC);
+
+    @TempDir
+    Path tempDir;
+
+    private TripCostService tripCostService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tripCostService = new TripCostService();
+        tripCostService.load(new StringReader("""
+                FromStopId, ToStopId, Cost
+                Stop1, Stop2, 3.25
+                Stop2, Stop3, 5.50
+                Stop1, Stop3, 7.30
+                """));
+    }
+
+    @Test
+    void run_whenTapsFilesArrive_shouldAppendTripsToRolledFile() throws Exception {
+        Path spoolDir = Files.createDirectories(tempDir.resolve("spool"));
+        Path outputDir = tempDir.resolve("trips");
+        TripEventDaemon daemon = createDaemon(spoolDir, outputDir, null);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> running = executor.submit(() -> {
+                daemon.run();
+                return null;
+            });
+            spool(spoolDir, "taps-0.csv", "1, 22-01-2023 13:00:00, ON, Stop1, Company1, Bus37, 5500005555555559");
+            awaitProcessed(spoolDir, "taps-0.csv");
+            spool(spoolDir, "taps-1.csv", "2, 22-01-2023 13:05:00, OFF, Stop2, Company1, Bus37, 5500005555555559");
+            awaitProcessed(spoolDir, "taps-1.csv");
+
+            daemon.stop();
+            assertTrue(daemon.awaitTermination(Duration.ofSeconds(10)));
+            running.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(List.of(
+                        "Started,Finished,DurationSecs,FromStopId,ToStopId,ChargeAmount,CompanyId,BusID,PAN,Status",
+                        "22-01-2023 13:00:00,22-01-2023 13:05:00,300,Stop1,Stop2,$3.25,Company1,Bus37,"
+                                + "5500005555555559,COMPLETED"),
+                Files.readAllLines(outputDir.resolve("trips-20230122T130000Z.csv")));
+        assertEquals(2, daemon.metrics().getTapEvents());
+        assertEquals(1, daemon.metrics().getCompletedTrips());
+    }
+
+    @Test
+    void run_withStateFile_shouldRestoreOpenTripsAfterRestart() throws Exception {
+        Path spoolDir = Files.createDirectories(tempDir.resolve("spool"));
+        Path outputDir = tempDir.resolve("trips");
+        Path stateFile = tempDir.resolve("daemon.state");
+
+        spool(spoolDir, "taps-0.csv", "1, 22-01-2023 13:00:00, ON, Stop1, Company1, Bus37, 5500005555555559");
+        runUntilProcessed(createDaemon(spoolDir, outputDir, stateFile), spoolDir, "taps-0.csv");
+        assertEquals(List.of("5500005555555559"),
+                OpenTripState.read(stateFile).openTrips().stream().map(TripEvent::pan).toList());
+
+        spool(spoolDir, "taps-1.csv", "2, 22-01-2023 13:05:00, OFF, Stop3, Company1, Bus37, 5500005555555559");
+        runUntilProcessed(createDaemon(spoolDir, outputDir, stateFile), spoolDir, "taps-1.csv");
+
+        assertEquals(List.of(
+                        "Started,Finished,DurationSecs,FromStopId,ToStopId,ChargeAmount,CompanyId,BusID,PAN,Status",
+                        "22-01-2023 13:00:00,22-01-2023 13:05:00,300,Stop1,Stop3,$7.30,Company1,Bus37,"
+                                + "5500005555555559,COMPLETED"),
+                Files.readAllLines(outputDir.resolve("trips-20230122T130000Z.csv")));
+        assertEquals(List.of(), OpenTripState.read(stateFile).openTrips());
+    }
+
+    @Test
+    void run_afterStopWithTripsWrittenBeforeState_shouldNotWriteTripsTwice() throws Exception {
+        Path spoolDir = Files.createDirectories(tempDir.resolve("spool"));
+        Path outputDir = tempDir.resolve("trips");
+        Path stateFile = tempDir.resolve("daemon.state");
+        Path tripsCsv = outputDir.resolve("trips-20230122T130000Z.csv");
+
+        spool(spoolDir, "taps-0.csv", "1, 22-01-2023 13:00:00, ON, Stop1, Company1, Bus37, 5500005555555559");
+        runUntilProcessed(createDaemon(spoolDir, outputDir, stateFile), spoolDir, "taps-0.csv");
+        Path batchStartState = Files.copy(stateFile, tempDir.resolve("daemon.state.0"));
+        spool(spoolDir, "taps-1.csv", "2, 22-01-2023 13:05:00, OFF, Stop2, Company1, Bus37, 5500005555555559");
+        runUntilProcessed(createDaemon(spoolDir, outputDir, stateFile), spoolDir, "taps-1.csv");
+        List<String> trips = Files.readAllLines(tripsCsv);
+
+        // the daemon stopped after the trips of taps-1.csv were flushed but before the state file was written
+        Files.copy(batchStartState, stateFile, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(spoolDir.resolve("processed").resolve("taps-1.csv"), spoolDir.resolve("taps-1.csv"));
+        runUntilProcessed(createDaemon(spoolDir, outputDir, stateFile), spoolDir, "taps-1.csv");
+
+        assertEquals(2, trips.size());
+        assertEquals(trips, Files.readAllLines(tripsCsv));
+        assertEquals("trips-20230122T130000Z.csv", OpenTripState.read(stateFile).tripsFile());
+        assertEquals(Files.size(tripsCsv), OpenTripState.read(stateFile).tripsPosition());
+    }
+
+    @Test
+    void run_withInvalidTapsFile_shouldMoveFileToFailedAndContinue() throws Exception {
+        Path spoolDir = Files.createDirectories(tempDir.resolve("spool"));
+        Path outputDir = tempDir.resolve("trips");
+
+        spool(spoolDir, "taps-0.csv", "1, 22-01-2023 13:00:00, IN, Stop1, Company1, Bus37, 5500005555555559");
+        spool(spoolDir, "taps-1.csv", "2, 22-01-2023 13:05:00, ON, Stop1, Company1, Bus37, 5500005555555559");
+        runUntilProcessed(createDaemon(spoolDir, outputDir, null), spoolDir, "taps-1.csv");
+
+        assertTrue(Files.exists(spoolDir.resolve("failed").resolve("taps-0.csv")));
+        assertFalse(Files.exists(spoolDir.resolve("taps-0.csv")));
+    }
+
+    @Test
+    void run_withTapAtStopWithoutTripCost_shouldMoveFileToFailedAndContinue() throws Exception {
+        Path spoolDir = Files.createDirectories(tempDir.resolve("spool"));
+        Path outputDir = tempDir.resolve("trips");
+        Path stateFile = tempDir.resolve("daemon.state");
+
+        spool(spoolDir, "taps-0.csv", "1, 22-01-2023 13:00:00, ON, Stop9, Company1, Bus37, 5500005555555559\n"
+                + "2, 22-01-2023 13:05:00, OFF, Stop1, Company1, Bus37, 5500005555555559");
+        spool(spoolDir, "taps-1.csv", "3, 22-01-2023 13:05:00, ON, Stop1, Company1, Bus37, 4111111111111111");
+        runUntilProcessed(createDaemon(spoolDir, outputDir, stateFile), spoolDir, "taps-1.csv");
+
+        assertTrue(Files.exists(spoolDir.resolve("failed").resolve("taps-0.csv")));
+        assertFalse(Files.exists(spoolDir.resolve("taps-0.csv")));
+        assertTrue(OpenTripState.read(stateFile).openTrips().stream().map(TripEvent::pan).toList()
+                .contains("4111111111111111"));
+    }
+
+    @Test
+    void constructor_withZeroBatchInterval_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> new TripEventDaemon(new TripCostService(), TripEventServiceConfig.defaults(), tempDir, tempDir,
+                        Duration.ZERO, Duration.ofHours(1), null, tapsCsv -> fail("no taps file")));
+        assertEquals("Invalid batch interval, value must be positive", ex.getMessage());
+    }
+
+    private TripEventDaemon createDaemon(Path spoolDir, Path outputDir, Path stateFile) {
+        return new TripEventDaemon(tripCostService,
+                TripEventServiceConfig.defaults().withMaxTripDuration(Duration.ofHours(1)), spoolDir, outputDir,
+                Duration.ofMillis(50), Duration.ofHours(1), stateFile,
+                tapsCsv -> new TripEventReader(new FileReader(tapsCsv.toFile())), CLOCK);
+    }
+
+    private static void runUntilProcessed(TripEventDaemon daemon, Path spoolDir, String tapsCsv) throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> running = executor.submit(() -> {
+                daemon.run();
+                return null;
+            });
+            awaitProcessed(spoolDir, tapsCsv);
+            daemon.stop();
+            assertTrue(daemon.awaitTermination(Duration.ofSeconds(10)));
+            running.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes the taps file under a temporary name and renames it, as a producer should.
+     */
+    private static void spool(Path spoolDir, String fileName, String tapRecord) throws IOException {
+        Path tmpFile = Files.writeString(spoolDir.resolve("." + fileName + ".tmp"),
+                TAPS_HEADER + "\n" + tapRecord + "\n");
+        Files.move(tmpFile, spoolDir.resolve(fileName));
+    }
+
+    private static void awaitProcessed(Path spoolDir, String fileName) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!Files.exists(spoolDir.resolve("processed").resolve(fileName))) {
+            assertTrue(System.nanoTime() < deadline, fileName + " was not processed");
+            Thread.sleep(10);
+        }
+    }
+
+}
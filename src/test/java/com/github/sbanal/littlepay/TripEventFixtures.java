@@ -0,0 +1,37 @@
+package com.github.sbanal.littlepay;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Creates the synthetic tap events shared by the tests of the concurrent trip event services.
+ */
+final class TripEventFixtures {
+
+    private TripEventFixtures() {
+    }
+
+    /**
+     * Returns the tap events of 301 customers tapping on and off one second apart across 3 stops, every fifth tap is
+     * a tap on so some customers tap on twice and leave an incomplete trip.
+     */
+    static List<TripEvent> createTripEvents(int count) {
+        Instant tapDateTime = Instant.parse("2023-01-22T13:00:00Z");
+        List<TripEvent> tripEvents = new ArrayList<>();
+        Set<Integer> tappedOn = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            int customer = (i * 7) % 301;
+            TapType tapType = tappedOn.add(customer) || i % 5 == 0 ? TapType.ON : TapType.OFF;
+            if (tapType == TapType.OFF) {
+                tappedOn.remove(customer);
+            }
+            tripEvents.add(new TripEvent((long) i, tapDateTime.plusSeconds(i), tapType, "stop" + (i % 3),
+                    "company1", "bus1", String.valueOf(4_000_000_000_000_000L + customer)));
+        }
+        return tripEvents;
+    }
+
+}
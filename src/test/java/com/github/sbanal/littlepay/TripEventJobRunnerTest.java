@@ -0,0 +1,79 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TripEventJobRunnerTest {
+
+    private static final Path TRIP_COST_CSV = Paths.get("src/test/resources/trip-cost.csv");
+    private static final Path TAPS_CSV = Paths.get("src/test/resources/taps.csv");
+    private static final Path TRIPS_CSV = Paths.get("src/test/resources/trips.csv");
+
+    @Test
+    void run_withJobsOfSameTripCosts_shouldShareTripCostTableAndWriteTrips(@TempDir Path tempDir)
+            throws IOException {
+        Path otherTripCostCsv = Files.copy(TRIP_COST_CSV, tempDir.resolve("other-trip-cost.csv"));
+        List<TripEventJob> jobs = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            jobs.add(new TripEventJob(i % 2 == 0 ? TRIP_COST_CSV : otherTripCostCsv, TAPS_CSV,
+                    tempDir.resolve("trips-" + i + ".csv")));
+        }
+        TripEventJobRunner jobRunner = createJobRunner(2);
+
+        List<TripEventJobRunner.JobResult> results = jobRunner.run(jobs);
+
+        assertEquals(1, jobRunner.tripCostTables());
+        assertEquals(jobs, results.stream().map(TripEventJobRunner.JobResult::job).toList());
+        for (TripEventJobRunner.JobResult result : results) {
+            assertFalse(result.failed());
+            assertEquals(6, result.metrics().getTapEvents());
+            assertEquals(Files.readAllLines(TRIPS_CSV), Files.readAllLines(result.job().tripsCsv()));
+        }
+    }
+
+    @Test
+    void run_whenJobFails_shouldCompleteOtherJobs(@TempDir Path tempDir) throws IOException {
+        Path otherTripCostCsv = Files.writeString(tempDir.resolve("other-trip-cost.csv"), """
+                FromStopId, ToStopId, Cost
+                Stop1, Stop2, 3.25
+                Stop2, Stop3, 5.50
+                Stop1, Stop3, 7.30
+                Stop3, Stop4, 1.00
+                """);
+        List<TripEventJob> jobs = List.of(
+                new TripEventJob(TRIP_COST_CSV, tempDir.resolve("missing-taps.csv"), tempDir.resolve("trips-0.csv")),
+                new TripEventJob(otherTripCostCsv, TAPS_CSV, tempDir.resolve("trips-1.csv")));
+        TripEventJobRunner jobRunner = createJobRunner(4);
+
+        List<TripEventJobRunner.JobResult> results = jobRunner.run(jobs);
+
+        assertTrue(results.get(0).failure() instanceof FileNotFoundException);
+        assertFalse(results.get(1).failed());
+        assertEquals(Files.readAllLines(TRIPS_CSV), Files.readAllLines(tempDir.resolve("trips-1.csv")));
+        assertEquals(2, jobRunner.tripCostTables());
+    }
+
+    @Test
+    void constructor_withZeroConcurrentJobs_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> createJobRunner(0));
+        assertEquals("Invalid max concurrent jobs, value must be positive", ex.getMessage());
+    }
+
+    private static TripEventJobRunner createJobRunner(int maxConcurrentJobs) {
+        return new TripEventJobRunner(null, maxConcurrentJobs,
+                tapsCsv -> new TripEventReader(new FileReader(tapsCsv.toFile())),
+                tripsCsv -> TripCompletionEventWriter.direct(tripsCsv));
+    }
+
+}
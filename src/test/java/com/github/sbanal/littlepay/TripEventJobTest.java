@@ -0,0 +1,59 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TripEventJobTest {
+
+    @Test
+    void readManifest_withRelativeAndAbsolutePaths_shouldResolveAgainstManifestDirectory(@TempDir Path tempDir)
+            throws IOException {
+        Path manifestCsv = Files.writeString(tempDir.resolve("jobs.csv"), """
+                TripCostCsv, TapsCsv, TripsCsv
+                trip-cost.csv, company1/taps.csv, company1/trips.csv
+
+                /data/trip-cost.csv, /data/taps.csv, /data/trips.csv
+                """);
+
+        List<TripEventJob> jobs = TripEventJob.readManifest(manifestCsv);
+
+        assertEquals(List.of(
+                new TripEventJob(tempDir.resolve("trip-cost.csv"), tempDir.resolve("company1/taps.csv"),
+                        tempDir.resolve("company1/trips.csv")),
+                new TripEventJob(Path.of("/data/trip-cost.csv"), Path.of("/data/taps.csv"),
+                        Path.of("/data/trips.csv"))), jobs);
+    }
+
+    @Test
+    void readManifest_withMissingColumn_shouldThrowException(@TempDir Path tempDir) throws IOException {
+        Path manifestCsv = Files.writeString(tempDir.resolve("jobs.csv"), """
+                TripCostCsv, TapsCsv
+                trip-cost.csv, taps.csv
+                """);
+
+        IOException ex = assertThrows(IOException.class, () -> TripEventJob.readManifest(manifestCsv));
+        assertEquals("Invalid jobs manifest " + manifestCsv + ", header must be TripCostCsv, TapsCsv, TripsCsv",
+                ex.getMessage());
+    }
+
+    @Test
+    void readManifest_withMissingValue_shouldThrowException(@TempDir Path tempDir) throws IOException {
+        Path manifestCsv = Files.writeString(tempDir.resolve("jobs.csv"), """
+                TripCostCsv, TapsCsv, TripsCsv
+                trip-cost.csv, taps.csv
+                """);
+
+        IOException ex = assertThrows(IOException.class, () -> TripEventJob.readManifest(manifestCsv));
+        assertEquals("Invalid jobs manifest " + manifestCsv + ", line 2 must have the columns TripCostCsv, TapsCsv, "
+                + "TripsCsv", ex.getMessage());
+    }
+
+}
@@ -7,6 +7,8 @@ import java.io.StringReader;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -125,4 +127,73 @@ class TripEventReaderTest {
         assertEquals("Invalid trip event PAN for record 1", ex.getMessage());
     }
 
-}
\ No newline at end of file
+    @Test
+    void parse_withNonNumericPanValue_shouldThrowInvalidPanException() {
+        StringReader stringReader = new StringReader("ID, DateTimeUTC, TapType, StopId, CompanyId, BusID, PAN\n" +
+                "1, 22-01-2023 13:00:00, ON, Stop1, Company1, Bus37, 5500-0055-5555-5559");
+
+        InvalidTripEventException ex = assertThrows(InvalidTripEventException.class,
+                () -> new TripEventReader(stringReader).readEvents());
+        assertEquals("Invalid trip event PAN for record 1", ex.getMessage());
+        assertEquals(InvalidTripEventException.Reason.INVALID_PAN, ex.reason());
+    }
+
+    @Test
+    void iterator_withValidFormat_shouldReturnTripEventsOneAtATime() throws IOException {
+        StringReader stringReader = new StringReader("""
+                ID, DateTimeUTC, TapType, StopId, CompanyId, BusID, PAN
+                1, 22-01-2023 13:00:00, ON, Stop1, Company1, Bus37, 5500005555555559
+                2, 22-01-2023 13:05:00, OFF, Stop2, Company1, Bus37, 5500005555555559
+                3, 22-01-2023 13:05:00, ON, Stop2, Company1, Bus37, 4111111111111111""");
+
+        try (TripEventReader tripEventReader = new TripEventReader(stringReader)) {
+            Iterator<TripEvent> tripEvents = tripEventReader.iterator();
+            assertTrue(tripEvents.hasNext());
+            assertEquals(1, tripEvents.next().id());
+            assertTrue(tripEvents.hasNext());
+            assertEquals(2, tripEvents.next().id());
+            assertTrue(tripEvents.hasNext());
+            assertEquals(3, tripEvents.next().id());
+            assertFalse(tripEvents.hasNext());
+        }
+    }
+
+    @Test
+    void iterator_withInvalidRecordAfterValidRecord_shouldThrowExceptionOnInvalidRecord() throws IOException {
+        StringReader stringReader = new StringReader("""
+                ID, DateTimeUTC, TapType, StopId, CompanyId, BusID, PAN
+                1, 22-01-2023 13:00:00, ON, Stop1, Company1, Bus37, 5500005555555559
+                2, 22-01-2023 13:05:00, invalid, Stop2, Company1, Bus37, 5500005555555559""");
+
+        try (TripEventReader tripEventReader = new TripEventReader(stringReader)) {
+            Iterator<TripEvent> tripEvents = tripEventReader.iterator();
+            assertEquals(1, tripEvents.next().id());
+            InvalidTripEventException ex = assertThrows(InvalidTripEventException.class, tripEvents::next);
+            assertEquals("Invalid trip event TapType for record 2", ex.getMessage());
+        }
+    }
+
+    @Test
+    void iterator_withInvalidRecordHandler_shouldSkipInvalidRecordsWithLineNumbers() throws IOException {
+        StringReader stringReader = new StringReader("""
+                ID, DateTimeUTC, TapType, StopId, CompanyId, BusID, PAN
+                1, 22-01-2023 13:00:00, ON, Stop1, Company1, Bus37, 5500005555555559
+                2, 22-01-2023 13:05:00, invalid, Stop2, Company1, Bus37, 5500005555555559
+
+                3, 22-01-2023 13:05:00, OFF, Stop2, Company1, Bus37, 5500005555555559
+                4, 22-01-2023 13:05:00, ON, , Company1, Bus37, 4111111111111111
+                5, 22-01-2023 13:06:00, ON, Stop2, Company1, Bus37, 4111111111111111
+                """);
+        List<String> invalidRecords = new ArrayList<>();
+
+        try (TripEventReader tripEventReader = new TripEventReader(stringReader, (lineNumber, record, e) ->
+                invalidRecords.add(lineNumber + " " + e.reason() + " " + record))) {
+            assertEquals(List.of(1L, 3L, 5L), tripEventReader.readEvents().stream().map(TripEvent::id).toList());
+        }
+
+        assertEquals(List.of(
+                "3 INVALID_TAP_TYPE 2,22-01-2023 13:05:00,invalid,Stop2,Company1,Bus37,5500005555555559",
+                "6 EMPTY_STOP_ID 4,22-01-2023 13:05:00,ON,,Company1,Bus37,4111111111111111"), invalidRecords);
+    }
+
+}
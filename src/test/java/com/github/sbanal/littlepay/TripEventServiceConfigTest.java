@@ -0,0 +1,52 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TripEventServiceConfigTest {
+
+    @Test
+    void defaults_shouldNotExpireOrReorderTripsAndKeepOpenTripsOnHeap() {
+        TripEventServiceConfig config = TripEventServiceConfig.defaults();
+
+        assertNull(config.maxTripDuration());
+        assertNull(config.maxLateness());
+        assertEquals(OpenTripStoreType.HEAP, config.openTripStoreType());
+        assertNotSame(config.metrics(), TripEventServiceConfig.defaults().metrics());
+        assertNotSame(config.anomalies(), TripEventServiceConfig.defaults().anomalies());
+    }
+
+    @Test
+    void with_whenSettingChanged_shouldKeepOtherSettings() {
+        PipelineMetrics metrics = new PipelineMetrics();
+        TapAnomalyReport anomalies = new TapAnomalyReport();
+
+        TripEventServiceConfig config = TripEventServiceConfig.defaults()
+                .withMaxTripDuration(Duration.ofHours(3))
+                .withMetrics(metrics)
+                .withAnomalies(anomalies)
+                .withOpenTripStoreType(OpenTripStoreType.OFF_HEAP)
+                .withMaxLateness(Duration.ofMinutes(5));
+
+        assertEquals(new TripEventServiceConfig(Duration.ofHours(3), metrics, anomalies, OpenTripStoreType.OFF_HEAP,
+                Duration.ofMinutes(5)), config);
+    }
+
+    @Test
+    void withMaxTripDuration_withNonPositiveDuration_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> TripEventServiceConfig.defaults().withMaxTripDuration(Duration.ZERO));
+        assertEquals("Invalid max trip duration, value must be positive", ex.getMessage());
+    }
+
+    @Test
+    void withMaxLateness_withNonPositiveDuration_shouldThrowException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> TripEventServiceConfig.defaults().withMaxLateness(Duration.ofMinutes(-1)));
+        assertEquals("Invalid max lateness, value must be positive", ex.getMessage());
+    }
+
+}
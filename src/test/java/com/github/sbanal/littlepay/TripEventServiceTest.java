@@ -2,11 +2,15 @@ package com.github.sbanal.littlepay;
 
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -19,14 +23,14 @@ class TripEventServiceTest {
         TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
         TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
         TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
-        when(mockTripCostService.getTripCost("stop1", "stop2")).thenReturn(555.00f);
+        when(mockTripCostService.getTripCost(any(), eq(stop("stop1")), eq(stop("stop2")))).thenReturn(55500L);
         Instant tapOnDateTime = Instant.now();
         Instant tapOffDateTime = tapOnDateTime.plusSeconds(123);
-        when(mockTripEventReader.readEvents()).thenReturn(
+        when(mockTripEventReader.iterator()).thenReturn(
                 Arrays.asList(
                         new TripEvent(1L, tapOnDateTime, TapType.ON, "stop1", "company1", "bus1", "123123123"),
                         new TripEvent(2L, tapOffDateTime, TapType.OFF, "stop2", "company1", "bus1", "123123123")
-                )
+                ).iterator()
         );
 
         TripEventService tripEventService = new TripEventService(mockTripCostService);
@@ -42,24 +46,52 @@ class TripEventServiceTest {
         assertEquals(123, tripCompletionEvent.durationSecs());
         assertEquals("stop1", tripCompletionEvent.fromStopId());
         assertEquals("stop2", tripCompletionEvent.toStopId());
-        assertEquals(555.00f, tripCompletionEvent.chargeAmount());
+        assertEquals(55500L, tripCompletionEvent.chargeCents());
         assertEquals("company1", tripCompletionEvent.companyId());
         assertEquals("bus1", tripCompletionEvent.busId());
         assertEquals("123123123", tripCompletionEvent.pan());
         assertEquals(TripCompletionStatus.COMPLETED, tripCompletionEvent.status());
     }
 
+    @Test
+    void processEvents_whenTripCostsReloadedDuringTrip_shouldCostTripAtTapOnTime() throws IOException {
+        TripCostService tripCostService = new TripCostService();
+        tripCostService.addTripCost("stop1", "stop2", 325L);
+        tripCostService.calculateIncompleteTripCost();
+        Instant tapOnDateTime = Instant.parse("2023-01-22T13:00:00Z");
+        tripCostService.reload(new StringReader("FromStopId, ToStopId, Cost\nstop1, stop2, 4.00\n"),
+                tapOnDateTime.plusSeconds(60));
+        TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
+        when(mockTripEventReader.iterator()).thenReturn(List.of(
+                new TripEvent(1L, tapOnDateTime, TapType.ON, "stop1", "company1", "bus1", "123123123"),
+                new TripEvent(2L, tapOnDateTime.plusSeconds(120), TapType.OFF, "stop2", "company1", "bus1",
+                        "123123123"),
+                new TripEvent(3L, tapOnDateTime.plusSeconds(180), TapType.ON, "stop1", "company1", "bus1",
+                        "123123123"),
+                new TripEvent(4L, tapOnDateTime.plusSeconds(240), TapType.OFF, "stop2", "company1", "bus1",
+                        "123123123")).iterator());
+
+        new TripEventService(tripCostService).processEvents(mockTripEventReader, mockTripCompletionEventWriter);
+
+        ArgumentCaptor<TripCompletionEvent> tripCompletionEventArgumentCaptor =
+                ArgumentCaptor.forClass(TripCompletionEvent.class);
+        verify(mockTripCompletionEventWriter, times(2)).write(tripCompletionEventArgumentCaptor.capture());
+        assertEquals(List.of(325L, 400L), tripCompletionEventArgumentCaptor.getAllValues().stream()
+                .map(TripCompletionEvent::chargeCents).toList());
+    }
+
     @Test
     void processEvents_whenIncompleteTrip_shouldWriteIncompleteTripEvent() throws IOException {
         TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
         TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
         TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
-        when(mockTripCostService.getTripCost("stop1", null)).thenReturn(555.00f);
+        when(mockTripCostService.getTripCost(any(), eq(stop("stop1")), eq(SymbolTable.NO_CODE))).thenReturn(55500L);
         Instant tapOnDateTime = Instant.now();
-        when(mockTripEventReader.readEvents()).thenReturn(
+        when(mockTripEventReader.iterator()).thenReturn(
                 List.of(
                         new TripEvent(1L, tapOnDateTime, TapType.ON, "stop1", "company1", "bus1", "123123123")
-                )
+                ).iterator()
         );
 
         TripEventService tripEventService = new TripEventService(mockTripCostService);
@@ -75,7 +107,7 @@ class TripEventServiceTest {
         assertNull(tripCompletionEvent.durationSecs());
         assertEquals("stop1", tripCompletionEvent.fromStopId());
         assertNull(tripCompletionEvent.toStopId());
-        assertEquals(555.00f, tripCompletionEvent.chargeAmount());
+        assertEquals(55500L, tripCompletionEvent.chargeCents());
         assertEquals("company1", tripCompletionEvent.companyId());
         assertEquals("bus1", tripCompletionEvent.busId());
         assertEquals("123123123", tripCompletionEvent.pan());
@@ -87,17 +119,17 @@ class TripEventServiceTest {
         TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
         TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
         TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
-        when(mockTripCostService.getTripCost("stop1", null)).thenReturn(555.00f);
-        when(mockTripCostService.getTripCost("stop1", "stop2")).thenReturn(123.00f);
+        when(mockTripCostService.getTripCost(any(), eq(stop("stop1")), eq(SymbolTable.NO_CODE))).thenReturn(55500L);
+        when(mockTripCostService.getTripCost(any(), eq(stop("stop1")), eq(stop("stop2")))).thenReturn(12300L);
         Instant tapOnDateTime = Instant.now();
         Instant tapOnDateTime2 = Instant.now().plusSeconds(3600);
         Instant tapOffDateTime2 = tapOnDateTime2.plusSeconds(600);
-        when(mockTripEventReader.readEvents()).thenReturn(
+        when(mockTripEventReader.iterator()).thenReturn(
                 Arrays.asList(
                         new TripEvent(1L, tapOnDateTime, TapType.ON, "stop1", "company1", "bus1", "123123123"),
                         new TripEvent(2L, tapOnDateTime2, TapType.ON, "stop1", "company1", "bus2", "123123123"),
                         new TripEvent(3L, tapOffDateTime2, TapType.OFF, "stop2", "company1", "bus2", "123123123")
-                )
+                ).iterator()
         );
 
         TripEventService tripEventService = new TripEventService(mockTripCostService);
@@ -115,7 +147,7 @@ class TripEventServiceTest {
         assertNull(firstCompletionEvent.durationSecs());
         assertEquals("stop1", firstCompletionEvent.fromStopId());
         assertNull(firstCompletionEvent.toStopId());
-        assertEquals(555.00f, firstCompletionEvent.chargeAmount());
+        assertEquals(55500L, firstCompletionEvent.chargeCents());
         assertEquals("company1", firstCompletionEvent.companyId());
         assertEquals("bus1", firstCompletionEvent.busId());
         assertEquals("123123123", firstCompletionEvent.pan());
@@ -128,7 +160,7 @@ class TripEventServiceTest {
         assertEquals(600, secondCompletionEvent.durationSecs());
         assertEquals("stop1", secondCompletionEvent.fromStopId());
         assertEquals("stop2", secondCompletionEvent.toStopId());
-        assertEquals(123, secondCompletionEvent.chargeAmount());
+        assertEquals(12300L, secondCompletionEvent.chargeCents());
         assertEquals("company1", secondCompletionEvent.companyId());
         assertEquals("bus2", secondCompletionEvent.busId());
         assertEquals("123123123", secondCompletionEvent.pan());
@@ -140,14 +172,14 @@ class TripEventServiceTest {
         TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
         TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
         TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
-        when(mockTripCostService.getTripCost("stop1", "stop1")).thenReturn(555.00f);
+        when(mockTripCostService.getTripCost(any(), eq(stop("stop1")), eq(stop("stop1")))).thenReturn(55500L);
         Instant tapOnDateTime = Instant.now();
         Instant tapOffDateTime = tapOnDateTime.plusSeconds(123);
-        when(mockTripEventReader.readEvents()).thenReturn(
+        when(mockTripEventReader.iterator()).thenReturn(
                 Arrays.asList(
                         new TripEvent(1L, tapOnDateTime, TapType.ON, "stop1", "company1", "bus1", "123123123"),
                         new TripEvent(2L, tapOffDateTime, TapType.OFF, "stop1", "company1", "bus1", "123123123")
-                )
+                ).iterator()
         );
 
         TripEventService tripEventService = new TripEventService(mockTripCostService);
@@ -163,7 +195,7 @@ class TripEventServiceTest {
         assertEquals(123, tripCompletionEvent.durationSecs());
         assertEquals("stop1", tripCompletionEvent.fromStopId());
         assertEquals("stop1", tripCompletionEvent.toStopId());
-        assertEquals(555.00f, tripCompletionEvent.chargeAmount());
+        assertEquals(55500L, tripCompletionEvent.chargeCents());
         assertEquals("company1", tripCompletionEvent.companyId());
         assertEquals("bus1", tripCompletionEvent.busId());
         assertEquals("123123123", tripCompletionEvent.pan());
@@ -175,18 +207,249 @@ class TripEventServiceTest {
         TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
         TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
         TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
-        when(mockTripCostService.getTripCost("stop1", "stop1")).thenReturn(555.00f);
+        when(mockTripCostService.getTripCost(any(), eq(stop("stop1")), eq(stop("stop1")))).thenReturn(55500L);
         Instant tapOnDateTime = Instant.now();
-        when(mockTripEventReader.readEvents()).thenReturn(
+        when(mockTripEventReader.iterator()).thenReturn(
                 List.of(
                         new TripEvent(1L, tapOnDateTime, TapType.OFF, "stop1", "company1", "bus1", "123123123")
-                )
+                ).iterator()
         );
 
         TripEventService tripEventService = new TripEventService(mockTripCostService);
         tripEventService.processEvents(mockTripEventReader, mockTripCompletionEventWriter);
 
         verify(mockTripCompletionEventWriter, never()).write(any());
+        assertEquals(1, tripEventService.anomalies().getAnomalies());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processEvents_whenCompletedTrip_shouldWriteTripEventBeforeReadingNextEvent() throws IOException {
+        TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
+        TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
+        Iterator<TripEvent> mockTripEventIterator = Mockito.mock(Iterator.class);
+        when(mockTripCostService.getTripCost(any(), eq(stop("stop1")), eq(stop("stop2")))).thenReturn(55500L);
+        Instant tapOnDateTime = Instant.now();
+        Instant tapOffDateTime = tapOnDateTime.plusSeconds(123);
+        when(mockTripEventReader.iterator()).thenReturn(mockTripEventIterator);
+        when(mockTripEventIterator.hasNext()).thenReturn(true, true, true, false);
+        when(mockTripEventIterator.next()).thenReturn(
+                new TripEvent(1L, tapOnDateTime, TapType.ON, "stop1", "company1", "bus1", "123123123"),
+                new TripEvent(2L, tapOffDateTime, TapType.OFF, "stop2", "company1", "bus1", "123123123"),
+                new TripEvent(3L, tapOffDateTime, TapType.ON, "stop2", "company1", "bus1", "456456456")
+        );
+        when(mockTripCostService.getTripCost(any(), eq(stop("stop2")), eq(SymbolTable.NO_CODE))).thenReturn(55500L);
+
+        TripEventService tripEventService = new TripEventService(mockTripCostService);
+        tripEventService.processEvents(mockTripEventReader, mockTripCompletionEventWriter);
+
+        InOrder inOrder = inOrder(mockTripEventIterator, mockTripCompletionEventWriter);
+        inOrder.verify(mockTripEventIterator, calls(2)).next();
+        inOrder.verify(mockTripCompletionEventWriter).write(any());
+        inOrder.verify(mockTripEventIterator).next();
+        inOrder.verify(mockTripCompletionEventWriter).write(any());
+    }
+
+    @Test
+    void processEvents_whenTapOnOlderThanMaxTripDuration_shouldWriteIncompleteTripEventBeforeNextEvent()
+            throws IOException {
+        TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
+        TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
+        when(mockTripCostService.getTripCost(any(), eq(stop("stop1")), eq(SymbolTable.NO_CODE))).thenReturn(55500L);
+        when(mockTripCostService.getTripCost(any(), eq(stop("stop2")), eq(stop("stop3")))).thenReturn(12300L);
+        Instant tapOnDateTime = Instant.now();
+        Instant tapOnDateTime2 = tapOnDateTime.plusSeconds(3601);
+        Instant tapOffDateTime2 = tapOnDateTime2.plusSeconds(600);
+        when(mockTripEventReader.iterator()).thenReturn(
+                Arrays.asList(
+                        new TripEvent(1L, tapOnDateTime, TapType.ON, "stop1", "company1", "bus1", "123123123"),
+                        new TripEvent(2L, tapOnDateTime2, TapType.ON, "stop2", "company1", "bus2", "456456456"),
+                        new TripEvent(3L, tapOffDateTime2, TapType.OFF, "stop3", "company1", "bus2", "456456456"),
+                        new TripEvent(4L, tapOffDateTime2, TapType.OFF, "stop2", "company1", "bus1", "123123123")
+                ).iterator()
+        );
+
+        TripEventService tripEventService = new TripEventService(mockTripCostService,
+                TripEventServiceConfig.defaults().withMaxTripDuration(Duration.ofHours(1)));
+        tripEventService.processEvents(mockTripEventReader, mockTripCompletionEventWriter);
+
+        ArgumentCaptor<TripCompletionEvent> tripCompletionEventArgumentCaptor =
+                ArgumentCaptor.forClass(TripCompletionEvent.class);
+        verify(mockTripCompletionEventWriter, times(2)).write(tripCompletionEventArgumentCaptor.capture());
+        List<TripCompletionEvent> tripCompletionEvents = tripCompletionEventArgumentCaptor.getAllValues();
+
+        TripCompletionEvent firstCompletionEvent = tripCompletionEvents.get(0);
+        assertEquals(tapOnDateTime, firstCompletionEvent.started());
+        assertNull(firstCompletionEvent.finished());
+        assertEquals("123123123", firstCompletionEvent.pan());
+        assertEquals(TripCompletionStatus.INCOMPLETE, firstCompletionEvent.status());
+
+        TripCompletionEvent secondCompletionEvent = tripCompletionEvents.get(1);
+        assertEquals(tapOnDateTime2, secondCompletionEvent.started());
+        assertEquals(tapOffDateTime2, secondCompletionEvent.finished());
+        assertEquals("456456456", secondCompletionEvent.pan());
+        assertEquals(TripCompletionStatus.COMPLETED, secondCompletionEvent.status());
+    }
+
+    @Test
+    void processEvents_withOffHeapOpenTrips_shouldWriteSameTripEventsAsHeapOpenTrips() throws IOException {
+        TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
+        when(mockTripCostService.getTripCost(any(), anyInt(), anyInt())).thenReturn(55500L);
+        Instant tapOnDateTime = Instant.now();
+        List<TripEvent> tripEvents = Arrays.asList(
+                new TripEvent(1L, tapOnDateTime, TapType.ON, "stop1", "company1", "bus1", "123123123"),
+                new TripEvent(2L, tapOnDateTime.plusSeconds(10), TapType.ON, "stop2", "company1", "bus2", "456456456"),
+                new TripEvent(null, tapOnDateTime.plusSeconds(20), TapType.ON, "stop1", "company1", "bus1", "789"),
+                new TripEvent(4L, tapOnDateTime.plusSeconds(600), TapType.OFF, "stop3", "company1", "bus2",
+                        "456456456"),
+                new TripEvent(5L, tapOnDateTime.plusSeconds(3615), TapType.ON, "stop2", "company1", "bus1",
+                        "123123123"),
+                new TripEvent(6L, tapOnDateTime.plusSeconds(3700), TapType.OFF, "stop2", "company1", "bus1", "789")
+        );
+
+        assertEquals(processEvents(mockTripCostService, tripEvents, OpenTripStoreType.HEAP),
+                processEvents(mockTripCostService, tripEvents, OpenTripStoreType.OFF_HEAP));
+    }
+
+    @Test
+    void processEvents_withMaxLatenessAndLateTapOn_shouldMatchTripInDateTimeUtcOrder() throws IOException {
+        TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
+        TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
+        when(mockTripCostService.getTripCost(any(), eq(stop("stop1")), eq(stop("stop2")))).thenReturn(325L);
+        Instant tapOnDateTime = Instant.parse("2023-01-22T13:00:00Z");
+        TripEvent lateTapOn = new TripEvent(3L, tapOnDateTime.minusSeconds(3600), TapType.ON, "stop1", "company1",
+                "bus1", "456456456");
+        when(mockTripEventReader.iterator()).thenReturn(
+                Arrays.asList(
+                        new TripEvent(2L, tapOnDateTime.plusSeconds(300), TapType.OFF, "stop2", "company1", "bus1",
+                                "123123123"),
+                        new TripEvent(1L, tapOnDateTime, TapType.ON, "stop1", "company1", "bus1", "123123123"),
+                        lateTapOn
+                ).iterator()
+        );
+        PipelineMetrics metrics = new PipelineMetrics();
+        TapAnomalyReport anomalies = new TapAnomalyReport();
+
+        TripEventService tripEventService = new TripEventService(mockTripCostService, TripEventServiceConfig.defaults()
+                .withMetrics(metrics).withAnomalies(anomalies).withMaxLateness(Duration.ofMinutes(15)));
+        tripEventService.processEvents(mockTripEventReader, mockTripCompletionEventWriter);
+
+        ArgumentCaptor<TripCompletionEvent> tripCompletionEventArgumentCaptor =
+                ArgumentCaptor.forClass(TripCompletionEvent.class);
+        verify(mockTripCompletionEventWriter).write(tripCompletionEventArgumentCaptor.capture());
+        TripCompletionEvent completionEvent = tripCompletionEventArgumentCaptor.getValue();
+        assertEquals(tapOnDateTime, completionEvent.started());
+        assertEquals(TripCompletionStatus.COMPLETED, completionEvent.status());
+        assertEquals(2, metrics.getTapEvents());
+        assertEquals(1, metrics.getLateTaps());
+        assertEquals(0, metrics.getOrphanTapOffs());
+        assertEquals(List.of(lateTapOn), anomalies.examples());
+    }
+
+    private static List<TripCompletionEvent> processEvents(TripCostService tripCostService, List<TripEvent> tripEvents,
+                                                           OpenTripStoreType openTripStoreType) throws IOException {
+        TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
+        when(mockTripEventReader.iterator()).thenReturn(tripEvents.iterator());
+
+        new TripEventService(tripCostService, TripEventServiceConfig.defaults()
+                .withMaxTripDuration(Duration.ofHours(1)).withOpenTripStoreType(openTripStoreType))
+                .processEvents(mockTripEventReader, mockTripCompletionEventWriter);
+
+        ArgumentCaptor<TripCompletionEvent> tripCompletionEventArgumentCaptor =
+                ArgumentCaptor.forClass(TripCompletionEvent.class);
+        verify(mockTripCompletionEventWriter, times(4)).write(tripCompletionEventArgumentCaptor.capture());
+        return tripCompletionEventArgumentCaptor.getAllValues();
+    }
+
+    @Test
+    void processEvents_whenTripDurationEqualsMaxTripDuration_shouldWriteCompletedTripEvent() throws IOException {
+        TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
+        TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
+        when(mockTripCostService.getTripCost(any(), eq(stop("stop1")), eq(stop("stop2")))).thenReturn(55500L);
+        Instant tapOnDateTime = Instant.now();
+        Instant tapOffDateTime = tapOnDateTime.plusSeconds(3600);
+        when(mockTripEventReader.iterator()).thenReturn(
+                Arrays.asList(
+                        new TripEvent(1L, tapOnDateTime, TapType.ON, "stop1", "company1", "bus1", "123123123"),
+                        new TripEvent(2L, tapOffDateTime, TapType.OFF, "stop2", "company1", "bus1", "123123123")
+                ).iterator()
+        );
+
+        TripEventService tripEventService = new TripEventService(mockTripCostService,
+                TripEventServiceConfig.defaults().withMaxTripDuration(Duration.ofHours(1)));
+        tripEventService.processEvents(mockTripEventReader, mockTripCompletionEventWriter);
+
+        ArgumentCaptor<TripCompletionEvent> tripCompletionEventArgumentCaptor =
+                ArgumentCaptor.forClass(TripCompletionEvent.class);
+        verify(mockTripCompletionEventWriter).write(tripCompletionEventArgumentCaptor.capture());
+        assertEquals(TripCompletionStatus.COMPLETED, tripCompletionEventArgumentCaptor.getValue().status());
+    }
+
+    @Test
+    void processEvents_whenTripsProcessed_shouldRecordMetrics() throws IOException {
+        TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
+        TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
+        when(mockTripCompletionEventWriter.bytesWritten()).thenReturn(300L);
+        Instant tapOnDateTime = Instant.now();
+        when(mockTripEventReader.iterator()).thenReturn(
+                Arrays.asList(
+                        new TripEvent(1L, tapOnDateTime, TapType.ON, "stop1", "company1", "bus1", "111"),
+                        new TripEvent(2L, tapOnDateTime.plusSeconds(60), TapType.OFF, "stop2", "company1", "bus1",
+                                "111"),
+                        new TripEvent(3L, tapOnDateTime, TapType.ON, "stop1", "company1", "bus1", "222"),
+                        new TripEvent(4L, tapOnDateTime.plusSeconds(60), TapType.OFF, "stop1", "company1", "bus1",
+                                "222"),
+                        new TripEvent(5L, tapOnDateTime, TapType.ON, "stop1", "company1", "bus1", "333"),
+                        new TripEvent(6L, tapOnDateTime, TapType.OFF, "stop1", "company1", "bus1", "444")
+                ).iterator()
+        );
+        PipelineMetrics metrics = new PipelineMetrics();
+
+        TripEventService tripEventService = new TripEventService(mockTripCostService,
+                TripEventServiceConfig.defaults().withMetrics(metrics));
+        tripEventService.processEvents(mockTripEventReader, mockTripCompletionEventWriter);
+
+        assertEquals(6, metrics.getTapEvents());
+        assertEquals(0, metrics.getParseErrors());
+        assertEquals(1, metrics.getOrphanTapOffs());
+        assertEquals(0, metrics.getOpenTrips());
+        assertEquals(1, metrics.getCompletedTrips());
+        assertEquals(1, metrics.getIncompleteTrips());
+        assertEquals(1, metrics.getCancelledTrips());
+        assertEquals(300L, metrics.getBytesWritten());
+        assertEquals(List.of("process-tap-events", "complete-trips"),
+                List.copyOf(metrics.getStageWallTimeMillis().keySet()));
+    }
+
+    @Test
+    void processEvents_whenInvalidTripEvent_shouldCountParseError() {
+        TripCostService mockTripCostService = Mockito.mock(TripCostService.class);
+        TripEventReader mockTripEventReader = Mockito.mock(TripEventReader.class);
+        TripCompletionEventWriter mockTripCompletionEventWriter = Mockito.mock(TripCompletionEventWriter.class);
+        Iterator<TripEvent> mockIterator = Mockito.mock(Iterator.class);
+        when(mockTripEventReader.iterator()).thenReturn(mockIterator);
+        when(mockIterator.hasNext()).thenReturn(true);
+        when(mockIterator.next()).thenThrow(new InvalidTripEventException("Invalid trip event"));
+        PipelineMetrics metrics = new PipelineMetrics();
+
+        TripEventService tripEventService = new TripEventService(mockTripCostService,
+                TripEventServiceConfig.defaults().withMetrics(metrics));
+        assertThrows(InvalidTripEventException.class,
+                () -> tripEventService.processEvents(mockTripEventReader, mockTripCompletionEventWriter));
+
+        assertEquals(1, metrics.getParseErrors());
+        assertEquals(0, metrics.getTapEvents());
+    }
+
+
+    private static int stop(String stopId) {
+        return SymbolTable.STOPS.code(stopId);
     }
 
-}
\ No newline at end of file
+}
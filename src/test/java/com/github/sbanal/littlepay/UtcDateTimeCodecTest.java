@@ -0,0 +1,116 @@
+package com.github.sbanal.littlepay;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UtcDateTimeCodecTest {
+
+    private static final DateTimeFormatter UTC_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "22-01-2023 13:00:00",
+            "29-02-2024 23:59:59",
+            "01-01-1970 00:00:00",
+            "31-12-1969 23:59:59",
+            "01-01-0001 00:00:00",
+            "31-12-9999 23:59:59",
+            "31-02-2023 10:00:00",
+            "22-01-2023 24:00:00",
+    })
+    void parseEpochSecond_withValidValue_shouldReturnSameEpochSecondAsFormatter(String value) {
+        long expected = LocalDateTime.parse(value, UTC_FORMATTER).toEpochSecond(ZoneOffset.UTC);
+
+        assertEquals(expected, UtcDateTimeCodec.parseEpochSecond(value));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"22-01-2023a 13:00:00", "22-13-2023 13:00:00", "22-01-2023 13:60:00", "", "22/01/2023"})
+    void parseEpochSecond_withInvalidValue_shouldThrowException(String value) {
+        assertThrows(DateTimeParseException.class, () -> UtcDateTimeCodec.parseEpochSecond(value));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"22-01-2023 13:00:00", "29-02-2024 23:59:59", "01-01-0001 00:00:00"})
+    void parseEpochSecond_withBytes_shouldReturnSameEpochSecondAsFormatter(String value) {
+        ByteBuffer buffer = ByteBuffer.wrap((" " + value + " ").getBytes(StandardCharsets.UTF_8));
+        long expected = LocalDateTime.parse(value, UTC_FORMATTER).toEpochSecond(ZoneOffset.UTC);
+
+        assertEquals(expected, UtcDateTimeCodec.parseEpochSecond(buffer, 1, buffer.limit() - 1));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"31-02-2023 10:00:00", "22-01-2023 24:00:00", "22-01-2023a13:00:00", "22-01-2023"})
+    void parseEpochSecond_withBytesNotAcceptedByFastPath_shouldReturnInvalid(String value) {
+        ByteBuffer buffer = ByteBuffer.wrap(value.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(UtcDateTimeCodec.INVALID, UtcDateTimeCodec.parseEpochSecond(buffer, 0, buffer.limit()));
+    }
+
+    @Test
+    void format_withRandomEpochSeconds_shouldReturnSameValueAsFormatter() {
+        UtcDateTimeCodec codec = new UtcDateTimeCodec();
+        Random random = new Random(42);
+        long epochSecond = Instant.parse("2023-01-22T00:00:00Z").getEpochSecond();
+        for (int i = 0; i < 100_000; i++) {
+            epochSecond += random.nextInt(600);
+            assertEquals(formatToUtcStr(epochSecond), codec.format(epochSecond));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            long randomEpochSecond = random.nextLong(-62_135_596_800L, 253_402_300_800L);
+            assertEquals(formatToUtcStr(randomEpochSecond), codec.format(randomEpochSecond));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {-62_135_596_801L, 253_402_300_800L, 0L, -1L})
+    void format_withEpochSecondsOutsideFastPathYears_shouldReturnSameValueAsFormatter(long epochSecond) {
+        assertEquals(formatToUtcStr(epochSecond), new UtcDateTimeCodec().format(epochSecond));
+    }
+
+    @Test
+    void format_withByteBuffer_shouldWriteSameValueAsFormatterAtIndex() {
+        UtcDateTimeCodec codec = new UtcDateTimeCodec();
+        ByteBuffer buffer = ByteBuffer.allocate(UtcDateTimeCodec.MAX_LENGTH + 3);
+        buffer.position(1);
+        Random random = new Random(42);
+        long epochSecond = Instant.parse("2023-01-22T00:00:00Z").getEpochSecond();
+        for (int i = 0; i < 100_000; i++) {
+            epochSecond += random.nextInt(600);
+            int length = codec.format(epochSecond, buffer, 3);
+
+            assertEquals(formatToUtcStr(epochSecond), new String(buffer.array(), 3, length, StandardCharsets.US_ASCII));
+            assertEquals(1, buffer.position());
+        }
+    }
+
+    @Test
+    void format_withByteBufferOutsideFastPathYears_shouldWriteSameValueAsFormatter() {
+        UtcDateTimeCodec codec = new UtcDateTimeCodec();
+        ByteBuffer buffer = ByteBuffer.allocate(UtcDateTimeCodec.MAX_LENGTH);
+        for (long epochSecond : new long[]{-62_135_596_801L, 253_402_300_800L,
+                LocalDateTime.MIN.toEpochSecond(ZoneOffset.UTC), LocalDateTime.MAX.toEpochSecond(ZoneOffset.UTC)}) {
+            int length = codec.format(epochSecond, buffer, 0);
+
+            assertEquals(formatToUtcStr(epochSecond), new String(buffer.array(), 0, length, StandardCharsets.US_ASCII));
+        }
+    }
+
+    private static String formatToUtcStr(long epochSecond) {
+        return Instant.ofEpochSecond(epochSecond).atZone(ZoneId.of("UTC")).format(UTC_FORMATTER);
+    }
+
+}